@@ -0,0 +1,83 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Decoding a 10s WebM/Opus recording to 44.1kHz PCM:
+ * <ul>
+ *   <li>{@code javaWebmOpus} - the in-process decoder on its own</li>
+ *   <li>{@code processingTask} - the pipeline's decode stage: buffer, seal, decode from the slabs</li>
+ *   <li>{@code decoderServiceWav} - {@link AudioDecoderService} through JAVE's bundled FFmpeg and temp files</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AudioDecodeBenchmark {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final AudioSlabPool pool = new AudioSlabPool(64, 64);
+    private final RecognitionMetrics metrics = new RecognitionMetrics(new SimpleMeterRegistry());
+    private final RecognitionAdmission admission = new RecognitionAdmission(mock(RecognitionPipeline.class), metrics,
+            64, 5, 20, 10, 5);
+    private final AudioDecoderService decoderService = new AudioDecoderService();
+    private final JavaWebmOpusDecoder decoder = new JavaWebmOpusDecoder((in, sink) -> {
+        throw new UnsupportedAudioFormatException("fixture is WebM/Opus");
+    });
+    private byte[] upload;
+
+    @Setup
+    public void setUp() throws Exception {
+        upload = WebmFixtures.opusWebm(WebmFixtures.tones(WebmFixtures.OPUS_RATE, 10, 440, 880, 1320, 3000));
+        when(session.getId()).thenReturn("benchmark");
+        // the task and buffer log every recording
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public int javaWebmOpus() throws Exception {
+        PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+        decoder.decode(new ByteArrayInputStream(upload), pcm);
+        return pcm.length();
+    }
+
+    @Benchmark
+    public int processingTask() throws Exception {
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, pool, Long.MAX_VALUE);
+        buffer.append(ByteBuffer.wrap(upload));
+        RecognitionDeadline deadline = new RecognitionDeadline(Long.MAX_VALUE, (d, reason) -> {});
+        try {
+            return new AudioProcessingTask(buffer, decoder, true, deadline, metrics, admission).decode().length();
+        } finally {
+            buffer.closeSilently();
+        }
+    }
+
+    @Benchmark
+    public int decoderServiceWav() throws Exception {
+        return decoderService.decodeOpusToWav(upload).length;
+    }
+}
@@ -0,0 +1,60 @@
+package com.sonicres.demo.features.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Buffering one 10s recording as it arrives over the socket: pooled slab appends, then the
+ * session's release. {@code chunkBytes} 1500 is roughly a 250ms MediaRecorder chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionAudioBufferBenchmark {
+
+    @Param({"1500", "16384"})
+    int chunkBytes;
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final AudioSlabPool pool = new AudioSlabPool(64, 64);
+    private ByteBuffer[] chunks;
+
+    @Setup
+    public void setUp() throws Exception {
+        byte[] upload = WebmFixtures.opusWebm(WebmFixtures.tones(WebmFixtures.OPUS_RATE, 10, 440, 880, 1320, 3000));
+        int count = (upload.length + chunkBytes - 1) / chunkBytes;
+        chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int offset = i * chunkBytes;
+            chunks[i] = ByteBuffer.wrap(upload, offset, Math.min(chunkBytes, upload.length - offset)).slice();
+        }
+    }
+
+    @Benchmark
+    public long append() throws Exception {
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, pool, Long.MAX_VALUE);
+        for (ByteBuffer chunk : chunks) {
+            buffer.append(chunk.rewind());
+        }
+        buffer.closeSilently();
+        return buffer.getTotalBytes();
+    }
+}
@@ -0,0 +1,69 @@
+package com.sonicres.demo.features.fingerprint;
+
+import com.sonicres.demo.features.audio.WebmFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The three fingerprint steps over 10s of synthetic audio, with the default
+ * {@code app.fingerprint.*} settings. Each step reuses its output from the previous iteration,
+ * as the thread-local buffers do in the service.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FingerprintBenchmark {
+
+    private final SpectrogramEngine engine = new SpectrogramEngine(2048, 1024, 44100);
+    private final PeakExtractor peakExtractor = new PeakExtractor(10, 15, 2.0f, 100, 8000);
+    private final LandmarkHasher landmarkHasher = new LandmarkHasher(5, 1, 64, 128, 400);
+    private final Fingerprinter fingerprinter = new Fingerprinter(engine, peakExtractor, landmarkHasher);
+
+    private final Spectrogram spectrogram = new Spectrogram();
+    private final Peaks peaks = new Peaks();
+    private final Landmarks landmarks = new Landmarks();
+    private short[] pcm;
+
+    @Setup
+    public void setUp() {
+        pcm = WebmFixtures.tones(44100, 10, 300, 450, 700, 1100, 1700, 2500, 3300, 4100);
+        engine.compute(pcm, pcm.length, spectrogram);
+        peakExtractor.extract(spectrogram, peaks);
+    }
+
+    @Benchmark
+    public Spectrogram stft() {
+        engine.compute(pcm, pcm.length, spectrogram);
+        return spectrogram;
+    }
+
+    @Benchmark
+    public int peaks() {
+        peakExtractor.extract(spectrogram, peaks);
+        return peaks.count();
+    }
+
+    @Benchmark
+    public int hashes() {
+        landmarkHasher.hash(peaks, spectrogram.bins(), landmarks);
+        return landmarks.count();
+    }
+
+    @Benchmark
+    public int fingerprint() {
+        return fingerprinter.fingerprint(pcm, pcm.length).count();
+    }
+}
@@ -0,0 +1,129 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postings lookup and offset voting for a 350-landmark query (300 from one indexed track, 50
+ * noise) against an index of {@code tracks} random tracks. {@code lookup} only walks the
+ * postings; {@code match} votes and ranks as a recognition does. The {@code mapped} variants
+ * run against the same tracks written to one {@link MappedFingerprintIndex} segment file, and
+ * {@code segmentedMatch} against a {@link CatalogIndex} that fans out over four of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MatchBenchmark {
+
+    private static final int TRACK_FRAMES = 5000;
+    private static final int HASHES_PER_TRACK = 4000;
+
+    @Param({"100", "1000"})
+    int tracks;
+
+    private final FingerprintIndex index = new FingerprintIndex();
+    private MappedFingerprintIndex mapped;
+    private CatalogIndex segmented;
+    private final QueryLandmarks query = new QueryLandmarks();
+    private final OffsetMatcher matcher = new OffsetMatcher(5, Integer.MAX_VALUE, 3, 20);
+    private long visited;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path directory = Files.createTempDirectory("match-benchmark");
+        CatalogIndex single = new CatalogIndex(new TrackCatalog(), directory.resolve("single").toString(), true,
+                Long.MAX_VALUE, 8, 4, 1024, 0);
+        segmented = new CatalogIndex(new TrackCatalog(), directory.resolve("segmented").toString(), true,
+                (long) tracks * HASHES_PER_TRACK / 4, 8, 4, 1024, 0);
+        Random random = new Random(11);
+        long[] target = null;
+        for (int track = 0; track < tracks; track++) {
+            long[] landmarks = new long[HASHES_PER_TRACK];
+            for (int i = 0; i < landmarks.length; i++) {
+                landmarks[i] = Landmarks.pack(random.nextInt(), random.nextInt(TRACK_FRAMES));
+            }
+            index.add(track, landmarks, landmarks.length);
+            single.add(track, landmarks, landmarks.length);
+            segmented.add(track, landmarks, landmarks.length);
+            if (track == 7) {
+                target = landmarks;
+            }
+        }
+
+        long[] excerpt = new long[350];
+        int n = 0;
+        for (long landmark : target) {
+            int time = Landmarks.timeOf(landmark);
+            if (n < 300 && time >= 1200) {
+                excerpt[n++] = Landmarks.pack(Landmarks.hashOf(landmark), time - 1200);
+            }
+        }
+        while (n < excerpt.length) {
+            excerpt[n++] = Landmarks.pack(random.nextInt(), random.nextInt(500));
+        }
+        query.reset(excerpt, excerpt.length);
+
+        single.flush();
+        mapped = single.mappedSegments().get(0);
+        segmented.flush();
+    }
+
+    @Benchmark
+    public long lookup() {
+        visited = 0;
+        index.lookup(query.hashes(), query.hashCount(), (hashIndex, posting) -> {
+            visited += posting;
+            return true;
+        });
+        return visited;
+    }
+
+    @Benchmark
+    public List<TrackMatch> match() {
+        OffsetMatcher.Match match = matcher.begin(query);
+        index.lookup(query.hashes(), query.hashCount(), match);
+        return match.candidates();
+    }
+
+    @Benchmark
+    public long mappedLookup() {
+        visited = 0;
+        mapped.lookup(query.hashes(), query.hashCount(), (hashIndex, posting) -> {
+            visited += posting;
+            return true;
+        });
+        return visited;
+    }
+
+    @Benchmark
+    public List<TrackMatch> mappedMatch() {
+        OffsetMatcher.Match match = matcher.begin(query);
+        mapped.lookup(query.hashes(), query.hashCount(), match);
+        return match.candidates();
+    }
+
+    @Benchmark
+    public List<TrackMatch> segmentedMatch() {
+        OffsetMatcher.Match match = matcher.begin(query);
+        segmented.lookup(query.hashes(), query.hashCount(), match);
+        return match.candidates();
+    }
+}
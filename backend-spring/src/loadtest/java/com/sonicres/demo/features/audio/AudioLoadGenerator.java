@@ -0,0 +1,423 @@
+package com.sonicres.demo.features.audio;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.net.http.WebSocketHandshakeException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives {@code /ws/audio} on a running node the way the browser does: binary WebM/Opus chunks
+ * every {@code loadtest.chunk-ms}, then {@code {"type":"done"}}, then waits for the result.
+ * Run with {@code mvn -Ploadtest -DskipTests verify}; see the README for the properties.
+ *
+ * Two arrival models:
+ * <ul>
+ *   <li>{@code closed} - {@code loadtest.sessions} virtual users, each starting its next recording
+ *       when the last one is answered; finds the throughput a fixed client population gets</li>
+ *   <li>{@code open} - Poisson arrivals at {@code loadtest.rate} recordings/s regardless of how the
+ *       server is keeping up; finds the rate where latency and rejections take off</li>
+ * </ul>
+ */
+public class AudioLoadGenerator {
+
+    private static final String DONE = "{\"type\":\"done\"}";
+
+    private final URI uri = URI.create(System.getProperty("loadtest.url", "ws://localhost:8080/ws/audio"));
+    private final String model = System.getProperty("loadtest.model", "closed");
+    private final int sessions = Integer.getInteger("loadtest.sessions", 100);
+    private final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "20"));
+    private final long durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.duration-seconds", 60));
+    private final long chunkNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("loadtest.chunk-ms", 250));
+    private final long thinkMillis = Long.getLong("loadtest.think-ms", 0);
+    private final long timeoutNanos = TimeUnit.SECONDS.toNanos(Long.getLong("loadtest.timeout-seconds", 30));
+    private final String protocol = System.getProperty("loadtest.protocol", "");
+    private final boolean forwardedFor = Boolean.parseBoolean(System.getProperty("loadtest.forwarded-for", "true"));
+    private final String resultFile = System.getProperty("loadtest.result", "target/loadtest-result.json");
+
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor()) // outlives the shutdown of threads
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper json = new ObjectMapper();
+    private final CBORMapper cbor = new CBORMapper();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Stats stats = new Stats();
+    private List<Clip> clips;
+
+    public static void main(String[] args) throws Exception {
+        new AudioLoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        clips = loadClips(System.getProperty("loadtest.clips", ""));
+        System.out.println("🚀 " + model + " load against " + uri + " for " +
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s with " + clips.size() + " clip(s)" +
+                ("open".equals(model) ? " at " + rate + " recordings/s" : " and " + sessions + " sessions"));
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        Thread progress = Thread.ofVirtual().start(() -> reportProgress(start));
+
+        if ("open".equals(model)) {
+            runOpen(end);
+        } else if ("closed".equals(model)) {
+            runClosed(end);
+        } else {
+            throw new IllegalArgumentException("loadtest.model must be open or closed, got " + model);
+        }
+
+        threads.shutdown();
+        threads.awaitTermination(timeoutNanos + chunkNanos * maxChunks(), TimeUnit.NANOSECONDS);
+        progress.interrupt();
+
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        Map<String, Object> report = stats.report(elapsedSeconds);
+        report.put("model", model);
+        report.put("sessions", "open".equals(model) ? null : sessions);
+        report.put("rate", "open".equals(model) ? rate : null);
+        printReport(report);
+
+        File out = new File(resultFile);
+        if (out.getParentFile() != null) {
+            out.getParentFile().mkdirs();
+        }
+        json.writerWithDefaultPrettyPrinter().writeValue(out, report);
+        System.out.println("📄 Report written to " + out.getPath());
+    }
+
+    private void runOpen(long end) throws InterruptedException {
+        Random arrivals = new Random(42);
+        long next = System.nanoTime();
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            threads.execute(this::recordOnce);
+            next += (long) (-Math.log(1 - arrivals.nextDouble()) / rate * 1e9);
+        }
+    }
+
+    private void runClosed(long end) {
+        for (int user = 0; user < sessions; user++) {
+            threads.execute(() -> {
+                while (System.nanoTime() < end) {
+                    recordOnce();
+                    if (thinkMillis > 0) {
+                        try {
+                            Thread.sleep(thinkMillis);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * One recording: connect, stream a clip in real time, send done, wait for the answer.
+     */
+    private void recordOnce() {
+        int id = sequence.incrementAndGet();
+        Clip clip = clips.get(id % clips.size());
+        Session listener = new Session();
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        WebSocket ws = null;
+
+        try {
+            WebSocket.Builder builder = client.newWebSocketBuilder().connectTimeout(Duration.ofSeconds(10));
+            if (!protocol.isEmpty()) {
+                builder.subprotocols(protocol);
+            }
+            if (forwardedFor) {
+                builder.header("X-Forwarded-For", "10." + (id >> 16 & 0xff) + "." + (id >> 8 & 0xff) + "." + (id & 0xff));
+            }
+            ws = builder.buildAsync(uri, listener).get(timeoutNanos, TimeUnit.NANOSECONDS);
+
+            long streamStart = System.nanoTime();
+            for (int i = 0; i < clip.chunks.length && !listener.outcome.isDone(); i++) {
+                long wait = streamStart + i * chunkNanos - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                ws.sendBinary(clip.chunks[i].duplicate(), true).get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+
+            long doneAt = System.nanoTime();
+            if (!listener.outcome.isDone()) {
+                ws.sendText(DONE, true).get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            Outcome outcome = listener.outcome.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            long answeredAt = listener.answeredAt;
+            stats.record(outcome, answeredAt - start, answeredAt > doneAt ? answeredAt - doneAt : -1);
+        } catch (ExecutionException e) {
+            if (listener.outcome.isDone()) {
+                // answered (or shed) while a chunk was in flight, and the server closed the socket
+                stats.record(listener.outcome.join(), listener.answeredAt - start, -1);
+            } else {
+                boolean rejected = e.getCause() instanceof WebSocketHandshakeException handshake
+                        && handshake.getResponse().statusCode() == 429;
+                stats.record(rejected ? Outcome.REJECTED : Outcome.ERROR, -1, -1);
+            }
+        } catch (TimeoutException e) {
+            stats.record(Outcome.TIMEOUT, -1, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            if (ws != null) {
+                ws.abort();
+            }
+        }
+    }
+
+    private final class Session implements WebSocket.Listener {
+
+        final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+        volatile long answeredAt;
+        private final StringBuilder text = new StringBuilder();
+        private ByteBuffer binary = ByteBuffer.allocate(0);
+
+        @Override
+        public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                String message = text.toString();
+                text.setLength(0);
+                try {
+                    handle(json.readTree(message));
+                } catch (IOException e) {
+                    complete(Outcome.ERROR);
+                }
+            }
+            ws.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket ws, ByteBuffer data, boolean last) {
+            ByteBuffer joined = ByteBuffer.allocate(binary.remaining() + data.remaining());
+            binary = joined.put(binary).put(data).flip();
+            if (last) {
+                byte[] frame = new byte[binary.remaining()];
+                binary.get(frame);
+                binary = ByteBuffer.allocate(0);
+                if (frame.length > 0 && frame[0] != AckCoalescer.BINARY_ACK) {
+                    try {
+                        handle(cbor.readTree(frame));
+                    } catch (IOException e) {
+                        complete(Outcome.ERROR);
+                    }
+                }
+            }
+            ws.request(1);
+            return null;
+        }
+
+        private void handle(JsonNode message) {
+            switch (message.path("type").asText()) {
+                case FingerprintResult.TYPE_RESULT -> complete(Outcome.MATCH);
+                case FingerprintResult.TYPE_NO_MATCH -> complete(Outcome.NO_MATCH);
+                case IncrementalRecognizer.TYPE_MATCH -> complete(Outcome.EARLY_MATCH);
+                case "busy" -> complete(Outcome.REJECTED);
+                case "error" -> complete(Outcome.ERROR);
+                default -> {
+                    // connected, ack, processing, pong
+                }
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+            complete(statusCode == 1013 ? Outcome.REJECTED : Outcome.ERROR);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket ws, Throwable error) {
+            complete(Outcome.ERROR);
+        }
+
+        private void complete(Outcome result) {
+            if (!outcome.isDone()) {
+                answeredAt = System.nanoTime();
+                outcome.complete(result);
+            }
+        }
+    }
+
+    enum Outcome { MATCH, NO_MATCH, EARLY_MATCH, REJECTED, ERROR, TIMEOUT }
+
+    private static final class Stats {
+
+        private final AtomicLongArray counts = new AtomicLongArray(Outcome.values().length);
+        private final ConcurrentLinkedQueue<Long> timeToResult = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> afterDone = new ConcurrentLinkedQueue<>();
+
+        void record(Outcome outcome, long sinceConnectNanos, long sinceDoneNanos) {
+            counts.incrementAndGet(outcome.ordinal());
+            if (outcome == Outcome.MATCH || outcome == Outcome.NO_MATCH || outcome == Outcome.EARLY_MATCH) {
+                timeToResult.add(sinceConnectNanos);
+                if (sinceDoneNanos >= 0) {
+                    afterDone.add(sinceDoneNanos);
+                }
+            }
+        }
+
+        long count(Outcome outcome) {
+            return counts.get(outcome.ordinal());
+        }
+
+        long total() {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        Map<String, Object> report(double elapsedSeconds) {
+            long total = total();
+            long answered = count(Outcome.MATCH) + count(Outcome.NO_MATCH) + count(Outcome.EARLY_MATCH);
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("elapsedSeconds", round(elapsedSeconds));
+            report.put("recordings", total);
+            Map<String, Long> outcomes = new LinkedHashMap<>();
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome.name().toLowerCase(), count(outcome));
+            }
+            report.put("outcomes", outcomes);
+            report.put("throughputPerSecond", round(answered / elapsedSeconds));
+            report.put("errorRate", round(total == 0 ? 0 : (double) (count(Outcome.ERROR) + count(Outcome.TIMEOUT)) / total));
+            report.put("rejectionRate", round(total == 0 ? 0 : (double) count(Outcome.REJECTED) / total));
+            report.put("timeToResultMillis", percentiles(timeToResult));
+            report.put("resultAfterDoneMillis", percentiles(afterDone));
+            return report;
+        }
+
+        private static Map<String, Double> percentiles(ConcurrentLinkedQueue<Long> samples) {
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (double p : new double[]{50, 95, 99}) {
+                result.put("p" + (int) p, sorted.length == 0 ? null
+                        : round(sorted[(int) Math.ceil(p / 100 * sorted.length) - 1] / 1e6));
+            }
+            result.put("max", sorted.length == 0 ? null : round(sorted[sorted.length - 1] / 1e6));
+            return result;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+
+    private void reportProgress(long start) {
+        try {
+            while (true) {
+                Thread.sleep(5000);
+                System.out.println("⏱️  " + (System.nanoTime() - start) / 1_000_000_000 + "s: " +
+                        inFlight.get() + " in flight, " + stats.total() + " finished, " +
+                        stats.count(Outcome.REJECTED) + " rejected, " +
+                        (stats.count(Outcome.ERROR) + stats.count(Outcome.TIMEOUT)) + " failed");
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void printReport(Map<String, Object> report) {
+        System.out.println();
+        System.out.println("| Metric | Value |");
+        System.out.println("|---|---|");
+        report.forEach((name, value) -> {
+            if (value != null) {
+                System.out.println("| " + name + " | " + value + " |");
+            }
+        });
+    }
+
+    private int maxChunks() {
+        return clips.stream().mapToInt(clip -> clip.chunks.length).max().orElse(0);
+    }
+
+    /**
+     * A WebM/Opus recording cut into the byte slices the browser would send each chunk interval.
+     * The duration comes from decoding the clip once, so the slices follow its real bitrate.
+     */
+    private record Clip(String name, ByteBuffer[] chunks) {
+    }
+
+    private List<Clip> loadClips(String location) throws Exception {
+        List<Clip> loaded = new ArrayList<>();
+        if (location.isEmpty()) {
+            short[] tones = WebmFixtures.tones(WebmFixtures.OPUS_RATE, 10, 440, 880, 1320, 3000);
+            loaded.add(clip("synthetic", WebmFixtures.opusWebm(tones)));
+            return loaded;
+        }
+
+        Path path = Path.of(location);
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (var listing = Files.list(path)) {
+                files = listing.filter(p -> p.toString().endsWith(".webm")).sorted().toList();
+            }
+        } else {
+            files = List.of(path);
+        }
+        for (Path file : files) {
+            loaded.add(clip(file.getFileName().toString(), Files.readAllBytes(file)));
+        }
+        if (loaded.isEmpty()) {
+            throw new IllegalArgumentException("No .webm clips in " + location);
+        }
+        return loaded;
+    }
+
+    private Clip clip(String name, byte[] webm) throws Exception {
+        PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+        new JavaWebmOpusDecoder((in, sink) -> {
+            throw new UnsupportedAudioFormatException(name + " is not WebM/Opus");
+        }).decode(new ByteArrayInputStream(webm), pcm);
+
+        int count = Math.max(1, (int) Math.ceil(pcm.durationSeconds() * 1e9 / chunkNanos));
+        int chunkBytes = (webm.length + count - 1) / count;
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < webm.length; offset += chunkBytes) {
+            chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(webm, offset, Math.min(webm.length, offset + chunkBytes)))
+                    .asReadOnlyBuffer());
+        }
+        System.out.println("🎵 " + name + ": " + String.format("%.1f", pcm.durationSeconds()) + "s, " +
+                webm.length + " bytes in " + chunks.size() + " chunks");
+        return new Clip(name, chunks.toArray(ByteBuffer[]::new));
+    }
+}
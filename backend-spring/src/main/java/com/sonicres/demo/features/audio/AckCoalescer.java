@@ -0,0 +1,93 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides when a session's audio chunks are acknowledged, and in which format.
+ *
+ * The mode is negotiated through the WebSocket subprotocol:
+ * - none: one JSON {@code ack} per chunk (the original protocol)
+ * - {@value #PROTOCOL_JSON}: JSON acks, coalesced
+ * - {@value #PROTOCOL_BINARY} and {@value MessageEncoding#PROTOCOL_CBOR}: coalesced 13-byte binary acks -
+ *   {@code [0x01][int32 chunks since last ack][int64 total bytes]}, big-endian
+ *
+ * Coalesced acks go out once {@code minBytes} have arrived or {@code intervalNanos} have passed
+ * since the last one, checked as chunks arrive; {@link #flush} covers the tail at "done".
+ */
+class AckCoalescer {
+
+    static final String PROTOCOL_JSON = "sonic.ack-json.v1";
+    static final String PROTOCOL_BINARY = "sonic.ack-binary.v1";
+    static final byte BINARY_ACK = 0x01;
+    static final int BINARY_ACK_LENGTH = 13;
+
+    enum Mode { PER_CHUNK_JSON, COALESCED_JSON, COALESCED_BINARY }
+
+    private final Mode mode;
+    private final long minBytes;
+    private final long intervalNanos;
+    private long pendingBytes;
+    private int pendingChunks;
+    private long lastAckNanos;
+
+    AckCoalescer(Mode mode, long minBytes, long intervalNanos, long nowNanos) {
+        this.mode = mode;
+        this.minBytes = minBytes;
+        this.intervalNanos = intervalNanos;
+        this.lastAckNanos = nowNanos;
+    }
+
+    static Mode modeFor(String acceptedProtocol) {
+        if (PROTOCOL_BINARY.equals(acceptedProtocol) || MessageEncoding.PROTOCOL_CBOR.equals(acceptedProtocol)) {
+            return Mode.COALESCED_BINARY;
+        }
+        if (PROTOCOL_JSON.equals(acceptedProtocol)) {
+            return Mode.COALESCED_JSON;
+        }
+        return Mode.PER_CHUNK_JSON;
+    }
+
+    /**
+     * @return the ack to send for this chunk, or null to hold it back
+     */
+    synchronized WebSocketMessage<?> onChunk(int bytes, long totalBytes, long nowNanos) {
+        pendingBytes += bytes;
+        pendingChunks++;
+        if (mode != Mode.PER_CHUNK_JSON && pendingBytes < minBytes && nowNanos - lastAckNanos < intervalNanos) {
+            return null;
+        }
+        lastAckNanos = nowNanos;
+        return take(totalBytes);
+    }
+
+    /**
+     * @return an ack covering chunks not acknowledged yet, or null if there are none
+     */
+    synchronized WebSocketMessage<?> flush(long totalBytes) {
+        return pendingChunks == 0 ? null : take(totalBytes);
+    }
+
+    private WebSocketMessage<?> take(long totalBytes) {
+        WebSocketMessage<?> ack;
+        if (mode == Mode.COALESCED_BINARY) {
+            ByteBuffer frame = ByteBuffer.allocate(BINARY_ACK_LENGTH)
+                    .put(BINARY_ACK)
+                    .putInt(pendingChunks)
+                    .putLong(totalBytes)
+                    .flip();
+            ack = new BinaryMessage(frame);
+        } else {
+            ack = MessageEncoding.JSON.encode(ServerMessages.ack(pendingBytes, pendingChunks, totalBytes));
+        }
+        pendingBytes = 0;
+        pendingChunks = 0;
+        return ack;
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,14 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Outcome of a {@link RecognitionAdmission} check. Rejections carry a reason for the client
+ * and how many seconds it should wait before trying again.
+ */
+public record Admission(boolean admitted, String reason, long retryAfterSeconds) {
+
+    public static final Admission ADMITTED = new Admission(true, null, 0);
+
+    public static Admission rejected(String reason, long retryAfterSeconds) {
+        return new Admission(false, reason, Math.max(1, retryAfterSeconds));
+    }
+}
@@ -0,0 +1,48 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the PCM decoder backend.
+ *
+ * app.audio.decoder.mode:
+ *   per-request - fork a new FFmpeg process for every recognition (default)
+ *   pooled      - hand out pre-spawned FFmpeg processes from {@link PooledFfmpegDecoder}
+ *   java        - decode WebM/Opus in-process ({@link JavaWebmOpusDecoder}); anything else
+ *                 goes to the FFmpeg backend named by app.audio.decoder.fallback-mode
+ */
+@Configuration
+public class AudioDecoderConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public PcmDecoder pcmDecoder(
+            @Value("${app.audio.decoder.mode:per-request}") String mode,
+            @Value("${app.audio.decoder.fallback-mode:per-request}") String fallbackMode,
+            @Value("${app.audio.decoder.pool.size:4}") int poolSize,
+            @Value("${app.audio.decoder.pool.max-waiters:32}") int maxWaiters,
+            @Value("${app.audio.decoder.pool.acquire-timeout-ms:2000}") long acquireTimeoutMs,
+            @Value("${app.audio.decoder.pool.health-check-interval-ms:5000}") long healthCheckIntervalMs) {
+
+        if ("java".equals(mode)) {
+            return new JavaWebmOpusDecoder(ffmpegDecoder(fallbackMode, poolSize, maxWaiters,
+                    acquireTimeoutMs, healthCheckIntervalMs));
+        }
+
+        return ffmpegDecoder(mode, poolSize, maxWaiters, acquireTimeoutMs, healthCheckIntervalMs);
+    }
+
+    private static PcmDecoder ffmpegDecoder(String mode, int poolSize, int maxWaiters,
+                                            long acquireTimeoutMs, long healthCheckIntervalMs) {
+        switch (mode) {
+            case "per-request":
+                return new FfmpegPipeDecoder();
+            case "pooled":
+                return new PooledFfmpegDecoder(poolSize, maxWaiters, acquireTimeoutMs, healthCheckIntervalMs);
+            default:
+                throw new IllegalArgumentException("Unknown app.audio.decoder.mode: " + mode
+                        + " (expected per-request, pooled or java)");
+        }
+    }
+}
@@ -1,84 +1,218 @@
 package com.sonicres.demo.features.audio;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.web.socket.CloseStatus;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.UUID;
 
-public class AudioProcessingTask implements Runnable {
+/**
+ * One recording on its way through the {@link RecognitionPipeline}: the decode stage and the
+ * respond stage work on it, the stages in between only see its PCM and fingerprint.
+ */
+public class AudioProcessingTask {
 
     private final SessionAudioBuffer buffer;
-    private final FingerprintService fingerprintService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PcmDecoder pcmDecoder;
+    private final boolean streamingDecode;
+    private final PcmBuffer decodedPcm;
+    private final RecognitionDeadline deadline;
+    private final RecognitionMetrics metrics;
+    private final RecognitionAdmission admission;
+    private File wavFile;
+    private boolean answered; // guarded by this
 
     public AudioProcessingTask(SessionAudioBuffer buffer,
-                               FingerprintService fingerprintService) {
+                               PcmDecoder pcmDecoder,
+                               boolean streamingDecode,
+                               RecognitionDeadline deadline,
+                               RecognitionMetrics metrics,
+                               RecognitionAdmission admission) {
+        this(buffer, pcmDecoder, streamingDecode, null, deadline, metrics, admission);
+    }
+
+    /**
+     * @param decodedPcm audio already decoded while it streamed in, or null to decode the upload here
+     * @param deadline cancelled when the deadline passes or the client disconnects
+     * @param admission turns a decoder pool with no worker to spare into a {@code busy} answer
+     */
+    public AudioProcessingTask(SessionAudioBuffer buffer,
+                               PcmDecoder pcmDecoder,
+                               boolean streamingDecode,
+                               PcmBuffer decodedPcm,
+                               RecognitionDeadline deadline,
+                               RecognitionMetrics metrics,
+                               RecognitionAdmission admission) {
         this.buffer = buffer;
-        this.fingerprintService = fingerprintService;
+        this.pcmDecoder = pcmDecoder;
+        this.streamingDecode = streamingDecode;
+        this.decodedPcm = decodedPcm;
+        this.deadline = deadline;
+        this.metrics = metrics;
+        this.admission = admission;
     }
 
-    @Override
-    public void run() {
-        File rawFile = buffer.getTempFile();
-        File wavFile = null;
+    /**
+     * Decode stage: seal the buffer and turn the upload into PCM - reusing audio decoded while it
+     * streamed in, piping it through the configured decoder, or the legacy FFmpeg-to-WAV route.
+     *
+     * @return decoded audio, or null if the client has already been told why there is none
+     */
+    public PcmBuffer decode() throws Exception {
         WebSocketSession session = buffer.getSession();
+        System.out.println("🎵 Starting audio processing for session: " + session.getId());
 
-        try {
-            System.out.println("🎵 Starting audio processing for session: " + session.getId());
+        deadline.checkpoint();
+        long sealStart = System.nanoTime();
+        buffer.closeForProcessing();
+        metrics.recordSince(RecognitionMetrics.SEAL, sealStart);
 
-            buffer.closeForProcessing();
+        long fileSize = buffer.getTotalBytes();
+        System.out.println("📁 Raw audio size: " + fileSize + " bytes" + (buffer.isSpilled() ? " (spilled to disk)" : ""));
 
-            long fileSize = rawFile.length();
-            System.out.println("📁 Raw audio file size: " + fileSize + " bytes");
-
-            if (fileSize == 0) {
-                System.err.println("❌ No audio data received!");
-                sendErrorToClient("No audio data received");
-                closeSession(session);
-                return;
-            }
+        if (fileSize == 0) {
+            System.err.println("❌ No audio data received!");
+            sendErrorToClient("No audio data received");
+            closeSession(session);
+            return null;
+        }
 
-            // Create temp WAV file
-            wavFile = File.createTempFile("audio-wav-" + UUID.randomUUID(), ".wav");
-            System.out.println("📝 Created temp WAV file: " + wavFile.getName());
+        if (decodedPcm != null) {
+            System.out.println("♻️  Using " + String.format("%.2f", decodedPcm.durationSeconds()) +
+                    "s of audio decoded while streaming");
+            return decodedPcm;
+        }
 
-            // Convert to WAV - FFmpeg is now installed in the same container
-            System.out.println("🔄 Converting audio to WAV using local FFmpeg...");
-            boolean success = decodeWithLocalFFmpeg(rawFile, wavFile);
+        if (streamingDecode) {
+            // Stream through FFmpeg stdin/stdout - no intermediate WAV file
+            System.out.println("🔄 Decoding audio to PCM through FFmpeg pipes...");
+            long decodeStart = System.nanoTime();
+            PcmBuffer pcm;
+            try {
+                pcm = decodeWithFFmpegPipe();
+            } catch (DecoderBusyException e) {
+                // out of capacity, not bad input: shed it like admission would have
+                System.out.println("🚦 No decoder for session " + session.getId() + ": " + e.getMessage());
+                sendBusyToClient(admission.decoderBusy());
+                return null;
+            }
+            metrics.recordSince(RecognitionMetrics.DECODE, decodeStart);
 
-            if (!success) {
-                System.err.println("❌ FFmpeg conversion failed");
+            if (pcm == null || pcm.length() == 0) {
+                System.err.println("❌ FFmpeg pipe decode failed");
+                metrics.ffmpegFailure();
                 sendErrorToClient("Audio decoding failed");
                 closeSession(session);
-                return;
+                return null;
             }
 
-            System.out.println("✅ Audio converted to WAV: " + wavFile.length() + " bytes");
+            System.out.println("✅ Decoded " + pcm.length() + " samples (" +
+                    String.format("%.2f", pcm.durationSeconds()) + "s)");
+            return pcm;
+        }
 
-            // Call fingerprinting service
-            System.out.println("🔍 Starting fingerprint matching...");
-            FingerprintResult result = fingerprintService.fingerprintAndMatch(wavFile);
+        // Create temp WAV file
+        wavFile = File.createTempFile("audio-wav-" + UUID.randomUUID(), ".wav");
+        System.out.println("📝 Created temp WAV file: " + wavFile.getName());
 
-            // Send result back to client
-            sendResultToClient(result);
+        // Convert to WAV - FFmpeg is now installed in the same container
+        System.out.println("🔄 Converting audio to WAV using local FFmpeg...");
+        long decodeStart = System.nanoTime();
+        boolean success = decodeWithLocalFFmpeg(buffer.toFile(), wavFile);
 
+        if (!success) {
+            System.err.println("❌ FFmpeg conversion failed");
+            metrics.ffmpegFailure();
+            sendErrorToClient("Audio decoding failed");
             closeSession(session);
+            return null;
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error processing audio: " + e.getMessage());
-            e.printStackTrace();
-            sendErrorToClient("Audio processing error: " + e.getMessage());
-            closeSession(session);
-        } finally {
-            cleanup(rawFile, wavFile);
+        System.out.println("✅ Audio converted to WAV: " + wavFile.length() + " bytes");
+        PcmBuffer pcm = PcmBuffer.fromWav(wavFile);
+        metrics.recordSince(RecognitionMetrics.DECODE, decodeStart);
+        return pcm;
+    }
+
+    /**
+     * Respond stage: send the result back and close the session, unless it was cancelled meanwhile.
+     */
+    public void respond(FingerprintResult result) {
+        if (!deadline.complete()) {
+            fail(new RecognitionCancelledException(deadline.getCancelReason()));
+            return;
+        }
+        sendResultToClient(result);
+        closeSession(buffer.getSession());
+    }
+
+    /**
+     * Any stage failed: tell the client and close the session. A cancelled recognition only
+     * tells the client if it is still there, i.e. when the deadline ran out.
+     */
+    public void fail(Exception e) {
+        if (e instanceof RecognitionCancelledException || deadline.isCancelled()) {
+            String reason = deadline.getCancelReason();
+            if (RecognitionDeadline.REASON_DEADLINE.equals(reason)) {
+                sendErrorToClient("Recognition timed out, please try again");
+                closeSession(buffer.getSession());
+            }
+            System.out.println("⏱️  Dropped recognition for session " + getSessionId() + " (" + reason + ")");
+            return;
         }
+        deadline.complete();
+        System.err.println("❌ Error processing audio: " + e.getMessage());
+        e.printStackTrace();
+        sendErrorToClient("Audio processing error: " + e.getMessage());
+        closeSession(buffer.getSession());
+    }
+
+    /**
+     * Tell the client its recording is being recognized, once the pipeline has accepted the task.
+     * Skipped if the task has already answered, so {@code processing} never arrives after the
+     * answer even when the pipeline is faster than the caller.
+     */
+    public synchronized void sendProcessing() {
+        if (answered) {
+            return;
+        }
+        WebSocketSession session = buffer.getSession();
+        if (session != null && session.isOpen()) {
+            try {
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.PROCESSING));
+                System.out.println("✓ Sent 'processing' message to client");
+            } catch (IOException e) {
+                System.err.println("❌ Error sending processing message: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Called before the answer (result, error or busy) goes out; waits for a {@code processing}
+     * message that is being sent.
+     */
+    private synchronized void answering() {
+        answered = true;
+    }
+
+    /**
+     * Always called once the task leaves the pipeline, whichever way.
+     */
+    public void finish() {
+        cleanup(wavFile);
+        buffer.release();
+    }
+
+    public String getSessionId() {
+        return buffer.getSession().getId();
+    }
+
+    public RecognitionDeadline getDeadline() {
+        return deadline;
     }
 
     /**
@@ -215,17 +349,21 @@ public class AudioProcessingTask implements Runnable {
 
             pb.redirectErrorStream(true);
             Process process = pb.start();
+            Runnable unregister = deadline.onCancel(process::destroyForcibly);
 
             StringBuilder output = new StringBuilder();
+            int exitCode;
             try (BufferedReader reader = new BufferedReader(
                     new InputStreamReader(process.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     output.append(line).append("\n");
                 }
+                exitCode = process.waitFor();
+            } finally {
+                unregister.run();
             }
-
-            int exitCode = process.waitFor();
+            deadline.checkpoint();
 
             if (exitCode != 0) {
                 System.err.println("❌ FFmpeg failed with exit code: " + exitCode);
@@ -247,14 +385,47 @@ public class AudioProcessingTask implements Runnable {
         }
     }
 
+    /**
+     * Decode the sealed upload straight into a PCM buffer - from the in-memory slabs when it
+     * never spilled, otherwise from the spill file
+     *
+     * @throws DecoderBusyException if a pooled decoder had no worker to spare
+     */
+    private PcmBuffer decodeWithFFmpegPipe() throws DecoderBusyException {
+        PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+
+        try {
+            List<ByteBuffer> chunks = buffer.chunks();
+            if (chunks != null) {
+                pcmDecoder.decode(chunks, pcm);
+            } else {
+                try (InputStream in = buffer.openStream()) {
+                    pcmDecoder.decode(in, pcm);
+                }
+            }
+            return pcm;
+        } catch (DecoderBusyException e) {
+            throw e;
+        } catch (IOException e) {
+            deadline.checkpoint(); // the decoder was torn down by a cancel, not broken input
+            System.err.println("❌ Error running FFmpeg pipe decode: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
     private void sendResultToClient(FingerprintResult result) {
+        answering();
         WebSocketSession session = buffer.getSession();
 
         if (session != null && session.isOpen()) {
             try {
-                String resultJson = result.toJSON();
                 System.out.println("✅ Sending result to client: " + session.getId());
-                session.sendMessage(new TextMessage(resultJson));
+                long sendStart = System.nanoTime();
+                session.sendMessage(MessageEncoding.of(session).encode(result));
+                metrics.recordSince(RecognitionMetrics.SEND, sendStart);
             } catch (IOException e) {
                 System.err.println("❌ Failed to send result to client: " + e.getMessage());
                 e.printStackTrace();
@@ -263,44 +434,49 @@ public class AudioProcessingTask implements Runnable {
     }
 
     private void sendErrorToClient(String errorMessage) {
+        answering();
         WebSocketSession session = buffer.getSession();
 
         if (session != null && session.isOpen()) {
             try {
-                Map<String, Object> errorMap = new HashMap<>();
-                errorMap.put("type", "error");
-                errorMap.put("message", errorMessage);
-
-                String errorJson = objectMapper.writeValueAsString(errorMap);
-                System.err.println("❌ Sending error to client: " + errorJson);
-                session.sendMessage(new TextMessage(errorJson));
+                System.err.println("❌ Sending error to client: " + errorMessage);
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.error(errorMessage)));
             } catch (IOException e) {
                 System.err.println("❌ Failed to send error to client: " + e.getMessage());
             }
         }
     }
 
-    private void closeSession(WebSocketSession session) {
+    /**
+     * Tell the client to come back later and close with 1013, as admission control does.
+     */
+    private void sendBusyToClient(Admission decision) {
+        deadline.complete();
+        answering();
+        WebSocketSession session = buffer.getSession();
         if (session != null && session.isOpen()) {
             try {
-                System.out.println("🔌 Closing session: " + session.getId());
-                session.close(CloseStatus.NORMAL);
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.busy(decision)));
+                session.close(CloseStatus.SERVICE_OVERLOAD);
             } catch (IOException e) {
-                System.err.println("❌ Error closing session: " + e.getMessage());
+                System.err.println("❌ Failed to send busy message to client: " + e.getMessage());
             }
         }
     }
 
-    private void cleanup(File rawFile, File wavFile) {
-        if (rawFile != null) {
+    private void closeSession(WebSocketSession session) {
+        deadline.complete(); // closed by us, so the disconnect that follows is not a cancellation
+        if (session != null && session.isOpen()) {
             try {
-                Files.deleteIfExists(rawFile.toPath());
-                System.out.println("🗑️  Deleted raw file");
+                System.out.println("🔌 Closing session: " + session.getId());
+                session.close(CloseStatus.NORMAL);
             } catch (IOException e) {
-                System.err.println("⚠️  Failed to delete raw file");
+                System.err.println("❌ Error closing session: " + e.getMessage());
             }
         }
+    }
 
+    private void cleanup(File wavFile) {
         if (wavFile != null) {
             try {
                 Files.deleteIfExists(wavFile.toPath());
@@ -0,0 +1,72 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size direct {@link ByteBuffer} slabs shared by all session buffers.
+ *
+ * At most {@code max-memory-mb} worth of slabs ever exist; once they are all handed out,
+ * {@link #acquire()} returns null and the session spills to disk instead of growing the heap.
+ * Released slabs are kept for reuse rather than freed.
+ */
+@Component
+public class AudioSlabPool {
+
+    private final int slabSize;
+    private final int maxSlabs;
+    private final ConcurrentLinkedDeque<ByteBuffer> free = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    public AudioSlabPool(@Value("${app.audio.buffer.slab-size-kb:64}") int slabSizeKb,
+                         @Value("${app.audio.buffer.max-memory-mb:64}") int maxMemoryMb) {
+        this.slabSize = slabSizeKb * 1024;
+        this.maxSlabs = Math.max(1, (int) ((long) maxMemoryMb * 1024 * 1024 / slabSize));
+    }
+
+    /**
+     * @return a cleared slab, or null if the global budget is used up
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer slab = free.pollFirst();
+        if (slab == null) {
+            int n;
+            do {
+                n = allocated.get();
+                if (n >= maxSlabs) {
+                    return null;
+                }
+            } while (!allocated.compareAndSet(n, n + 1));
+            slab = ByteBuffer.allocateDirect(slabSize);
+        }
+        inUse.incrementAndGet();
+        return slab;
+    }
+
+    public void release(ByteBuffer slab) {
+        slab.clear();
+        inUse.decrementAndGet();
+        free.offerFirst(slab); // most recently used first, it is likelier to be in cache
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public int getMaxSlabs() {
+        return maxSlabs;
+    }
+
+    public int getAllocatedSlabs() {
+        return allocated.get();
+    }
+
+    public int getSlabsInUse() {
+        return inUse.get();
+    }
+}
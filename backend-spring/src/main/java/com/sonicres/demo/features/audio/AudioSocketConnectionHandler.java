@@ -1,41 +1,107 @@
 package com.sonicres.demo.features.audio;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * WebSocket handler for Shazam-like audio fingerprinting.
  *
  * Flow:
  * 1. Client connects → Create buffer
- * 2. Client streams audio chunks → Append to buffer
+ * 2. Client streams audio chunks → Append to buffer → ack (per chunk, or coalesced, see {@link AckCoalescer})
+ *    (and, with incremental recognition, decode + match as chunks arrive → "match" → close early)
  * 3. Client sends "done" message → Trigger processing (connection stays open!)
  * 4. Server processes → Sends result back → Closes connection
+ *
+ * Over capacity (see {@link RecognitionAdmission}), the client gets a "busy" message with
+ * retryAfterSeconds and the connection is closed with 1013 instead of queueing the work.
  */
 @Component
-public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
+public class AudioSocketConnectionHandler extends BinaryWebSocketHandler implements SubProtocolCapable {
+
+    // Results are sent from the processing pool while acks go out on the socket thread
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+    private static final String CONNECTED_AT_ATTRIBUTE = "audio.connectedAtNanos";
 
     private final ConcurrentMap<String, SessionAudioBuffer> sessions = new ConcurrentHashMap<>();
-    private final ExecutorService processingPool = Executors.newFixedThreadPool(
-            Math.max(2, Runtime.getRuntime().availableProcessors())
-    );
-    private final FingerprintService fingerprintService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, IncrementalRecognizer> recognizers = new ConcurrentHashMap<>();
+    private final Set<String> admitted = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, RecognitionDeadline> deadlines = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AckCoalescer> acks = new ConcurrentHashMap<>();
+    private final RecognitionPipeline pipeline;
+    private final RecognitionAdmission admission;
+    private final RecognitionDeadlines recognitionDeadlines;
+    private final RecognitionMetrics metrics;
+    private final PcmDecoder pcmDecoder;
+    private final AudioSlabPool slabPool;
+    private final long spillThresholdBytes;
+    private final boolean streamingDecode;
+    private final boolean incrementalEnabled;
+    private final double incrementalMinSeconds;
+    private final double incrementalIntervalSeconds;
+    private final double incrementalWindowSeconds;
+    private final int incrementalMaxAttempts;
+    private final double incrementalConfidenceThreshold;
+    private final long ackMinBytes;
+    private final long ackIntervalNanos;
 
-    public AudioSocketConnectionHandler(FingerprintService fingerprintService) {
-        this.fingerprintService = fingerprintService;
+    public AudioSocketConnectionHandler(RecognitionPipeline pipeline,
+                                        RecognitionAdmission admission,
+                                        RecognitionDeadlines recognitionDeadlines,
+                                        RecognitionMetrics metrics,
+                                        PcmDecoder pcmDecoder,
+                                        AudioSlabPool slabPool,
+                                        @Value("${app.audio.buffer.spill-threshold-kb:1024}") long spillThresholdKb,
+                                        @Value("${app.audio.streaming-decode:true}") boolean streamingDecode,
+                                        @Value("${app.audio.incremental.enabled:true}") boolean incrementalEnabled,
+                                        @Value("${app.audio.incremental.min-seconds:2.0}") double incrementalMinSeconds,
+                                        @Value("${app.audio.incremental.interval-seconds:1.0}") double incrementalIntervalSeconds,
+                                        @Value("${app.audio.incremental.window-seconds:8.0}") double incrementalWindowSeconds,
+                                        @Value("${app.audio.incremental.max-attempts:8}") int incrementalMaxAttempts,
+                                        @Value("${app.audio.incremental.confidence-threshold:0.6}") double incrementalConfidenceThreshold,
+                                        @Value("${app.audio.ack.coalesce-bytes:32768}") long ackMinBytes,
+                                        @Value("${app.audio.ack.coalesce-interval-ms:1000}") long ackIntervalMs) {
+        this.pipeline = pipeline;
+        this.admission = admission;
+        this.recognitionDeadlines = recognitionDeadlines;
+        this.metrics = metrics;
+        this.pcmDecoder = pcmDecoder;
+        this.slabPool = slabPool;
+        this.spillThresholdBytes = spillThresholdKb * 1024;
+        this.streamingDecode = streamingDecode;
+        this.incrementalEnabled = incrementalEnabled;
+        this.incrementalMinSeconds = incrementalMinSeconds;
+        this.incrementalIntervalSeconds = incrementalIntervalSeconds;
+        this.incrementalWindowSeconds = incrementalWindowSeconds;
+        this.incrementalMaxAttempts = incrementalMaxAttempts;
+        this.incrementalConfidenceThreshold = incrementalConfidenceThreshold;
+        this.ackMinBytes = ackMinBytes;
+        this.ackIntervalNanos = ackIntervalMs * 1_000_000;
+    }
+
+    /**
+     * Clients that offer one of these get coalesced acks (and, for CBOR, binary message frames);
+     * clients that offer none keep JSON text and per-chunk acks.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(MessageEncoding.PROTOCOL_CBOR, AckCoalescer.PROTOCOL_BINARY, AckCoalescer.PROTOCOL_JSON);
     }
 
     @Override
@@ -44,20 +110,27 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
         System.out.println("Session ID: " + session.getId());
         System.out.println("Remote Address: " + session.getRemoteAddress());
         System.out.println("Is Open: " + session.isOpen());
+        System.out.println("Protocol: " + (session.getAcceptedProtocol() != null ? session.getAcceptedProtocol() : "default"));
+
+        Object handshakeStart = session.getAttributes().get(WebSocketHandshakeInterceptor.HANDSHAKE_START_ATTRIBUTE);
+        if (handshakeStart instanceof Long start) {
+            metrics.recordSince(RecognitionMetrics.HANDSHAKE, start);
+        }
+        session.getAttributes().put(CONNECTED_AT_ATTRIBUTE, System.nanoTime());
+
+        if (!admission.acquireSlot()) {
+            sendBusy(session, admission.noSlot());
+            return;
+        }
+        admitted.add(session.getId());
 
         try {
-            SessionAudioBuffer buffer = new SessionAudioBuffer(session);
-            sessions.put(session.getId(), buffer);
+            SessionAudioBuffer buffer = createBuffer(session);
             System.out.println("✓ Created and stored buffer for session: " + session.getId());
 
             // Notify client that connection is ready
             if (session.isOpen()) {
-                String message = objectMapper.writeValueAsString(Map.of(
-                        "type", "connected",
-                        "sessionId", session.getId(),
-                        "message", "Ready to receive audio"
-                ));
-                session.sendMessage(new TextMessage(message));
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.connected(session.getId())));
                 System.out.println("✓ Sent 'connected' message to client");
             }
 
@@ -72,30 +145,36 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
 
     @Override
     protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        if (!admitted.contains(session.getId())) {
+            return; // rejected as busy, the close is on its way
+        }
         SessionAudioBuffer buffer = sessions.get(session.getId());
 
         if (buffer == null) {
             System.err.println("⚠️  No buffer for session " + session.getId() + ", creating new one");
-            buffer = new SessionAudioBuffer(session);
-            sessions.put(session.getId(), buffer);
+            buffer = createBuffer(session);
         }
 
         ByteBuffer payload = message.getPayload();
         int bytesReceived = payload.remaining();
 
-        System.out.println("📦 Received " + bytesReceived + " bytes from session: " + session.getId());
+        // Decode (and maybe match) as audio arrives
+        IncrementalRecognizer recognizer = recognizers.get(session.getId());
+        if (recognizer != null) {
+            recognizer.onChunk(payload.duplicate());
+        }
 
         // Append audio chunk to buffer
         buffer.append(payload);
 
-        // Send acknowledgment
-        if (session.isOpen()) {
-            String ack = objectMapper.writeValueAsString(Map.of(
-                    "type", "ack",
-                    "bytes", bytesReceived,
-                    "totalBytes", buffer.getTotalBytes()
-            ));
-            session.sendMessage(new TextMessage(ack));
+        // Send acknowledgment, unless it is coalesced with later chunks
+        AckCoalescer coalescer = acks.get(session.getId());
+        session = buffer.getSession();
+        if (coalescer != null && session.isOpen()) {
+            WebSocketMessage<?> ack = coalescer.onChunk(bytesReceived, buffer.getTotalBytes(), System.nanoTime());
+            if (ack != null) {
+                session.sendMessage(ack);
+            }
         }
     }
 
@@ -105,9 +184,12 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
         System.out.println("📨 Received text message from " + session.getId() + ": " + payload);
 
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> json = objectMapper.readValue(payload, Map.class);
-            String type = (String) json.get("type");
+            String type = MessageEncoding.readClientType(payload);
+
+            SessionAudioBuffer buffer = sessions.get(session.getId());
+            if (buffer != null) {
+                session = buffer.getSession();
+            }
 
             if ("done".equals(type)) {
                 System.out.println("🎵 Client finished recording: " + session.getId());
@@ -115,9 +197,7 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
             } else if ("ping".equals(type)) {
                 // Keep-alive ping
                 if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(objectMapper.writeValueAsString(
-                            Map.of("type", "pong")
-                    )));
+                    session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.PONG));
                 }
             } else {
                 System.err.println("⚠️  Unknown message type: " + type);
@@ -139,37 +219,74 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
             return;
         }
 
+        IncrementalRecognizer recognizer = recognizers.remove(session.getId());
+        if (recognizer != null && !recognizer.finish()) {
+            System.out.println("⚡ Session " + session.getId() + " already answered by an early match");
+            return;
+        }
+
         System.out.println("🎵 Starting audio processing for session: " + session.getId());
         System.out.println("Total bytes received: " + buffer.getTotalBytes());
 
-        // Send "processing" status to client
-        try {
-            String processingMsg = objectMapper.writeValueAsString(Map.of(
-                    "type", "processing",
-                    "message", "Analyzing audio..."
-            ));
-            if (session.isOpen()) {
-                session.sendMessage(new TextMessage(processingMsg));
-                System.out.println("✓ Sent 'processing' message to client");
+        if (session.getAttributes().get(CONNECTED_AT_ATTRIBUTE) instanceof Long connectedAt) {
+            metrics.recordSince(RecognitionMetrics.BUFFERING, connectedAt);
+        }
+
+        AckCoalescer coalescer = acks.get(session.getId());
+        WebSocketMessage<?> finalAck = coalescer != null ? coalescer.flush(buffer.getTotalBytes()) : null;
+        if (finalAck != null && session.isOpen()) {
+            try {
+                session.sendMessage(finalAck);
+            } catch (IOException e) {
+                System.err.println("❌ Error sending final ack: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("❌ Error sending processing message: " + e.getMessage());
+        }
+
+        Admission decision = admission.admitSubmit();
+        if (!decision.admitted()) {
+            sendBusy(session, decision);
+            return;
         }
 
         // Submit processing task
-        AudioProcessingTask task = new AudioProcessingTask(buffer, fingerprintService);
-        processingPool.submit(task);
-        System.out.println("✓ Submitted processing task to thread pool");
+        PcmBuffer decodedPcm = recognizer != null ? recognizer.decodedPcm() : null;
+        RecognitionDeadline deadline = recognitionDeadlines.start();
+        AudioProcessingTask task = new AudioProcessingTask(buffer, pcmDecoder, streamingDecode, decodedPcm, deadline,
+                metrics, admission);
+        buffer.retain(); // released by the task, so a disconnect cannot recycle slabs mid-decode
+        deadlines.put(session.getId(), deadline);
+        if (!pipeline.submit(task)) {
+            deadlines.remove(session.getId());
+            deadline.complete();
+            buffer.release();
+            sendBusy(session, admission.queueFull());
+            return;
+        }
+        System.out.println("✓ Submitted processing task to recognition pipeline");
+        // only now is the recording really being processed; a busy client never sees "processing"
+        task.sendProcessing();
+    }
+
+    private SessionAudioBuffer createBuffer(WebSocketSession session) throws IOException {
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(
+                session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES);
+        SessionAudioBuffer buffer = new SessionAudioBuffer(concurrentSession, slabPool, spillThresholdBytes);
+        sessions.put(session.getId(), buffer);
+        acks.put(session.getId(), new AckCoalescer(AckCoalescer.modeFor(session.getAcceptedProtocol()),
+                ackMinBytes, ackIntervalNanos, System.nanoTime()));
+
+        if (incrementalEnabled) {
+            recognizers.put(session.getId(), new IncrementalRecognizer(buffer, pipeline, recognitionDeadlines,
+                    incrementalMinSeconds, incrementalIntervalSeconds, incrementalWindowSeconds,
+                    incrementalMaxAttempts, incrementalConfidenceThreshold));
+        }
+        return buffer;
     }
 
     private void sendError(WebSocketSession session, String errorMessage) {
         try {
             if (session != null && session.isOpen()) {
-                String error = objectMapper.writeValueAsString(Map.of(
-                        "type", "error",
-                        "message", errorMessage
-                ));
-                session.sendMessage(new TextMessage(error));
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.error(errorMessage)));
                 System.err.println("❌ Sent error to session " + session.getId() + ": " + errorMessage);
             }
         } catch (Exception e) {
@@ -177,9 +294,26 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
         }
     }
 
+    private void sendBusy(WebSocketSession session, Admission decision) {
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(MessageEncoding.of(session).encode(ServerMessages.busy(decision)));
+                session.close(CloseStatus.SERVICE_OVERLOAD);
+                System.out.println("🚦 Shed session " + session.getId() + ": " + decision.reason() +
+                        " (retry after " + decision.retryAfterSeconds() + "s)");
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Failed to send busy message: " + e.getMessage());
+        }
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         SessionAudioBuffer buffer = sessions.remove(session.getId());
+        acks.remove(session.getId());
+        finishRecognizer(session);
+        cancelRecognition(session);
+        releaseSlot(session);
 
         if (buffer != null) {
             buffer.closeSilently();
@@ -200,8 +334,50 @@ public class AudioSocketConnectionHandler extends BinaryWebSocketHandler {
         exception.printStackTrace();
 
         SessionAudioBuffer buffer = sessions.remove(session.getId());
+        acks.remove(session.getId());
+        finishRecognizer(session);
+        cancelRecognition(session);
+        releaseSlot(session);
         if (buffer != null) {
             buffer.closeSilently();
         }
     }
+
+    /**
+     * The client is gone: stop its recognition wherever it is. A no-op if it was already answered.
+     */
+    private void cancelRecognition(WebSocketSession session) {
+        RecognitionDeadline deadline = deadlines.remove(session.getId());
+        if (deadline != null) {
+            deadline.cancel(RecognitionDeadline.REASON_DISCONNECTED);
+        }
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Compressed audio held for all open sessions, in memory or spilled.
+     */
+    public long getBufferedBytes() {
+        long total = 0;
+        for (SessionAudioBuffer buffer : sessions.values()) {
+            total += buffer.getTotalBytes();
+        }
+        return total;
+    }
+
+    private void releaseSlot(WebSocketSession session) {
+        if (admitted.remove(session.getId())) {
+            admission.releaseSlot();
+        }
+    }
+
+    private void finishRecognizer(WebSocketSession session) {
+        IncrementalRecognizer recognizer = recognizers.remove(session.getId());
+        if (recognizer != null) {
+            recognizer.finish();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Reads a sequence of buffers as one stream, for decoders that only take an {@link InputStream}.
+ */
+class ByteBuffersInputStream extends InputStream {
+
+    private final List<ByteBuffer> buffers;
+    private int current = 0;
+
+    ByteBuffersInputStream(List<ByteBuffer> buffers) {
+        this.buffers = buffers;
+    }
+
+    @Override
+    public int read() {
+        ByteBuffer buffer = nextReadable();
+        return buffer == null ? -1 : buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = nextReadable();
+        if (buffer == null) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        ByteBuffer buffer = nextReadable();
+        return buffer == null ? 0 : buffer.remaining();
+    }
+
+    private ByteBuffer nextReadable() {
+        while (current < buffers.size()) {
+            ByteBuffer buffer = buffers.get(current);
+            if (buffer.hasRemaining()) {
+                return buffer;
+            }
+            current++;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Landmarks of one recorded clip, handed from the extract stage to the match stage.
+ *
+ * @param landmarks packed (hash, anchor frame) values; only the first {@code count} are valid
+ */
+public record ClipFingerprint(long[] landmarks, int count, double framesPerSecond, double durationSeconds) {
+}
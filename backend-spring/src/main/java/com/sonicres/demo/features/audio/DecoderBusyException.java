@@ -0,0 +1,13 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a pooled decoder cannot hand out a worker within its wait limits.
+ */
+public class DecoderBusyException extends IOException {
+
+    public DecoderBusyException(String message) {
+        super(message);
+    }
+}
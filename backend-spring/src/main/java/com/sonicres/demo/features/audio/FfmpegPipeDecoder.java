@@ -0,0 +1,167 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes compressed audio by streaming it through FFmpeg's stdin/stdout.
+ *
+ * Compressed bytes go into {@code pipe:0}, raw s16le mono PCM comes out of
+ * {@code pipe:1} straight into a {@link PcmSink} - no WAV file is written or read back.
+ * This is the per-request mode: every call forks a fresh FFmpeg process.
+ * If the calling recognition is cancelled, the process is destroyed mid-decode.
+ */
+public class FfmpegPipeDecoder implements PcmDecoder {
+
+    public static final int SAMPLE_RATE = 44100;
+
+    private static final int READ_CHUNK_BYTES = 16 * 1024;
+    static final int STDERR_TAIL_BYTES = 8 * 1024;
+
+    static final List<String> FFMPEG_PIPE_COMMAND = List.of(
+            "ffmpeg",
+            "-hide_banner",
+            "-loglevel", "error",
+            "-i", "pipe:0",
+            "-vn",
+            "-ac", "1",
+            "-ar", String.valueOf(SAMPLE_RATE),
+            "-acodec", "pcm_s16le",
+            "-f", "s16le",
+            "pipe:1"
+    );
+
+    // stdin has to be fed, and stderr drained, on their own threads: FFmpeg blocks on any full pipe
+    private final ExecutorService pipeThreads = Executors.newCachedThreadPool(
+            new NamedThreadFactory("ffmpeg-pipe"));
+
+    /**
+     * Decode the given compressed stream to mono 44.1kHz PCM.
+     *
+     * @param compressed WebM/Opus (or any FFmpeg-readable) bytes; not closed by this method
+     * @param sink receives decoded samples in order
+     * @return number of samples written to the sink
+     * @throws IOException if FFmpeg cannot be started or exits with an error
+     */
+    @Override
+    public long decode(InputStream compressed, PcmSink sink) throws IOException, InterruptedException {
+        return transcode(startProcess(), compressed, sink, pipeThreads);
+    }
+
+    static Process startProcess() throws IOException {
+        return new ProcessBuilder(FFMPEG_PIPE_COMMAND).start();
+    }
+
+    /**
+     * Run one decode through an already started FFmpeg pipe process. The process is single use
+     * and is always gone when this returns. stdin and stderr are serviced on {@code pipeThreads}
+     * while this thread reads stdout, so a chatty FFmpeg can't fill its stderr pipe and stall.
+     */
+    static long transcode(Process process, InputStream compressed, PcmSink sink,
+                          ExecutorService pipeThreads) throws IOException, InterruptedException {
+        RecognitionDeadline deadline = RecognitionDeadline.current();
+        Runnable unregister = deadline != null ? deadline.onCancel(process::destroyForcibly) : () -> { };
+        try {
+            Future<?> feeder = pipeThreads.submit(() -> {
+                try (OutputStream stdin = process.getOutputStream()) {
+                    compressed.transferTo(stdin);
+                }
+                return null;
+            });
+            Future<String> stderr = pipeThreads.submit(() -> tail(process.getErrorStream(), STDERR_TAIL_BYTES));
+
+            long samples = readPcm(process.getInputStream(), sink);
+            int exitCode = process.waitFor();
+
+            if (deadline != null) {
+                deadline.checkpoint(); // a killed process exits non-zero; report why
+            }
+            if (exitCode != 0) {
+                throw new IOException("FFmpeg failed with exit code " + exitCode + ": " + errors(stderr).trim());
+            }
+
+            try {
+                feeder.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to stream audio into FFmpeg", e.getCause());
+            }
+
+            return samples;
+        } finally {
+            unregister.run();
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Read {@code in} to the end, keeping only its last {@code maxBytes} (at least 1 KB) - FFmpeg's
+     * final error lines, without holding on to whatever it logged before them.
+     */
+    static String tail(InputStream in, int maxBytes) throws IOException {
+        byte[] tail = new byte[maxBytes];
+        byte[] chunk = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            int keep = Math.min(length, maxBytes - read);
+            System.arraycopy(tail, length - keep, tail, 0, keep);
+            System.arraycopy(chunk, 0, tail, keep, read);
+            length = keep + read;
+        }
+        return new String(tail, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static String errors(Future<String> stderr) throws InterruptedException {
+        try {
+            return stderr.get();
+        } catch (ExecutionException e) {
+            return "(stderr unreadable: " + e.getCause().getMessage() + ")";
+        }
+    }
+
+    /**
+     * Read little-endian s16 PCM from FFmpeg's stdout into the sink using fixed-size scratch arrays.
+     */
+    static long readPcm(InputStream stdout, PcmSink sink) throws IOException {
+        byte[] bytes = new byte[READ_CHUNK_BYTES];
+        short[] samples = new short[READ_CHUNK_BYTES / 2];
+        long total = 0;
+        int carry = 0; // a sample may be split across two reads
+
+        int read;
+        while ((read = stdout.read(bytes, carry, bytes.length - carry)) != -1) {
+            int available = carry + read;
+            int count = available >> 1;
+
+            for (int i = 0, b = 0; i < count; i++, b += 2) {
+                samples[i] = (short) ((bytes[b] & 0xFF) | (bytes[b + 1] << 8));
+            }
+
+            if (count > 0) {
+                sink.write(samples, 0, count);
+                total += count;
+            }
+
+            carry = available & 1;
+            if (carry == 1) {
+                bytes[0] = bytes[available - 1];
+            }
+        }
+
+        return total;
+    }
+
+    @Override
+    public void shutdown() {
+        pipeThreads.shutdownNow();
+    }
+}
@@ -1,17 +1,57 @@
 package com.sonicres.demo.features.audio;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FingerprintResult {
+    public static final String TYPE_RESULT = "result";
+    public static final String TYPE_NO_MATCH = "no-match";
+
+    private String type = TYPE_NO_MATCH;
     private String trackName;
     private String artist;
     private Double confidence;
+    private Double matchOffsetSeconds;
+    private List<MatchCandidate> matches = List.of();
 
     public FingerprintResult() {}
 
+    /**
+     * Result whose top-level fields describe the best of the given candidates, strongest first.
+     */
+    public static FingerprintResult of(List<MatchCandidate> matches) {
+        FingerprintResult r = new FingerprintResult();
+        r.matches = List.copyOf(matches);
+        if (matches.isEmpty()) {
+            r.setConfidence(0.0);
+            return r;
+        }
+
+        MatchCandidate best = matches.get(0);
+        r.type = TYPE_RESULT;
+        r.setTrackName(best.title());
+        r.setArtist(best.artist());
+        r.setConfidence(best.confidence());
+        r.matchOffsetSeconds = best.offsetSeconds();
+        return r;
+    }
+
+    /**
+     * The same candidates as seen from a clip that starts {@code seconds} later in the recording.
+     */
+    public FingerprintResult shifted(double seconds) {
+        List<MatchCandidate> moved = new ArrayList<>(matches.size());
+        for (MatchCandidate m : matches) {
+            moved.add(new MatchCandidate(m.trackId(), m.title(), m.artist(), m.confidence(), m.votes(),
+                    m.offsetSeconds() + seconds));
+        }
+        return of(moved);
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
     public void setTrackName(String trackName) {
         this.trackName = trackName;
     }
@@ -40,15 +80,23 @@ public class FingerprintResult {
         return confidence;
     }
 
+    public String getType() {
+        return type;
+    }
+
+    public Double getMatchOffsetSeconds() {
+        return matchOffsetSeconds;
+    }
+
+    public List<MatchCandidate> getMatches() {
+        return matches;
+    }
+
+    /**
+     * Compact JSON through the shared writer; sockets should use {@link MessageEncoding#encode}.
+     */
     public String toJSON() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.configure(JsonGenerator.Feature.QUOTE_NON_NUMERIC_NUMBERS, true);
-            ObjectWriter ow = mapper.writerWithDefaultPrettyPrinter();
-            return ow.writeValueAsString(this);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Error converting to JSON", e);
-        }
+        return MessageEncoding.toJson(this);
     }
 }
 
@@ -1,8 +1,14 @@
 package com.sonicres.demo.features.audio;
 
-import java.io.File;
-
 public interface FingerprintService {
 
-    FingerprintResult fingerprintAndMatch(File wavFile) throws Exception;
+    /**
+     * Spectrogram, peaks and landmark hashes only - the CPU-bound half of recognition.
+     */
+    ClipFingerprint extract(PcmBuffer pcm) throws Exception;
+
+    /**
+     * Look the clip's landmarks up and rank candidate tracks.
+     */
+    FingerprintResult match(ClipFingerprint clip) throws Exception;
 }
@@ -0,0 +1,195 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recognizes a recording while it is still streaming in.
+ *
+ * Each WebSocket chunk is pushed through an in-process {@link OpusStreamDecoder} as it arrives,
+ * so decoded PCM grows alongside the upload. Once {@code minSeconds} are decoded, and then after
+ * every further {@code intervalSeconds}, a match over the last {@code windowSeconds} is queued on
+ * the {@link RecognitionPipeline} (never more than one at a time per session, at most
+ * {@code maxAttempts} per session). The first result at or above {@code confidenceThreshold} is
+ * pushed as a {@code match} message and the session is closed, without waiting for the client's
+ * {@code done}.
+ *
+ * The window and the attempt limit bound the work a session can cause, however long it streams.
+ * Attempts share the pipeline's extract and match threads with finished recordings, so they count
+ * in its admission estimate, and each runs under its own {@link RecognitionDeadline}, which
+ * {@link #finish()} cancels so the final recognition never waits behind an attempt.
+ *
+ * If the upload is not WebM/Opus the recognizer switches itself off and the regular
+ * post-recording path does all the work.
+ */
+public class IncrementalRecognizer implements PcmSink {
+
+    public static final String TYPE_MATCH = "match";
+
+    private final SessionAudioBuffer buffer;
+    private final RecognitionPipeline pipeline;
+    private final RecognitionDeadlines deadlines;
+    private final int minSamples;
+    private final int intervalSamples;
+    private final int windowSamples;
+    private final int maxAttempts;
+    private final double confidenceThreshold;
+
+    private final OpusStreamDecoder decoder = new OpusStreamDecoder(this);
+    private final PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+    private final PcmBuffer snapshot = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+
+    private final AtomicBoolean attemptRunning = new AtomicBoolean(false);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile boolean disabled = false;
+    private volatile RecognitionDeadline attemptDeadline;
+    private int samplesAtLastAttempt = 0;
+    private int attempts = 0;
+
+    public IncrementalRecognizer(SessionAudioBuffer buffer,
+                                 RecognitionPipeline pipeline,
+                                 RecognitionDeadlines deadlines,
+                                 double minSeconds,
+                                 double intervalSeconds,
+                                 double windowSeconds,
+                                 int maxAttempts,
+                                 double confidenceThreshold) {
+        this.buffer = buffer;
+        this.pipeline = pipeline;
+        this.deadlines = deadlines;
+        this.minSamples = (int) (minSeconds * FfmpegPipeDecoder.SAMPLE_RATE);
+        this.intervalSamples = (int) (intervalSeconds * FfmpegPipeDecoder.SAMPLE_RATE);
+        this.windowSamples = Math.max(1, (int) (windowSeconds * FfmpegPipeDecoder.SAMPLE_RATE));
+        this.maxAttempts = maxAttempts;
+        this.confidenceThreshold = confidenceThreshold;
+    }
+
+    /**
+     * Decode one uploaded chunk. Called on the session's WebSocket thread, in arrival order.
+     */
+    public void onChunk(ByteBuffer chunk) {
+        if (disabled || finished.get()) {
+            return;
+        }
+
+        try {
+            decoder.feed(chunk);
+        } catch (IOException e) {
+            // Not WebM/Opus (or damaged beyond repair) - leave it to the post-recording decoder
+            disabled = true;
+            System.out.println("⚠️  Incremental recognition off for session " + buffer.getSession().getId() +
+                    ": " + e.getMessage());
+            return;
+        }
+
+        int decoded = decodedSamples();
+        if (attempts < maxAttempts && decoded >= minSamples && decoded - samplesAtLastAttempt >= intervalSamples
+                && attemptRunning.compareAndSet(false, true)) {
+            samplesAtLastAttempt = decoded;
+            startAttempt();
+        }
+    }
+
+    @Override
+    public synchronized void write(short[] samples, int offset, int length) {
+        pcm.write(samples, offset, length);
+    }
+
+    private synchronized int decodedSamples() {
+        return pcm.length();
+    }
+
+    /**
+     * Queue a match over the last {@code windowSeconds} of audio. Called on the session's WebSocket thread.
+     */
+    private void startAttempt() {
+        int decoded;
+        int from;
+        synchronized (this) {
+            decoded = pcm.length();
+            from = Math.max(0, decoded - windowSamples);
+            snapshot.clear();
+            snapshot.write(pcm.samples(), from, decoded - from);
+        }
+        double windowStartSeconds = (double) from / FfmpegPipeDecoder.SAMPLE_RATE;
+        double heardSeconds = (double) decoded / FfmpegPipeDecoder.SAMPLE_RATE;
+        int attempt = attempts + 1;
+
+        RecognitionDeadline deadline = deadlines.start();
+        attemptDeadline = deadline;
+        if (finished.get()) {
+            deadline.cancel(RecognitionDeadline.REASON_SUPERSEDED); // finish() may have missed it
+        }
+        if (pipeline.submitAttempt(snapshot, deadline,
+                result -> matched(result, windowStartSeconds, heardSeconds, attempt),
+                () -> attemptEnded(deadline))) {
+            attempts = attempt;
+        } else {
+            attemptEnded(deadline); // pipeline full; the next interval tries again
+        }
+    }
+
+    private void matched(FingerprintResult result, double windowStartSeconds, double heardSeconds, int attempt) {
+        if (FingerprintResult.TYPE_RESULT.equals(result.getType())
+                && result.getConfidence() >= confidenceThreshold
+                && finished.compareAndSet(false, true)) {
+            System.out.println("⚡ Early match after " + String.format("%.1f", heardSeconds) +
+                    "s of audio (attempt " + attempt + "): " + result.getTrackName());
+            // offsets from the start of the recording, not of the window
+            FingerprintResult early = result.shifted(-windowStartSeconds);
+            early.setType(TYPE_MATCH);
+            sendAndClose(early);
+        }
+    }
+
+    private void attemptEnded(RecognitionDeadline deadline) {
+        deadline.complete();
+        attemptRunning.set(false);
+    }
+
+    private void sendAndClose(FingerprintResult result) {
+        WebSocketSession session = buffer.getSession();
+        try {
+            if (session.isOpen()) {
+                session.sendMessage(MessageEncoding.of(session).encode(result));
+                session.close(CloseStatus.NORMAL);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to send early match to client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The recording is over (client sent {@code done} or disconnected); no further early matches,
+     * and a running attempt is cancelled.
+     *
+     * @return false if an early match already answered this session
+     */
+    public boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        RecognitionDeadline deadline = attemptDeadline;
+        if (deadline != null) {
+            deadline.cancel(RecognitionDeadline.REASON_SUPERSEDED);
+        }
+        return true;
+    }
+
+    /**
+     * Everything decoded so far, if the in-process decoder handled the whole upload - lets the final
+     * match skip FFmpeg. Only valid after {@link #finish()}.
+     */
+    public PcmBuffer decodedPcm() {
+        if (disabled || !decoder.isTrackSelected()) {
+            return null;
+        }
+        synchronized (this) {
+            return pcm.length() > 0 ? pcm : null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process decoder for the browser's WebM/Opus recordings - no FFmpeg on the hot path.
+ *
+ * The first bytes are retained until the demuxer has found an Opus track. If the container or
+ * codec turns out to be something else (Safari's MP4/AAC, Ogg, ...), those bytes are replayed
+ * in front of the rest of the stream into the fallback decoder.
+ *
+ * Once the Opus track has been found the fallback is off the table: PCM is already in the sink and
+ * the sniffed prefix is no longer complete, so replaying would duplicate or misalign audio. A stream
+ * that goes bad after that (e.g. a damaged cluster) ends the decode with the audio before the damage.
+ */
+public class JavaWebmOpusDecoder implements PcmDecoder {
+
+    private static final int SNIFF_LIMIT = 64 * 1024;
+    private static final int READ_CHUNK_BYTES = 16 * 1024;
+
+    private final PcmDecoder fallback;
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    public JavaWebmOpusDecoder(PcmDecoder fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public long decode(InputStream compressed, PcmSink sink) throws IOException, InterruptedException {
+        OpusStreamDecoder stream = new OpusStreamDecoder(sink);
+        ByteArrayOutputStream sniffed = new ByteArrayOutputStream();
+        byte[] chunk = new byte[READ_CHUNK_BYTES];
+
+        int read;
+        while ((read = compressed.read(chunk)) != -1) {
+            if (!stream.isTrackSelected()) {
+                sniffed.write(chunk, 0, read);
+            }
+
+            try {
+                stream.feed(chunk, 0, read);
+            } catch (UnsupportedAudioFormatException e) {
+                if (!canFallBack(stream)) {
+                    return truncated(stream, e);
+                }
+                return decodeWithFallback(e.getMessage(), sniffed, compressed, sink);
+            }
+
+            if (!stream.isTrackSelected() && sniffed.size() > SNIFF_LIMIT) {
+                return decodeWithFallback("no Opus track in the first " + SNIFF_LIMIT + " bytes",
+                        sniffed, compressed, sink);
+            }
+        }
+
+        if (!stream.isTrackSelected()) {
+            return decodeWithFallback("stream ended before an Opus track was found", sniffed, compressed, sink);
+        }
+
+        if (stream.getCorruptPackets() > 0) {
+            System.err.println("⚠️  Concealed " + stream.getCorruptPackets() + " corrupt Opus packet(s)");
+        }
+
+        return stream.getSamplesWritten();
+    }
+
+    /**
+     * Feeds the buffers to the demuxer as they are. They can be re-read, so on fallback the
+     * original chunks are replayed instead of a sniffed copy.
+     */
+    @Override
+    public long decode(List<ByteBuffer> chunks, PcmSink sink) throws IOException, InterruptedException {
+        OpusStreamDecoder stream = new OpusStreamDecoder(sink);
+        List<ByteBuffer> replay = new ArrayList<>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            replay.add(chunk.duplicate());
+        }
+
+        try {
+            for (ByteBuffer chunk : chunks) {
+                stream.feed(chunk);
+            }
+            if (!stream.isTrackSelected()) {
+                throw new UnsupportedAudioFormatException("stream ended before an Opus track was found");
+            }
+        } catch (UnsupportedAudioFormatException e) {
+            if (!canFallBack(stream)) {
+                return truncated(stream, e);
+            }
+            fallbackCount.incrementAndGet();
+            System.out.println("↪️  Java WebM/Opus decoder cannot handle input (" + e.getMessage() +
+                    "), falling back to FFmpeg");
+            return fallback.decode(replay, sink);
+        }
+
+        if (stream.getCorruptPackets() > 0) {
+            System.err.println("⚠️  Concealed " + stream.getCorruptPackets() + " corrupt Opus packet(s)");
+        }
+        return stream.getSamplesWritten();
+    }
+
+    private static boolean canFallBack(OpusStreamDecoder stream) {
+        return !stream.isTrackSelected() && stream.getSamplesWritten() == 0;
+    }
+
+    /**
+     * Keep what was decoded before the stream went bad, as for an upload cut short.
+     */
+    private static long truncated(OpusStreamDecoder stream, UnsupportedAudioFormatException e) {
+        System.err.println("⚠️  WebM/Opus stream damaged after " + stream.getSamplesWritten() +
+                " samples (" + e.getMessage() + "), keeping the audio before it");
+        return stream.getSamplesWritten();
+    }
+
+    private long decodeWithFallback(String reason, ByteArrayOutputStream sniffed, InputStream rest,
+                                    PcmSink sink) throws IOException, InterruptedException {
+        fallbackCount.incrementAndGet();
+        System.out.println("↪️  Java WebM/Opus decoder cannot handle input (" + reason + "), falling back to FFmpeg");
+
+        InputStream replay = new SequenceInputStream(new ByteArrayInputStream(sniffed.toByteArray()), rest);
+        return fallback.decode(replay, sink);
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    @Override
+    public void shutdown() {
+        fallback.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * One ranked track in a {@link FingerprintResult}, shaped like the frontend's
+ * {@code matches[]} entries.
+ *
+ * @param offsetSeconds where in the track the recording starts
+ * @param votes         query landmarks aligned at that offset
+ */
+public record MatchCandidate(String trackId,
+                             String title,
+                             String artist,
+                             double confidence,
+                             int votes,
+                             double offsetSeconds) {
+}
@@ -0,0 +1,88 @@
+package com.sonicres.demo.features.audio;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * How server messages are put on the wire, per session.
+ *
+ * - {@link #JSON}: compact JSON text frames (default)
+ * - {@link #CBOR}: CBOR binary frames, for clients that negotiate {@value #PROTOCOL_CBOR};
+ *   those also get binary acks (see {@link AckCoalescer}), which never collide with CBOR
+ *   because a CBOR map never starts with byte 0x01
+ *
+ * One mapper per format and one {@link ObjectWriter} per message type, all built when the
+ * class loads, so sending a message only serializes it.
+ */
+public enum MessageEncoding {
+
+    JSON(new ObjectMapper()),
+    CBOR(new CBORMapper());
+
+    public static final String PROTOCOL_CBOR = "sonic.cbor.v1";
+
+    private static final ObjectReader CLIENT_MESSAGES = new ObjectMapper()
+            .readerFor(ServerMessages.ClientMessage.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final Map<Class<?>, ObjectWriter> writers;
+
+    MessageEncoding(ObjectMapper mapper) {
+        this.writers = ServerMessages.TYPES.stream()
+                .collect(Collectors.toUnmodifiableMap(type -> type, mapper::writerFor));
+    }
+
+    public static MessageEncoding of(WebSocketSession session) {
+        return PROTOCOL_CBOR.equals(session.getAcceptedProtocol()) ? CBOR : JSON;
+    }
+
+    public WebSocketMessage<?> encode(Object message) {
+        ObjectWriter writer = writer(message.getClass());
+        try {
+            return this == CBOR
+                    ? new BinaryMessage(writer.writeValueAsBytes(message))
+                    : new TextMessage(writer.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + message.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Compact JSON of a server message, e.g. for logging or {@link FingerprintResult#toJSON()}.
+     */
+    public static String toJson(Object message) {
+        try {
+            return JSON.writer(message.getClass()).writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + message.getClass().getSimpleName(), e);
+        }
+    }
+
+    private ObjectWriter writer(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            throw new IllegalArgumentException("Not a server message type: " + type.getName());
+        }
+        return writer;
+    }
+
+    /**
+     * Read the type of a client text message ({@code done}, {@code ping}); other fields are ignored.
+     */
+    public static String readClientType(String payload) throws IOException {
+        ServerMessages.ClientMessage message = CLIENT_MESSAGES.readValue(payload);
+        return message.type();
+    }
+}
@@ -0,0 +1,120 @@
+package com.sonicres.demo.features.audio;
+
+import io.github.jaredmdobson.concentus.OpusDecoder;
+import io.github.jaredmdobson.concentus.OpusException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental WebM/Opus to mono 44.1kHz PCM decoder for a single recording.
+ *
+ * Bytes can be fed in arbitrary slices (e.g. one WebSocket frame at a time); every complete
+ * Opus packet is decoded with the pure-Java Concentus port, downmixed, resampled from 48kHz
+ * and pushed to the sink. Work arrays belong to the decoder, allocated once its Opus track is
+ * found, so steady-state decoding allocates nothing per packet whichever thread (often a fresh
+ * virtual thread per chunk) feeds it. Not thread-safe; feed one recording from one thread at a time.
+ */
+public class OpusStreamDecoder implements WebmOpusDemuxer.Listener {
+
+    private static final int OPUS_SAMPLE_RATE = 48000;
+    private static final int MAX_FRAME_SAMPLES = 5760; // 120ms at 48kHz, the largest Opus frame
+
+    private final WebmOpusDemuxer demuxer = new WebmOpusDemuxer(this);
+    private final PcmResampler resampler = new PcmResampler(OPUS_SAMPLE_RATE, FfmpegPipeDecoder.SAMPLE_RATE);
+    private final PcmSink sink;
+
+    private OpusDecoder opus;
+    private int channels;
+    private short[] decoded;
+    private short[] mono;
+    private short[] resampled;
+    private int preSkipRemaining;
+    private long samplesWritten = 0;
+    private int corruptPackets = 0;
+
+    public OpusStreamDecoder(PcmSink sink) {
+        this.sink = sink;
+    }
+
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        demuxer.feed(data, offset, length);
+    }
+
+    public void feed(ByteBuffer data) throws IOException {
+        demuxer.feed(data);
+    }
+
+    public boolean isTrackSelected() {
+        return demuxer.isTrackSelected();
+    }
+
+    public long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    public int getCorruptPackets() {
+        return corruptPackets;
+    }
+
+    @Override
+    public void onOpusTrack(int channels, int preSkip) throws IOException {
+        try {
+            this.opus = new OpusDecoder(OPUS_SAMPLE_RATE, channels);
+        } catch (OpusException e) {
+            throw new UnsupportedAudioFormatException("Cannot create Opus decoder: " + e.getMessage());
+        }
+        this.channels = channels;
+        this.preSkipRemaining = preSkip;
+        this.decoded = new short[MAX_FRAME_SAMPLES * channels];
+        this.mono = channels == 2 ? new short[MAX_FRAME_SAMPLES] : decoded;
+        this.resampled = new short[MAX_FRAME_SAMPLES];
+    }
+
+    @Override
+    public void onOpusPacket(byte[] data, int offset, int length) {
+        int frames;
+
+        try {
+            frames = opus.decode(data, offset, length, decoded, 0, MAX_FRAME_SAMPLES, false);
+        } catch (OpusException e) {
+            // Keep the timeline intact with packet loss concealment rather than dropping the frame
+            corruptPackets++;
+            frames = conceal();
+        }
+
+        if (frames <= 0) {
+            return;
+        }
+
+        if (channels == 2) {
+            for (int i = 0, j = 0; i < frames; i++, j += 2) {
+                mono[i] = (short) ((decoded[j] + decoded[j + 1]) >> 1);
+            }
+        }
+
+        int from = 0;
+        if (preSkipRemaining > 0) {
+            from = Math.min(preSkipRemaining, frames);
+            preSkipRemaining -= from;
+        }
+
+        int produced = resampler.process(mono, from, frames - from, resampled);
+        if (produced > 0) {
+            sink.write(resampled, 0, produced);
+            samplesWritten += produced;
+        }
+    }
+
+    private int conceal() {
+        int duration = opus.getLastPacketDuration();
+        if (duration <= 0) {
+            return 0;
+        }
+        try {
+            return opus.decode(null, 0, 0, decoded, 0, duration, false);
+        } catch (OpusException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sonicres.demo.features.audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Growable primitive buffer of mono 16-bit PCM samples.
+ * This is what decoders write into and what the fingerprinter reads from,
+ * so no WAV file has to exist between the two.
+ */
+public class PcmBuffer implements PcmSink {
+
+    private static final int DEFAULT_CAPACITY = 44100 * 12; // ~12s of mono 44.1kHz
+
+    private final int sampleRate;
+    private short[] samples;
+    private int length;
+
+    public PcmBuffer(int sampleRate) {
+        this(sampleRate, DEFAULT_CAPACITY);
+    }
+
+    public PcmBuffer(int sampleRate, int initialCapacity) {
+        this.sampleRate = sampleRate;
+        this.samples = new short[Math.max(1024, initialCapacity)];
+    }
+
+    /**
+     * Load a mono 16-bit little-endian WAV file (what the legacy FFmpeg path writes).
+     */
+    public static PcmBuffer fromWav(File wavFile) throws Exception {
+        try (AudioInputStream in = AudioSystem.getAudioInputStream(wavFile)) {
+            AudioFormat format = in.getFormat();
+            if (format.getChannels() != 1 || format.getSampleSizeInBits() != 16 || format.isBigEndian()) {
+                throw new IOException("Expected mono 16-bit little-endian WAV, got " + format);
+            }
+
+            PcmBuffer pcm = new PcmBuffer((int) format.getSampleRate());
+            FfmpegPipeDecoder.readPcm(in, pcm);
+            return pcm;
+        }
+    }
+
+    @Override
+    public void write(short[] source, int offset, int count) {
+        ensureCapacity(length + count);
+        System.arraycopy(source, offset, samples, length, count);
+        length += count;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(required, samples.length + (samples.length >> 1)));
+        }
+    }
+
+    /**
+     * Backing array - only the first {@link #length()} samples are valid.
+     */
+    public short[] samples() {
+        return samples;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    public double durationSeconds() {
+        return (double) length / sampleRate;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decodes compressed browser audio (WebM/Opus etc.) into mono 44.1kHz 16-bit PCM.
+ * The implementation is picked by {@link AudioDecoderConfig} from {@code app.audio.decoder.mode}.
+ */
+public interface PcmDecoder {
+
+    /**
+     * @param compressed compressed audio bytes; not closed by this method
+     * @param sink receives decoded samples in order
+     * @return number of samples written to the sink
+     */
+    long decode(InputStream compressed, PcmSink sink) throws IOException, InterruptedException;
+
+    /**
+     * Decode audio held in buffers (e.g. a session's slabs). Implementations that can parse
+     * buffers directly override this to skip the stream copy.
+     *
+     * @param chunks consecutive pieces of one recording; their positions are advanced
+     */
+    default long decode(List<ByteBuffer> chunks, PcmSink sink) throws IOException, InterruptedException {
+        return decode(new ByteBuffersInputStream(chunks), sink);
+    }
+
+    default void shutdown() {
+    }
+}
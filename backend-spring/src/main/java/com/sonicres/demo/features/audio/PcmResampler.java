@@ -0,0 +1,60 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Streaming linear-interpolation resampler for mono 16-bit PCM.
+ *
+ * The read position is tracked as an exact fraction (e.g. 48000 -> 44100 steps by 160/147
+ * input samples), so there is no drift however many chunks are pushed through it.
+ */
+public class PcmResampler {
+
+    private final long step;        // input samples per output sample, numerator
+    private final long denominator; // ... and denominator
+
+    private long position = 0;      // read position in 1/denominator input samples, relative to current chunk
+    private int previous = 0;       // last sample of the previous chunk (index -1)
+
+    public PcmResampler(int inputRate, int outputRate) {
+        long gcd = gcd(inputRate, outputRate);
+        this.step = inputRate / gcd;
+        this.denominator = outputRate / gcd;
+    }
+
+    /**
+     * Upper bound on the samples {@link #process} can produce for {@code count} input samples.
+     */
+    public int maxOutput(int count) {
+        return (int) ((count + 1) * denominator / step) + 2;
+    }
+
+    /**
+     * @return number of samples written to {@code out}
+     */
+    public int process(short[] in, int offset, int count, short[] out) {
+        if (count == 0) {
+            return 0;
+        }
+
+        int produced = 0;
+        while (true) {
+            long index = Math.floorDiv(position, denominator); // -1 means "previous chunk's last sample"
+            if (index + 1 >= count) {
+                break;
+            }
+
+            long fraction = position - index * denominator;
+            int a = index < 0 ? previous : in[offset + (int) index];
+            int b = in[offset + (int) index + 1];
+            out[produced++] = (short) (a + (b - a) * fraction / denominator);
+            position += step;
+        }
+
+        previous = in[offset + count - 1];
+        position -= count * denominator;
+        return produced;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,11 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Receives decoded mono 16-bit PCM samples as they come out of a decoder.
+ * Implementations must copy what they need - the array is reused by the caller.
+ */
+@FunctionalInterface
+public interface PcmSink {
+
+    void write(short[] samples, int offset, int length);
+}
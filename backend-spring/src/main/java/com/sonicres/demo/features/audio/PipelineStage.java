@@ -0,0 +1,108 @@
+package com.sonicres.demo.features.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the {@link RecognitionPipeline}: a bounded queue drained by a fixed number of
+ * worker threads. {@link #offer} refuses work when the queue is full (used at the pipeline
+ * entrance); {@link #put} blocks the upstream worker instead, so a slow stage pushes back on
+ * the one before it rather than letting work pile up.
+ */
+class PipelineStage {
+
+    private final String name;
+    private final int threads;
+    private final BlockingQueue<Runnable> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private volatile long averageNanos; // moving average of job run time, good enough for estimates
+    private volatile boolean running = true;
+
+    PipelineStage(String name, int threads, int queueCapacity, ThreadFactory threadFactory) {
+        this.name = name;
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        for (int i = 0; i < threads; i++) {
+            Thread worker = threadFactory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void work() {
+        while (running) {
+            Runnable job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            active.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Unhandled error in pipeline stage " + name + ": " + e.getMessage());
+            } finally {
+                long took = System.nanoTime() - start;
+                averageNanos += (took - averageNanos) / 8;
+                active.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    boolean offer(Runnable job) {
+        return running && queue.offer(job);
+    }
+
+    void put(Runnable job) throws InterruptedException {
+        queue.put(job);
+    }
+
+    /**
+     * Rough time a job entering this stage now waits before it finishes here:
+     * everything queued or running ahead of it, spread over the workers.
+     */
+    long estimatedWaitNanos() {
+        return (queue.size() + active.get() + 1) * averageNanos / threads;
+    }
+
+    void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    int getActive() {
+        return active.get();
+    }
+
+    long getCompleted() {
+        return completed.get();
+    }
+}
@@ -0,0 +1,12 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Point-in-time view of one {@link RecognitionPipeline} stage.
+ */
+public record PipelineStageStats(String stage,
+                                 int threads,
+                                 int active,
+                                 int queueDepth,
+                                 int queueCapacity,
+                                 long completed) {
+}
@@ -0,0 +1,206 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FFmpeg pipe decoder backed by a pool of pre-spawned ("warm") FFmpeg processes.
+ *
+ * An FFmpeg process can only demux one input stream, so each warm process decodes exactly
+ * one recording. The win is that fork/exec, dynamic linking and FFmpeg start-up happen in
+ * the background: a request takes a process that is already blocked on stdin, and a
+ * replacement starts warming immediately.
+ *
+ * - pool size: number of warm processes kept ready
+ * - wait queue: at most {@code maxWaiters} callers may wait, each for at most {@code acquireTimeoutMs}
+ * - health check: idle processes that died are discarded and restarted on a fixed delay
+ */
+public class PooledFfmpegDecoder implements PcmDecoder {
+
+    private final int poolSize;
+    private final int maxWaiters;
+    private final long acquireTimeoutMs;
+    private final ProcessFactory processFactory;
+
+    private final BlockingQueue<Process> idle;
+    private final AtomicInteger provisioned = new AtomicInteger(); // idle + currently spawning
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong spawnFailures = new AtomicLong();
+
+    private final ExecutorService spawner;
+    private final ExecutorService pipeThreads;
+    private final ScheduledExecutorService healthChecker;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Starts a fresh decoding process; FFmpeg in production, a fake in tests.
+     */
+    interface ProcessFactory {
+        Process start() throws IOException;
+    }
+
+    public PooledFfmpegDecoder(int poolSize, int maxWaiters, long acquireTimeoutMs, long healthCheckIntervalMs) {
+        this(poolSize, maxWaiters, acquireTimeoutMs, healthCheckIntervalMs, FfmpegPipeDecoder::startProcess);
+    }
+
+    PooledFfmpegDecoder(int poolSize, int maxWaiters, long acquireTimeoutMs, long healthCheckIntervalMs,
+                        ProcessFactory processFactory) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("FFmpeg pool size must be at least 1");
+        }
+        this.poolSize = poolSize;
+        this.maxWaiters = maxWaiters;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.processFactory = processFactory;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        this.spawner = Executors.newSingleThreadExecutor(new NamedThreadFactory("ffmpeg-pool-spawner"));
+        this.pipeThreads = Executors.newCachedThreadPool(new NamedThreadFactory("ffmpeg-pool-pipe"));
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ffmpeg-pool-health"));
+
+        replenish();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth,
+                healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+
+        System.out.println("🔥 FFmpeg decoder pool started: " + poolSize + " warm processes, max "
+                + maxWaiters + " waiters, " + acquireTimeoutMs + "ms acquire timeout");
+    }
+
+    @Override
+    public long decode(InputStream compressed, PcmSink sink) throws IOException, InterruptedException {
+        Process process = acquire();
+        return FfmpegPipeDecoder.transcode(process, compressed, sink, pipeThreads);
+    }
+
+    private Process acquire() throws IOException, InterruptedException {
+        if (waiters.incrementAndGet() > maxWaiters) {
+            waiters.decrementAndGet();
+            throw new DecoderBusyException("FFmpeg decoder pool wait queue is full (" + maxWaiters + " waiting)");
+        }
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+            while (true) {
+                Process process = idle.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (process == null) {
+                    throw new DecoderBusyException("Timed out after " + acquireTimeoutMs
+                            + "ms waiting for a warm FFmpeg process");
+                }
+
+                provisioned.decrementAndGet();
+                replenish(); // start warming the replacement while this one decodes
+
+                if (process.isAlive()) {
+                    return process;
+                }
+
+                // Crashed while idle - discard and take the next one
+                restarts.incrementAndGet();
+                System.err.println("⚠️  Warm FFmpeg process exited with code " + process.exitValue() + ", restarting");
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Top the pool back up to {@code poolSize}. Spawning happens on the spawner thread.
+     */
+    private void replenish() {
+        while (!shutdown) {
+            int current = provisioned.get();
+            if (current >= poolSize) {
+                return;
+            }
+            if (provisioned.compareAndSet(current, current + 1)) {
+                try {
+                    spawner.execute(this::spawnOne);
+                } catch (RejectedExecutionException e) {
+                    provisioned.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void spawnOne() {
+        try {
+            Process process = processFactory.start();
+            if (shutdown || !idle.offer(process)) {
+                process.destroyForcibly();
+                provisioned.decrementAndGet();
+            }
+        } catch (IOException e) {
+            // Left for the next health check to retry, so a missing binary doesn't spin
+            provisioned.decrementAndGet();
+            spawnFailures.incrementAndGet();
+            System.err.println("❌ Failed to start warm FFmpeg process: " + e.getMessage());
+        }
+    }
+
+    private void checkHealth() {
+        try {
+            int crashed = 0;
+            for (Process process : idle) {
+                if (!process.isAlive() && idle.remove(process)) {
+                    provisioned.decrementAndGet();
+                    crashed++;
+                }
+            }
+
+            if (crashed > 0) {
+                restarts.addAndGet(crashed);
+                System.err.println("⚠️  Health check replaced " + crashed + " crashed FFmpeg process(es)");
+            }
+
+            replenish();
+        } catch (Exception e) {
+            System.err.println("❌ FFmpeg pool health check failed: " + e.getMessage());
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getWaiterCount() {
+        return waiters.get();
+    }
+
+    public long getRestartCount() {
+        return restarts.get();
+    }
+
+    public long getSpawnFailureCount() {
+        return spawnFailures.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        healthChecker.shutdownNow();
+        spawner.shutdownNow();
+
+        Process process;
+        while ((process = idle.poll()) != null) {
+            process.destroyForcibly();
+        }
+
+        pipeThreads.shutdownNow();
+        System.out.println("🛑 FFmpeg decoder pool stopped");
+    }
+}
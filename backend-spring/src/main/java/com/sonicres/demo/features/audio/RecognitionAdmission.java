@@ -0,0 +1,148 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for {@code /ws/audio}. Load is shed as early and as cheaply as possible:
+ *
+ * 1. Handshake ({@link #admitHandshake}) - per-client-IP token bucket, then the global cap on
+ *    concurrent recognitions, then whether the pipeline could still answer within the SLO.
+ *    Rejected here, a client costs one HTTP 429 and no buffer, temp file or FFmpeg process.
+ * 2. Connection ({@link #acquireSlot}) - actually takes one of the {@code max-concurrent} slots;
+ *    it is held until the socket closes.
+ * 3. Submit ({@link #admitSubmit}) - re-checks the SLO when the recording is complete; the
+ *    pipeline's bounded decode queue is the final backstop.
+ */
+@Component
+public class RecognitionAdmission {
+
+    // Beyond this many tracked clients, idle (full) buckets are swept out
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+    public static final String REJECT_RATE_LIMITED = "rate-limited";
+    public static final String REJECT_CAPACITY = "capacity";
+    public static final String REJECT_SLO = "slo";
+    public static final String REJECT_QUEUE_FULL = "queue-full";
+    public static final String REJECT_DECODER_BUSY = "decoder-busy";
+
+    private final RecognitionPipeline pipeline;
+    private final RecognitionMetrics metrics;
+    private final int maxConcurrent;
+    private final int burst;
+    private final double ratePerSecond;
+    private final long sloMillis;
+    private final long busyRetryAfterSeconds;
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RecognitionAdmission(RecognitionPipeline pipeline,
+                                RecognitionMetrics metrics,
+                                @Value("${app.admission.max-concurrent:64}") int maxConcurrent,
+                                @Value("${app.admission.per-ip.burst:5}") int burst,
+                                @Value("${app.admission.per-ip.per-minute:20}") int perMinute,
+                                @Value("${app.admission.slo-seconds:10}") long sloSeconds,
+                                @Value("${app.admission.retry-after-seconds:5}") long busyRetryAfterSeconds) {
+        this.pipeline = pipeline;
+        this.metrics = metrics;
+        this.maxConcurrent = maxConcurrent;
+        this.burst = burst;
+        this.ratePerSecond = perMinute / 60.0;
+        this.sloMillis = TimeUnit.SECONDS.toMillis(sloSeconds);
+        this.busyRetryAfterSeconds = busyRetryAfterSeconds;
+    }
+
+    public Admission admitHandshake(String clientIp) {
+        long now = System.nanoTime();
+        if (buckets.size() > MAX_TRACKED_CLIENTS) {
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+
+        long waitNanos = buckets.computeIfAbsent(clientIp, ip -> new TokenBucket(burst, ratePerSecond, now))
+                .tryTake(now);
+        if (waitNanos > 0) {
+            return reject(REJECT_RATE_LIMITED, "Too many requests", TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        }
+        if (active.get() >= maxConcurrent) {
+            return reject(REJECT_CAPACITY, "Server is busy", busyRetryAfterSeconds);
+        }
+        return checkLatency();
+    }
+
+    /**
+     * @return false if another connection took the last slot since the handshake was admitted
+     */
+    public boolean acquireSlot() {
+        int n;
+        do {
+            n = active.get();
+            if (n >= maxConcurrent) {
+                return false;
+            }
+        } while (!active.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    public void releaseSlot() {
+        active.decrementAndGet();
+    }
+
+    public Admission admitSubmit() {
+        return checkLatency();
+    }
+
+    /**
+     * Rejection for when the last slot was taken after the handshake was admitted.
+     */
+    public Admission noSlot() {
+        return reject(REJECT_CAPACITY, "Server is busy", busyRetryAfterSeconds);
+    }
+
+    /**
+     * Rejection for when the pipeline's decode queue was full at submit.
+     */
+    public Admission queueFull() {
+        return reject(REJECT_QUEUE_FULL, "Server is busy", busyRetryAfterSeconds);
+    }
+
+    /**
+     * Rejection for when the FFmpeg decoder pool had no process to spare (see {@link PooledFfmpegDecoder}).
+     */
+    public Admission decoderBusy() {
+        return reject(REJECT_DECODER_BUSY, "Server is busy", busyRetryAfterSeconds);
+    }
+
+    private Admission checkLatency() {
+        long estimate = pipeline.estimatedLatencyMillis();
+        if (estimate > sloMillis) {
+            return reject(REJECT_SLO, "Server is busy", Math.max(busyRetryAfterSeconds,
+                    TimeUnit.MILLISECONDS.toSeconds(estimate - sloMillis) + 1));
+        }
+        return Admission.ADMITTED;
+    }
+
+    private Admission reject(String cause, String reason, long retryAfterSeconds) {
+        rejected.incrementAndGet();
+        metrics.rejected(cause);
+        return Admission.rejected(reason, retryAfterSeconds);
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
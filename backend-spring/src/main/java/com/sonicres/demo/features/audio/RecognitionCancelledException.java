@@ -0,0 +1,19 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Thrown at a cancellation checkpoint once a recognition's deadline has passed or its
+ * session has gone away; the pipeline drops the task without answering.
+ */
+public class RecognitionCancelledException extends RuntimeException {
+
+    private final String reason;
+
+    public RecognitionCancelledException(String reason) {
+        super("Recognition cancelled: " + reason);
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
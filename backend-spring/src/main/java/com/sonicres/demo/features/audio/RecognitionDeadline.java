@@ -0,0 +1,166 @@
+package com.sonicres.demo.features.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * End-to-end deadline and cancellation flag of one recognition, from "done" until the response.
+ *
+ * Cancellation is cooperative: stages call {@link #checkpoint()} between steps, the matcher
+ * polls {@link #isCancelled()} while scanning postings, and blocking resources that cannot
+ * poll (an FFmpeg process) register an {@link #onCancel} hook that tears them down.
+ * The stage running a task makes its deadline {@link #current()} for the duration, so code
+ * deep in the decoder can find it without threading it through every signature.
+ */
+public class RecognitionDeadline {
+
+    public static final String REASON_DEADLINE = "deadline";
+    public static final String REASON_DISCONNECTED = "disconnected";
+    public static final String REASON_SUPERSEDED = "superseded";
+
+    private static final String DONE = "done";
+    private static final ThreadLocal<RecognitionDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+    private final AtomicReference<String> outcome = new AtomicReference<>();
+    private final List<Runnable> hooks = new ArrayList<>();
+    private final Listener listener;
+    private volatile Future<?> expiry;
+
+    interface Listener {
+        void cancelled(RecognitionDeadline deadline, String reason);
+    }
+
+    RecognitionDeadline(long deadlineNanos, Listener listener) {
+        this.deadlineNanos = deadlineNanos;
+        this.listener = listener;
+    }
+
+    void arm(Future<?> expiry) {
+        this.expiry = expiry;
+        if (outcome.get() != null) {
+            expiry.cancel(false);
+        }
+    }
+
+    /**
+     * @return the deadline of the recognition this thread is working on, or null
+     */
+    public static RecognitionDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run {@code work} with this deadline as {@link #current()}.
+     */
+    public void run(Runnable work) {
+        RecognitionDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            work.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Cancel unless the recognition already completed or was cancelled. Runs the
+     * registered hooks on the calling thread.
+     *
+     * @return true if this call cancelled it
+     */
+    public boolean cancel(String reason) {
+        if (!outcome.compareAndSet(null, reason)) {
+            return false;
+        }
+        disarm();
+        listener.cancelled(this, reason);
+        List<Runnable> toRun;
+        synchronized (hooks) {
+            toRun = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        for (Runnable hook : toRun) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Cancellation hook failed: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mark the recognition as answered; later cancels are no-ops.
+     *
+     * @return false if it was cancelled first and must not be answered
+     */
+    public boolean complete() {
+        if (outcome.compareAndSet(null, DONE)) {
+            disarm();
+            return true;
+        }
+        return DONE.equals(outcome.get());
+    }
+
+    private void disarm() {
+        Future<?> timer = expiry;
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * @throws RecognitionCancelledException if cancelled or past the deadline
+     */
+    public void checkpoint() {
+        if (isCancelled()) {
+            throw new RecognitionCancelledException(getCancelReason());
+        }
+    }
+
+    public boolean isCancelled() {
+        String state = outcome.get();
+        if (state == null && System.nanoTime() - deadlineNanos >= 0) {
+            cancel(REASON_DEADLINE);
+            state = outcome.get();
+        }
+        return state != null && !DONE.equals(state);
+    }
+
+    /**
+     * Register a hook to run if the recognition is cancelled. If it already is, the hook runs now.
+     *
+     * @return call to unregister once the resource is released normally
+     */
+    public Runnable onCancel(Runnable hook) {
+        synchronized (hooks) {
+            if (outcome.get() == null) {
+                hooks.add(hook);
+                return () -> {
+                    synchronized (hooks) {
+                        hooks.remove(hook);
+                    }
+                };
+            }
+        }
+        if (isCancelled()) {
+            hook.run();
+        }
+        return () -> { };
+    }
+
+    /**
+     * @return the cancel reason, or null if not cancelled
+     */
+    public String getCancelReason() {
+        String state = outcome.get();
+        return state == null || DONE.equals(state) ? null : state;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+}
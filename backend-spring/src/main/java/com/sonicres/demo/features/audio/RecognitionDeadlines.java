@@ -0,0 +1,67 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out {@link RecognitionDeadline}s of {@code app.audio.deadline-seconds} and fires them
+ * on time, so an FFmpeg process that never produces output is still killed at the deadline
+ * rather than whenever its thread next reaches a checkpoint.
+ *
+ * Metrics: {@code recognition.deadline} (configured seconds) and
+ * {@code recognition.cancelled{reason=deadline|disconnected|superseded}}, the last for early-match
+ * attempts stopped because the recording finished.
+ */
+@Component
+public class RecognitionDeadlines {
+
+    private final long deadlineNanos;
+    private final MeterRegistry registry;
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+            new NamedThreadFactory("recognition-deadline"));
+
+    public RecognitionDeadlines(MeterRegistry registry,
+                                @Value("${app.audio.deadline-seconds:15}") double deadlineSeconds) {
+        this.registry = registry;
+        this.deadlineNanos = (long) (deadlineSeconds * 1_000_000_000L);
+        timer.setRemoveOnCancelPolicy(true); // most recognitions finish long before their deadline
+
+        Gauge.builder("recognition.deadline", () -> deadlineSeconds)
+                .description("End-to-end deadline per recognition")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    public RecognitionDeadline start() {
+        RecognitionDeadline deadline = new RecognitionDeadline(System.nanoTime() + deadlineNanos, this::cancelled);
+        deadline.arm(timer.schedule(() -> deadline.cancel(RecognitionDeadline.REASON_DEADLINE),
+                deadlineNanos, TimeUnit.NANOSECONDS));
+        return deadline;
+    }
+
+    private void cancelled(RecognitionDeadline deadline, String reason) {
+        System.out.println("⏱️  Recognition cancelled: " + reason);
+        Counter.builder("recognition.cancelled")
+                .description("Recognitions abandoned before answering")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public double count(String reason) {
+        Counter counter = registry.find("recognition.cancelled").tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
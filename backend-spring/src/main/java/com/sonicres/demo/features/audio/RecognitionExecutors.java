@@ -0,0 +1,49 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Which kind of thread runs the blocking {@link RecognitionPipeline} stages, selected by
+ * {@code app.audio.executor.mode}. The stages own their workers; this only decides what those
+ * workers are.
+ *
+ * - {@code virtual}: decode (FFmpeg pipes) and respond (socket sends) workers are virtual threads,
+ *   so a worker blocked on I/O holds no platform thread.
+ * - {@code fixed}: every stage runs on platform threads, the original model.
+ *
+ * Extract and match are CPU-bound and always run on platform threads, which also keeps their
+ * per-thread scratch buffers warm.
+ */
+@Component
+public class RecognitionExecutors {
+
+    public static final String MODE_FIXED = "fixed";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    private final String mode;
+
+    public RecognitionExecutors(@Value("${app.audio.executor.mode:virtual}") String mode) {
+        if (!MODE_FIXED.equals(mode) && !MODE_VIRTUAL.equals(mode)) {
+            throw new IllegalArgumentException(
+                    "Unknown app.audio.executor.mode '" + mode + "' (expected fixed or virtual)");
+        }
+        this.mode = mode;
+        System.out.println("🧵 Recognition executor mode: " + mode);
+    }
+
+    /**
+     * Threads for a stage that spends its time blocked on I/O.
+     */
+    ThreadFactory ioThreads(String prefix) {
+        return MODE_VIRTUAL.equals(mode)
+                ? Thread.ofVirtual().name(prefix + "-", 0).factory()
+                : new NamedThreadFactory(prefix);
+    }
+
+    public String getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,88 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Point-in-time load of the recognition path, and result cache counts, read at scrape time:
+ *
+ * - {@code audio.sessions.active} - open {@code /ws/audio} sessions
+ * - {@code audio.buffered.bytes} - compressed audio held for those sessions
+ * - {@code audio.slab.bytes} - off-heap slab memory in use
+ * - {@code recognition.admitted} - concurrency slots taken, out of {@code recognition.admitted.max}
+ * - {@code recognition.pipeline.queue.depth} / {@code .active} - per {@link RecognitionPipeline} stage
+ * - {@code recognition.result.cache{result=hit|miss|unverified}} - {@link RecognitionResultCache} lookups, and
+ *   candidates whose landmarks didn't line up; {@code recognition.result.cache.entries} - results held
+ */
+@Component
+public class RecognitionGauges implements MeterBinder {
+
+    private final AudioSocketConnectionHandler handler;
+    private final RecognitionPipeline pipeline;
+    private final RecognitionAdmission admission;
+    private final AudioSlabPool slabPool;
+    private final RecognitionResultCache resultCache;
+
+    public RecognitionGauges(AudioSocketConnectionHandler handler,
+                             RecognitionPipeline pipeline,
+                             RecognitionAdmission admission,
+                             AudioSlabPool slabPool,
+                             RecognitionResultCache resultCache) {
+        this.handler = handler;
+        this.pipeline = pipeline;
+        this.admission = admission;
+        this.slabPool = slabPool;
+        this.resultCache = resultCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("audio.sessions.active", handler, AudioSocketConnectionHandler::getActiveSessionCount)
+                .description("Open audio WebSocket sessions")
+                .register(registry);
+        Gauge.builder("audio.buffered.bytes", handler, AudioSocketConnectionHandler::getBufferedBytes)
+                .description("Compressed audio buffered for open sessions")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("audio.slab.bytes", slabPool, pool -> (double) pool.getSlabsInUse() * pool.getSlabSize())
+                .description("Off-heap slab memory in use by session buffers")
+                .baseUnit("bytes")
+                .register(registry);
+
+        Gauge.builder("recognition.admitted", admission, RecognitionAdmission::getActive)
+                .description("Sessions holding a concurrency slot")
+                .register(registry);
+        Gauge.builder("recognition.admitted.max", admission, RecognitionAdmission::getMaxConcurrent)
+                .register(registry);
+
+        for (PipelineStage stage : pipeline.stages()) {
+            Gauge.builder("recognition.pipeline.queue.depth", stage, PipelineStage::getQueueDepth)
+                    .description("Tasks waiting in a pipeline stage's queue")
+                    .tag("stage", stage.getName())
+                    .register(registry);
+            Gauge.builder("recognition.pipeline.active", stage, PipelineStage::getActive)
+                    .description("Busy workers in a pipeline stage")
+                    .tag("stage", stage.getName())
+                    .register(registry);
+        }
+
+        resultCacheCounter(registry, "hit", RecognitionResultCache::getHits);
+        resultCacheCounter(registry, "miss", RecognitionResultCache::getMisses);
+        resultCacheCounter(registry, "unverified", RecognitionResultCache::getUnverified);
+        Gauge.builder("recognition.result.cache.entries", resultCache, RecognitionResultCache::getEntryCount)
+                .description("Recent results held for near-duplicate queries")
+                .register(registry);
+    }
+
+    private void resultCacheCounter(MeterRegistry registry, String result, ToDoubleFunction<RecognitionResultCache> count) {
+        FunctionCounter.builder("recognition.result.cache", resultCache, count)
+                .description("Recognitions answered from (hit) or missed in the result cache, and rejected candidates")
+                .tag("result", result)
+                .register(registry);
+    }
+}
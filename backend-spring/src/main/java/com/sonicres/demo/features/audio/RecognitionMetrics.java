@@ -0,0 +1,86 @@
+package com.sonicres.demo.features.audio;
+
+import com.sonicres.demo.features.fingerprint.Fingerprinter;
+import com.sonicres.demo.features.fingerprint.StageTimer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a recognition's latency goes, as one histogram timer per stage:
+ * {@code recognition.stage{stage=...}} (Prometheus: {@code recognition_stage_seconds_bucket}).
+ *
+ * handshake -> buffering (client recording) -> seal -> decode -> spectrogram -> peaks -> hashes
+ * -> result-cache -> lookup -> match -> send
+ *
+ * Plus counters for FFmpeg failures and admission rejections. Gauges live in {@link RecognitionGauges}.
+ */
+@Component
+public class RecognitionMetrics implements StageTimer {
+
+    public static final String HANDSHAKE = "handshake";
+    public static final String BUFFERING = "buffering";
+    public static final String SEAL = "seal";
+    public static final String DECODE = "decode";
+    public static final String RESULT_CACHE = "result-cache";
+    public static final String LOOKUP = "lookup";
+    public static final String MATCH = "match";
+    public static final String SEND = "send";
+
+    private static final List<String> STAGES = List.of(HANDSHAKE, BUFFERING, SEAL, DECODE,
+            Fingerprinter.STAGE_SPECTROGRAM, Fingerprinter.STAGE_PEAKS, Fingerprinter.STAGE_HASHES,
+            RESULT_CACHE, LOOKUP, MATCH, SEND);
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter ffmpegFailures;
+
+    public RecognitionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        STAGES.forEach(this::timer); // register up front so every stage shows up before its first sample
+        this.ffmpegFailures = Counter.builder("ffmpeg.failures")
+                .description("FFmpeg decodes that failed or produced no audio")
+                .register(registry);
+    }
+
+    @Override
+    public void record(String stage, long nanos) {
+        timer(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the time since {@code startNanos} (a {@link System#nanoTime()} reading).
+     */
+    public void recordSince(String stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    public void ffmpegFailure() {
+        ffmpegFailures.increment();
+    }
+
+    public void rejected(String reason) {
+        Counter.builder("recognition.rejected")
+                .description("Recognitions refused by admission control")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    private Timer timer(String stage) {
+        return timers.computeIfAbsent(stage, name -> Timer.builder("recognition.stage")
+                .description("Time spent in one stage of a recognition")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry));
+    }
+}
@@ -0,0 +1,204 @@
+package com.sonicres.demo.features.audio;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Post-recording recognition as four stages, each with its own bounded queue and thread budget:
+ *
+ * 1. decode  - seal the session buffer, compressed audio to {@link PcmBuffer} (blocks on FFmpeg)
+ * 2. extract - spectrogram, peaks, landmark hashes to a primitive {@link ClipFingerprint} (CPU)
+ * 3. match   - index / store lookup and offset voting (CPU, DB on fallback)
+ * 4. respond - send the result and close the session (socket I/O)
+ *
+ * A slow decode therefore only occupies decode threads; extract and match keep their full
+ * budget for clips that are ready. In {@code virtual} executor mode the I/O stages (decode,
+ * respond) run on virtual threads; extract and match always use platform threads.
+ *
+ * Each stage first checks the task's {@link RecognitionDeadline}, so work for a client that
+ * disconnected or ran out of time is dropped instead of occupying a worker.
+ */
+@Component
+public class RecognitionPipeline {
+
+    private final FingerprintService fingerprintService;
+    private final PipelineStage decode;
+    private final PipelineStage extract;
+    private final PipelineStage match;
+    private final PipelineStage respond;
+
+    public RecognitionPipeline(FingerprintService fingerprintService,
+                               RecognitionExecutors executors,
+                               @Value("${app.pipeline.decode.threads:16}") int decodeThreads,
+                               @Value("${app.pipeline.decode.queue-capacity:64}") int decodeQueue,
+                               @Value("${app.pipeline.extract.threads:0}") int extractThreads,
+                               @Value("${app.pipeline.extract.queue-capacity:32}") int extractQueue,
+                               @Value("${app.pipeline.match.threads:0}") int matchThreads,
+                               @Value("${app.pipeline.match.queue-capacity:32}") int matchQueue,
+                               @Value("${app.pipeline.respond.threads:4}") int respondThreads,
+                               @Value("${app.pipeline.respond.queue-capacity:64}") int respondQueue) {
+        this.fingerprintService = fingerprintService;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        this.decode = new PipelineStage("decode", decodeThreads, decodeQueue, executors.ioThreads("pipeline-decode"));
+        this.extract = new PipelineStage("extract", extractThreads > 0 ? extractThreads : cores, extractQueue,
+                new NamedThreadFactory("pipeline-extract"));
+        this.match = new PipelineStage("match", matchThreads > 0 ? matchThreads : cores, matchQueue,
+                new NamedThreadFactory("pipeline-match"));
+        this.respond = new PipelineStage("respond", respondThreads, respondQueue, executors.ioThreads("pipeline-respond"));
+    }
+
+    /**
+     * Queue a finished recording for recognition.
+     *
+     * @return false if the decode queue is full; the caller still owns the task
+     */
+    public boolean submit(AudioProcessingTask task) {
+        return decode.offer(inScope(task, () -> {
+            PcmBuffer pcm = task.decode();
+            if (pcm == null) {
+                task.finish();
+                return;
+            }
+            extract.put(inScope(task, () -> extract(task, pcm)));
+        }));
+    }
+
+    /**
+     * Queue an early-match attempt on a recording that is still streaming in (see
+     * {@link IncrementalRecognizer}). It goes through the same extract, match and respond stages as
+     * finished recordings, so it competes for their threads and counts in {@link #estimatedLatencyMillis()};
+     * cancelling {@code deadline} stops it at the next checkpoint.
+     *
+     * @param onResult runs on the respond stage with the attempt's result
+     * @param onEnd    runs once the attempt is over, however it ended, if this returned true
+     * @return false if the extract queue is full; attempts are optional, so the caller skips this one
+     */
+    boolean submitAttempt(PcmBuffer pcm, RecognitionDeadline deadline, Consumer<FingerprintResult> onResult,
+                          Runnable onEnd) {
+        return extract.offer(attemptStep(deadline, onEnd, () -> {
+            ClipFingerprint clip = fingerprintService.extract(pcm);
+            match.put(attemptStep(deadline, onEnd, () -> {
+                FingerprintResult result = fingerprintService.match(clip);
+                respond.put(attemptStep(deadline, onEnd, () -> {
+                    onResult.accept(result);
+                    return true;
+                }));
+                return false;
+            }));
+            return false;
+        }));
+    }
+
+    private void extract(AudioProcessingTask task, PcmBuffer pcm) throws Exception {
+        ClipFingerprint clip = fingerprintService.extract(pcm);
+        match.put(inScope(task, () -> match(task, clip)));
+    }
+
+    private void match(AudioProcessingTask task, ClipFingerprint clip) throws Exception {
+        FingerprintResult result = fingerprintService.match(clip);
+        respond.put(() -> {
+            try {
+                task.respond(result);
+            } finally {
+                task.finish();
+            }
+        });
+    }
+
+    private interface StageWork {
+        void run() throws Exception;
+    }
+
+    private interface AttemptWork {
+        /**
+         * @return false if the work handed the attempt on to the next stage
+         */
+        boolean run() throws Exception;
+    }
+
+    /**
+     * Like {@link #inScope}, for an early-match attempt: there is no client to tell about a failure,
+     * and {@code onEnd} runs after the attempt's last step (or the one that failed or was cancelled).
+     */
+    private static Runnable attemptStep(RecognitionDeadline deadline, Runnable onEnd, AttemptWork work) {
+        return () -> deadline.run(() -> {
+            boolean last = true;
+            try {
+                deadline.checkpoint();
+                last = work.run();
+            } catch (RecognitionCancelledException e) {
+                // the recording finished first, or the attempt ran out of time
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                System.err.println("⚠️  Early-match attempt failed: " + e.getMessage());
+            } finally {
+                if (last) {
+                    onEnd.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Wrap a stage's work so it runs with the task's deadline as current, is skipped if the
+     * task was cancelled while queued, and fails the task on any error.
+     */
+    private static Runnable inScope(AudioProcessingTask task, StageWork work) {
+        RecognitionDeadline deadline = task.getDeadline();
+        return () -> deadline.run(() -> {
+            try {
+                deadline.checkpoint();
+                work.run();
+            } catch (Exception e) {
+                fail(task, e);
+            }
+        });
+    }
+
+    private static void fail(AudioProcessingTask task, Exception e) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            task.fail(e);
+        } finally {
+            task.finish();
+        }
+    }
+
+    /**
+     * How long a recording submitted now would probably take to come out of the respond stage,
+     * based on current queue depths and recent per-stage run times.
+     */
+    public long estimatedLatencyMillis() {
+        long nanos = decode.estimatedWaitNanos() + extract.estimatedWaitNanos()
+                + match.estimatedWaitNanos() + respond.estimatedWaitNanos();
+        return nanos / 1_000_000;
+    }
+
+    List<PipelineStage> stages() {
+        return List.of(decode, extract, match, respond);
+    }
+
+    public List<PipelineStageStats> stats() {
+        return stages().stream()
+                .map(s -> new PipelineStageStats(s.getName(), s.getThreads(), s.getActive(),
+                        s.getQueueDepth(), s.getQueueCapacity(), s.getCompleted()))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decode.shutdown();
+        extract.shutdown();
+        match.shutdown();
+        respond.shutdown();
+    }
+}
@@ -0,0 +1,26 @@
+package com.sonicres.demo.features.audio;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/recognitionpipeline} - threads, busy workers and queue depth per stage.
+ */
+@Component
+@Endpoint(id = "recognitionpipeline")
+public class RecognitionPipelineEndpoint {
+
+    private final RecognitionPipeline pipeline;
+
+    public RecognitionPipelineEndpoint(RecognitionPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    @ReadOperation
+    public List<PipelineStageStats> stages() {
+        return pipeline.stats();
+    }
+}
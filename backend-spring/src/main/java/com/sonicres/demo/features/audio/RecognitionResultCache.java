@@ -0,0 +1,326 @@
+package com.sonicres.demo.features.audio;
+
+import com.sonicres.demo.features.fingerprint.Landmarks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Short-lived cache of recognition results for near-duplicate queries, e.g. many people tagging
+ * the same broadcast within seconds of each other.
+ *
+ * A clip is keyed by a MinHash signature of its landmark hashes: {@value #SIGNATURE_SIZE} minimums
+ * of hashed landmark hashes, split into {@value #BANDS} bands of {@value #ROWS}. Two clips whose hash
+ * sets overlap by 30% share a band about 80% of the time; unrelated clips almost never do. Noisy
+ * recordings of the same audio share far fewer hashes than copies, hence the short bands.
+ *
+ * A band match is only a candidate. Before its result is reused the cached clip's landmarks are
+ * aligned with the query's, offset-histogram style: at least {@code minAligned} shared hashes must
+ * agree on one time shift, i.e. the two clips are recordings of the same audio. The cached match
+ * offsets are then moved by that shift. So a false candidate costs a verification, never a wrong song.
+ *
+ * Only confident results are cached, so an incremental recognition still gets a fresh (stronger)
+ * answer as its clip grows. Entries live {@code ttlSeconds} (which also bounds how long a newly
+ * ingested track can be shadowed) and the oldest go first beyond {@code maxEntries}.
+ * Time is passed in to the package-private methods so tests own the clock.
+ */
+@Component
+public class RecognitionResultCache {
+
+    static final int SIGNATURE_SIZE = 32;
+    static final int ROWS = 2;
+    static final int BANDS = SIGNATURE_SIZE / ROWS;
+    static final int CANDIDATES_PER_VERIFIED = 4;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final int minAligned;
+    private final double minConfidence;
+    private final int maxCandidates;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final Map<Long, SequencedSet<Entry>> bands = new HashMap<>();
+    private long queries; // guarded by this
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unverified = new LongAdder();
+
+    public RecognitionResultCache(@Value("${app.fingerprint.result-cache.enabled:true}") boolean enabled,
+                                  @Value("${app.fingerprint.result-cache.ttl-seconds:30}") long ttlSeconds,
+                                  @Value("${app.fingerprint.result-cache.max-entries:10000}") int maxEntries,
+                                  @Value("${app.fingerprint.result-cache.min-aligned:20}") int minAligned,
+                                  @Value("${app.fingerprint.result-cache.min-confidence:0.6}") double minConfidence,
+                                  @Value("${app.fingerprint.result-cache.max-candidates:4}") int maxCandidates) {
+        this.enabled = enabled && ttlSeconds > 0 && maxEntries > 0;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.maxEntries = maxEntries;
+        this.minAligned = Math.max(1, minAligned);
+        this.minConfidence = minConfidence;
+        this.maxCandidates = Math.max(1, maxCandidates);
+    }
+
+    /**
+     * @return a verified result cached for a near-duplicate of {@code clip}, or null
+     */
+    public FingerprintResult get(ClipFingerprint clip) {
+        return get(clip, System.nanoTime());
+    }
+
+    /**
+     * Remember {@code result} for {@code clip} if it is a confident match.
+     */
+    public void put(ClipFingerprint clip, FingerprintResult result) {
+        put(clip, result, System.nanoTime());
+    }
+
+    FingerprintResult get(ClipFingerprint clip, long nowNanos) {
+        if (!enabled || clip.count() < minAligned) {
+            return null;
+        }
+        long[] signature = signature(clip);
+
+        // each entry is in up to BANDS buckets: a per-query mark skips repeats, and collection stops
+        // at a few times maxCandidates, newest first, so a crowded band cannot make the lock hold long
+        int limit = maxCandidates * CANDIDATES_PER_VERIFIED;
+        List<Entry> candidates = new ArrayList<>(limit);
+        synchronized (this) {
+            expire(nowNanos);
+            long mark = ++queries;
+            for (int band = 0; band < BANDS && candidates.size() < limit; band++) {
+                SequencedSet<Entry> bucket = bands.get(bandKey(signature, band));
+                if (bucket == null) {
+                    continue;
+                }
+                for (Entry entry : bucket.reversed()) {
+                    if (entry.mark != mark) {
+                        entry.mark = mark;
+                        candidates.add(entry);
+                        if (candidates.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        // most similar first; verification runs outside the lock and reads only final fields
+        candidates.sort(Comparator.comparingInt((Entry e) -> sameRows(signature, e.signature)).reversed());
+        long[] query = sortedLandmarks(clip);
+        for (int i = 0; i < Math.min(maxCandidates, candidates.size()); i++) {
+            Entry entry = candidates.get(i);
+            Alignment alignment = align(query, entry.landmarks);
+            if (alignment.votes() >= minAligned) {
+                hits.increment();
+                return entry.result.shifted(alignment.shift() / clip.framesPerSecond());
+            }
+            unverified.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(ClipFingerprint clip, FingerprintResult result, long nowNanos) {
+        if (!enabled || clip.count() < minAligned || !FingerprintResult.TYPE_RESULT.equals(result.getType()) ||
+                result.getConfidence() < minConfidence) {
+            return;
+        }
+        long[] signature = signature(clip);
+        Entry entry = new Entry(sortedLandmarks(clip), signature, result, nowNanos + ttlNanos);
+
+        synchronized (this) {
+            expire(nowNanos);
+            while (entries.size() >= maxEntries) {
+                remove(entries.pollFirst());
+            }
+            entries.addLast(entry);
+            for (int band = 0; band < BANDS; band++) {
+                bands.computeIfAbsent(bandKey(signature, band), k -> new LinkedHashSet<>(2)).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Entries are added in time order with one TTL, so the expired ones are at the head.
+     */
+    private void expire(long nowNanos) {
+        while (!entries.isEmpty() && entries.peekFirst().expiresAt - nowNanos <= 0) {
+            remove(entries.pollFirst());
+        }
+    }
+
+    private void remove(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(entry.signature, band);
+            SequencedSet<Entry> bucket = bands.get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                bands.remove(key);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Candidates whose landmarks did not line up with the query's.
+     */
+    public long getUnverified() {
+        return unverified.sum();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * The MinHash signature of the clip's landmark hashes. Each hash is mixed into two 64-bit
+     * values a and b, and row k keeps the minimum of {@code a + k * b}.
+     */
+    static long[] signature(ClipFingerprint clip) {
+        long[] signature = new long[SIGNATURE_SIZE];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        long[] landmarks = clip.landmarks();
+        for (int i = 0; i < clip.count(); i++) {
+            int hash = Landmarks.hashOf(landmarks[i]);
+            long a = Landmarks.mix(hash);
+            long b = Landmarks.mix(hash ^ 0x5bd1e995) | 1;
+            long value = a;
+            for (int k = 0; k < SIGNATURE_SIZE; k++) {
+                if (value < signature[k]) {
+                    signature[k] = value;
+                }
+                value += b;
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 0x9e3779b97f4a7c15L + signature[row];
+        }
+        return key;
+    }
+
+    private static int sameRows(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return same;
+    }
+
+    private static long[] sortedLandmarks(ClipFingerprint clip) {
+        long[] landmarks = Arrays.copyOf(clip.landmarks(), clip.count());
+        Arrays.sort(landmarks); // by hash, then time
+        return landmarks;
+    }
+
+    /**
+     * @param shift frames to add to a query time to get the matching cached clip time
+     */
+    record Alignment(int votes, int shift) {
+    }
+
+    /**
+     * Vote on {@code cached time - query time} for every shared hash, counting adjacent shifts
+     * together since two recordings' frame grids rarely line up exactly.
+     */
+    static Alignment align(long[] query, long[] cached) {
+        int[] shifts = new int[Math.min(query.length, cached.length) * 2 + 16];
+        int n = 0;
+        int q = 0;
+        int c = 0;
+        while (q < query.length && c < cached.length) {
+            int queryHash = Landmarks.hashOf(query[q]);
+            int cachedHash = Landmarks.hashOf(cached[c]);
+            if (queryHash < cachedHash) {
+                q++;
+            } else if (queryHash > cachedHash) {
+                c++;
+            } else {
+                int qEnd = q;
+                while (qEnd < query.length && Landmarks.hashOf(query[qEnd]) == queryHash) {
+                    qEnd++;
+                }
+                int cEnd = c;
+                while (cEnd < cached.length && Landmarks.hashOf(cached[cEnd]) == cachedHash) {
+                    cEnd++;
+                }
+                for (int i = q; i < qEnd; i++) {
+                    for (int j = c; j < cEnd; j++) {
+                        if (n == shifts.length) {
+                            shifts = Arrays.copyOf(shifts, n * 2);
+                        }
+                        shifts[n++] = Landmarks.timeOf(cached[j]) - Landmarks.timeOf(query[i]);
+                    }
+                }
+                q = qEnd;
+                c = cEnd;
+            }
+        }
+        if (n == 0) {
+            return new Alignment(0, 0);
+        }
+
+        Arrays.sort(shifts, 0, n);
+        int bestVotes = 0;
+        int bestShift = 0;
+        int runStart = 0;
+        int previousShift = 0;
+        int previousRun = 0;
+        for (int i = 1; i <= n; i++) {
+            if (i < n && shifts[i] == shifts[runStart]) {
+                continue;
+            }
+            int shift = shifts[runStart];
+            int run = i - runStart;
+            int votes = run + (previousRun > 0 && previousShift == shift - 1 ? previousRun : 0);
+            if (votes > bestVotes) {
+                bestVotes = votes;
+                bestShift = run >= previousRun || previousShift != shift - 1 ? shift : previousShift;
+            }
+            previousShift = shift;
+            previousRun = run;
+            runStart = i;
+        }
+        return new Alignment(bestVotes, bestShift);
+    }
+
+    private static final class Entry {
+
+        final long[] landmarks;
+        final long[] signature;
+        final FingerprintResult result;
+        final long expiresAt;
+        long mark; // last get() that collected it, guarded by the cache
+
+        Entry(long[] landmarks, long[] signature, FingerprintResult result, long expiresAt) {
+            this.landmarks = landmarks;
+            this.signature = signature;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
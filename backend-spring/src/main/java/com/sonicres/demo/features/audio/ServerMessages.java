@@ -0,0 +1,60 @@
+package com.sonicres.demo.features.audio;
+
+import java.util.List;
+
+/**
+ * Status messages the server sends over {@code /ws/audio}. Each is a record with a fixed field
+ * order, so {@link MessageEncoding} can serialize it with a writer built once at startup
+ * instead of a per-message {@code Map}. Results are {@link FingerprintResult}.
+ */
+public final class ServerMessages {
+
+    public record Connected(String type, String sessionId, String message) {
+    }
+
+    public record Status(String type, String message) {
+    }
+
+    public record Ack(String type, long bytes, int chunks, long totalBytes) {
+    }
+
+    public record Busy(String type, String message, long retryAfterSeconds) {
+    }
+
+    public record Pong(String type) {
+    }
+
+    /**
+     * The only thing the server reads from client text messages.
+     */
+    public record ClientMessage(String type) {
+    }
+
+    /**
+     * Everything {@link MessageEncoding} can write.
+     */
+    static final List<Class<?>> TYPES = List.of(
+            Connected.class, Status.class, Ack.class, Busy.class, Pong.class, FingerprintResult.class);
+
+    static final Status PROCESSING = new Status("processing", "Analyzing audio...");
+    static final Pong PONG = new Pong("pong");
+
+    private ServerMessages() {
+    }
+
+    static Connected connected(String sessionId) {
+        return new Connected("connected", sessionId, "Ready to receive audio");
+    }
+
+    static Status error(String message) {
+        return new Status("error", message);
+    }
+
+    static Ack ack(long bytes, int chunks, long totalBytes) {
+        return new Ack("ack", bytes, chunks, totalBytes);
+    }
+
+    static Busy busy(Admission decision) {
+        return new Busy("busy", decision.reason(), decision.retryAfterSeconds());
+    }
+}
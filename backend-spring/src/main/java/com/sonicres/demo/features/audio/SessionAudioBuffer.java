@@ -4,42 +4,98 @@ package com.sonicres.demo.features.audio;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.*;
-
-
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Compressed audio received on one WebSocket session.
+ *
+ * Frames are copied straight from the WebSocket payload into pooled direct slabs from
+ * {@link AudioSlabPool}; a typical 10s clip never touches the disk. A session that grows past
+ * {@code spillThresholdBytes}, or finds the global slab budget exhausted, moves what it has to a
+ * temp file and appends further frames through a {@link FileChannel}.
+ *
+ * The buffer is reference counted: the socket handler owns one reference and a processing task
+ * takes another, so a client disconnecting mid-decode cannot recycle slabs that are still being read.
+ */
 public class SessionAudioBuffer {
 
     private final WebSocketSession session;
-    private final File tempFile;
-    private final OutputStream outputStream;
+    private final AudioSlabPool slabPool;
+    private final long spillThresholdBytes;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer current;
+    private Path spillFile;
+    private FileChannel spillChannel;
+
+    private final AtomicInteger references = new AtomicInteger(1);
     private volatile boolean closed = false;
+    private boolean ownerReleased = false;
     private long totalBytesWritten = 0;
 
-    public SessionAudioBuffer(WebSocketSession session) throws IOException {
+    public SessionAudioBuffer(WebSocketSession session, AudioSlabPool slabPool, long spillThresholdBytes) {
         this.session = session;
-        this.tempFile = File.createTempFile("audio-stream-" + session.getId() + "-", ".raw");
-        this.outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
-
-        System.out.println("📦 Created SessionAudioBuffer: " + tempFile.getName());
+        this.slabPool = slabPool;
+        this.spillThresholdBytes = spillThresholdBytes;
     }
 
-    public synchronized void append(java.nio.ByteBuffer buffer) throws IOException {
+    public synchronized void append(ByteBuffer buffer) throws IOException {
         if (closed) {
             throw new IOException("Buffer already closed for processing");
         }
 
-        byte[] bytes = new byte[buffer.remaining()];
-        buffer.get(bytes);
-        outputStream.write(bytes);
-        totalBytesWritten += bytes.length;
+        int length = buffer.remaining();
+        if (spillChannel == null && totalBytesWritten + length > spillThresholdBytes) {
+            spillToDisk("session passed " + spillThresholdBytes + " bytes");
+        }
 
-        // Flush periodically to prevent memory issues
-        if (totalBytesWritten % 50000 == 0) {
-            outputStream.flush();
+        while (spillChannel == null && buffer.hasRemaining()) {
+            if (current == null || !current.hasRemaining()) {
+                current = slabPool.acquire();
+                if (current == null) {
+                    spillToDisk("audio buffer memory budget exhausted");
+                    break;
+                }
+                slabs.add(current);
+            }
+            int n = Math.min(current.remaining(), buffer.remaining());
+            current.put(buffer.slice(buffer.position(), n));
+            buffer.position(buffer.position() + n);
         }
+
+        while (buffer.hasRemaining()) {
+            spillChannel.write(buffer);
+        }
+        totalBytesWritten += length;
     }
 
-    public File getTempFile() {
-        return tempFile;
+    private void spillToDisk(String reason) throws IOException {
+        spillFile = Files.createTempFile("audio-stream-" + session.getId() + "-", ".raw");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE);
+        for (ByteBuffer slab : slabs) {
+            ByteBuffer filled = slab.flip();
+            while (filled.hasRemaining()) {
+                spillChannel.write(filled);
+            }
+        }
+        releaseSlabs();
+        System.out.println("💾 Spilled session " + session.getId() + " to " + spillFile.getFileName() + " (" + reason + ")");
+    }
+
+    private void releaseSlabs() {
+        for (ByteBuffer slab : slabs) {
+            slabPool.release(slab);
+        }
+        slabs.clear();
+        current = null;
     }
 
     public WebSocketSession getSession() {
@@ -50,29 +106,102 @@ public class SessionAudioBuffer {
         return totalBytesWritten;
     }
 
-    // Finalize and provide file for processing
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    // Finalize: no more appends, contents can be read
     public synchronized void closeForProcessing() throws IOException {
         if (!closed) {
-            outputStream.flush(); // Write memory buffer to disk
-            outputStream.close(); // Release file handle
+            if (spillChannel != null) {
+                spillChannel.close();
+            }
             closed = true;
-            System.out.println("🔒 Buffer closed for processing. Total bytes: " + totalBytesWritten);
+            System.out.println("🔒 Buffer closed for processing. Total bytes: " + totalBytesWritten +
+                    (spillFile != null ? " (on disk)" : " (in memory, " + slabs.size() + " slabs)"));
+        }
+    }
+
+    /**
+     * Read-only views of the in-memory slabs, in order - no copy. Only valid after
+     * {@link #closeForProcessing()} and while a reference is held; null if the session spilled.
+     */
+    public synchronized List<ByteBuffer> chunks() {
+        if (spillFile != null) {
+            return null;
+        }
+        List<ByteBuffer> views = new ArrayList<>(slabs.size());
+        for (ByteBuffer slab : slabs) {
+            views.add(slab.duplicate().flip().asReadOnlyBuffer());
+        }
+        return views;
+    }
+
+    /**
+     * The whole upload as a stream, from memory or from the spill file.
+     */
+    public synchronized InputStream openStream() throws IOException {
+        if (spillFile != null) {
+            return new BufferedInputStream(Files.newInputStream(spillFile));
         }
+        return new ByteBuffersInputStream(chunks());
     }
 
+    /**
+     * The upload as a file, for tools that need a path. Spills in-memory audio to disk first.
+     */
+    public synchronized File toFile() throws IOException {
+        if (spillFile == null) {
+            spillToDisk("file requested");
+            if (closed) {
+                spillChannel.close();
+            }
+        }
+        return spillFile.toFile();
+    }
+
+    /**
+     * Take a reference for a reader (e.g. a processing task); pair with {@link #release()}.
+     */
+    public void retain() {
+        references.incrementAndGet();
+    }
+
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            free();
+        }
+    }
+
+    /**
+     * Drop the session's own reference; storage is freed once no reader holds one.
+     */
     public void closeSilently() {
-        try {
-            if (!closed) {
-                outputStream.close();
-                closed = true;
+        synchronized (this) {
+            if (ownerReleased) {
+                return;
             }
-        } catch (Exception ignored) {}
+            ownerReleased = true;
+        }
+        release();
+    }
 
-        if (tempFile != null && tempFile.exists()) {
-            boolean deleted = tempFile.delete();
-            if (deleted) {
-                System.out.println("🗑️  Deleted temp file: " + tempFile.getName());
+    private synchronized void free() {
+        closed = true;
+        releaseSlabs();
+
+        try {
+            if (spillChannel != null) {
+                spillChannel.close();
             }
+        } catch (IOException ignored) {}
+
+        if (spillFile != null) {
+            try {
+                if (Files.deleteIfExists(spillFile)) {
+                    System.out.println("🗑️  Deleted temp file: " + spillFile.getFileName());
+                }
+            } catch (IOException ignored) {}
         }
     }
 }
@@ -1,21 +1,161 @@
 package com.sonicres.demo.features.audio;
 
+import com.sonicres.demo.features.fingerprint.CatalogIndex;
+import com.sonicres.demo.features.fingerprint.Fingerprinter;
+import com.sonicres.demo.features.fingerprint.Landmarks;
+import com.sonicres.demo.features.fingerprint.OffsetMatcher;
+import com.sonicres.demo.features.fingerprint.PostgresFingerprintStore;
+import com.sonicres.demo.features.fingerprint.QueryLandmarks;
+import com.sonicres.demo.features.fingerprint.TrackCatalog;
+import com.sonicres.demo.features.fingerprint.TrackInfo;
+import com.sonicres.demo.features.fingerprint.TrackMatch;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class SimpleFingerprintService implements FingerprintService {
 
+    private final Fingerprinter fingerprinter;
+    private final CatalogIndex index;
+    private final TrackCatalog trackCatalog;
+    private final OffsetMatcher matcher;
+    private final RecognitionMetrics metrics;
+    private final RecognitionResultCache resultCache;
+    private final PostgresFingerprintStore store; // null unless app.fingerprint.store.enabled
+
+    private final ThreadLocal<QueryLandmarks> queryLandmarks = ThreadLocal.withInitial(QueryLandmarks::new);
+
+    public SimpleFingerprintService(Fingerprinter fingerprinter,
+                                    CatalogIndex index,
+                                    TrackCatalog trackCatalog,
+                                    OffsetMatcher matcher,
+                                    RecognitionMetrics metrics,
+                                    RecognitionResultCache resultCache,
+                                    ObjectProvider<PostgresFingerprintStore> store) {
+        this.fingerprinter = fingerprinter;
+        this.index = index;
+        this.trackCatalog = trackCatalog;
+        this.matcher = matcher;
+        this.metrics = metrics;
+        this.resultCache = resultCache;
+        this.store = store.getIfAvailable();
+    }
+
+    @Override
+    public ClipFingerprint extract(PcmBuffer pcm) {
+        checkpoint();
+        Landmarks landmarks = fingerprinter.fingerprint(pcm.samples(), pcm.length(), metrics);
+        System.out.println("🔑 Generated " + landmarks.count() + " landmark hashes from " +
+                String.format("%.2f", pcm.durationSeconds()) + "s of audio");
+        return new ClipFingerprint(landmarks.toArray(), landmarks.count(), landmarks.framesPerSecond(),
+                pcm.durationSeconds());
+    }
+
     @Override
-    public FingerprintResult fingerprintAndMatch(File wavFile) throws Exception {
-        // TODO: Replace with real fingerprinting (Chromaprint/AcoustID, Dejavu, etc.)
-        // For demo, return a fake result
-        FingerprintResult r = new FingerprintResult();
-        r.setTrackName("Demo Song");
-        r.setArtist("Demo Artist");
-        r.setConfidence(0.85);
+    public FingerprintResult match(ClipFingerprint clip) throws Exception {
+        FingerprintResult cached = cached(clip);
+        if (cached != null) {
+            return cached;
+        }
+        FingerprintResult result = matchInIndex(clip);
+        return remember(clip, result != null ? result : matchInStore(clip));
+    }
+
+    /**
+     * A result recognised moments ago from a near-duplicate clip, or null.
+     */
+    private FingerprintResult cached(ClipFingerprint clip) {
+        long start = System.nanoTime();
+        FingerprintResult result = resultCache.get(clip);
+        metrics.recordSince(RecognitionMetrics.RESULT_CACHE, start);
+        if (result != null) {
+            System.out.println("♻️ Reused a recent match for a near-duplicate clip: " + result.getTrackName());
+        }
+        return result;
+    }
+
+    private FingerprintResult remember(ClipFingerprint clip, FingerprintResult result) {
+        if (result != null) {
+            resultCache.put(clip, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the result, or null when the index has no candidate and the store should be asked
+     */
+    private FingerprintResult matchInIndex(ClipFingerprint clip) {
+        QueryLandmarks query = queryLandmarks.get().reset(clip.landmarks(), clip.count());
+
+        // Query the in-memory index: each matching landmark votes for a (trackId, offset delta)
+        long lookupStart = System.nanoTime();
+        OffsetMatcher.Match match = matcher.begin(query, cancelCheck());
+        index.lookup(query.hashes(), query.hashCount(), match);
+        metrics.recordSince(RecognitionMetrics.LOOKUP, lookupStart);
+        checkpoint();
+
+        if (store != null && match.candidates().isEmpty()) {
+            return null;
+        }
+        return toResult(match, clip.framesPerSecond());
+    }
+
+    /**
+     * Tracks not loaded into memory live only in PostgreSQL: all hashes go out in one round trip.
+     */
+    private FingerprintResult matchInStore(ClipFingerprint clip) throws IOException {
+        QueryLandmarks query = queryLandmarks.get().reset(clip.landmarks(), clip.count());
+        long lookupStart = System.nanoTime();
+        OffsetMatcher.Match match = matcher.begin(query, cancelCheck());
+        store.lookup(query.hashes(), query.hashCount(), match);
+        metrics.recordSince(RecognitionMetrics.LOOKUP, lookupStart);
+        checkpoint();
+        return toResult(match, clip.framesPerSecond());
+    }
+
+    /**
+     * Lets a long postings scan notice that its recognition was cancelled; null outside the pipeline.
+     */
+    private static BooleanSupplier cancelCheck() {
+        RecognitionDeadline deadline = RecognitionDeadline.current();
+        return deadline != null ? deadline::isCancelled : null;
+    }
+
+    private static void checkpoint() {
+        RecognitionDeadline deadline = RecognitionDeadline.current();
+        if (deadline != null) {
+            deadline.checkpoint();
+        }
+    }
+
+    private FingerprintResult toResult(OffsetMatcher.Match match, double framesPerSecond) {
+        long matchStart = System.nanoTime();
+        List<MatchCandidate> candidates = new ArrayList<>(matcher.getTopK());
+        for (TrackMatch m : match.candidates()) {
+            TrackInfo track = trackCatalog.get(m.trackId());
+            if (track != null) {
+                candidates.add(new MatchCandidate(String.valueOf(m.trackId()), track.title(), track.artist(),
+                        m.confidence(), m.votes(), m.offsetFrames() / framesPerSecond));
+            }
+        }
+
+        metrics.recordSince(RecognitionMetrics.MATCH, matchStart);
 
-        return r;
+        if (candidates.isEmpty()) {
+            System.out.println("🤷 No matching track in index (" + index.getTrackCount() + " tracks indexed, " +
+                    match.getPostingsVisited() + " postings scanned)");
+        } else {
+            MatchCandidate best = candidates.get(0);
+            System.out.println("🎯 Best match: " + best.title() + " with " + best.votes() + " aligned hashes" +
+                    " (confidence " + String.format("%.2f", best.confidence()) + ", " +
+                    match.getPostingsVisited() + " postings scanned" +
+                    (match.isStoppedEarly() ? ", stopped early)" : ")"));
+        }
+        return FingerprintResult.of(candidates);
     }
-}
\ No newline at end of file
+}
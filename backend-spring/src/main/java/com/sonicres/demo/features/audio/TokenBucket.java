@@ -0,0 +1,45 @@
+package com.sonicres.demo.features.audio;
+
+/**
+ * Classic token bucket: holds up to {@code capacity} tokens and refills continuously
+ * at {@code tokensPerSecond}. Time is passed in so callers (and tests) own the clock.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefill = nowNanos;
+    }
+
+    /**
+     * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+     */
+    synchronized long tryTake(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * A full bucket carries no state worth keeping; it can be dropped and re-created later.
+     */
+    synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefill) * tokensPerNano);
+        lastRefill = nowNanos;
+    }
+}
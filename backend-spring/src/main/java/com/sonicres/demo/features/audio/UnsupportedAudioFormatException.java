@@ -0,0 +1,14 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the in-process decoder for containers or codecs it cannot handle,
+ * so the caller can fall back to FFmpeg.
+ */
+public class UnsupportedAudioFormatException extends IOException {
+
+    public UnsupportedAudioFormatException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.sonicres.demo.features.audio;
 
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -11,9 +12,15 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final AudioSocketConnectionHandler audioSocketConnectionHandler;
+    private final RecognitionAdmission admission;
+    private final boolean trustForwardedFor;
 
-    public WebSocketConfig(AudioSocketConnectionHandler audioSocketConnectionHandler) {
+    public WebSocketConfig(AudioSocketConnectionHandler audioSocketConnectionHandler,
+                           RecognitionAdmission admission,
+                           @Value("${app.admission.trust-forwarded-for:false}") boolean trustForwardedFor) {
         this.audioSocketConnectionHandler = audioSocketConnectionHandler;
+        this.admission = admission;
+        this.trustForwardedFor = trustForwardedFor;
     }
 
     @Override
@@ -21,6 +28,6 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry
                 .addHandler(audioSocketConnectionHandler, "/ws/audio")
                 .setAllowedOrigins("*") // !!!!!! Not safe for prod !!!!!!
-                .addInterceptors(new WebSocketHandshakeInterceptor());  // Add interceptor
+                .addInterceptors(new WebSocketHandshakeInterceptor(admission, trustForwardedFor));  // Add interceptor
     }
 }
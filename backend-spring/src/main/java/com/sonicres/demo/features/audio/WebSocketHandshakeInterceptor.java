@@ -1,14 +1,27 @@
 package com.sonicres.demo.features.audio;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
+import java.net.InetSocketAddress;
 import java.util.Map;
 
 public class WebSocketHandshakeInterceptor implements HandshakeInterceptor{
 
+    static final String HANDSHAKE_START_ATTRIBUTE = "audio.handshakeStartNanos";
+
+    private final RecognitionAdmission admission;
+    private final boolean trustForwardedFor;
+
+    public WebSocketHandshakeInterceptor(RecognitionAdmission admission, boolean trustForwardedFor) {
+        this.admission = admission;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
     @Override
     public boolean beforeHandshake(
             ServerHttpRequest request,
@@ -16,14 +29,37 @@ public class WebSocketHandshakeInterceptor implements HandshakeInterceptor{
             WebSocketHandler wsHandler,
             Map<String, Object> attributes) throws Exception {
 
+        attributes.put(HANDSHAKE_START_ATTRIBUTE, System.nanoTime());
         System.out.println("🤝 WebSocket Handshake - Before");
         System.out.println("URI: " + request.getURI());
         System.out.println("Headers: " + request.getHeaders());
         System.out.println("Remote Address: " + request.getRemoteAddress());
 
+        // Shed load before any buffer, temp file or decoder exists for this client
+        String clientIp = clientIp(request);
+        Admission decision = admission.admitHandshake(clientIp);
+        if (!decision.admitted()) {
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            System.out.println("🚦 Rejected handshake from " + clientIp + ": " + decision.reason() +
+                    " (retry after " + decision.retryAfterSeconds() + "s)");
+            return false;
+        }
+
         return true;  // Allow handshake
     }
 
+    private String clientIp(ServerHttpRequest request) {
+        if (trustForwardedFor) {
+            String forwarded = request.getHeaders().getFirst("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                return forwarded.split(",")[0].trim();
+            }
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        return remote != null && remote.getAddress() != null ? remote.getAddress().getHostAddress() : "unknown";
+    }
+
     @Override
     public void afterHandshake(
             ServerHttpRequest request,
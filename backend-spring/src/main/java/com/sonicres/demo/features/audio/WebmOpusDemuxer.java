@@ -0,0 +1,398 @@
+package com.sonicres.demo.features.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Push-based EBML/WebM demuxer that extracts Opus packets as bytes arrive.
+ *
+ * MediaRecorder writes Segment and Cluster with "unknown" sizes and the data comes in
+ * 250ms slices, so this parser never needs the whole file: it descends into the master
+ * elements it cares about, skips everything else without buffering it, and only waits
+ * for complete payloads of the few leaf elements it reads (track fields and blocks).
+ *
+ * Anything that isn't an EBML document with a webm/matroska DocType and an A_OPUS
+ * audio track is rejected with {@link UnsupportedAudioFormatException}, and so is a damaged
+ * container (bad element sizes, block headers or lacing), so the caller can fall back or keep
+ * the audio decoded before the damage.
+ */
+public class WebmOpusDemuxer {
+
+    public interface Listener {
+
+        void onOpusTrack(int channels, int preSkip) throws IOException;
+
+        /**
+         * Called per Opus packet; {@code data} is only valid for the duration of the call.
+         */
+        void onOpusPacket(byte[] data, int offset, int length) throws IOException;
+    }
+
+    // EBML / Matroska element IDs (marker bits included)
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_DOC_TYPE = 0x4282;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_TRACKS = 0x1654AE6B;
+    private static final int ID_TRACK_ENTRY = 0xAE;
+    private static final int ID_TRACK_NUMBER = 0xD7;
+    private static final int ID_TRACK_TYPE = 0x83;
+    private static final int ID_CODEC_ID = 0x86;
+    private static final int ID_CODEC_PRIVATE = 0x63A2;
+    private static final int ID_AUDIO = 0xE1;
+    private static final int ID_CHANNELS = 0x9F;
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_BLOCK_GROUP = 0xA0;
+    private static final int ID_BLOCK = 0xA1;
+    private static final int ID_SIMPLE_BLOCK = 0xA3;
+
+    private static final int TRACK_TYPE_AUDIO = 2;
+    private static final long UNKNOWN_SIZE = -1;
+    private static final int MAX_LEAF_SIZE = 16 * 1024 * 1024;
+
+    private final Listener listener;
+
+    private byte[] buffer = new byte[64 * 1024];
+    private int start = 0;
+    private int end = 0;
+
+    private boolean headerSeen = false;
+    private long skipRemaining = 0;
+
+    private final List<TrackEntry> tracks = new ArrayList<>();
+    private TrackEntry opusTrack;
+
+    // Per-block lace sizes, reused across blocks
+    private int[] laceSizes = new int[8];
+
+    public WebmOpusDemuxer(Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean isTrackSelected() {
+        return opusTrack != null;
+    }
+
+    public void feed(ByteBuffer data) throws IOException {
+        if (data.hasArray()) {
+            feed(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+        }
+
+        int length = data.remaining();
+        ensureSpace(length);
+        data.get(buffer, end, length);
+        end += length;
+        parse();
+    }
+
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        ensureSpace(length);
+        System.arraycopy(data, offset, buffer, end, length);
+        end += length;
+        parse();
+    }
+
+    private void ensureSpace(int incoming) {
+        if (end + incoming <= buffer.length) {
+            return;
+        }
+
+        int pending = end - start;
+        if (pending + incoming <= buffer.length) {
+            System.arraycopy(buffer, start, buffer, 0, pending);
+        } else {
+            byte[] grown = new byte[Math.max(buffer.length * 2, pending + incoming)];
+            System.arraycopy(buffer, start, grown, 0, pending);
+            buffer = grown;
+        }
+        start = 0;
+        end = pending;
+    }
+
+    private void parse() throws IOException {
+        while (true) {
+            if (skipRemaining > 0) {
+                int skipped = (int) Math.min(skipRemaining, end - start);
+                start += skipped;
+                skipRemaining -= skipped;
+                if (skipRemaining > 0) {
+                    return;
+                }
+            }
+
+            int available = end - start;
+            if (available == 0) {
+                return;
+            }
+
+            // Element ID
+            int idLength = vintLength(buffer[start]);
+            if (idLength > 4) {
+                throw new UnsupportedAudioFormatException("Invalid EBML element ID");
+            }
+            if (available < idLength + 1) {
+                return;
+            }
+            int id = 0;
+            for (int i = 0; i < idLength; i++) {
+                id = (id << 8) | (buffer[start + i] & 0xFF);
+            }
+
+            if (!headerSeen) {
+                if (id != ID_EBML) {
+                    throw new UnsupportedAudioFormatException("Not an EBML/WebM stream");
+                }
+                headerSeen = true;
+            }
+
+            // Element size
+            int sizeLength = vintLength(buffer[start + idLength]);
+            if (sizeLength > 8) {
+                throw new UnsupportedAudioFormatException("Invalid EBML element size");
+            }
+            if (available < idLength + sizeLength) {
+                return;
+            }
+            long size = readVint(buffer, start + idLength, sizeLength);
+            int headerLength = idLength + sizeLength;
+
+            if (isMaster(id) || size == UNKNOWN_SIZE) {
+                // Descend: children follow directly, no need to know where the master ends
+                if (id == ID_TRACK_ENTRY) {
+                    tracks.add(new TrackEntry());
+                } else if (id == ID_CLUSTER && opusTrack == null) {
+                    selectTrack();
+                }
+                start += headerLength;
+                continue;
+            }
+
+            if (!isLeafOfInterest(id)) {
+                start += headerLength;
+                skipRemaining = size;
+                continue;
+            }
+
+            if (size > MAX_LEAF_SIZE) {
+                throw new UnsupportedAudioFormatException("WebM element 0x" + Integer.toHexString(id) + " too large: " + size);
+            }
+            if (available < headerLength + size) {
+                return; // wait for the rest of the payload
+            }
+
+            int payload = start + headerLength;
+            start = payload + (int) size;
+            readLeaf(id, payload, (int) size);
+        }
+    }
+
+    private void readLeaf(int id, int offset, int length) throws IOException {
+        TrackEntry track = tracks.isEmpty() ? null : tracks.get(tracks.size() - 1);
+
+        switch (id) {
+            case ID_DOC_TYPE -> {
+                String docType = new String(buffer, offset, length, StandardCharsets.US_ASCII).trim();
+                if (!docType.startsWith("webm") && !docType.startsWith("matroska")) {
+                    throw new UnsupportedAudioFormatException("Unsupported EBML DocType: " + docType);
+                }
+            }
+            case ID_TRACK_NUMBER -> {
+                if (track != null) track.number = readUnsigned(offset, length);
+            }
+            case ID_TRACK_TYPE -> {
+                if (track != null) track.type = (int) readUnsigned(offset, length);
+            }
+            case ID_CODEC_ID -> {
+                if (track != null) track.codecId = new String(buffer, offset, length, StandardCharsets.US_ASCII).trim();
+            }
+            case ID_CHANNELS -> {
+                if (track != null) track.channels = (int) readUnsigned(offset, length);
+            }
+            case ID_CODEC_PRIVATE -> {
+                // OpusHead: "OpusHead" version(1) channels(1) pre-skip(2, LE) ...
+                if (track != null && length >= 12) {
+                    track.preSkip = (buffer[offset + 10] & 0xFF) | ((buffer[offset + 11] & 0xFF) << 8);
+                    if (track.channels == 0) {
+                        track.channels = buffer[offset + 9] & 0xFF;
+                    }
+                }
+            }
+            case ID_SIMPLE_BLOCK, ID_BLOCK -> readBlock(offset, length);
+            default -> {
+            }
+        }
+    }
+
+    private void selectTrack() throws IOException {
+        for (TrackEntry track : tracks) {
+            if ("A_OPUS".equals(track.codecId)) {
+                opusTrack = track;
+                int channels = track.channels == 0 ? 1 : track.channels;
+                if (channels > 2) {
+                    throw new UnsupportedAudioFormatException("Unsupported Opus channel count: " + channels);
+                }
+                track.channels = channels;
+                listener.onOpusTrack(channels, track.preSkip);
+                return;
+            }
+        }
+
+        String codecs = tracks.stream()
+                .filter(t -> t.type == TRACK_TYPE_AUDIO || t.type == 0)
+                .map(t -> t.codecId)
+                .toList()
+                .toString();
+        throw new UnsupportedAudioFormatException("No Opus audio track found, audio codecs: " + codecs);
+    }
+
+    private void readBlock(int offset, int length) throws IOException {
+        if (opusTrack == null) {
+            selectTrack(); // blocks before any Cluster header - tolerate it
+        }
+
+        int trackLength = length > 0 ? vintLength(buffer[offset]) : 0;
+        if (trackLength == 0 || trackLength > 8 || trackLength + 3 > length) {
+            throw new UnsupportedAudioFormatException("Corrupt WebM block header");
+        }
+        long trackNumber = readVint(buffer, offset, trackLength);
+        if (trackNumber != opusTrack.number) {
+            return;
+        }
+
+        int flags = buffer[offset + trackLength + 2] & 0xFF;
+        int position = offset + trackLength + 3; // skip track, timecode(2), flags(1)
+        int blockEnd = offset + length;
+        int lacing = (flags >> 1) & 0x03;
+
+        if (lacing == 0) {
+            listener.onOpusPacket(buffer, position, blockEnd - position);
+            return;
+        }
+
+        if (position >= blockEnd) {
+            throw corruptLacing();
+        }
+        int frames = (buffer[position++] & 0xFF) + 1;
+        if (laceSizes.length < frames) {
+            laceSizes = new int[frames];
+        }
+
+        // every size read below is bounded by the block, so a damaged one cannot read past it
+        switch (lacing) {
+            case 1 -> { // Xiph lacing
+                long total = 0;
+                for (int i = 0; i < frames - 1; i++) {
+                    int frameSize = 0;
+                    int b;
+                    do {
+                        if (position >= blockEnd) {
+                            throw corruptLacing();
+                        }
+                        b = buffer[position++] & 0xFF;
+                        frameSize += b;
+                    } while (b == 255);
+                    laceSizes[i] = frameSize;
+                    total += frameSize;
+                }
+                laceSizes[frames - 1] = lastLace(position, blockEnd, total);
+            }
+            case 3 -> { // EBML lacing
+                long total = 0;
+                long frameSize = 0;
+                for (int i = 0; i < frames - 1; i++) {
+                    int vintLength = position < blockEnd ? vintLength(buffer[position]) : 0;
+                    if (vintLength == 0 || vintLength > 8 || position + vintLength > blockEnd) {
+                        throw corruptLacing();
+                    }
+                    long raw = readVint(buffer, position, vintLength);
+                    position += vintLength;
+                    // the first size is stored as is, the others as signed differences from the previous one
+                    frameSize = i == 0 ? raw : frameSize + raw - ((1L << (7 * vintLength - 1)) - 1);
+                    if (raw == UNKNOWN_SIZE || frameSize < 0 || frameSize > blockEnd - position) {
+                        throw corruptLacing();
+                    }
+                    laceSizes[i] = (int) frameSize;
+                    total += frameSize;
+                }
+                laceSizes[frames - 1] = lastLace(position, blockEnd, total);
+            }
+            default -> { // fixed-size lacing
+                int frameSize = (blockEnd - position) / frames;
+                for (int i = 0; i < frames; i++) {
+                    laceSizes[i] = frameSize;
+                }
+            }
+        }
+
+        for (int i = 0; i < frames; i++) {
+            listener.onOpusPacket(buffer, position, laceSizes[i]);
+            position += laceSizes[i];
+        }
+    }
+
+    /**
+     * The last frame of a Xiph- or EBML-laced block takes whatever the other frames left.
+     */
+    private static int lastLace(int position, int blockEnd, long total) throws UnsupportedAudioFormatException {
+        if (total > blockEnd - position) {
+            throw corruptLacing();
+        }
+        return (int) (blockEnd - position - total);
+    }
+
+    private static UnsupportedAudioFormatException corruptLacing() {
+        return new UnsupportedAudioFormatException("Corrupt WebM lacing");
+    }
+
+    private static boolean isMaster(int id) {
+        return id == ID_EBML || id == ID_SEGMENT || id == ID_TRACKS || id == ID_TRACK_ENTRY
+                || id == ID_AUDIO || id == ID_CLUSTER || id == ID_BLOCK_GROUP;
+    }
+
+    private static boolean isLeafOfInterest(int id) {
+        return id == ID_DOC_TYPE || id == ID_TRACK_NUMBER || id == ID_TRACK_TYPE || id == ID_CODEC_ID
+                || id == ID_CODEC_PRIVATE || id == ID_CHANNELS || id == ID_SIMPLE_BLOCK || id == ID_BLOCK;
+    }
+
+    /**
+     * Length in bytes of a variable-size integer, from the position of its leading 1 bit.
+     */
+    private static int vintLength(byte first) {
+        int b = first & 0xFF;
+        return b == 0 ? 9 : Integer.numberOfLeadingZeros(b) - 23;
+    }
+
+    /**
+     * Read a VINT with its length marker removed; all value bits set means "unknown size".
+     */
+    private static long readVint(byte[] data, int offset, int length) {
+        long value = (data[offset] & 0xFF) & (0xFF >> length);
+        boolean allOnes = value == (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            allOnes &= b == 0xFF;
+            value = (value << 8) | b;
+        }
+        return allOnes ? UNKNOWN_SIZE : value;
+    }
+
+    private long readUnsigned(int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static final class TrackEntry {
+        long number;
+        int type;
+        String codecId;
+        int channels;
+        int preSkip;
+    }
+}
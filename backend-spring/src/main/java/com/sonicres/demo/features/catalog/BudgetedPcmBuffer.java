@@ -0,0 +1,64 @@
+package com.sonicres.demo.features.catalog;
+
+import com.sonicres.demo.features.audio.PcmBuffer;
+import com.sonicres.demo.features.audio.PcmSink;
+
+/**
+ * {@link PcmBuffer} that charges every decoded sample to a {@link PcmBudget} and keeps at most
+ * {@code maxSamples} (the rest of an over-long track is dropped).
+ */
+class BudgetedPcmBuffer implements PcmSink {
+
+    private static final int RESERVE_QUANTUM_BYTES = 256 * 1024;
+
+    private final PcmBuffer pcm;
+    private final PcmBudget budget;
+    private final int maxSamples;
+
+    private long reservedBytes;
+    private int reservedKb;
+
+    BudgetedPcmBuffer(int sampleRate, PcmBudget budget, int maxSamples) {
+        this.pcm = new PcmBuffer(sampleRate);
+        this.budget = budget;
+        this.maxSamples = maxSamples;
+    }
+
+    @Override
+    public void write(short[] samples, int offset, int length) {
+        int count = Math.min(length, maxSamples - pcm.length());
+        if (count <= 0) {
+            return;
+        }
+
+        long needed = (long) (pcm.length() + count) * 2;
+        if (needed > reservedBytes) {
+            // reserve in coarse steps so decoders do not hit the semaphore on every chunk,
+            // but never more than a maximum-length track needs
+            long bytes = Math.min(Math.max(needed - reservedBytes, RESERVE_QUANTUM_BYTES),
+                    (long) maxSamples * 2 - reservedBytes);
+            try {
+                int kb = budget.acquire(bytes);
+                reservedKb += kb;
+                reservedBytes += (long) kb * 1024;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for PCM budget", e);
+            }
+        }
+        pcm.write(samples, offset, count);
+    }
+
+    PcmBuffer pcm() {
+        return pcm;
+    }
+
+    /**
+     * Hand the reserved bytes back; the buffer must not be used afterwards.
+     */
+    void release() {
+        budget.release(reservedKb);
+        reservedKb = 0;
+        reservedBytes = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.sonicres.demo.features.catalog;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * {@code POST /api/catalog/ingest} starts indexing a server-side directory of reference tracks;
+ * {@code GET /api/catalog/ingest} reports progress and throughput.
+ */
+@RestController
+@RequestMapping("/api/catalog/ingest")
+public class CatalogIngestionController {
+
+    private final CatalogIngestionService ingestionService;
+
+    public CatalogIngestionController(CatalogIngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    public record IngestRequest(String directory, boolean resume) {
+    }
+
+    @PostMapping
+    public ResponseEntity<?> start(@RequestBody IngestRequest request) {
+        if (request.directory() == null || request.directory().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "directory is required"));
+        }
+        try {
+            return ResponseEntity.accepted().body(ingestionService.start(Path.of(request.directory()), request.resume()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public IngestionProgress progress() {
+        return ingestionService.progress();
+    }
+}
@@ -0,0 +1,36 @@
+package com.sonicres.demo.features.catalog;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Command-line ingestion: {@code java -jar app.jar --ingest=/path/to/library [--ingest-resume]}.
+ * Runs before the app starts serving; the service keeps running afterwards with the tracks indexed.
+ */
+@Component
+public class CatalogIngestionRunner implements ApplicationRunner {
+
+    private final CatalogIngestionService ingestionService;
+
+    public CatalogIngestionRunner(CatalogIngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> directories = args.getOptionValues("ingest");
+        if (directories == null || directories.isEmpty()) {
+            return;
+        }
+
+        boolean resume = args.containsOption("ingest-resume");
+        for (String directory : directories) {
+            IngestionProgress result = ingestionService.ingest(Path.of(directory), resume);
+            System.out.println("📚 " + directory + ": " + result.state() + " - " + result.summary());
+        }
+    }
+}
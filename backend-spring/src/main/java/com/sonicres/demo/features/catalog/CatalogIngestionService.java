@@ -0,0 +1,430 @@
+package com.sonicres.demo.features.catalog;
+
+import com.sonicres.demo.features.audio.NamedThreadFactory;
+import com.sonicres.demo.features.audio.PcmDecoder;
+import com.sonicres.demo.features.fingerprint.CatalogIndex;
+import com.sonicres.demo.features.fingerprint.Fingerprinter;
+import com.sonicres.demo.features.fingerprint.Landmarks;
+import com.sonicres.demo.features.fingerprint.PostgresFingerprintStore;
+import com.sonicres.demo.features.fingerprint.TrackCatalog;
+import com.sonicres.demo.features.fingerprint.TrackInfo;
+import com.sonicres.demo.features.fingerprint.TrackLandmarks;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Bulk-indexes a directory of reference tracks.
+ *
+ * Three stages, each with its own threads:
+ * 1. decode - {@code decode-threads} workers stream each file through the configured {@link PcmDecoder};
+ *    every decoded sample is charged to a shared {@link PcmBudget}, so decoders stall instead of
+ *    piling up PCM when fingerprinting falls behind
+ * 2. fingerprint - a {@link ForkJoinPool} sized to the cores; PCM is released as soon as a track's
+ *    landmarks are copied out
+ * 3. write - a single writer takes tracks off a bounded queue in batches, assigns catalog IDs,
+ *    adds them to the {@link CatalogIndex} and (when enabled) COPYs them into PostgreSQL, then
+ *    appends the batch to the checkpoint file
+ *
+ * With {@code app.fingerprint.index.directory} set, the index writes segment files as its in-heap
+ * segment fills up, and a finished run flushes the rest. If PostgreSQL is off, those files are the
+ * only durable copy, so a file is only checkpointed once its track has reached one. With neither
+ * PostgreSQL nor an index directory nothing outlives the process, so no checkpoint is kept and
+ * {@code resume} is rejected.
+ *
+ * A resumed run skips every file listed in the checkpoint. Only one run at a time.
+ */
+@Service
+public class CatalogIngestionService {
+
+    private static final Set<String> AUDIO_EXTENSIONS =
+            Set.of("mp3", "wav", "flac", "ogg", "opus", "webm", "m4a", "aac");
+
+    private final PcmDecoder pcmDecoder;
+    private final Fingerprinter fingerprinter;
+    private final CatalogIndex index;
+    private final TrackCatalog trackCatalog;
+    private final ObjectProvider<PostgresFingerprintStore> store;
+
+    private final int decodeThreads;
+    private final int fingerprintThreads;
+    private final int batchSize;
+    private final long maxInFlightPcmBytes;
+    private final int maxTrackSamples;
+
+    private final AtomicReference<Run> current = new AtomicReference<>();
+    private volatile IngestionProgress lastProgress = IngestionProgress.idle();
+
+    public CatalogIngestionService(PcmDecoder pcmDecoder,
+                                   Fingerprinter fingerprinter,
+                                   CatalogIndex index,
+                                   TrackCatalog trackCatalog,
+                                   ObjectProvider<PostgresFingerprintStore> store,
+                                   @Value("${app.catalog.ingest.decode-threads:4}") int decodeThreads,
+                                   @Value("${app.catalog.ingest.fingerprint-threads:0}") int fingerprintThreads,
+                                   @Value("${app.catalog.ingest.batch-size:16}") int batchSize,
+                                   @Value("${app.catalog.ingest.max-in-flight-pcm-mb:512}") int maxInFlightPcmMb,
+                                   @Value("${app.catalog.ingest.max-track-seconds:600}") int maxTrackSeconds) {
+        this.pcmDecoder = pcmDecoder;
+        this.fingerprinter = fingerprinter;
+        this.index = index;
+        this.trackCatalog = trackCatalog;
+        this.store = store;
+        this.fingerprintThreads = fingerprintThreads > 0 ? fingerprintThreads : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+        this.maxInFlightPcmBytes = (long) maxInFlightPcmMb * 1024 * 1024;
+        // a single track never needs more than the whole budget
+        this.maxTrackSamples = (int) Math.min((long) maxTrackSeconds * fingerprinter.getSampleRate(),
+                (maxInFlightPcmBytes - 1024) / 2);
+
+        // every decoder must be able to finish a maximum-length track, or they could all block half way
+        long perDecoderBytes = (long) maxTrackSamples * 2 + 1024;
+        this.decodeThreads = (int) Math.max(1, Math.min(decodeThreads, maxInFlightPcmBytes / perDecoderBytes));
+    }
+
+    /**
+     * Start ingesting {@code directory} in the background.
+     *
+     * @param resume skip files recorded in the directory's checkpoint by an earlier run
+     * @throws IllegalArgumentException if {@code resume} is asked for but tracks are not stored durably
+     * @throws IllegalStateException if a run is already in progress
+     */
+    public IngestionProgress start(Path directory, boolean resume) throws IOException {
+        Run run = prepare(directory, resume);
+        Thread thread = new NamedThreadFactory("catalog-ingest").newThread(run::execute);
+        thread.start();
+        return run.progress();
+    }
+
+    /**
+     * Ingest {@code directory} on the calling thread, logging progress until it completes.
+     */
+    public IngestionProgress ingest(Path directory, boolean resume) throws IOException {
+        Run run = prepare(directory, resume);
+        run.execute();
+        return run.progress();
+    }
+
+    public IngestionProgress progress() {
+        Run run = current.get();
+        return run != null ? run.progress() : lastProgress;
+    }
+
+    private Run prepare(Path directory, boolean resume) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        if (resume && !isDurable()) {
+            throw new IllegalArgumentException("Cannot resume: without PostgreSQL or " +
+                    "app.fingerprint.index.directory no earlier run's tracks survive a restart");
+        }
+        Run run = new Run(directory.toAbsolutePath().normalize(), resume);
+        if (!current.compareAndSet(null, run)) {
+            throw new IllegalStateException("A catalog ingestion is already running");
+        }
+        return run;
+    }
+
+    /**
+     * Whether indexed tracks outlive the process, i.e. a checkpoint means something.
+     */
+    private boolean isDurable() {
+        return store.getIfAvailable() != null || index.isPersistent();
+    }
+
+    /**
+     * Title and artist from the file name: "Artist - Title.mp3", anything else is just a title.
+     */
+    static String[] describe(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+
+        int separator = base.indexOf(" - ");
+        if (separator > 0) {
+            return new String[]{base.substring(separator + 3).trim(), base.substring(0, separator).trim()};
+        }
+        return new String[]{base.trim(), "Unknown Artist"};
+    }
+
+    private static boolean isAudioFile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && AUDIO_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * A fingerprinted file waiting for the writer.
+     */
+    private record FingerprintedFile(String relativePath, Path file, long[] landmarks) {
+    }
+
+    /**
+     * An indexed file to checkpoint once the index has made its track durable.
+     */
+    private record AwaitingFlush(long sequence, String path) {
+    }
+
+    private final class Run {
+
+        private static final FingerprintedFile END = new FingerprintedFile(null, null, null);
+
+        private final Path directory;
+        private final boolean resume;
+        private final PcmBudget budget = new PcmBudget(maxInFlightPcmBytes);
+        private final BlockingQueue<FingerprintedFile> toWrite = new LinkedBlockingQueue<>(batchSize * 4);
+
+        private final Deque<AwaitingFlush> awaitingFlush = new ArrayDeque<>();
+        private final AtomicInteger indexed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong hashes = new AtomicLong();
+        private volatile int totalFiles;
+        private volatile int skippedFiles;
+        private volatile String state = IngestionProgress.RUNNING;
+        private final long startNanos = System.nanoTime();
+
+        Run(Path directory, boolean resume) {
+            this.directory = directory;
+            this.resume = resume;
+        }
+
+        void execute() {
+            ExecutorService decoders = Executors.newFixedThreadPool(decodeThreads, new NamedThreadFactory("ingest-decode"));
+            ForkJoinPool fingerprinters = new ForkJoinPool(fingerprintThreads);
+            Thread writer = null;
+
+            try (IngestionCheckpoint checkpoint = isDurable()
+                    ? IngestionCheckpoint.open(directory.resolve(IngestionCheckpoint.FILE_NAME), resume)
+                    : IngestionCheckpoint.disabled()) {
+
+                List<Path> files = listAudioFiles();
+                List<Path> pending = new ArrayList<>();
+                for (Path file : files) {
+                    if (!checkpoint.isCompleted(relative(file))) {
+                        pending.add(file);
+                    }
+                }
+                totalFiles = files.size();
+                skippedFiles = files.size() - pending.size();
+                System.out.println("📚 Ingesting " + pending.size() + " tracks from " + directory +
+                        (skippedFiles > 0 ? " (" + skippedFiles + " already checkpointed)" : "") +
+                        " with " + decodeThreads + " decoders / " + fingerprintThreads + " fingerprint threads");
+
+                writer = new NamedThreadFactory("ingest-write").newThread(() -> writeBatches(checkpoint));
+                writer.start();
+
+                List<CompletableFuture<Void>> tracks = new ArrayList<>(pending.size());
+                for (Path file : pending) {
+                    tracks.add(CompletableFuture
+                            .supplyAsync(() -> decode(file), decoders)
+                            .thenApplyAsync(pcm -> fingerprint(file, pcm), fingerprinters)
+                            .thenAccept(this::enqueue)
+                            .exceptionally(e -> {
+                                failed.incrementAndGet();
+                                System.err.println("❌ Failed to ingest " + file + ": " + rootMessage(e));
+                                return null;
+                            }));
+                }
+                CompletableFuture.allOf(tracks.toArray(new CompletableFuture[0])).join();
+
+                toWrite.put(END);
+                writer.join();
+                index.flush();
+                checkpointDurable(checkpoint);
+
+                state = IngestionProgress.COMPLETED;
+                System.out.println("✅ Catalog ingestion finished: " + progress().summary());
+            } catch (Exception e) {
+                state = IngestionProgress.FAILED;
+                System.err.println("❌ Catalog ingestion failed: " + e.getMessage());
+                if (writer != null) {
+                    writer.interrupt();
+                }
+            } finally {
+                decoders.shutdownNow();
+                fingerprinters.shutdownNow();
+                lastProgress = progress();
+                current.compareAndSet(this, null);
+            }
+        }
+
+        private List<Path> listAudioFiles() throws IOException {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                return walk.filter(Files::isRegularFile)
+                        .filter(CatalogIngestionService::isAudioFile)
+                        .sorted()
+                        .toList();
+            }
+        }
+
+        private BudgetedPcmBuffer decode(Path file) {
+            BudgetedPcmBuffer pcm = new BudgetedPcmBuffer(fingerprinter.getSampleRate(), budget, maxTrackSamples);
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                pcmDecoder.decode(in, pcm);
+                return pcm;
+            } catch (Exception e) {
+                pcm.release();
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Decoding failed: " + e.getMessage(), e);
+            }
+        }
+
+        private FingerprintedFile fingerprint(Path file, BudgetedPcmBuffer pcm) {
+            try {
+                Landmarks landmarks = fingerprinter.fingerprint(pcm.pcm().samples(), pcm.pcm().length());
+                return new FingerprintedFile(relative(file), file, landmarks.toArray());
+            } finally {
+                pcm.release();
+            }
+        }
+
+        private void enqueue(FingerprintedFile track) {
+            try {
+                toWrite.put(track);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted queueing " + track.file(), e);
+            }
+        }
+
+        private void writeBatches(IngestionCheckpoint checkpoint) {
+            PostgresFingerprintStore database = store.getIfAvailable();
+            List<FingerprintedFile> batch = new ArrayList<>(batchSize);
+            long lastLog = System.nanoTime();
+
+            while (true) {
+                FingerprintedFile next;
+                try {
+                    next = toWrite.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (next != END) {
+                    batch.add(next);
+                    toWrite.drainTo(batch, batchSize - batch.size());
+                }
+                boolean end = next == END || batch.remove(END);
+
+                if (!batch.isEmpty()) {
+                    try {
+                        writeBatch(batch, database, checkpoint);
+                    } catch (Exception e) {
+                        // keep draining so decoders never block on a full queue; a resumed run retries these
+                        failed.addAndGet(batch.size());
+                        System.err.println("❌ Failed to write " + batch.size() + " tracks: " + e.getMessage());
+                    }
+                    batch.clear();
+                }
+                if (System.nanoTime() - lastLog > TimeUnit.SECONDS.toNanos(5)) {
+                    System.out.println("📈 Ingestion progress: " + progress().summary());
+                    lastLog = System.nanoTime();
+                }
+                if (end) {
+                    return;
+                }
+            }
+        }
+
+        private void writeBatch(List<FingerprintedFile> batch, PostgresFingerprintStore database,
+                                IngestionCheckpoint checkpoint) throws IOException {
+            List<TrackLandmarks> tracks = new ArrayList<>(batch.size());
+            List<String> paths = new ArrayList<>(batch.size());
+            // with a database, IDs come from it so other nodes ingesting into it never reuse them
+            int[] ids = database != null ? database.allocateTrackIds(batch.size()) : null;
+            for (int i = 0; i < batch.size(); i++) {
+                FingerprintedFile f = batch.get(i);
+                String[] titleAndArtist = describe(f.file());
+                TrackInfo track = ids != null
+                        ? new TrackInfo(ids[i], titleAndArtist[0], titleAndArtist[1])
+                        : trackCatalog.register(titleAndArtist[0], titleAndArtist[1]);
+                tracks.add(new TrackLandmarks(track, f.landmarks(), f.landmarks().length));
+                paths.add(f.relativePath());
+            }
+
+            if (database != null) {
+                database.addTracks(tracks);
+                // only once committed, so the catalog never names a track the database does not have
+                tracks.forEach(t -> trackCatalog.put(t.track()));
+            }
+            long batchHashes = 0;
+            long[] sequences = new long[tracks.size()];
+            for (int i = 0; i < tracks.size(); i++) {
+                TrackLandmarks t = tracks.get(i);
+                sequences[i] = index.add(t.track().id(), t.landmarks(), t.count());
+                batchHashes += t.count();
+            }
+            if (database != null) {
+                checkpoint.markCompleted(paths);
+            } else if (index.isPersistent()) {
+                for (int i = 0; i < paths.size(); i++) {
+                    awaitingFlush.add(new AwaitingFlush(sequences[i], paths.get(i)));
+                }
+                checkpointDurable(checkpoint);
+            }
+
+            indexed.addAndGet(tracks.size());
+            hashes.addAndGet(batchHashes);
+        }
+
+        /**
+         * Checkpoint the files whose tracks the index has written to a segment file.
+         */
+        private void checkpointDurable(IngestionCheckpoint checkpoint) throws IOException {
+            long durable = index.getDurableSequence();
+            List<String> paths = new ArrayList<>();
+            while (!awaitingFlush.isEmpty() && awaitingFlush.peek().sequence() <= durable) {
+                paths.add(awaitingFlush.poll().path());
+            }
+            if (!paths.isEmpty()) {
+                checkpoint.markCompleted(paths);
+            }
+        }
+
+        private String relative(Path file) {
+            return directory.relativize(file).toString();
+        }
+
+        IngestionProgress progress() {
+            double elapsed = (System.nanoTime() - startNanos) / 1e9;
+            int done = indexed.get();
+            long hashCount = hashes.get();
+            return new IngestionProgress(state, directory.toString(), totalFiles, skippedFiles, done, failed.get(),
+                    hashCount, elapsed,
+                    elapsed > 0 ? done / elapsed : 0,
+                    elapsed > 0 ? hashCount / elapsed : 0,
+                    budget.getInFlightBytes());
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+}
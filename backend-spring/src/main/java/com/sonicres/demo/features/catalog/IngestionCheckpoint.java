@@ -0,0 +1,75 @@
+package com.sonicres.demo.features.catalog;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only list of files (relative to the ingested directory) whose fingerprints have been written.
+ * A resumed run skips everything listed here.
+ *
+ * Listing a file is a promise that its track survives a restart, so a run with nowhere durable to
+ * write tracks uses {@link #disabled()}, which lists nothing and leaves any existing file alone.
+ */
+class IngestionCheckpoint implements AutoCloseable {
+
+    static final String FILE_NAME = ".sonic-ingest-checkpoint";
+
+    private final Set<String> completed;
+    private final BufferedWriter writer; // null when disabled
+
+    private IngestionCheckpoint(Set<String> completed, BufferedWriter writer) {
+        this.completed = completed;
+        this.writer = writer;
+    }
+
+    /**
+     * @param resume keep the existing entries; otherwise the checkpoint starts empty
+     */
+    static IngestionCheckpoint open(Path file, boolean resume) throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (resume && Files.exists(file)) {
+            completed.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        return new IngestionCheckpoint(completed, writer);
+    }
+
+    static IngestionCheckpoint disabled() {
+        return new IngestionCheckpoint(Set.of(), null);
+    }
+
+    boolean isCompleted(String relativePath) {
+        return completed.contains(relativePath);
+    }
+
+    /**
+     * Record a batch once it is durable; flushed before returning.
+     */
+    synchronized void markCompleted(List<String> relativePaths) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        for (String path : relativePaths) {
+            writer.write(path);
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sonicres.demo.features.catalog;
+
+/**
+ * Snapshot of a catalog ingestion run, as returned by the REST endpoint and logged by the CLI runner.
+ */
+public record IngestionProgress(String state,
+                                String directory,
+                                int totalFiles,
+                                int skippedFiles,
+                                int indexedTracks,
+                                int failedTracks,
+                                long hashes,
+                                double elapsedSeconds,
+                                double tracksPerSecond,
+                                double hashesPerSecond,
+                                long inFlightPcmBytes) {
+
+    public static final String IDLE = "idle";
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    static IngestionProgress idle() {
+        return new IngestionProgress(IDLE, null, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public String summary() {
+        return String.format("%d/%d tracks (%d skipped, %d failed), %d hashes, %.1f tracks/s, %.0f hashes/s",
+                indexedTracks, totalFiles - skippedFiles, skippedFiles, failedTracks, hashes,
+                tracksPerSecond, hashesPerSecond);
+    }
+}
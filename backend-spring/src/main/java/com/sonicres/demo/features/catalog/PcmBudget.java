@@ -0,0 +1,47 @@
+package com.sonicres.demo.features.catalog;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global cap on decoded PCM held in memory during ingestion. Decoders acquire bytes as samples
+ * arrive and block when the budget is spent; bytes come back once a track is fingerprinted.
+ */
+class PcmBudget {
+
+    private static final int KB = 1024;
+
+    private final Semaphore permits; // one permit per KB
+    private final long capacityBytes;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    PcmBudget(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+        this.permits = new Semaphore((int) Math.min(Integer.MAX_VALUE, capacityBytes / KB), true);
+    }
+
+    /**
+     * @return KB actually reserved, to be handed back to {@link #release}
+     */
+    int acquire(long bytes) throws InterruptedException {
+        int kb = (int) ((bytes + KB - 1) / KB);
+        permits.acquire(kb);
+        inFlightBytes.addAndGet((long) kb * KB);
+        return kb;
+    }
+
+    void release(int kb) {
+        if (kb > 0) {
+            inFlightBytes.addAndGet(-(long) kb * KB);
+            permits.release(kb);
+        }
+    }
+
+    long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    long getCapacityBytes() {
+        return capacityBytes;
+    }
+}
@@ -0,0 +1,201 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link PostingsSource} answered from a {@link PostingsCache} first, then the optional
+ * {@link PostingsTier}, and only for the hashes neither holds from the backing source (PostgreSQL).
+ *
+ * Loads race invalidations: a lookup may read the backing source just before tracks are committed
+ * and invalidated. Both tiers are written with the version read before the load, so such a load is
+ * dropped instead of caching the old postings (often none at all) over the invalidation.
+ */
+class CachedPostingsSource implements PostingsSource {
+
+    private static final long[] NO_POSTINGS = new long[0];
+    private static final long TIER_WARNING_INTERVAL_NANOS = 60_000_000_000L;
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    private final PostingsCache cache;
+    private final PostingsTier tier; // null without a second tier
+    private final PostingsSource source;
+    private final LongAdder tierHits = new LongAdder();
+    private final LongAdder tierMisses = new LongAdder();
+    private final LongAdder tierErrors = new LongAdder();
+    private volatile long lastTierWarning;
+
+    CachedPostingsSource(PostingsCache cache, PostingsTier tier, PostingsSource source) {
+        this.cache = cache;
+        this.tier = tier;
+        this.source = source;
+    }
+
+    @Override
+    public void lookup(int[] hashes, int count, PostingVisitor visitor) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        long epoch = cache.epoch();
+        long[][] found = new long[count][];
+        if (cache.getAll(hashes, count, found) < count) {
+            load(hashes, count, found, epoch);
+        }
+        for (int i = 0; i < count; i++) {
+            for (long posting : found[i]) {
+                if (!visitor.visit(i, posting)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill the cache misses in {@code found} from the second tier, then the backing source, caching
+     * what comes back.
+     */
+    private void load(int[] hashes, int count, long[][] found, long epoch) throws IOException {
+        long start = System.nanoTime();
+        int[] missing = new int[count];
+        int[] missingAt = new int[count];
+        int missingCount = missing(hashes, count, found, missing, missingAt);
+
+        long tierVersion = NO_VERSION;
+        if (tier != null) {
+            long[][] fromTier = new long[missingCount][];
+            try {
+                tierVersion = tier.version(); // before anything is read, like the cache epoch
+                tier.getAll(missing, missingCount, fromTier);
+            } catch (IOException e) {
+                tierFailed(e);
+            }
+            int hit = 0;
+            for (int j = 0; j < missingCount; j++) {
+                if (fromTier[j] != null) {
+                    found[missingAt[j]] = fromTier[j];
+                    hit++;
+                }
+            }
+            tierHits.add(hit);
+            tierMisses.add(missingCount - hit);
+            cache.putAll(missing, fromTier, missingCount, epoch);
+            missingCount = missing(hashes, count, found, missing, missingAt);
+        }
+
+        if (missingCount > 0) {
+            PostingsByHash loaded = new PostingsByHash(missingCount);
+            source.lookup(missing, missingCount, loaded);
+            long[][] postings = loaded.toArrays();
+            for (int j = 0; j < missingCount; j++) {
+                found[missingAt[j]] = postings[j];
+            }
+            cache.putAll(missing, postings, missingCount, epoch);
+            if (tierVersion != NO_VERSION) {
+                try {
+                    tier.putAll(missing, postings, missingCount, tierVersion);
+                } catch (IOException e) {
+                    tierFailed(e);
+                }
+            }
+        }
+        cache.recordLoad(System.nanoTime() - start);
+    }
+
+    /**
+     * Gather the hashes {@code found} has no postings for (still ascending) and where they came from.
+     */
+    private static int missing(int[] hashes, int count, long[][] found, int[] missing, int[] missingAt) {
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (found[i] == null) {
+                missing[n] = hashes[i];
+                missingAt[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Drop {@code hashes[0..count)} from both tiers, e.g. after tracks with those hashes were committed.
+     */
+    void invalidate(int[] hashes, int count) {
+        cache.invalidate(hashes, count);
+        if (tier != null) {
+            try {
+                tier.invalidate(hashes, count);
+            } catch (IOException e) {
+                tierFailed(e);
+            }
+        }
+    }
+
+    private void tierFailed(IOException e) {
+        tierErrors.increment();
+        long now = System.nanoTime();
+        if (now - lastTierWarning > TIER_WARNING_INTERVAL_NANOS) {
+            lastTierWarning = now;
+            System.err.println("⚠️  Postings tier " + tier.name() + " failed (" + tierErrors.sum() +
+                    " errors so far), using PostgreSQL: " + e.getMessage());
+        }
+    }
+
+    PostingsCache getCache() {
+        return cache;
+    }
+
+    PostingsTier getTier() {
+        return tier;
+    }
+
+    long getTierHits() {
+        return tierHits.sum();
+    }
+
+    long getTierMisses() {
+        return tierMisses.sum();
+    }
+
+    long getTierErrors() {
+        return tierErrors.sum();
+    }
+
+    void close() {
+        if (tier != null) {
+            tier.close();
+        }
+    }
+
+    /**
+     * Collects a lookup's postings per hash, for caching.
+     */
+    private static final class PostingsByHash implements PostingVisitor {
+
+        private final long[][] postings;
+        private final int[] counts;
+
+        PostingsByHash(int hashes) {
+            this.postings = new long[hashes][];
+            this.counts = new int[hashes];
+        }
+
+        @Override
+        public boolean visit(int hashIndex, long posting) {
+            long[] values = postings[hashIndex];
+            if (values == null) {
+                values = postings[hashIndex] = new long[8];
+            } else if (counts[hashIndex] == values.length) {
+                values = postings[hashIndex] = Arrays.copyOf(values, values.length * 2);
+            }
+            values[counts[hashIndex]++] = posting;
+            return true;
+        }
+
+        long[][] toArrays() {
+            for (int i = 0; i < postings.length; i++) {
+                postings[i] = postings[i] == null ? NO_POSTINGS : Arrays.copyOf(postings[i], counts[i]);
+            }
+            return postings;
+        }
+    }
+}
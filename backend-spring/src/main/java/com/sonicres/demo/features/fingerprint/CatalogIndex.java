@@ -0,0 +1,599 @@
+package com.sonicres.demo.features.fingerprint;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The catalog's hash index, laid out like a log-structured merge tree so tracks can be added
+ * while it serves:
+ * - new tracks go into a mutable in-heap {@link FingerprintIndex}, the active segment
+ * - once that holds {@code app.fingerprint.index.seal-postings} postings it is sealed: a fresh
+ *   active segment takes its place and a background thread writes the sealed one out as an
+ *   immutable {@link MappedFingerprintIndex} segment file
+ * - the same thread merges {@code merge-factor} adjacent segment files at a time whenever there are
+ *   more than {@code max-segments}, capped at {@code merge-mb-per-sec} and on a minimum-priority
+ *   thread so merging doesn't compete with recognition for disk and CPU
+ * - a merge never writes a file bigger than {@code max-segment-mb} (a mapped file holds at most 2 GB):
+ *   files at that size are left out of merges, so a large catalog can end up with more than
+ *   {@code max-segments} of them
+ *
+ * Lookups fan out over every segment, checking each segment file's {@link HashFilter} first so most
+ * hashes a segment doesn't hold cost one cache line instead of a directory search and the page faults
+ * behind it; {@link #getFilterHits()} / {@link #getFilterMisses()} count the outcomes.
+ *
+ * The segment list is copy-on-write: a reader takes the current immutable {@link View} with one
+ * volatile read and never locks, while seals and merges publish a new View, so a reader sees each
+ * posting exactly once whatever is being sealed or merged around it.
+ *
+ * Segment files are named after the seal generations they cover ({@code segment-<first>-<last>.sfi}).
+ * A merge writes its output before deleting its inputs, so inputs left behind by a crash lie inside
+ * the output's range and are dropped at startup. Without {@code app.fingerprint.index.directory}
+ * the index is a single in-heap segment that is never sealed.
+ */
+@Component
+public class CatalogIndex implements PostingsSource {
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)-(\\d+)\\.sfi");
+    private static final int THROTTLE_EVERY_KEYS = 4096;
+    private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    private final TrackCatalog trackCatalog;
+    private final Path directory; // null when the index is heap-only
+    private final long sealPostings;
+    private final int maxSegments;
+    private final int mergeFactor;
+    private final long maxSegmentBytes;
+    private final long mergeBytesPerSecond; // 0 = unthrottled
+    private final ExecutorService maintenance;
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private final Object persistLock = new Object();
+    private final Object mergeLock = new Object();
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicLong mergedBytes = new AtomicLong();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+
+    private volatile View view;
+    private volatile long durableSequence;
+
+    // guarded by this
+    private long nextGeneration = 1;
+    private long addSequence;
+    private int[] activeTracks = new int[64];
+    private int activeTrackCount;
+
+    private record View(FingerprintIndex active, Segment[] segments) {
+    }
+
+    /**
+     * A sealed segment covering seal generations {@code first..last}: still in the heap while its
+     * file is written, mapped afterwards.
+     */
+    private record Segment(long first, long last, FingerprintIndex heap, int[] trackIds, long lastSequence,
+                           MappedFingerprintIndex mapped) {
+
+        static Segment sealed(long generation, FingerprintIndex heap, int[] trackIds, long lastSequence) {
+            return new Segment(generation, generation, heap, trackIds, lastSequence, null);
+        }
+
+        static Segment mapped(long first, long last, MappedFingerprintIndex mapped) {
+            return new Segment(first, last, null, null, 0, mapped);
+        }
+
+        HashFilter filter() {
+            return mapped != null ? mapped.filter() : null;
+        }
+
+        boolean lookup(int hash, int hashIndex, PostingVisitor visitor) {
+            return mapped != null ? mapped.lookup(hash, hashIndex, visitor) : heap.lookup(hash, hashIndex, visitor);
+        }
+
+        SegmentStats stats() {
+            return mapped != null
+                    ? new SegmentStats(first, last, true, mapped.getTrackCount(), mapped.getKeyCount(),
+                            mapped.getPostingCount(), mapped.getFileBytes(),
+                            mapped.filter() != null ? mapped.filter().getBytes() : 0)
+                    : new SegmentStats(first, last, false, heap.getTrackCount(), heap.getKeyCount(),
+                            heap.getPostingCount(), heap.getMemoryBytes(), 0);
+        }
+    }
+
+    /**
+     * @param bytes       file size of a mapped segment, heap footprint of one still being written
+     * @param filterBytes the part of {@code bytes} taken by the segment's {@link HashFilter}
+     */
+    public record SegmentStats(long firstGeneration, long lastGeneration, boolean mapped, int tracks, int hashes,
+                               long postings, long bytes, long filterBytes) {
+    }
+
+    @Autowired
+    public CatalogIndex(TrackCatalog trackCatalog,
+                        @Value("${app.fingerprint.index.directory:}") String directory,
+                        @Value("${app.fingerprint.index.verify-checksums:true}") boolean verifyChecksums,
+                        @Value("${app.fingerprint.index.seal-postings:4000000}") long sealPostings,
+                        @Value("${app.fingerprint.index.max-segments:8}") int maxSegments,
+                        @Value("${app.fingerprint.index.merge-factor:4}") int mergeFactor,
+                        @Value("${app.fingerprint.index.max-segment-mb:1024}") int maxSegmentMb,
+                        @Value("${app.fingerprint.index.merge-mb-per-sec:32}") int mergeMbPerSec) throws IOException {
+        this(trackCatalog, directory, verifyChecksums, sealPostings, maxSegments, mergeFactor,
+                Math.max(1, maxSegmentMb) * 1024L * 1024L, mergeMbPerSec);
+    }
+
+    /**
+     * @param maxSegmentBytes the largest file a merge may write, in bytes so tests can use tiny segments
+     */
+    CatalogIndex(TrackCatalog trackCatalog, String directory, boolean verifyChecksums, long sealPostings,
+                 int maxSegments, int mergeFactor, long maxSegmentBytes, int mergeMbPerSec) throws IOException {
+        this.trackCatalog = trackCatalog;
+        this.directory = directory.isBlank() ? null : Path.of(directory).toAbsolutePath();
+        this.sealPostings = Math.max(1, sealPostings);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxSegmentBytes = Math.min(MAX_FILE_BYTES, Math.max(1, maxSegmentBytes));
+        this.mergeBytesPerSecond = Math.max(0, mergeMbPerSec) * 1024L * 1024L;
+
+        Segment[] segments = new Segment[0];
+        if (this.directory != null) {
+            long start = System.nanoTime();
+            segments = openSegments(verifyChecksums);
+            for (Segment segment : segments) {
+                for (TrackInfo track : segment.mapped().tracks()) {
+                    trackCatalog.put(track);
+                }
+                nextGeneration = Math.max(nextGeneration, segment.last() + 1);
+            }
+            if (segments.length > 0) {
+                System.out.println("🗂️ Mapped " + segments.length + " index segment(s) from " + this.directory +
+                        ": " + Arrays.stream(segments).mapToLong(s -> s.mapped().getPostingCount()).sum() +
+                        " postings in " + (System.nanoTime() - start) / 1_000_000 + " ms" +
+                        (verifyChecksums ? " (checksums verified)" : ""));
+            }
+            this.maintenance = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-maintenance");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        } else {
+            this.maintenance = null;
+        }
+        this.view = new View(new FingerprintIndex(), segments);
+        scheduleMaintenance();
+    }
+
+    /**
+     * Index the landmarks of one track in the active segment.
+     *
+     * @return the add's sequence number; the track is on disk once {@link #getDurableSequence()} reaches it
+     */
+    public synchronized long add(int trackId, long[] landmarks, int count) {
+        FingerprintIndex active = view.active();
+        active.add(trackId, landmarks, count);
+        if (activeTrackCount == activeTracks.length) {
+            activeTracks = Arrays.copyOf(activeTracks, activeTrackCount * 2);
+        }
+        activeTracks[activeTrackCount++] = trackId;
+        addSequence++;
+
+        if (directory != null && active.getPostingCount() >= sealPostings) {
+            seal();
+            scheduleMaintenance();
+        }
+        return addSequence;
+    }
+
+    @Override
+    public void lookup(int[] hashes, int count, PostingVisitor visitor) {
+        View v = view;
+        Segment[] segments = v.segments();
+        long hits = 0;
+        long misses = 0;
+        lookup:
+        for (int i = 0; i < count; i++) {
+            for (Segment segment : segments) {
+                HashFilter filter = segment.filter();
+                if (filter != null) {
+                    if (!filter.mightContain(hashes[i])) {
+                        misses++;
+                        continue;
+                    }
+                    hits++;
+                }
+                if (!segment.lookup(hashes[i], i, visitor)) {
+                    break lookup;
+                }
+            }
+            if (!v.active().lookup(hashes[i], i, visitor)) {
+                break;
+            }
+        }
+        filterHits.add(hits);
+        filterMisses.add(misses);
+    }
+
+    /**
+     * @return true if sealed segments are written to disk
+     */
+    public boolean isPersistent() {
+        return directory != null;
+    }
+
+    /**
+     * Seal the active segment and write every sealed segment still in the heap, so everything added
+     * so far is on disk when this returns. Merging is left to the background thread.
+     *
+     * @return false if the index is heap-only or there was nothing new to write
+     */
+    public boolean flush() throws IOException {
+        if (directory == null) {
+            return false;
+        }
+        synchronized (this) {
+            seal();
+        }
+        boolean wrote = persistSealed();
+        scheduleMaintenance();
+        return wrote;
+    }
+
+    /**
+     * Sequence number (see {@link #add}) of the last track written to a segment file.
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    private void seal() {
+        View v = view;
+        if (activeTrackCount == 0) {
+            return;
+        }
+        Segment sealed = Segment.sealed(nextGeneration++, v.active(), Arrays.copyOf(activeTracks, activeTrackCount),
+                addSequence);
+        activeTrackCount = 0;
+        view = new View(new FingerprintIndex(), append(v.segments(), sealed));
+    }
+
+    private void scheduleMaintenance() {
+        if (maintenance != null && maintenanceScheduled.compareAndSet(false, true)) {
+            maintenance.execute(() -> {
+                maintenanceScheduled.set(false);
+                try {
+                    maintain();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("❌ Index maintenance failed, sealed segments stay in memory: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Write sealed segments out, then merge until there are at most {@code max-segments} files.
+     */
+    void maintain() throws IOException {
+        persistSealed();
+        while (mergeOnce()) {
+            // keep going
+        }
+    }
+
+    private boolean persistSealed() throws IOException {
+        synchronized (persistLock) {
+            boolean wrote = false;
+            for (Segment sealed = oldestInHeap(); sealed != null; sealed = oldestInHeap()) {
+                Path file = segmentFile(sealed.first(), sealed.last());
+                long start = System.nanoTime();
+                try (FingerprintIndexWriter writer = new FingerprintIndexWriter(file)) {
+                    PostingsCollector postings = new PostingsCollector();
+                    int[] keys = sealed.heap().sortedKeys();
+                    for (int k = 0; k < keys.length; k++) {
+                        postings.count = 0;
+                        sealed.heap().lookup(keys[k], 0, postings);
+                        writer.add(keys[k], postings.values, postings.count);
+                        throttle(writer, k, start);
+                    }
+                    for (int trackId : sealed.trackIds()) {
+                        TrackInfo track = trackCatalog.get(trackId);
+                        if (track != null) {
+                            writer.addTrack(track);
+                        }
+                    }
+                    writer.commit();
+                }
+                replace(List.of(sealed), Segment.mapped(sealed.first(), sealed.last(), MappedFingerprintIndex.open(file, false)));
+                durableSequence = sealed.lastSequence();
+                wrote = true;
+            }
+            return wrote;
+        }
+    }
+
+    private Segment oldestInHeap() {
+        for (Segment segment : view.segments()) {
+            if (segment.heap() != null) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merge a run of adjacent segment files if there are more files than {@code max-segments}: the
+     * longest run of up to {@code merge-factor} whose bytes add up to at most {@code max-segment-mb},
+     * the one with the fewest bytes among equally long runs.
+     */
+    private boolean mergeOnce() throws IOException {
+        synchronized (mergeLock) {
+            // segments are persisted oldest first, so the files are a prefix of the list
+            Segment[] segments = view.segments();
+            int files = 0;
+            while (files < segments.length && segments[files].mapped() != null) {
+                files++;
+            }
+            if (files <= maxSegments) {
+                return false;
+            }
+
+            // the output is about as big as its inputs together, so a run must fit in max-segment-mb
+            int from = 0;
+            int longest = 1;
+            long fewest = Long.MAX_VALUE;
+            for (int i = 0; i < files; i++) {
+                int length = 0;
+                long bytes = 0;
+                while (i + length < files && length < mergeFactor &&
+                        bytes + segments[i + length].mapped().getFileBytes() <= maxSegmentBytes) {
+                    bytes += segments[i + length].mapped().getFileBytes();
+                    length++;
+                }
+                if (length > longest || length == longest && length > 1 && bytes < fewest) {
+                    longest = length;
+                    fewest = bytes;
+                    from = i;
+                }
+            }
+            if (longest < 2) {
+                return false; // every neighbouring pair would outgrow max-segment-mb
+            }
+            merge(Arrays.copyOfRange(segments, from, from + longest));
+            return true;
+        }
+    }
+
+    private void merge(Segment[] inputs) throws IOException {
+        long first = inputs[0].first();
+        long last = inputs[inputs.length - 1].last();
+        Path file = segmentFile(first, last);
+        long start = System.nanoTime();
+
+        MappedFingerprintIndex.Cursor[] cursors = new MappedFingerprintIndex.Cursor[inputs.length];
+        boolean[] more = new boolean[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            cursors[i] = inputs[i].mapped().cursor();
+            more[i] = cursors[i].next();
+        }
+
+        try (FingerprintIndexWriter writer = new FingerprintIndexWriter(file)) {
+            PostingsCollector postings = new PostingsCollector();
+            for (int keys = 0; ; keys++) {
+                long hash = Long.MAX_VALUE;
+                for (int i = 0; i < cursors.length; i++) {
+                    if (more[i]) {
+                        hash = Math.min(hash, cursors[i].hash());
+                    }
+                }
+                if (hash == Long.MAX_VALUE) {
+                    break;
+                }
+                postings.count = 0;
+                for (int i = 0; i < cursors.length; i++) {
+                    if (more[i] && cursors[i].hash() == hash) {
+                        cursors[i].postings(postings);
+                        more[i] = cursors[i].next();
+                    }
+                }
+                writer.add((int) hash, postings.values, postings.count);
+                throttle(writer, keys, start);
+            }
+            for (Segment input : inputs) {
+                for (TrackInfo track : input.mapped().tracks()) {
+                    writer.addTrack(track);
+                }
+            }
+            writer.commit();
+        }
+
+        MappedFingerprintIndex merged = MappedFingerprintIndex.open(file, false);
+        replace(List.of(inputs), Segment.mapped(first, last, merged));
+        for (Segment input : inputs) {
+            // readers still holding the old view keep their mapping; the file itself can go
+            try {
+                Files.deleteIfExists(input.mapped().getPath());
+            } catch (IOException e) {
+                System.err.println("⚠️  Could not delete merged segment " + input.mapped().getPath() + ": " + e.getMessage());
+            }
+        }
+        merges.incrementAndGet();
+        mergedBytes.addAndGet(merged.getFileBytes());
+        System.out.println("🧱 Merged " + inputs.length + " index segments into " + file.getFileName() + " in " +
+                (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Sleep as needed to keep the writer at {@code merge-mb-per-sec}.
+     */
+    private void throttle(FingerprintIndexWriter writer, int keys, long startNanos) {
+        if (mergeBytesPerSecond == 0 || keys % THROTTLE_EVERY_KEYS != 0) {
+            return;
+        }
+        long due = startNanos + writer.getBytesWritten() * 1_000_000_000L / mergeBytesPerSecond;
+        long ahead = due - System.nanoTime();
+        if (ahead > 0) {
+            LockSupport.parkNanos(ahead);
+        }
+    }
+
+    /**
+     * Publish a view with the adjacent {@code old} segments swapped for {@code replacement}.
+     */
+    private synchronized void replace(List<Segment> old, Segment replacement) {
+        View v = view;
+        List<Segment> segments = new ArrayList<>(v.segments().length);
+        for (Segment segment : v.segments()) {
+            if (segment == old.get(0)) {
+                segments.add(replacement);
+            } else if (old.stream().noneMatch(o -> o == segment)) {
+                segments.add(segment);
+            }
+        }
+        view = new View(v.active(), segments.toArray(Segment[]::new));
+    }
+
+    private Segment[] openSegments(boolean verifyChecksums) throws IOException {
+        Files.createDirectories(directory);
+        List<long[]> ranges = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher matcher = SEGMENT_FILE.matcher(name);
+                if (matcher.matches()) {
+                    ranges.add(new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))});
+                } else if (name.endsWith(".tmp")) {
+                    Files.delete(file); // an interrupted write
+                }
+            }
+        }
+
+        // widest range first among equal starts, so merge inputs follow the output that replaced them
+        ranges.sort(Comparator.<long[]>comparingLong(r -> r[0]).thenComparing(r -> -r[1]));
+        List<Segment> segments = new ArrayList<>();
+        long covered = 0;
+        for (long[] range : ranges) {
+            Path file = segmentFile(range[0], range[1]);
+            if (range[1] <= covered) {
+                System.out.println("🧹 Removing " + file.getFileName() + ", already merged");
+                Files.delete(file);
+                continue;
+            }
+            segments.add(Segment.mapped(range[0], range[1], MappedFingerprintIndex.open(file, verifyChecksums)));
+            covered = range[1];
+        }
+        return segments.toArray(Segment[]::new);
+    }
+
+    private Path segmentFile(long first, long last) {
+        return directory.resolve(String.format("segment-%06d-%06d.sfi", first, last));
+    }
+
+    private static Segment[] append(Segment[] segments, Segment segment) {
+        Segment[] appended = Arrays.copyOf(segments, segments.length + 1);
+        appended[segments.length] = segment;
+        return appended;
+    }
+
+    public int getTrackCount() {
+        View v = view;
+        int tracks = v.active().getTrackCount();
+        for (Segment segment : v.segments()) {
+            tracks += segment.stats().tracks();
+        }
+        return tracks;
+    }
+
+    public long getPostingCount() {
+        View v = view;
+        long postings = v.active().getPostingCount();
+        for (Segment segment : v.segments()) {
+            postings += segment.stats().postings();
+        }
+        return postings;
+    }
+
+    /**
+     * The mutable in-heap segment, for stats.
+     */
+    public FingerprintIndex active() {
+        return view.active();
+    }
+
+    /**
+     * The sealed segments, oldest first.
+     */
+    public List<SegmentStats> segments() {
+        return Arrays.stream(view.segments()).map(Segment::stats).toList();
+    }
+
+    /**
+     * Segment probes a filter let through (the hash may be there).
+     */
+    public long getFilterHits() {
+        return filterHits.sum();
+    }
+
+    /**
+     * Segment probes a filter skipped (the hash is definitely not there).
+     */
+    public long getFilterMisses() {
+        return filterMisses.sum();
+    }
+
+    public int getSegmentCount() {
+        return view.segments().length;
+    }
+
+    public long getMergeCount() {
+        return merges.get();
+    }
+
+    public long getMergedBytes() {
+        return mergedBytes.get();
+    }
+
+    /**
+     * The segment files currently mapped, oldest first.
+     */
+    List<MappedFingerprintIndex> mappedSegments() {
+        return Arrays.stream(view.segments()).map(Segment::mapped).filter(m -> m != null).toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdownNow(); // an interrupted write leaves only a temp file, removed at startup
+        }
+    }
+
+    private static final class PostingsCollector implements PostingVisitor {
+
+        long[] values = new long[64];
+        int count;
+
+        @Override
+        public boolean visit(int hashIndex, long posting) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = posting;
+            return true;
+        }
+    }
+}
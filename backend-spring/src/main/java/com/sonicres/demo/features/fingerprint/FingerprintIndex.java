@@ -0,0 +1,233 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * In-process inverted index from 32-bit landmark hash to packed (trackId, offset) postings.
+ *
+ * Everything lives in a handful of primitive arrays, so millions of postings are a few large
+ * objects for the GC rather than millions of boxed entries:
+ * - an open-addressing table (linear probing) of {@code keys[]} and {@code heads[]}
+ * - {@code postings[]} / {@code next[]}: each hash's postings as a linked list threaded through arrays
+ *
+ * There is a single writer ({@link #add} is synchronized) and readers never lock: a slot's head
+ * is published with a release store after its key, posting and link are written, and readers
+ * acquire the head before touching anything it points to. Growing the table or the postings
+ * arrays publishes fresh arrays through volatile fields; readers on the old table simply miss
+ * postings added after the swap.
+ *
+ * Being array-backed, one index holds at most ~2^31 postings. {@link CatalogIndex} uses these as
+ * its mutable segment, sealing each one well before that.
+ */
+public class FingerprintIndex implements PostingsSource {
+
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int EMPTY = -1;
+    private static final float MAX_LOAD = 0.6f;
+    private static final int MAX_POSTINGS = Integer.MAX_VALUE - 8;
+
+    private volatile Table table = new Table(1 << 16);
+    private volatile Store store = new Store(1 << 16);
+
+    private int postingCount = 0;
+    private volatile int publishedPostings = 0;
+    private volatile int trackCount = 0;
+
+    /**
+     * Index the landmarks of one track.
+     *
+     * @param landmarks packed {@link Landmarks} values (hash, anchor frame)
+     */
+    public synchronized void add(int trackId, long[] landmarks, int count) {
+        if ((long) postingCount + count > MAX_POSTINGS) {
+            throw new IllegalStateException("Fingerprint index is full (" + postingCount + " postings)");
+        }
+        ensurePostingCapacity(postingCount + count);
+        Table t = table;
+
+        for (int i = 0; i < count; i++) {
+            if (t.size + 1 > t.capacity * MAX_LOAD) {
+                t = grow(t);
+            }
+
+            int hash = Landmarks.hashOf(landmarks[i]);
+            int slot = findSlot(t, hash);
+            int head = t.heads[slot];
+            if (head == EMPTY) {
+                t.keys[slot] = hash;
+                t.size++;
+            }
+
+            Store s = store;
+            int p = postingCount++;
+            s.postings[p] = Postings.pack(trackId, Landmarks.timeOf(landmarks[i]));
+            s.next[p] = head;
+            INT_ARRAY.setRelease(t.heads, slot, p);
+        }
+
+        publishedPostings = postingCount;
+        trackCount++;
+    }
+
+    @Override
+    public void lookup(int[] hashes, int count, PostingVisitor visitor) {
+        for (int i = 0; i < count; i++) {
+            if (!lookup(hashes[i], i, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the visitor asked to stop
+     */
+    public boolean lookup(int hash, int hashIndex, PostingVisitor visitor) {
+        Table t = table;
+        int mask = t.capacity - 1;
+
+        for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+            int head = (int) INT_ARRAY.getAcquire(t.heads, slot);
+            if (head == EMPTY) {
+                return true;
+            }
+            if (t.keys[slot] == hash) {
+                Store s = store; // read after the head so it is at least as new as the posting
+                for (int p = head; p != EMPTY; p = s.next[p]) {
+                    if (!visitor.visit(hashIndex, s.postings[p])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Number of postings stored for {@code hash}.
+     */
+    public int postingCount(int hash) {
+        int[] count = new int[1];
+        lookup(hash, 0, (i, posting) -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * The distinct hashes indexed so far, ascending.
+     */
+    public synchronized int[] sortedKeys() {
+        Table t = table;
+        int[] keys = new int[t.size];
+        int n = 0;
+        for (int slot = 0; slot < t.capacity; slot++) {
+            if (t.heads[slot] != EMPTY) {
+                keys[n++] = t.keys[slot];
+            }
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int findSlot(Table t, int hash) {
+        int mask = t.capacity - 1;
+        int slot = mix(hash) & mask;
+        while (t.heads[slot] != EMPTY && t.keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private Table grow(Table old) {
+        Table grown = new Table(old.capacity * 2);
+        for (int slot = 0; slot < old.capacity; slot++) {
+            int head = old.heads[slot];
+            if (head != EMPTY) {
+                int target = findSlot(grown, old.keys[slot]);
+                grown.keys[target] = old.keys[slot];
+                grown.heads[target] = head;
+                grown.size++;
+            }
+        }
+        table = grown;
+        return grown;
+    }
+
+    private void ensurePostingCapacity(int required) {
+        Store s = store;
+        if (required <= s.postings.length) {
+            return;
+        }
+        int capacity = (int) Math.min(MAX_POSTINGS, Math.max(required, s.postings.length * 2L));
+        Store grown = new Store(capacity, Arrays.copyOf(s.postings, capacity), Arrays.copyOf(s.next, capacity));
+        store = grown;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    public int getKeyCount() {
+        return table.size;
+    }
+
+    public int getPostingCount() {
+        return publishedPostings;
+    }
+
+    /**
+     * Bytes held by the index arrays (allocated capacity, not just used slots).
+     */
+    public long getMemoryBytes() {
+        Table t = table;
+        Store s = store;
+        return (long) t.capacity * (Integer.BYTES * 2)
+                + (long) s.postings.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    public double getBytesPerPosting() {
+        int postings = getPostingCount();
+        return postings == 0 ? 0 : (double) getMemoryBytes() / postings;
+    }
+
+    public double getLoadFactor() {
+        Table t = table;
+        return (double) t.size / t.capacity;
+    }
+
+    private static final class Table {
+        final int capacity;
+        final int[] keys;
+        final int[] heads;
+        int size;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.keys = new int[capacity];
+            this.heads = new int[capacity];
+            Arrays.fill(heads, EMPTY);
+        }
+    }
+
+    private static final class Store {
+        final long[] postings;
+        final int[] next;
+
+        Store(int capacity) {
+            this(capacity, new long[capacity], new int[capacity]);
+        }
+
+        Store(int capacity, long[] postings, int[] next) {
+            this.postings = postings;
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/fingerprintindex} - size and footprint of the catalog index: the mutable in-heap
+ * segment, every sealed segment, how much merging has done, and how many segment probes the
+ * hash filters saved.
+ */
+@Component
+@Endpoint(id = "fingerprintindex")
+public class FingerprintIndexEndpoint {
+
+    private final CatalogIndex catalogIndex;
+
+    public FingerprintIndexEndpoint(CatalogIndex catalogIndex) {
+        this.catalogIndex = catalogIndex;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tracks", catalogIndex.getTrackCount());
+        stats.put("postings", catalogIndex.getPostingCount());
+
+        FingerprintIndex index = catalogIndex.active();
+        Map<String, Object> active = new LinkedHashMap<>();
+        active.put("tracks", index.getTrackCount());
+        active.put("hashes", index.getKeyCount());
+        active.put("postings", index.getPostingCount());
+        active.put("memoryBytes", index.getMemoryBytes());
+        active.put("bytesPerPosting", index.getBytesPerPosting());
+        active.put("loadFactor", index.getLoadFactor());
+        stats.put("active", active);
+
+        List<Map<String, Object>> segments = new ArrayList<>();
+        for (CatalogIndex.SegmentStats segment : catalogIndex.segments()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("generations", segment.firstGeneration() + "-" + segment.lastGeneration());
+            entry.put("state", segment.mapped() ? "mapped" : "writing");
+            entry.put("tracks", segment.tracks());
+            entry.put("hashes", segment.hashes());
+            entry.put("postings", segment.postings());
+            entry.put("bytes", segment.bytes());
+            entry.put("bytesPerPosting", segment.postings() == 0 ? 0 : (double) segment.bytes() / segment.postings());
+            entry.put("filterBytes", segment.filterBytes());
+            segments.add(entry);
+        }
+        stats.put("segments", segments);
+        stats.put("merges", catalogIndex.getMergeCount());
+        stats.put("mergedBytes", catalogIndex.getMergedBytes());
+
+        long hits = catalogIndex.getFilterHits();
+        long misses = catalogIndex.getFilterMisses();
+        Map<String, Object> filter = new LinkedHashMap<>();
+        filter.put("hits", hits);
+        filter.put("misses", misses);
+        filter.put("missRate", hits + misses == 0 ? 0 : (double) misses / (hits + misses));
+        stats.put("filter", filter);
+        return stats;
+    }
+}
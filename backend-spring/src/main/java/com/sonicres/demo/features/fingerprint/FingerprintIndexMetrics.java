@@ -0,0 +1,117 @@
+package com.sonicres.demo.features.fingerprint;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Catalog index and postings cache meters, read at scrape time:
+ *
+ * - {@code fingerprint.filter.checks{source=index|store, result=hit|miss}} - hashes a {@link HashFilter}
+ *   let through to a segment or PostgreSQL probe (hit) or ruled out without one (miss)
+ * - {@code fingerprint.store.lookups.skipped} - PostgreSQL round trips saved because no hash got through
+ * - {@code fingerprint.index.segments} - sealed segments, and {@code fingerprint.index.merges} so far
+ * - {@code fingerprint.cache.requests{tier=memory|second, result=hit|miss}} - hashes looked up in each
+ *   postings cache tier, with {@code fingerprint.cache.hit.ratio} for the in-process one
+ * - {@code fingerprint.cache.evictions}, {@code fingerprint.cache.rejections} (refused admission or too
+ *   big), {@code fingerprint.cache.size} (bytes) and {@code fingerprint.cache.entries}
+ * - {@code fingerprint.cache.load} - time to fill a batch's misses from the second tier and PostgreSQL
+ * - {@code fingerprint.cache.tier.errors} - failed second tier calls, answered by PostgreSQL instead
+ */
+@Component
+public class FingerprintIndexMetrics implements MeterBinder {
+
+    private final CatalogIndex index;
+    private final ObjectProvider<PostgresFingerprintStore> store;
+
+    public FingerprintIndexMetrics(CatalogIndex index, ObjectProvider<PostgresFingerprintStore> store) {
+        this.index = index;
+        this.store = store;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        filterCounter(registry, "index", "hit", index, CatalogIndex::getFilterHits);
+        filterCounter(registry, "index", "miss", index, CatalogIndex::getFilterMisses);
+        Gauge.builder("fingerprint.index.segments", index, CatalogIndex::getSegmentCount)
+                .description("Sealed catalog index segments")
+                .register(registry);
+        FunctionCounter.builder("fingerprint.index.merges", index, CatalogIndex::getMergeCount)
+                .description("Background segment merges")
+                .register(registry);
+
+        PostgresFingerprintStore postgres = store.getIfAvailable();
+        if (postgres != null) {
+            filterCounter(registry, "store", "hit", postgres, PostgresFingerprintStore::getFilterHits);
+            filterCounter(registry, "store", "miss", postgres, PostgresFingerprintStore::getFilterMisses);
+            FunctionCounter.builder("fingerprint.store.lookups.skipped", postgres,
+                            PostgresFingerprintStore::getSkippedLookups)
+                    .description("PostgreSQL lookups skipped because the filter ruled out every hash")
+                    .register(registry);
+
+            PostingsCache cache = postgres.getCache();
+            if (cache != null) {
+                bindCache(registry, postgres, cache);
+            }
+        }
+    }
+
+    private static void bindCache(MeterRegistry registry, PostgresFingerprintStore postgres, PostingsCache cache) {
+        cacheCounter(registry, "memory", "hit", cache, PostingsCache::getHits);
+        cacheCounter(registry, "memory", "miss", cache, PostingsCache::getMisses);
+        Gauge.builder("fingerprint.cache.hit.ratio", cache, PostingsCache::getHitRatio)
+                .description("Share of hashes answered by the in-process postings cache")
+                .register(registry);
+        FunctionCounter.builder("fingerprint.cache.evictions", cache, PostingsCache::getEvictions)
+                .description("Postings cache entries evicted to stay within the byte budget")
+                .register(registry);
+        FunctionCounter.builder("fingerprint.cache.rejections", cache, PostingsCache::getRejections)
+                .description("Postings refused by the admission filter or too big to cache")
+                .register(registry);
+        Gauge.builder("fingerprint.cache.size", cache, PostingsCache::getBytes)
+                .description("Estimated postings cache size")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("fingerprint.cache.entries", cache, PostingsCache::getEntryCount)
+                .description("Hashes in the postings cache")
+                .register(registry);
+        FunctionTimer.builder("fingerprint.cache.load", cache, PostingsCache::getLoadCount,
+                        PostingsCache::getLoadNanos, TimeUnit.NANOSECONDS)
+                .description("Loading a lookup's cache misses from the slower tiers")
+                .register(registry);
+
+        if (postgres.getTier() != null) {
+            cacheCounter(registry, "second", "hit", postgres, PostgresFingerprintStore::getTierHits);
+            cacheCounter(registry, "second", "miss", postgres, PostgresFingerprintStore::getTierMisses);
+            FunctionCounter.builder("fingerprint.cache.tier.errors", postgres, PostgresFingerprintStore::getTierErrors)
+                    .tag("tier", postgres.getTier().name())
+                    .description("Second tier calls that failed and fell back to PostgreSQL")
+                    .register(registry);
+        }
+    }
+
+    private static <T> void cacheCounter(MeterRegistry registry, String tier, String result, T target,
+                                         ToDoubleFunction<T> count) {
+        FunctionCounter.builder("fingerprint.cache.requests", target, count)
+                .tag("tier", tier)
+                .tag("result", result)
+                .description("Hashes looked up in a postings cache tier")
+                .register(registry);
+    }
+
+    private static <T> void filterCounter(MeterRegistry registry, String source, String result, T target,
+                                          ToDoubleFunction<T> count) {
+        FunctionCounter.builder("fingerprint.filter.checks", target, count)
+                .tag("source", source)
+                .tag("result", result)
+                .description("Hashes checked against a hash filter before a lookup")
+                .register(registry);
+    }
+}
@@ -0,0 +1,311 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static com.sonicres.demo.features.fingerprint.IndexFileFormat.*;
+
+/**
+ * Writes an index snapshot in the {@link IndexFileFormat} layout. Hashes must be added in
+ * ascending order; postings are streamed to disk as they come, only the keys and the sparse
+ * directory are held in memory until {@link #commit()}, which also builds the {@link HashFilter}.
+ *
+ * The snapshot is written next to the target and renamed over it once complete and synced, so
+ * a reader never maps a half-written file and a crash leaves the previous snapshot in place.
+ */
+public class FingerprintIndexWriter implements Closeable {
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private final List<TrackInfo> tracks = new ArrayList<>();
+
+    private long written;
+    private long postingCount;
+    private int keyCount;
+    private int[] keys = new int[1 << 16];
+    private int[] blockFirstHash = new int[1 << 10];
+    private long[] blockOffset = new long[1 << 10];
+    private byte[] record = new byte[256];
+    private long[] sorted = new long[64];
+    private boolean committed;
+
+    public FingerprintIndexWriter(Path target) throws IOException {
+        this.target = target.toAbsolutePath();
+        if (this.target.getParent() != null) {
+            Files.createDirectories(this.target.getParent());
+        }
+        this.temp = this.target.resolveSibling(this.target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_BYTES);
+        written = HEADER_BYTES;
+        crc.reset();
+    }
+
+    /**
+     * @param postings packed {@link Postings} values; the first {@code count} are copied
+     * @throws IllegalArgumentException if {@code hash} is not greater than the previous one
+     */
+    public void add(int hash, long[] postings, int count) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        if (keyCount > 0 && hash <= keys[keyCount - 1]) {
+            throw new IllegalArgumentException("Hashes must be added in ascending order: " + hash +
+                    " after " + keys[keyCount - 1]);
+        }
+
+        if (keyCount % BLOCK_KEYS == 0) {
+            int block = keyCount / BLOCK_KEYS;
+            if (block == blockFirstHash.length) {
+                blockFirstHash = Arrays.copyOf(blockFirstHash, block * 2);
+                blockOffset = Arrays.copyOf(blockOffset, block * 2);
+            }
+            blockFirstHash[block] = hash;
+            blockOffset[block] = position() - HEADER_BYTES;
+        }
+        if (keyCount == keys.length) {
+            keys = Arrays.copyOf(keys, keyCount * 2);
+        }
+        keys[keyCount++] = hash;
+        postingCount += count;
+
+        int length = encode(postings, count);
+        for (int p = 0; p < length; ) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(out.remaining(), length - p);
+            out.put(record, p, n);
+            p += n;
+        }
+    }
+
+    public void addTrack(TrackInfo track) {
+        tracks.add(track);
+    }
+
+    /**
+     * Finish the sections, write the header and move the snapshot into place.
+     */
+    public Path commit() throws IOException {
+        for (int i = 0; i < POSTINGS_PADDING; i++) {
+            ensure(1);
+            out.put((byte) 0);
+        }
+        flush();
+        long postingsBytes = position() - HEADER_BYTES;
+        int postingsCrc = (int) crc.getValue();
+
+        long keysAt = beginSection();
+        for (int i = 0; i < keyCount; i++) {
+            ensure(Integer.BYTES);
+            out.putInt(keys[i]);
+        }
+        int keysCrc = endSection();
+
+        long directoryAt = beginSection();
+        int blocks = (keyCount + BLOCK_KEYS - 1) / BLOCK_KEYS;
+        for (int b = 0; b < blocks; b++) {
+            ensure(DIRECTORY_ENTRY_BYTES);
+            out.putInt(blockFirstHash[b]).putLong(blockOffset[b]);
+        }
+        int directoryCrc = endSection();
+
+        long filterAt = beginSection();
+        HashFilter filter = HashFilter.create(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            filter.add(keys[i]);
+        }
+        ByteBuffer filterBytes = filter.bytes();
+        crc.update(filterBytes.duplicate());
+        while (filterBytes.hasRemaining()) {
+            written += channel.write(filterBytes);
+        }
+        int filterCrc = (int) crc.getValue();
+
+        long tracksAt = beginSection();
+        ensure(Integer.BYTES);
+        out.putInt(tracks.size());
+        for (TrackInfo track : tracks) {
+            byte[] title = track.title().getBytes(StandardCharsets.UTF_8);
+            byte[] artist = track.artist().getBytes(StandardCharsets.UTF_8);
+            ensure(Integer.BYTES * 3 + title.length + artist.length);
+            out.putInt(track.id()).putInt(title.length).put(title).putInt(artist.length).put(artist);
+        }
+        int tracksCrc = endSection();
+
+        long fileBytes = position();
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IOException("Index snapshot is " + fileBytes + " bytes; one mapped file holds at most 2 GB");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC_AT, MAGIC)
+                .putInt(VERSION_AT, VERSION)
+                .putInt(HEADER_BYTES_AT, HEADER_BYTES)
+                .putInt(BLOCK_KEYS_AT, BLOCK_KEYS)
+                .putInt(KEY_COUNT_AT, keyCount)
+                .putInt(TRACK_COUNT_AT, tracks.size())
+                .putLong(POSTING_COUNT_AT, postingCount)
+                .putLong(POSTINGS_AT, HEADER_BYTES)
+                .putLong(KEYS_AT, keysAt)
+                .putLong(DIRECTORY_AT, directoryAt)
+                .putLong(TRACKS_AT, tracksAt)
+                .putLong(FILE_BYTES_AT, fileBytes)
+                .putInt(POSTINGS_CRC_AT, postingsCrc)
+                .putInt(KEYS_CRC_AT, keysCrc)
+                .putInt(DIRECTORY_CRC_AT, directoryCrc)
+                .putInt(TRACKS_CRC_AT, tracksCrc)
+                .putLong(FILTER_AT, filterAt)
+                .putInt(FILTER_CRC_AT, filterCrc);
+        crc.reset();
+        crc.update(header.slice(0, HEADER_CRC_AT));
+        header.putInt(HEADER_CRC_AT, (int) crc.getValue());
+
+        channel.write(header, 0);
+        channel.force(true);
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+
+        System.out.println("💾 Wrote index snapshot " + target.getFileName() + ": " + keyCount + " hashes, " +
+                postingCount + " postings, " + tracks.size() + " tracks in " + fileBytes + " bytes (" +
+                String.format("%.2f", postingCount == 0 ? 0 : (double) postingsBytes / postingCount) +
+                " bytes/posting)");
+        return target;
+    }
+
+    /**
+     * Bytes written so far, for pacing.
+     */
+    public long getBytesWritten() {
+        return position();
+    }
+
+    /**
+     * Abandons the snapshot unless it was committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Encodes one postings record into {@link #record}.
+     *
+     * @return its length in bytes
+     */
+    private int encode(long[] postings, int count) {
+        if (sorted.length < count) {
+            sorted = new long[Math.max(count, sorted.length * 2)];
+        }
+        System.arraycopy(postings, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+
+        long maxTrackDelta = 0;
+        long maxOffset = 0;
+        for (int i = 0; i < count; i++) {
+            maxTrackDelta = Math.max(maxTrackDelta, trackDelta(i));
+            maxOffset = Math.max(maxOffset, offsetField(i));
+        }
+        int trackBits = bitsFor(maxTrackDelta);
+        int offsetBits = bitsFor(maxOffset);
+
+        int maxLength = 5 + 2 + (int) (((long) count * (trackBits + offsetBits) + 7) >>> 3);
+        if (record.length < maxLength) {
+            record = new byte[Math.max(maxLength, record.length * 2)];
+        }
+
+        int p = 0;
+        for (int v = count; ; v >>>= 7) {
+            if ((v & ~0x7F) == 0) {
+                record[p++] = (byte) v;
+                break;
+            }
+            record[p++] = (byte) ((v & 0x7F) | 0x80);
+        }
+        record[p++] = (byte) trackBits;
+        record[p++] = (byte) offsetBits;
+
+        long bits = 0;
+        int pending = 0;
+        for (int field = 0; field < 2; field++) {
+            int width = field == 0 ? trackBits : offsetBits;
+            for (int i = 0; i < count && width > 0; i++) {
+                bits |= (field == 0 ? trackDelta(i) : offsetField(i)) << pending;
+                pending += width;
+                while (pending >= 8) {
+                    record[p++] = (byte) bits;
+                    bits >>>= 8;
+                    pending -= 8;
+                }
+            }
+        }
+        if (pending > 0) {
+            record[p++] = (byte) bits;
+        }
+        return p;
+    }
+
+    private long trackDelta(int i) {
+        int previous = i == 0 ? 0 : Postings.trackIdOf(sorted[i - 1]);
+        return (Postings.trackIdOf(sorted[i]) - previous) & 0xFFFFFFFFL;
+    }
+
+    private long offsetField(int i) {
+        int offset = Postings.offsetOf(sorted[i]);
+        if (i > 0 && Postings.trackIdOf(sorted[i - 1]) == Postings.trackIdOf(sorted[i])) {
+            return (offset - Postings.offsetOf(sorted[i - 1])) & 0xFFFFFFFFL;
+        }
+        return offset & 0xFFFFFFFFL;
+    }
+
+    private long beginSection() throws IOException {
+        flush();
+        crc.reset();
+        return position();
+    }
+
+    private int endSection() throws IOException {
+        flush();
+        return (int) crc.getValue();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (out.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        crc.update(out.duplicate());
+        while (out.hasRemaining()) {
+            written += channel.write(out);
+        }
+        out.clear();
+    }
+
+    private long position() {
+        return written + out.position();
+    }
+}
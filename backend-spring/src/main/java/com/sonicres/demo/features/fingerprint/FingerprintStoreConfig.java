@@ -0,0 +1,93 @@
+package com.sonicres.demo.features.fingerprint;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Wires the PostgreSQL fingerprint store when {@code app.fingerprint.store.enabled=true}.
+ * Off by default so the service runs (in-memory index only) without a database.
+ *
+ * Lookups go through a {@link PostingsCache} unless {@code app.fingerprint.cache.enabled=false}, with
+ * {@code app.fingerprint.cache.tier2=local|redis} adding a second tier behind it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.fingerprint.store.enabled", havingValue = "true")
+public class FingerprintStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource fingerprintDataSource(
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${app.fingerprint.store.pool-size:8}") int poolSize) {
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("fingerprint-store");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolSize);
+        return new HikariDataSource(config);
+    }
+
+    @Bean(destroyMethod = "close")
+    public PostgresFingerprintStore postgresFingerprintStore(
+            HikariDataSource fingerprintDataSource,
+            TrackCatalog trackCatalog,
+            @Value("${app.fingerprint.store.fetch-size:4096}") int fetchSize,
+            @Value("${app.fingerprint.store.initialize-schema:true}") boolean initializeSchema,
+            @Value("${app.fingerprint.store.filter.enabled:false}") boolean filterEnabled,
+            @Value("${app.fingerprint.store.filter.expected-hashes:10000000}") long filterExpectedHashes,
+            @Value("${app.fingerprint.store.filter.refresh-seconds:30}") long filterRefreshSeconds,
+            @Value("${app.fingerprint.cache.enabled:true}") boolean cacheEnabled,
+            @Value("${app.fingerprint.cache.max-mb:64}") long cacheMaxMb,
+            @Value("${app.fingerprint.cache.expire-after-write-seconds:600}") long cacheExpireSeconds,
+            @Value("${app.fingerprint.cache.tier2:none}") String tier2,
+            @Value("${app.fingerprint.cache.tier2.local-max-mb:256}") long localTierMaxMb,
+            @Value("${app.fingerprint.cache.tier2.ttl-seconds:3600}") long tierTtlSeconds,
+            @Value("${spring.data.redis.host:localhost}") String redisHost,
+            @Value("${spring.data.redis.port:6379}") int redisPort) throws IOException {
+
+        PostingsCache cache = null;
+        PostingsTier tier = null;
+        if (cacheEnabled) {
+            cache = new PostingsCache(cacheMaxMb * 1024 * 1024, cacheExpireSeconds);
+            tier = switch (tier2) {
+                case "none" -> null;
+                case "local" -> new LocalPostingsTier(localTierMaxMb * 1024 * 1024);
+                case "redis" -> new RedisPostingsTier(redisHost, redisPort, tierTtlSeconds, Duration.ofMillis(250));
+                default -> throw new IllegalArgumentException(
+                        "app.fingerprint.cache.tier2 must be none, local or redis, not " + tier2);
+            };
+            System.out.println("🧊 Postings cache: " + cacheMaxMb + " MB" +
+                    (tier != null ? " in front of the " + tier.name() + " tier" : ""));
+        }
+
+        PostgresFingerprintStore store = new PostgresFingerprintStore(fingerprintDataSource, fetchSize, cache, tier);
+        if (initializeSchema) {
+            store.initializeSchema();
+        }
+
+        for (TrackInfo track : store.loadTracks()) {
+            trackCatalog.put(track);
+        }
+        System.out.println("🗄️ Fingerprint store enabled: " + trackCatalog.size() + " tracks in catalog");
+
+        if (filterEnabled) {
+            long start = System.nanoTime();
+            long postings = store.loadFilter(filterExpectedHashes);
+            System.out.println("🧮 Hash filter over " + postings + " stored postings: " +
+                    store.getFilterBytes() / (1024 * 1024) + " MB in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            // tracks other nodes store reach the filter (and the catalog) on the next refresh
+            store.refreshFilterEvery(filterRefreshSeconds, trackCatalog::put);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,56 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * PCM to landmark hashes: spectrogram, constellation peaks, then combinatorial pairing.
+ * Every stage writes into per-thread buffers, so a warmed-up thread fingerprints without allocating.
+ */
+@Component
+public class Fingerprinter {
+
+    public static final String STAGE_SPECTROGRAM = "spectrogram";
+    public static final String STAGE_PEAKS = "peaks";
+    public static final String STAGE_HASHES = "hashes";
+
+    private final SpectrogramEngine spectrogramEngine;
+    private final PeakExtractor peakExtractor;
+    private final LandmarkHasher landmarkHasher;
+
+    public Fingerprinter(SpectrogramEngine spectrogramEngine,
+                         PeakExtractor peakExtractor,
+                         LandmarkHasher landmarkHasher) {
+        this.spectrogramEngine = spectrogramEngine;
+        this.peakExtractor = peakExtractor;
+        this.landmarkHasher = landmarkHasher;
+    }
+
+    /**
+     * @return this thread's reusable {@link Landmarks}, valid until the next call on the same thread
+     */
+    public Landmarks fingerprint(short[] pcm, int length) {
+        return fingerprint(pcm, length, StageTimer.NONE);
+    }
+
+    /**
+     * Same, reporting the time spent in {@value #STAGE_SPECTROGRAM}, {@value #STAGE_PEAKS}
+     * and {@value #STAGE_HASHES} to {@code timer}.
+     */
+    public Landmarks fingerprint(short[] pcm, int length, StageTimer timer) {
+        long start = System.nanoTime();
+        Spectrogram spectrogram = spectrogramEngine.compute(pcm, length);
+        long spectrogramDone = System.nanoTime();
+        Peaks peaks = peakExtractor.extract(spectrogram);
+        long peaksDone = System.nanoTime();
+        Landmarks landmarks = landmarkHasher.hash(peaks, spectrogram.bins());
+
+        timer.record(STAGE_SPECTROGRAM, spectrogramDone - start);
+        timer.record(STAGE_PEAKS, peaksDone - spectrogramDone);
+        timer.record(STAGE_HASHES, System.nanoTime() - peaksDone);
+        return landmarks;
+    }
+
+    public int getSampleRate() {
+        return spectrogramEngine.getSampleRate();
+    }
+}
@@ -0,0 +1,102 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Split-block Bloom filter over 32-bit landmark hashes (the layout Parquet and Impala use): an array
+ * of {@value #BLOCK_BYTES}-byte blocks, where a hash picks one block and sets one bit in each of its
+ * eight 32-bit words. A check reads a single cache line; at {@value #BITS_PER_KEY} bits per key about
+ * 1% of absent hashes get through. There are no false negatives.
+ *
+ * Backed by a little-endian {@link ByteBuffer}, so the same code checks a filter built in the heap
+ * and one mapped from a segment file. Adds set their bits with an atomic OR, so any number of threads
+ * may add at once (e.g. an ingest and a refresh) without losing a bit; readers never lock, and a reader
+ * racing an add may miss it, just as it would miss the posting being added.
+ */
+public final class HashFilter {
+
+    public static final int BLOCK_BYTES = 32;
+    public static final int BITS_PER_KEY = 10;
+
+    private static final int[] SALT = {
+            0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+            0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31
+    };
+
+    private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final ByteBuffer bytes;
+    private final long blocks;
+
+    private HashFilter(ByteBuffer bytes) {
+        this.bytes = bytes.order(ByteOrder.LITTLE_ENDIAN);
+        this.blocks = bytes.capacity() / BLOCK_BYTES;
+    }
+
+    /**
+     * An empty filter sized for {@code expectedKeys} distinct hashes.
+     */
+    public static HashFilter create(long expectedKeys) {
+        long blocks = Math.max(1, (Math.max(0, expectedKeys) * BITS_PER_KEY + BLOCK_BYTES * 8 - 1) / (BLOCK_BYTES * 8));
+        if (blocks * BLOCK_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A filter for " + expectedKeys + " hashes would exceed 2 GB");
+        }
+        return new HashFilter(ByteBuffer.allocate((int) (blocks * BLOCK_BYTES)));
+    }
+
+    /**
+     * A filter over bytes written by {@link #bytes()}, e.g. a slice of a mapped file.
+     */
+    static HashFilter wrap(ByteBuffer bytes) {
+        if (bytes.capacity() == 0 || bytes.capacity() % BLOCK_BYTES != 0) {
+            throw new IllegalArgumentException("Filter size " + bytes.capacity() + " is not a whole number of blocks");
+        }
+        return new HashFilter(bytes);
+    }
+
+    public void add(int hash) {
+        long h = Landmarks.mix(hash);
+        int at = block(h);
+        int key = (int) h;
+        for (int i = 0; i < SALT.length; i++) {
+            int word = at + i * Integer.BYTES;
+            int bit = 1 << ((key * SALT[i]) >>> 27);
+            if ((bytes.getInt(word) & bit) == 0) {
+                WORD.getAndBitwiseOr(bytes, word, bit);
+            }
+        }
+    }
+
+    /**
+     * @return false if {@code hash} was definitely never added
+     */
+    public boolean mightContain(int hash) {
+        long h = Landmarks.mix(hash);
+        int at = block(h);
+        int key = (int) h;
+        for (int i = 0; i < SALT.length; i++) {
+            if ((bytes.getInt(at + i * Integer.BYTES) & 1 << ((key * SALT[i]) >>> 27)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The filter's bytes, for writing it out.
+     */
+    ByteBuffer bytes() {
+        return bytes.duplicate().clear();
+    }
+
+    public long getBytes() {
+        return bytes.capacity();
+    }
+
+    private int block(long h) {
+        return (int) (((h >>> 32) * blocks) >>> 32) * BLOCK_BYTES;
+    }
+}
@@ -0,0 +1,92 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a fingerprint index snapshot ({@link FingerprintIndexWriter} writes it,
+ * {@link MappedFingerprintIndex} maps it). Little-endian throughout:
+ *
+ * <pre>
+ * header     fixed {@value #HEADER_BYTES} bytes, CRC32C of the header itself in the last 4
+ * postings   one record per hash, in hash order, then {@value #POSTINGS_PADDING} zero bytes
+ * keys       the distinct hashes, ascending (signed), int32 each
+ * directory  per block of {@value #BLOCK_KEYS} keys: first hash (int32), offset of the block's
+ *            first record within the postings section (int64)
+ * filter     a {@link HashFilter} over the keys (version 2 on)
+ * tracks     count (int32), then per track: id (int32), title, artist (int32 length + UTF-8)
+ * </pre>
+ *
+ * A postings record is {@code [varint count][track bits][offset bits]} followed by the bit-packed
+ * fields: first every posting's track id delta from the previous posting, then every offset -
+ * relative to the previous posting's offset within the same track, absolute on a new track.
+ * Postings are sorted by (track, offset), so both are small and non-negative.
+ *
+ * Version 1 files have no filter section and are still read; merging rewrites them as version 2.
+ */
+final class IndexFileFormat {
+
+    static final int MAGIC = 0x58494653; // "SFIX"
+    static final int VERSION = 2;
+    static final int FIRST_FILTER_VERSION = 2;
+    static final int HEADER_BYTES = 104;
+    static final int BLOCK_KEYS = 16;
+    static final int DIRECTORY_ENTRY_BYTES = Integer.BYTES + Long.BYTES;
+    static final int POSTINGS_PADDING = Long.BYTES;
+
+    // header fields
+    static final int MAGIC_AT = 0;
+    static final int VERSION_AT = 4;
+    static final int HEADER_BYTES_AT = 8;
+    static final int BLOCK_KEYS_AT = 12;
+    static final int KEY_COUNT_AT = 16;
+    static final int TRACK_COUNT_AT = 20;
+    static final int POSTING_COUNT_AT = 24;
+    static final int POSTINGS_AT = 32;
+    static final int KEYS_AT = 40;
+    static final int DIRECTORY_AT = 48;
+    static final int TRACKS_AT = 56;
+    static final int FILE_BYTES_AT = 64;
+    static final int POSTINGS_CRC_AT = 72;
+    static final int KEYS_CRC_AT = 76;
+    static final int DIRECTORY_CRC_AT = 80;
+    static final int TRACKS_CRC_AT = 84;
+    static final int FILTER_AT = 88;
+    static final int FILTER_CRC_AT = 96;
+    static final int HEADER_CRC_AT = 100;
+
+    private IndexFileFormat() {
+    }
+
+    static int bitsFor(long maxValue) {
+        return 64 - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    /**
+     * Total size of the record starting at {@code at}.
+     */
+    static int recordBytes(ByteBuffer buffer, int at) {
+        int count = 0;
+        int shift = 0;
+        int p = at;
+        byte b;
+        do {
+            b = buffer.get(p++);
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        int bits = (buffer.get(p) & 0xFF) + (buffer.get(p + 1) & 0xFF);
+        return p + 2 - at + (int) (((long) count * bits + 7) >>> 3);
+    }
+
+    /**
+     * Reads {@code width} (at most 32) bits starting {@code bit} bits into the data at {@code at}.
+     * Relies on the section padding so the 8-byte read never runs off the end.
+     */
+    static long readBits(ByteBuffer buffer, int at, long bit, int width) {
+        if (width == 0) {
+            return 0;
+        }
+        long word = buffer.getLong(at + (int) (bit >>> 3));
+        return (word >>> (bit & 7)) & ((1L << width) - 1);
+    }
+}
@@ -0,0 +1,149 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pairs each anchor peak with up to {@code fanOut} later peaks inside its target zone
+ * ({@code minDeltaFrames..maxDeltaFrames} ahead, within {@code maxDeltaBins} in frequency) and
+ * emits {@code hash(f1, f2, dt)} packed with the anchor time.
+ *
+ * The density cap bounds lookup volume: when a one-second window has more anchors than
+ * {@code maxHashesPerSecond / fanOut}, only the loudest anchors in that window are used.
+ */
+@Component
+public class LandmarkHasher {
+
+    private final int fanOut;
+    private final int minDeltaFrames;
+    private final int maxDeltaFrames;
+    private final int maxDeltaBins;
+    private final int maxHashesPerSecond;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final ThreadLocal<Landmarks> threadLandmarks = ThreadLocal.withInitial(Landmarks::new);
+
+    public LandmarkHasher(@Value("${app.fingerprint.hash.fan-out:5}") int fanOut,
+                          @Value("${app.fingerprint.hash.min-delta-frames:1}") int minDeltaFrames,
+                          @Value("${app.fingerprint.hash.max-delta-frames:64}") int maxDeltaFrames,
+                          @Value("${app.fingerprint.hash.max-delta-bins:128}") int maxDeltaBins,
+                          @Value("${app.fingerprint.hash.max-hashes-per-second:400}") int maxHashesPerSecond) {
+        if (maxDeltaFrames >= (1 << Landmarks.DELTA_BITS)) {
+            throw new IllegalArgumentException("max-delta-frames must fit in " + Landmarks.DELTA_BITS + " bits");
+        }
+        this.fanOut = fanOut;
+        this.minDeltaFrames = Math.max(1, minDeltaFrames);
+        this.maxDeltaFrames = maxDeltaFrames;
+        this.maxDeltaBins = maxDeltaBins;
+        this.maxHashesPerSecond = maxHashesPerSecond;
+    }
+
+    /**
+     * Hash into this thread's reusable {@link Landmarks}; overwritten by the next call on the thread.
+     */
+    public Landmarks hash(Peaks peaks, int bins) {
+        Landmarks landmarks = threadLandmarks.get();
+        hash(peaks, bins, landmarks);
+        return landmarks;
+    }
+
+    public void hash(Peaks peaks, int bins, Landmarks out) {
+        out.reset(peaks.framesPerSecond());
+        int count = peaks.count();
+        if (count == 0) {
+            return;
+        }
+
+        // Quantise frequencies into the 10 bits the hash has for them
+        int shift = Math.max(0, 32 - Integer.numberOfLeadingZeros(bins - 1) - Landmarks.FREQUENCY_BITS);
+        int framesPerWindow = Math.max(1, (int) Math.round(peaks.framesPerSecond()));
+        int maxAnchorsPerWindow = Math.max(1, maxHashesPerSecond / Math.max(1, fanOut));
+
+        Scratch s = scratch.get();
+        s.ensure(count);
+        boolean[] anchor = s.anchor;
+
+        // Density cap: choose the loudest anchors of every one-second window
+        for (int windowStart = 0; windowStart < count; ) {
+            int windowEnd = windowStart;
+            int windowLimit = peaks.frame(windowStart) - peaks.frame(windowStart) % framesPerWindow + framesPerWindow;
+            while (windowEnd < count && peaks.frame(windowEnd) < windowLimit) {
+                windowEnd++;
+            }
+            selectLoudest(peaks, windowStart, windowEnd, maxAnchorsPerWindow, s);
+            windowStart = windowEnd;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (!anchor[i]) {
+                continue;
+            }
+
+            int t1 = peaks.frame(i);
+            int f1 = peaks.bin(i);
+            int paired = 0;
+
+            for (int j = i + 1; j < count && paired < fanOut; j++) {
+                int dt = peaks.frame(j) - t1;
+                if (dt > maxDeltaFrames) {
+                    break;
+                }
+                if (dt < minDeltaFrames || Math.abs(peaks.bin(j) - f1) > maxDeltaBins) {
+                    continue;
+                }
+
+                int hash = Landmarks.hash(f1 >> shift, peaks.bin(j) >> shift, dt);
+                out.add(Landmarks.pack(hash, t1));
+                paired++;
+            }
+        }
+    }
+
+    /**
+     * Mark at most {@code limit} peaks of {@code [from, to)} as anchors, loudest first.
+     */
+    private static void selectLoudest(Peaks peaks, int from, int to, int limit, Scratch s) {
+        boolean[] anchor = s.anchor;
+        int size = to - from;
+
+        if (size <= limit) {
+            for (int i = from; i < to; i++) {
+                anchor[i] = true;
+            }
+            return;
+        }
+
+        // Insertion sort of the window's indices by magnitude - windows hold a few hundred peaks at most
+        int[] order = s.order;
+        for (int i = 0; i < size; i++) {
+            int index = from + i;
+            float magnitude = peaks.magnitude(index);
+            int k = i - 1;
+            while (k >= 0 && peaks.magnitude(order[k]) < magnitude) {
+                order[k + 1] = order[k];
+                k--;
+            }
+            order[k + 1] = index;
+            anchor[index] = false;
+        }
+        for (int i = 0; i < limit; i++) {
+            anchor[order[i]] = true;
+        }
+    }
+
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    private static final class Scratch {
+        boolean[] anchor = new boolean[0];
+        int[] order = new int[0];
+
+        void ensure(int count) {
+            if (anchor.length < count) {
+                anchor = new boolean[count];
+                order = new int[count];
+            }
+        }
+    }
+}
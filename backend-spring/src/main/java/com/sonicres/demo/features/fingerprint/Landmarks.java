@@ -0,0 +1,80 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Landmark hashes of one clip, each packed into a primitive {@code long}:
+ * the 32-bit hash in the high word and the anchor frame in the low word.
+ *
+ * Hash layout: {@code freq1 (10 bits) | freq2 (10 bits) | delta-frames (12 bits)}.
+ */
+public class Landmarks {
+
+    public static final int FREQUENCY_BITS = 10;
+    public static final int DELTA_BITS = 12;
+
+    private long[] values = new long[1024];
+    private int count;
+    private double framesPerSecond;
+
+    public static int hash(int frequency1, int frequency2, int deltaFrames) {
+        return (frequency1 & 0x3FF) << 22 | (frequency2 & 0x3FF) << 12 | (deltaFrames & 0xFFF);
+    }
+
+    public static long pack(int hash, int anchorFrame) {
+        return ((long) hash << 32) | (anchorFrame & 0xFFFFFFFFL);
+    }
+
+    public static int hashOf(long landmark) {
+        return (int) (landmark >>> 32);
+    }
+
+    public static int timeOf(long landmark) {
+        return (int) landmark;
+    }
+
+    /**
+     * Landmark hashes are not uniformly distributed, so spread them over 64 bits before hashing
+     * them into a table, filter or signature (murmur3 finalizer).
+     */
+    public static long mix(int hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    void reset(double framesPerSecond) {
+        this.count = 0;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    void add(long landmark) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count + (count >> 1));
+        }
+        values[count++] = landmark;
+    }
+
+    /**
+     * Backing array - only the first {@link #count()} values are valid.
+     */
+    public long[] values() {
+        return values;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public double framesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, count);
+    }
+}
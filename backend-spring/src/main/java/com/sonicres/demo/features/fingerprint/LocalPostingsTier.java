@@ -0,0 +1,91 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for {@link RedisPostingsTier}, for development and tests without a Redis
+ * server: stores the same {@link PostingsCodec} bytes, bounded in bytes with first-in-first-out
+ * eviction. Being in the same JVM it saves no memory over a bigger {@link PostingsCache}; its
+ * point is exercising the two-tier path. Writes and invalidations take the tier's lock, so the
+ * version check and the write are one step; reads don't.
+ */
+public class LocalPostingsTier implements PostingsTier {
+
+    private final long maxBytes;
+    private final ConcurrentMap<Integer, byte[]> entries = new ConcurrentHashMap<>();
+    private final Queue<Integer> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private long version;
+
+    public LocalPostingsTier(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public void getAll(int[] hashes, int count, long[][] found) {
+        for (int i = 0; i < count; i++) {
+            byte[] encoded = entries.get(hashes[i]);
+            if (encoded != null) {
+                found[i] = PostingsCodec.decode(encoded);
+            }
+        }
+    }
+
+    @Override
+    public synchronized long version() {
+        return version;
+    }
+
+    @Override
+    public synchronized boolean putAll(int[] hashes, long[][] postings, int count, long version) {
+        if (version != this.version) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (postings[i] == null) {
+                continue;
+            }
+            byte[] encoded = PostingsCodec.encode(postings[i]);
+            byte[] previous = entries.put(hashes[i], encoded);
+            bytes.addAndGet(encoded.length - (previous != null ? previous.length : 0));
+            if (previous == null) {
+                insertionOrder.add(hashes[i]);
+            }
+        }
+        while (bytes.get() > maxBytes) {
+            Integer oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            byte[] evicted = entries.remove(oldest);
+            if (evicted != null) {
+                bytes.addAndGet(-evicted.length);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void invalidate(int[] hashes, int count) {
+        version++;
+        for (int i = 0; i < count; i++) {
+            byte[] removed = entries.remove(hashes[i]);
+            if (removed != null) {
+                bytes.addAndGet(-removed.length);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,336 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static com.sonicres.demo.features.fingerprint.IndexFileFormat.*;
+
+/**
+ * Read-only index over a snapshot written by {@link FingerprintIndexWriter}, memory-mapped
+ * rather than loaded: opening costs a header check (plus a checksum pass when asked for) and
+ * reading the sparse directory, and the OS pages postings in as queries touch them. The mapping
+ * is shared through the page cache with every JVM on the host that maps the same file.
+ *
+ * A lookup binary-searches the directory for the hash's block of {@value IndexFileFormat#BLOCK_KEYS}
+ * keys, finds the hash among them, then skips over the block's earlier records to its own.
+ * {@link #filter()} rules most absent hashes out before any of that.
+ * Immutable, so any number of threads can look up concurrently.
+ */
+public final class MappedFingerprintIndex implements PostingsSource {
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int keyCount;
+    private final int trackCount;
+    private final long postingCount;
+    private final int postingsAt;
+    private final int keysAt;
+    private final int[] blockFirstHash;
+    private final int[] blockOffset;
+    private final List<TrackInfo> tracks;
+    private final HashFilter filter; // null in version 1 files
+
+    private MappedFingerprintIndex(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        this.keyCount = buffer.getInt(KEY_COUNT_AT);
+        this.trackCount = buffer.getInt(TRACK_COUNT_AT);
+        this.postingCount = buffer.getLong(POSTING_COUNT_AT);
+        this.postingsAt = (int) buffer.getLong(POSTINGS_AT);
+        this.keysAt = (int) buffer.getLong(KEYS_AT);
+
+        int directoryAt = (int) buffer.getLong(DIRECTORY_AT);
+        int blocks = (keyCount + BLOCK_KEYS - 1) / BLOCK_KEYS;
+        this.blockFirstHash = new int[blocks];
+        this.blockOffset = new int[blocks];
+        for (int b = 0; b < blocks; b++) {
+            int entry = directoryAt + b * DIRECTORY_ENTRY_BYTES;
+            blockFirstHash[b] = buffer.getInt(entry);
+            blockOffset[b] = (int) buffer.getLong(entry + Integer.BYTES);
+        }
+        this.tracks = readTracks(buffer, (int) buffer.getLong(TRACKS_AT), trackCount);
+        this.filter = buffer.getInt(VERSION_AT) >= FIRST_FILTER_VERSION
+                ? HashFilter.wrap(buffer.slice(filterAt(buffer), (int) (buffer.getLong(TRACKS_AT) - filterAt(buffer))))
+                : null;
+    }
+
+    /**
+     * Map a snapshot.
+     *
+     * @param verifyChecksums also check every section's CRC32C - one sequential pass over the file
+     * @throws IOException if the file is not a snapshot, has an unsupported version or is corrupt
+     */
+    public static MappedFingerprintIndex open(Path path, boolean verifyChecksums) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not an index snapshot (" + size + " bytes)");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt(MAGIC_AT) != MAGIC) {
+            throw new IOException(path + " is not an index snapshot");
+        }
+        int version = buffer.getInt(VERSION_AT);
+        if (version < 1 || version > VERSION) {
+            throw new IOException(path + " has index format version " + version +
+                    ", this build reads versions 1 to " + VERSION);
+        }
+        if (crc(buffer, 0, HEADER_CRC_AT) != buffer.getInt(HEADER_CRC_AT)) {
+            throw new IOException(path + " has a corrupt header");
+        }
+        if (buffer.getInt(HEADER_BYTES_AT) != HEADER_BYTES || buffer.getInt(BLOCK_KEYS_AT) != BLOCK_KEYS
+                || buffer.getLong(FILE_BYTES_AT) != buffer.capacity()) {
+            throw new IOException(path + " is truncated or has an unexpected layout");
+        }
+
+        if (verifyChecksums) {
+            long postingsAt = buffer.getLong(POSTINGS_AT);
+            long keysAt = buffer.getLong(KEYS_AT);
+            long directoryAt = buffer.getLong(DIRECTORY_AT);
+            long tracksAt = buffer.getLong(TRACKS_AT);
+            verify(path, "postings", buffer, postingsAt, keysAt, POSTINGS_CRC_AT);
+            verify(path, "keys", buffer, keysAt, directoryAt, KEYS_CRC_AT);
+            if (version >= FIRST_FILTER_VERSION) {
+                long filterAt = buffer.getLong(FILTER_AT);
+                verify(path, "directory", buffer, directoryAt, filterAt, DIRECTORY_CRC_AT);
+                verify(path, "filter", buffer, filterAt, tracksAt, FILTER_CRC_AT);
+            } else {
+                verify(path, "directory", buffer, directoryAt, tracksAt, DIRECTORY_CRC_AT);
+            }
+            verify(path, "tracks", buffer, tracksAt, buffer.capacity(), TRACKS_CRC_AT);
+        }
+        return new MappedFingerprintIndex(path, buffer);
+    }
+
+    @Override
+    public void lookup(int[] hashes, int count, PostingVisitor visitor) {
+        for (int i = 0; i < count; i++) {
+            if (!lookup(hashes[i], i, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the visitor asked to stop
+     */
+    public boolean lookup(int hash, int hashIndex, PostingVisitor visitor) {
+        int at = find(hash);
+        return at < 0 || visitRecord(at, hashIndex, visitor);
+    }
+
+    /**
+     * Number of postings stored for {@code hash}.
+     */
+    public int postingCount(int hash) {
+        int at = find(hash);
+        return at < 0 ? 0 : readCount(at);
+    }
+
+    /**
+     * @return absolute position of the hash's record, or -1
+     */
+    private int find(int hash) {
+        int low = 0;
+        int high = blockFirstHash.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blockFirstHash[mid] <= hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = high;
+        if (block < 0) {
+            return -1;
+        }
+
+        int first = block * BLOCK_KEYS;
+        int end = Math.min(keyCount, first + BLOCK_KEYS);
+        int at = postingsAt + blockOffset[block];
+        for (int k = first; k < end; k++) {
+            int key = buffer.getInt(keysAt + k * Integer.BYTES);
+            if (key == hash) {
+                return at;
+            }
+            if (key > hash) {
+                return -1;
+            }
+            at += recordBytes(buffer, at);
+        }
+        return -1;
+    }
+
+    private int readCount(int at) {
+        int count = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(at++);
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return count;
+    }
+
+    private boolean visitRecord(int at, int hashIndex, PostingVisitor visitor) {
+        int count = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(at++);
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        int trackBits = buffer.get(at) & 0xFF;
+        int offsetBits = buffer.get(at + 1) & 0xFF;
+        int data = at + 2;
+        long offsetsStart = (long) count * trackBits;
+
+        int track = 0;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int trackDelta = (int) readBits(buffer, data, (long) i * trackBits, trackBits);
+            int offsetField = (int) readBits(buffer, data, offsetsStart + (long) i * offsetBits, offsetBits);
+            track += trackDelta;
+            offset = i > 0 && trackDelta == 0 ? offset + offsetField : offsetField;
+            if (!visitor.visit(hashIndex, Postings.pack(track, offset))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The filter over this file's hashes, or null for a version 1 file.
+     */
+    public HashFilter filter() {
+        return filter;
+    }
+
+    /**
+     * Walks every hash in ascending order, e.g. to merge this snapshot into a new one.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    public final class Cursor {
+
+        private int key = -1;
+        private int at = postingsAt;
+        private int recordAt;
+
+        /**
+         * @return false once every hash has been visited
+         */
+        public boolean next() {
+            if (key >= 0) {
+                at += recordBytes(buffer, recordAt);
+            }
+            if (++key >= keyCount) {
+                return false;
+            }
+            recordAt = at;
+            return true;
+        }
+
+        public int hash() {
+            return buffer.getInt(keysAt + key * Integer.BYTES);
+        }
+
+        /**
+         * Visit the current hash's postings.
+         */
+        public void postings(PostingVisitor visitor) {
+            visitRecord(recordAt, 0, visitor);
+        }
+    }
+
+    /**
+     * The catalog entries stored with the snapshot.
+     */
+    public List<TrackInfo> tracks() {
+        return tracks;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    public long getPostingCount() {
+        return postingCount;
+    }
+
+    public long getFileBytes() {
+        return buffer.capacity();
+    }
+
+    public double getBytesPerPosting() {
+        return postingCount == 0 ? 0 : (double) getFileBytes() / postingCount;
+    }
+
+    private static int filterAt(ByteBuffer buffer) {
+        return (int) buffer.getLong(FILTER_AT);
+    }
+
+    private static List<TrackInfo> readTracks(ByteBuffer buffer, int at, int count) {
+        List<TrackInfo> tracks = new ArrayList<>(count);
+        int p = at + Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            int id = buffer.getInt(p);
+            int titleLength = buffer.getInt(p + 4);
+            String title = new String(bytes(buffer, p + 8, titleLength), StandardCharsets.UTF_8);
+            p += 8 + titleLength;
+            int artistLength = buffer.getInt(p);
+            String artist = new String(bytes(buffer, p + 4, artistLength), StandardCharsets.UTF_8);
+            p += 4 + artistLength;
+            tracks.add(new TrackInfo(id, title, artist));
+        }
+        return List.copyOf(tracks);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int at, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(at, bytes);
+        return bytes;
+    }
+
+    private static void verify(Path path, String section, ByteBuffer buffer, long from, long to, int crcAt)
+            throws IOException {
+        if (from < HEADER_BYTES || to < from || to > buffer.capacity()) {
+            throw new IOException(path + " has an invalid " + section + " section");
+        }
+        if (crc(buffer, (int) from, (int) (to - from)) != buffer.getInt(crcAt)) {
+            throw new IOException(path + " failed the " + section + " checksum");
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int at, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(at, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,349 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Offset-histogram matcher: every (query landmark, posting) pair with the same hash votes for
+ * {@code (trackId, trackOffset - queryOffset)}. A true match piles votes onto one delta while
+ * chance collisions scatter.
+ *
+ * Votes go into a primitive open-addressing counter that lives per thread and is cleared by
+ * walking only the slots used, so matching allocates nothing in steady state. A second table
+ * keeps each track's best delta so the leader and runner-up are known after every vote;
+ * the lookup stops once the leader is {@code earlyStopMargin} votes clear.
+ *
+ * Confidence of a candidate = saturation x share, where saturation = 1 - e^(-votes / saturationVotes)
+ * grows with evidence and share = votes / (sum of the reported candidates' votes) drops when
+ * other tracks are close.
+ */
+@Component
+public class OffsetMatcher {
+
+    private final int minVotes;
+    private final int earlyStopMargin;
+    private final int topK;
+    private final double saturationVotes;
+
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final ThreadLocal<Match> threadMatch = ThreadLocal.withInitial(Match::new);
+
+    public OffsetMatcher(@Value("${app.fingerprint.match.min-votes:5}") int minVotes,
+                         @Value("${app.fingerprint.match.early-stop-margin:40}") int earlyStopMargin,
+                         @Value("${app.fingerprint.match.top-k:3}") int topK,
+                         @Value("${app.fingerprint.match.saturation-votes:20}") double saturationVotes) {
+        this.minVotes = minVotes;
+        this.earlyStopMargin = earlyStopMargin;
+        this.topK = topK;
+        this.saturationVotes = saturationVotes;
+    }
+
+    /**
+     * Start matching {@code query}; feed the returned visitor to a {@link PostingsSource}.
+     * The instance is this thread's and is reset by the next call on the same thread.
+     */
+    public Match begin(QueryLandmarks query) {
+        return begin(query, null);
+    }
+
+    /**
+     * Like {@link #begin(QueryLandmarks)}, polling {@code cancelled} every
+     * {@value #CANCEL_CHECK_INTERVAL} postings and stopping the lookup once it returns true.
+     */
+    public Match begin(QueryLandmarks query, BooleanSupplier cancelled) {
+        Match match = threadMatch.get();
+        match.reset(query, cancelled);
+        return match;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public final class Match implements PostingVisitor {
+
+        private QueryLandmarks query;
+        private BooleanSupplier cancelCheck;
+        private final LongIntTable votes = new LongIntTable(1 << 12);
+        private final TrackTable tracks = new TrackTable(1 << 8);
+
+        private int leaderTrack;
+        private int leaderVotes;
+        private int runnerUpVotes;
+        private long postingsVisited;
+        private boolean stoppedEarly;
+        private boolean cancelled;
+
+        void reset(QueryLandmarks query, BooleanSupplier cancelCheck) {
+            this.query = query;
+            this.cancelCheck = cancelCheck;
+            votes.clear();
+            tracks.clear();
+            leaderTrack = 0;
+            leaderVotes = 0;
+            runnerUpVotes = 0;
+            postingsVisited = 0;
+            stoppedEarly = false;
+            cancelled = false;
+        }
+
+        @Override
+        public boolean visit(int hashIndex, long posting) {
+            if (cancelCheck != null && postingsVisited % CANCEL_CHECK_INTERVAL == 0 && cancelCheck.getAsBoolean()) {
+                cancelled = true;
+                return false;
+            }
+            postingsVisited++;
+            int trackId = Postings.trackIdOf(posting);
+            int trackOffset = Postings.offsetOf(posting);
+
+            for (int i = query.from(hashIndex), end = query.to(hashIndex); i < end; i++) {
+                int delta = trackOffset - query.time(i);
+                int count = votes.increment(Postings.pack(trackId, delta));
+                if (tracks.offer(trackId, count, delta)) {
+                    updateLeaders(trackId, count);
+                }
+            }
+
+            if (leaderVotes >= minVotes && leaderVotes - runnerUpVotes >= earlyStopMargin) {
+                stoppedEarly = true;
+                return false;
+            }
+            return true;
+        }
+
+        private void updateLeaders(int trackId, int best) {
+            if (trackId == leaderTrack) {
+                leaderVotes = best;
+            } else if (best > leaderVotes) {
+                runnerUpVotes = leaderVotes;
+                leaderTrack = trackId;
+                leaderVotes = best;
+            } else if (best > runnerUpVotes) {
+                runnerUpVotes = best;
+            }
+        }
+
+        /**
+         * Best {@code topK} tracks with at least {@code minVotes}, strongest first.
+         */
+        public List<TrackMatch> candidates() {
+            int k = Math.max(topK, 2); // the runner-up always counts towards the leader's share
+            int[] bestSlots = tracks.top(k);
+
+            long total = 0;
+            for (int slot : bestSlots) {
+                total += tracks.best[slot];
+            }
+
+            List<TrackMatch> result = new ArrayList<>(topK);
+            for (int i = 0; i < bestSlots.length && result.size() < topK; i++) {
+                int slot = bestSlots[i];
+                int votesForTrack = tracks.best[slot];
+                if (votesForTrack < minVotes) {
+                    break;
+                }
+                double saturation = 1 - Math.exp(-votesForTrack / saturationVotes);
+                double share = (double) votesForTrack / total;
+                result.add(new TrackMatch(tracks.keys[slot], votesForTrack, tracks.delta[slot], saturation * share));
+            }
+            return result;
+        }
+
+        public long getPostingsVisited() {
+            return postingsVisited;
+        }
+
+        public boolean isStoppedEarly() {
+            return stoppedEarly;
+        }
+
+        /**
+         * @return true if the lookup was abandoned because the cancel check fired
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Open-addressing long -> int counter; a count of 0 marks an empty slot.
+     */
+    static final class LongIntTable {
+        private long[] keys;
+        private int[] counts;
+        private int[] used;
+        private int size;
+
+        LongIntTable(int capacity) {
+            keys = new long[capacity];
+            counts = new int[capacity];
+            used = new int[capacity];
+        }
+
+        int increment(long key) {
+            if (size + 1 > keys.length * 0.6) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    return ++counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = 1;
+            used[size++] = slot;
+            return 1;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                counts[used[i]] = 0;
+            }
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int[] oldUsed = used;
+            int oldSize = size;
+
+            keys = new long[capacity];
+            counts = new int[capacity];
+            used = new int[capacity];
+            size = 0;
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldSize; i++) {
+                int from = oldUsed[i];
+                int slot = mix(oldKeys[from]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[from];
+                counts[slot] = oldCounts[from];
+                used[size++] = slot;
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Open-addressing trackId -> (best votes, delta at best); best of 0 marks an empty slot.
+     */
+    static final class TrackTable {
+        private int[] keys;
+        private int[] best;
+        private int[] delta;
+        private int[] used;
+        private int size;
+
+        TrackTable(int capacity) {
+            keys = new int[capacity];
+            best = new int[capacity];
+            delta = new int[capacity];
+            used = new int[capacity];
+        }
+
+        /**
+         * @return true if {@code votes} is a new best for the track
+         */
+        boolean offer(int trackId, int votes, int offset) {
+            if (size + 1 > keys.length * 0.6) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = mix(trackId) & mask;
+            while (best[slot] != 0) {
+                if (keys[slot] == trackId) {
+                    if (votes > best[slot]) {
+                        best[slot] = votes;
+                        delta[slot] = offset;
+                        return true;
+                    }
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = trackId;
+            best[slot] = votes;
+            delta[slot] = offset;
+            used[size++] = slot;
+            return true;
+        }
+
+        /**
+         * Slots of the {@code k} tracks with the most votes, strongest first.
+         */
+        int[] top(int k) {
+            int[] top = new int[Math.min(k, size)];
+            int filled = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = used[i];
+                int position = filled < top.length ? filled++ : top.length;
+                while (position > 0 && best[top[position - 1]] < best[slot]) {
+                    if (position < top.length) {
+                        top[position] = top[position - 1];
+                    }
+                    position--;
+                }
+                if (position < top.length) {
+                    top[position] = slot;
+                }
+            }
+            return top;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                best[used[i]] = 0;
+            }
+            size = 0;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldBest = best;
+            int[] oldDelta = delta;
+            int[] oldUsed = used;
+            int oldSize = size;
+
+            keys = new int[capacity];
+            best = new int[capacity];
+            delta = new int[capacity];
+            used = new int[capacity];
+            size = 0;
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldSize; i++) {
+                int from = oldUsed[i];
+                int slot = mix(oldKeys[from]) & mask;
+                while (best[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[from];
+                best[slot] = oldBest[from];
+                delta[slot] = oldDelta[from];
+                used[size++] = slot;
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
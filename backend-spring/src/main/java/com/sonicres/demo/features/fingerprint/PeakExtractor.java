@@ -0,0 +1,164 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks constellation peaks: points that are the maximum of their time-frequency neighbourhood
+ * and louder than {@code thresholdFactor} x the spectrogram's mean magnitude.
+ *
+ * The 2-D neighbourhood maximum is separable, so it is done as two sliding-max passes with
+ * monotonic deques - first along frequency within each frame, then along time with one ring
+ * deque per bin. Both passes are linear in frame count, and the time pass emits peaks in
+ * frame order so the hasher can consume them directly. All scratch arrays are per thread.
+ */
+@Component
+public class PeakExtractor {
+
+    private final int timeRadius;
+    private final int frequencyRadius;
+    private final float thresholdFactor;
+    private final double minFrequencyHz;
+    private final double maxFrequencyHz;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final ThreadLocal<Peaks> threadPeaks = ThreadLocal.withInitial(Peaks::new);
+
+    public PeakExtractor(@Value("${app.fingerprint.peaks.time-radius:10}") int timeRadius,
+                         @Value("${app.fingerprint.peaks.frequency-radius:15}") int frequencyRadius,
+                         @Value("${app.fingerprint.peaks.threshold-factor:2.0}") float thresholdFactor,
+                         @Value("${app.fingerprint.peaks.min-frequency-hz:100}") double minFrequencyHz,
+                         @Value("${app.fingerprint.peaks.max-frequency-hz:8000}") double maxFrequencyHz) {
+        this.timeRadius = timeRadius;
+        this.frequencyRadius = frequencyRadius;
+        this.thresholdFactor = thresholdFactor;
+        this.minFrequencyHz = minFrequencyHz;
+        this.maxFrequencyHz = maxFrequencyHz;
+    }
+
+    /**
+     * Extract into this thread's reusable {@link Peaks}; overwritten by the next call on the thread.
+     */
+    public Peaks extract(Spectrogram spectrogram) {
+        Peaks peaks = threadPeaks.get();
+        extract(spectrogram, peaks);
+        return peaks;
+    }
+
+    public void extract(Spectrogram spectrogram, Peaks out) {
+        int frames = spectrogram.frames();
+        int bins = spectrogram.bins();
+        out.reset(spectrogram.framesPerSecond());
+        if (frames == 0) {
+            return;
+        }
+
+        int minBin = Math.max(1, (int) Math.ceil(minFrequencyHz / spectrogram.binHz()));
+        int maxBin = Math.min(bins - 1, (int) Math.floor(maxFrequencyHz / spectrogram.binHz()));
+        if (minBin > maxBin) {
+            return;
+        }
+
+        float[] magnitudes = spectrogram.magnitudes();
+        Scratch s = scratch.get();
+        // A bin's deque can hold the full window plus the frame being pushed before the front is trimmed
+        int capacity = 2 * timeRadius + 2;
+        s.ensure(frames * bins, bins, capacity);
+        float[] rowMax = s.rowMax;
+
+        // Pass 1: sliding max along frequency inside each frame
+        double sum = 0;
+        int[] deque = s.rowDeque;
+        for (int f = 0; f < frames; f++) {
+            int base = f * bins;
+            int head = 0, tail = 0;
+            for (int b = 0, pushed = 0; b < bins; b++) {
+                for (; pushed < bins && pushed <= b + frequencyRadius; pushed++) {
+                    float v = magnitudes[base + pushed];
+                    while (tail > head && magnitudes[base + deque[tail - 1]] <= v) {
+                        tail--;
+                    }
+                    deque[tail++] = pushed;
+                }
+                while (deque[head] < b - frequencyRadius) {
+                    head++;
+                }
+                rowMax[base + b] = magnitudes[base + deque[head]];
+            }
+            for (int b = minBin; b <= maxBin; b++) {
+                sum += magnitudes[base + b];
+            }
+        }
+
+        float threshold = (float) (thresholdFactor * sum / ((long) frames * (maxBin - minBin + 1)));
+
+        // Pass 2: sliding max along time, one ring deque per bin, emitting peaks frame by frame
+        int[] ring = s.timeRing;
+        int[] heads = s.heads;
+        int[] sizes = s.sizes;
+        for (int b = 0; b < bins; b++) {
+            heads[b] = 0;
+            sizes[b] = 0;
+        }
+
+        for (int f = 0; f < frames + timeRadius; f++) {
+            if (f < frames) {
+                int base = f * bins;
+                for (int b = minBin; b <= maxBin; b++) {
+                    float v = rowMax[base + b];
+                    int ringBase = b * capacity;
+                    while (sizes[b] > 0) {
+                        int last = ring[ringBase + (heads[b] + sizes[b] - 1) % capacity];
+                        if (rowMax[last * bins + b] > v) {
+                            break;
+                        }
+                        sizes[b]--;
+                    }
+                    ring[ringBase + (heads[b] + sizes[b]) % capacity] = f;
+                    sizes[b]++;
+                }
+            }
+
+            int center = f - timeRadius;
+            if (center < 0) {
+                continue;
+            }
+
+            int base = center * bins;
+            for (int b = minBin; b <= maxBin; b++) {
+                int ringBase = b * capacity;
+                while (ring[ringBase + heads[b]] < center - timeRadius) {
+                    heads[b] = (heads[b] + 1) % capacity;
+                    sizes[b]--;
+                }
+                float neighbourhoodMax = rowMax[ring[ringBase + heads[b]] * bins + b];
+                float v = magnitudes[base + b];
+                if (v >= neighbourhoodMax && v > threshold) {
+                    out.add(center, b, v);
+                }
+            }
+        }
+    }
+
+    private static final class Scratch {
+        float[] rowMax = new float[0];
+        int[] rowDeque = new int[0];
+        int[] timeRing = new int[0];
+        int[] heads = new int[0];
+        int[] sizes = new int[0];
+
+        void ensure(int cells, int bins, int capacity) {
+            if (rowMax.length < cells) {
+                rowMax = new float[cells];
+            }
+            if (rowDeque.length < bins) {
+                rowDeque = new int[bins];
+                heads = new int[bins];
+                sizes = new int[bins];
+            }
+            if (timeRing.length < bins * capacity) {
+                timeRing = new int[bins * capacity];
+            }
+        }
+    }
+}
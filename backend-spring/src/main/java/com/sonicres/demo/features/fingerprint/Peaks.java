@@ -0,0 +1,54 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Constellation map: spectrogram peaks as parallel primitive arrays, ordered by frame then bin.
+ * Reused between calls on the same thread by {@link PeakExtractor}.
+ */
+public class Peaks {
+
+    private int count;
+    private int[] frames = new int[256];
+    private int[] bins = new int[256];
+    private float[] magnitudes = new float[256];
+    private double framesPerSecond;
+
+    void reset(double framesPerSecond) {
+        this.count = 0;
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    void add(int frame, int bin, float magnitude) {
+        if (count == frames.length) {
+            int grown = count + (count >> 1);
+            frames = Arrays.copyOf(frames, grown);
+            bins = Arrays.copyOf(bins, grown);
+            magnitudes = Arrays.copyOf(magnitudes, grown);
+        }
+        frames[count] = frame;
+        bins[count] = bin;
+        magnitudes[count] = magnitude;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int frame(int i) {
+        return frames[i];
+    }
+
+    public int bin(int i) {
+        return bins[i];
+    }
+
+    public float magnitude(int i) {
+        return magnitudes[i];
+    }
+
+    public double framesPerSecond() {
+        return framesPerSecond;
+    }
+}
@@ -0,0 +1,609 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * PostgreSQL-backed fingerprint store - the durable counterpart of {@link FingerprintIndex}.
+ *
+ * - Ingest writes postings with binary {@code COPY ... FROM STDIN}, streamed in fixed-size chunks,
+ *   rather than one INSERT per row.
+ * - A lookup sends every hash of a clip in one statement ({@code hash = ANY(?::integer[])}) and
+ *   streams the rows back through a cursor ({@code fetchSize}, autocommit off) so a popular
+ *   hash cannot pull millions of rows into memory at once.
+ * - {@code fingerprints} is hash-partitioned on {@code hash} with a covering
+ *   {@code (hash) INCLUDE (track_id, offset_frames)} index, so each hash is answered from one
+ *   partition's index pages (see {@code db/fingerprint-schema.sql}).
+ * - With {@link #loadFilter} called, a {@link HashFilter} over every stored hash drops the hashes the
+ *   table cannot hold before the query goes out, and skips the round trip when none are left. Other
+ *   nodes' ingests reach it through {@link #refreshFilter}: every ingest stamps its tracks with a new
+ *   {@code generation}, and a refresh adds the hashes of tracks whose generation it hasn't seen.
+ * - With a {@link PostingsCache}, lookups are answered from it first, then from the optional
+ *   {@link PostingsTier}, and only the hashes neither holds go to the database. Storing tracks
+ *   invalidates their hashes in both.
+ */
+public class PostgresFingerprintStore implements PostingsSource {
+
+    static final String SCHEMA_SCRIPT = "/db/fingerprint-schema.sql";
+
+    private static final String COPY_SQL =
+            "COPY fingerprints (hash, track_id, offset_frames) FROM STDIN (FORMAT binary)";
+    private static final String LOOKUP_SQL =
+            "SELECT hash, track_id, offset_frames FROM fingerprints WHERE hash = ANY(?::integer[])";
+    private static final String UPSERT_TRACKS_SQL =
+            "INSERT INTO tracks (id, title, artist, generation) " +
+            "SELECT id, title, artist, nextval('track_generation') " +
+            "FROM unnest(?::integer[], ?::text[], ?::text[]) AS t (id, title, artist) " +
+            "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, artist = EXCLUDED.artist, " +
+            "generation = EXCLUDED.generation RETURNING id, generation";
+    private static final String NEXT_TRACK_IDS_SQL = "SELECT nextval('track_id') FROM generate_series(1, ?)";
+    private static final String DELETE_POSTINGS_SQL = "DELETE FROM fingerprints WHERE track_id = ?";
+    private static final String HASHES_SQL = "SELECT hash FROM fingerprints";
+    private static final String TRACK_GENERATIONS_SQL = "SELECT id, title, artist, generation FROM tracks";
+    private static final String TRACK_POSTING_HASHES_SQL = "SELECT hash FROM fingerprints WHERE track_id = ANY(?::integer[])";
+    private static final int REFRESH_TRACK_BATCH = 1000;
+    private static final String TRACK_HASHES_SQL =
+            "SELECT DISTINCT hash FROM fingerprints WHERE track_id = ANY(?::integer[]) ORDER BY hash";
+    private static final int PREWARM_BATCH = 4096;
+
+    // PGCOPY binary header: signature, flags, header extension length
+    private static final byte[] COPY_HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0,
+            0, 0, 0, 0
+    };
+    private static final int COPY_ROW_BYTES = 2 + 3 * (4 + 4); // field count + 3 x (length, int4)
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final int fetchSize;
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder skippedLookups = new LongAdder();
+    private final CachedPostingsSource cached; // null when caching is off
+
+    private volatile HashFilter filter; // null unless loadFilter() was called
+    private final Map<Integer, Long> filteredGenerations = new HashMap<>(); // guarded by itself
+    private ScheduledExecutorService filterRefresher;
+
+    public PostgresFingerprintStore(DataSource dataSource, int fetchSize) {
+        this(dataSource, fetchSize, null, null);
+    }
+
+    /**
+     * @param cache null to query the database every time
+     * @param tier  second tier behind {@code cache}, or null
+     */
+    public PostgresFingerprintStore(DataSource dataSource, int fetchSize, PostingsCache cache, PostingsTier tier) {
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+        this.cached = cache != null ? new CachedPostingsSource(cache, tier, this::query) : null;
+    }
+
+    /**
+     * Create the tables if they do not exist yet. Statements are idempotent.
+     */
+    public void initializeSchema() throws IOException {
+        String script;
+        try (InputStream in = PostgresFingerprintStore.class.getResourceAsStream(SCHEMA_SCRIPT)) {
+            if (in == null) {
+                throw new IOException("Missing " + SCHEMA_SCRIPT + " on classpath");
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String sql : script.split(";")) {
+                String trimmed = stripComments(sql);
+                if (!trimmed.isEmpty()) {
+                    statement.execute(trimmed);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to initialize fingerprint schema", e);
+        }
+    }
+
+    /**
+     * Reserve {@code count} new track IDs from the {@code track_id} sequence. Every node sharing the
+     * database draws from it, so two nodes ingesting at once never store over each other's tracks.
+     */
+    public int[] allocateTrackIds(int count) throws IOException {
+        int[] ids = new int[count];
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(NEXT_TRACK_IDS_SQL)) {
+            statement.setInt(1, count);
+            try (ResultSet rows = statement.executeQuery()) {
+                for (int i = 0; i < count && rows.next(); i++) {
+                    ids[i] = Math.toIntExact(rows.getLong(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to allocate " + count + " track IDs", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Store one track and its landmarks, replacing any postings the track already had.
+     *
+     * @param landmarks packed {@link Landmarks} values (hash, anchor frame)
+     */
+    public void addTrack(TrackInfo track, long[] landmarks, int count) throws IOException {
+        addTracks(List.of(new TrackLandmarks(track, landmarks, count)));
+    }
+
+    /**
+     * Store a batch of tracks in one transaction and one COPY, replacing any postings they already had.
+     */
+    public void addTracks(List<TrackLandmarks> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                Map<Integer, Long> generations = upsertTracks(connection, batch);
+                try (PreparedStatement delete = connection.prepareStatement(DELETE_POSTINGS_SQL)) {
+                    for (TrackLandmarks t : batch) {
+                        delete.setInt(1, t.track().id());
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+
+                copyPostings(connection.unwrap(PGConnection.class), batch);
+                addToFilter(batch); // before the commit, so no lookup can see the rows and not the bits
+                connection.commit();
+                filtered(generations);
+                invalidate(batch);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to store fingerprints for " + batch.size() + " tracks", e);
+        }
+    }
+
+    /**
+     * Insert or update the batch's tracks, each with a new generation.
+     *
+     * @return the generation each track was given, by track ID
+     */
+    private static Map<Integer, Long> upsertTracks(Connection connection, List<TrackLandmarks> batch)
+            throws SQLException {
+        Integer[] ids = new Integer[batch.size()];
+        String[] titles = new String[batch.size()];
+        String[] artists = new String[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            TrackInfo track = batch.get(i).track();
+            ids[i] = track.id();
+            titles[i] = track.title();
+            artists[i] = track.artist();
+        }
+
+        Map<Integer, Long> generations = new HashMap<>();
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT_TRACKS_SQL)) {
+            upsert.setArray(1, connection.createArrayOf("integer", ids));
+            upsert.setArray(2, connection.createArrayOf("text", titles));
+            upsert.setArray(3, connection.createArrayOf("text", artists));
+            try (ResultSet rows = upsert.executeQuery()) {
+                while (rows.next()) {
+                    generations.put(rows.getInt(1), rows.getLong(2));
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static void copyPostings(PGConnection connection, List<TrackLandmarks> batch) throws SQLException {
+        CopyIn copy = connection.getCopyAPI().copyIn(COPY_SQL);
+        try {
+            ByteBuffer chunk = ByteBuffer.allocate(COPY_CHUNK_BYTES); // big-endian, as COPY expects
+            chunk.put(COPY_HEADER);
+
+            for (TrackLandmarks t : batch) {
+                int trackId = t.track().id();
+                long[] landmarks = t.landmarks();
+                for (int i = 0; i < t.count(); i++) {
+                    if (chunk.remaining() < COPY_ROW_BYTES) {
+                        copy.writeToCopy(chunk.array(), 0, chunk.position());
+                        chunk.clear();
+                    }
+                    chunk.putShort((short) 3);
+                    chunk.putInt(4).putInt(Landmarks.hashOf(landmarks[i]));
+                    chunk.putInt(4).putInt(trackId);
+                    chunk.putInt(4).putInt(Landmarks.timeOf(landmarks[i]));
+                }
+            }
+
+            if (chunk.remaining() < 2) {
+                copy.writeToCopy(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+            chunk.putShort((short) -1); // end of data
+            copy.writeToCopy(chunk.array(), 0, chunk.position());
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    @Override
+    public void lookup(int[] hashes, int count, PostingVisitor visitor) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (cached != null) {
+            cached.lookup(hashes, count, visitor);
+        } else {
+            query(hashes, count, visitor);
+        }
+    }
+
+    /**
+     * Drop the hashes of freshly stored tracks from both cache tiers.
+     */
+    private void invalidate(List<TrackLandmarks> batch) {
+        if (cached == null) {
+            return;
+        }
+        int[] hashes = batch.stream()
+                .flatMapToInt(t -> Arrays.stream(t.landmarks(), 0, t.count()).mapToInt(Landmarks::hashOf))
+                .distinct()
+                .toArray();
+        cached.invalidate(hashes, hashes.length);
+    }
+
+    /**
+     * Load every hash of {@code trackIds} through the cache, so the first recognitions of those
+     * tracks don't wait on the database.
+     *
+     * @return the number of hashes loaded
+     */
+    public int prewarm(List<Integer> trackIds) throws IOException {
+        if (cached == null || trackIds.isEmpty()) {
+            return 0;
+        }
+        int[] ids = trackIds.stream().mapToInt(Integer::intValue).toArray();
+        int[] hashes;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(TRACK_HASHES_SQL)) {
+            statement.setString(1, arrayLiteral(ids, ids.length));
+            List<Integer> loaded = new ArrayList<>();
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    loaded.add(rows.getInt(1));
+                }
+            }
+            hashes = loaded.stream().mapToInt(Integer::intValue).toArray();
+        } catch (SQLException e) {
+            throw new IOException("Failed to read the hashes of " + ids.length + " tracks", e);
+        }
+
+        for (int from = 0; from < hashes.length; from += PREWARM_BATCH) {
+            int n = Math.min(PREWARM_BATCH, hashes.length - from);
+            lookup(Arrays.copyOfRange(hashes, from, from + n), n, (hashIndex, posting) -> true);
+        }
+        return hashes.length;
+    }
+
+    /**
+     * The database half of a lookup: filter the hashes, then one query for the rest.
+     */
+    private void query(int[] hashes, int count, PostingVisitor visitor) throws IOException {
+        int[] probe = hashes;
+        int probeCount = count;
+        HashFilter f = filter;
+        if (f != null) {
+            probe = new int[count];
+            probeCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (f.mightContain(hashes[i])) {
+                    probe[probeCount++] = hashes[i];
+                }
+            }
+            filterHits.add(probeCount);
+            filterMisses.add(count - probeCount);
+            if (probeCount == 0) {
+                skippedLookups.increment();
+                return;
+            }
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false); // the driver only uses a cursor inside a transaction
+            try (PreparedStatement statement = connection.prepareStatement(LOOKUP_SQL)) {
+                statement.setFetchSize(fetchSize);
+                statement.setString(1, arrayLiteral(probe, probeCount));
+
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        int hashIndex = Arrays.binarySearch(hashes, 0, count, rows.getInt(1));
+                        long posting = Postings.pack(rows.getInt(2), rows.getInt(3));
+                        if (hashIndex >= 0 && !visitor.visit(hashIndex, posting)) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback(); // read-only; just end the transaction
+            }
+        } catch (SQLException e) {
+            throw new IOException("Fingerprint lookup failed", e);
+        }
+    }
+
+    /**
+     * Build a {@link HashFilter} over every stored hash in one streamed pass over {@code fingerprints}
+     * and check it before each lookup from then on. {@link #addTracks} keeps it current with this
+     * node's ingests before they commit; other writers' ingests need {@link #refreshFilter}.
+     *
+     * @return the number of postings read
+     */
+    public long loadFilter(long expectedHashes) throws IOException {
+        synchronized (filteredGenerations) {
+            // generations first: a track committed during the scan is picked up again by the next refresh
+            Map<Integer, TrackGeneration> generations = readGenerations();
+            HashFilter loaded = HashFilter.create(expectedHashes);
+            long postings = 0;
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.setFetchSize(fetchSize);
+                    try (ResultSet rows = statement.executeQuery(HASHES_SQL)) {
+                        while (rows.next()) {
+                            loaded.add(rows.getInt(1));
+                            postings++;
+                        }
+                    }
+                } finally {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                throw new IOException("Failed to load the fingerprint hash filter", e);
+            }
+            filteredGenerations.clear();
+            generations.forEach((id, t) -> filteredGenerations.put(id, t.generation()));
+            filter = loaded;
+            return postings;
+        }
+    }
+
+    /**
+     * Add the hashes of every track stored (or re-stored) since the filter last saw it, e.g. by another
+     * node. Until this runs, lookups skip those tracks' hashes.
+     *
+     * @return the tracks whose postings were added
+     */
+    public List<TrackInfo> refreshFilter() throws IOException {
+        synchronized (filteredGenerations) {
+            HashFilter f = filter;
+            if (f == null) {
+                return List.of();
+            }
+            List<TrackGeneration> changed = new ArrayList<>();
+            for (TrackGeneration t : readGenerations().values()) {
+                Long seen = filteredGenerations.get(t.track().id());
+                if (seen == null || seen != t.generation()) {
+                    changed.add(t);
+                }
+            }
+
+            for (int from = 0; from < changed.size(); from += REFRESH_TRACK_BATCH) {
+                List<TrackGeneration> chunk = changed.subList(from, Math.min(changed.size(), from + REFRESH_TRACK_BATCH));
+                int[] ids = chunk.stream().mapToInt(t -> t.track().id()).toArray();
+                try (Connection connection = dataSource.getConnection()) {
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement statement = connection.prepareStatement(TRACK_POSTING_HASHES_SQL)) {
+                        statement.setFetchSize(fetchSize);
+                        statement.setString(1, arrayLiteral(ids, ids.length));
+                        try (ResultSet rows = statement.executeQuery()) {
+                            while (rows.next()) {
+                                f.add(rows.getInt(1));
+                            }
+                        }
+                    } finally {
+                        connection.rollback();
+                    }
+                } catch (SQLException e) {
+                    throw new IOException("Failed to refresh the fingerprint hash filter", e);
+                }
+                // only once the hashes are in, so a failed refresh is retried
+                chunk.forEach(t -> filteredGenerations.put(t.track().id(), t.generation()));
+            }
+            return changed.stream().map(TrackGeneration::track).toList();
+        }
+    }
+
+    /**
+     * Run {@link #refreshFilter} every {@code seconds} in the background, handing the tracks it finds
+     * to {@code onStored} (e.g. to add them to the catalog).
+     */
+    public synchronized void refreshFilterEvery(long seconds, Consumer<TrackInfo> onStored) {
+        if (filterRefresher != null || seconds <= 0) {
+            return;
+        }
+        filterRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fingerprint-filter-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        filterRefresher.scheduleWithFixedDelay(() -> {
+            try {
+                refreshFilter().forEach(onStored);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️  Hash filter refresh failed, retrying in " + seconds + "s: " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    private record TrackGeneration(TrackInfo track, long generation) {
+    }
+
+    private Map<Integer, TrackGeneration> readGenerations() throws IOException {
+        Map<Integer, TrackGeneration> generations = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(TRACK_GENERATIONS_SQL)) {
+            while (rows.next()) {
+                TrackInfo track = new TrackInfo(rows.getInt(1), rows.getString(2), rows.getString(3));
+                generations.put(track.id(), new TrackGeneration(track, rows.getLong(4)));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read track generations", e);
+        }
+        return generations;
+    }
+
+    /**
+     * Tracks this node stored are in the filter already (see {@link #addToFilter}): note their
+     * generations so a refresh does not read their hashes back from the database and add them again.
+     */
+    private void filtered(Map<Integer, Long> generations) {
+        if (filter == null) {
+            return;
+        }
+        synchronized (filteredGenerations) {
+            // a refresh may already have seen a newer generation stored by another node
+            generations.forEach((id, generation) -> filteredGenerations.merge(id, generation, Math::max));
+        }
+    }
+
+    private void addToFilter(List<TrackLandmarks> batch) {
+        HashFilter f = filter;
+        if (f == null) {
+            return;
+        }
+        for (TrackLandmarks t : batch) {
+            for (int i = 0; i < t.count(); i++) {
+                f.add(Landmarks.hashOf(t.landmarks()[i]));
+            }
+        }
+    }
+
+    /**
+     * Hashes the filter let through to the query (they may be stored).
+     */
+    public long getFilterHits() {
+        return filterHits.sum();
+    }
+
+    /**
+     * Hashes the filter kept out of the query (definitely not stored).
+     */
+    public long getFilterMisses() {
+        return filterMisses.sum();
+    }
+
+    /**
+     * Lookups answered without a round trip because no hash got through the filter.
+     */
+    public long getSkippedLookups() {
+        return skippedLookups.sum();
+    }
+
+    /**
+     * Size of the filter, or 0 without one.
+     */
+    public long getFilterBytes() {
+        HashFilter f = filter;
+        return f != null ? f.getBytes() : 0;
+    }
+
+    public PostingsCache getCache() {
+        return cached != null ? cached.getCache() : null;
+    }
+
+    public PostingsTier getTier() {
+        return cached != null ? cached.getTier() : null;
+    }
+
+    public long getTierHits() {
+        return cached != null ? cached.getTierHits() : 0;
+    }
+
+    public long getTierMisses() {
+        return cached != null ? cached.getTierMisses() : 0;
+    }
+
+    public long getTierErrors() {
+        return cached != null ? cached.getTierErrors() : 0;
+    }
+
+    /**
+     * All stored tracks, for filling the {@link TrackCatalog} at startup.
+     */
+    public List<TrackInfo> loadTracks() throws IOException {
+        List<TrackInfo> tracks = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, title, artist FROM tracks")) {
+            while (rows.next()) {
+                tracks.add(new TrackInfo(rows.getInt(1), rows.getString(2), rows.getString(3)));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to load tracks", e);
+        }
+        return tracks;
+    }
+
+    /**
+     * {@code {h1,h2,...}} - the array goes over the wire as one text parameter, no boxing.
+     */
+    static String arrayLiteral(int[] hashes, int count) {
+        StringBuilder sb = new StringBuilder(count * 11 + 2).append('{');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(hashes[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String stripComments(String sql) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    public synchronized void close() {
+        if (filterRefresher != null) {
+            filterRefresher.shutdownNow();
+        }
+        if (cached != null) {
+            cached.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.sonicres.demo.features.fingerprint;
+
+@FunctionalInterface
+public interface PostingVisitor {
+
+    /**
+     * @param hashIndex index into the queried hash array
+     * @param posting packed {@link Postings} value
+     * @return false to stop the lookup early
+     */
+    boolean visit(int hashIndex, long posting);
+}
@@ -0,0 +1,23 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * A posting is one occurrence of a hash in the catalog, packed as
+ * {@code trackId (high 32 bits) | anchor frame offset into the track (low 32 bits)}.
+ */
+public final class Postings {
+
+    private Postings() {
+    }
+
+    public static long pack(int trackId, int offset) {
+        return ((long) trackId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int trackIdOf(long posting) {
+        return (int) (posting >>> 32);
+    }
+
+    public static int offsetOf(long posting) {
+        return (int) posting;
+    }
+}
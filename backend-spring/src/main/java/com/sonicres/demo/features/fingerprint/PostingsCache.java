@@ -0,0 +1,439 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process hash -> postings cache in front of {@link PostgresFingerprintStore}, bounded in bytes
+ * and evicting W-TinyLFU style:
+ * - every new entry goes into a small LRU window (1% of the budget), so a burst gets a chance to
+ *   prove itself
+ * - the main space is a segmented LRU: probation (20%) and protected (80%); a hit in probation promotes
+ * - an entry pushed out of the window only gets into the main space if a count-min sketch of recent
+ *   lookups says its hash is asked for more often than the entries it would evict, so a one-off run
+ *   of cold hashes can't flush the hot hashes of popular songs
+ *
+ * Postings are held as the {@code long[]} the store returned; an entry weighs its array plus a fixed
+ * overhead. Entries expire {@code expireAfterWriteSeconds} after loading, since an ingest on another
+ * node only invalidates the shared second tier. One lock guards the structure, taken once per batch.
+ */
+public class PostingsCache {
+
+    static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maxBytes;
+    private final long windowMax;
+    private final long protectedMax;
+    private final long expireAfterWriteNanos;
+    private final FrequencySketch sketch;
+    private final NodeMap nodes = new NodeMap();
+    private final Node[] queues = {Node.sentinel(), Node.sentinel(), Node.sentinel()};
+    private final long[] queueBytes = new long[3];
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public PostingsCache(long maxBytes, long expireAfterWriteSeconds) {
+        this.maxBytes = Math.max(ENTRY_OVERHEAD_BYTES * 16L, maxBytes);
+        this.windowMax = Math.max(ENTRY_OVERHEAD_BYTES, this.maxBytes / 100);
+        this.protectedMax = (this.maxBytes - windowMax) * 4 / 5;
+        this.expireAfterWriteNanos = expireAfterWriteSeconds > 0 ? expireAfterWriteSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        // size the sketch for the entries a budget of typical (~50 posting) entries holds
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, this.maxBytes / (ENTRY_OVERHEAD_BYTES + 50 * Long.BYTES)));
+    }
+
+    /**
+     * Stamp to pass to {@link #putAll}: a load that raced an {@link #invalidate} is not cached.
+     */
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Look up {@code hashes[0..count)}, storing each hit's postings in {@code found[i]}.
+     *
+     * @return the number of hits
+     */
+    public int getAll(int[] hashes, int count, long[][] found) {
+        int hit = 0;
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (int i = 0; i < count; i++) {
+                sketch.increment(hashes[i]);
+                Node node = nodes.get(hashes[i]);
+                if (node != null && now - node.loadedAt > expireAfterWriteNanos) {
+                    remove(node);
+                    node = null;
+                }
+                if (node != null) {
+                    onHit(node);
+                    found[i] = node.postings;
+                    hit++;
+                }
+            }
+        }
+        hits.add(hit);
+        misses.add(count - hit);
+        return hit;
+    }
+
+    /**
+     * Cache the postings loaded for {@code hashes[0..count)}; null entries are skipped.
+     *
+     * @param epoch {@link #epoch()} read before the load started
+     */
+    public void putAll(int[] hashes, long[][] postings, int count, long epoch) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (epoch != this.epoch) {
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                if (postings[i] == null) {
+                    continue;
+                }
+                long weight = weigh(postings[i]);
+                Node existing = nodes.get(hashes[i]);
+                if (existing != null) {
+                    remove(existing);
+                }
+                if (weight > maxBytes - windowMax) {
+                    rejections.increment();
+                    continue;
+                }
+                Node node = new Node(hashes[i], postings[i], weight, now);
+                nodes.put(node);
+                link(WINDOW, node);
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Drop {@code hashes[0..count)}, e.g. because tracks with those hashes were just stored.
+     */
+    public synchronized void invalidate(int[] hashes, int count) {
+        epoch++;
+        for (int i = 0; i < count; i++) {
+            Node node = nodes.get(hashes[i]);
+            if (node != null) {
+                remove(node);
+            }
+        }
+    }
+
+    /**
+     * Record how long one batch of misses took to load from the slower tiers.
+     */
+    public void recordLoad(long nanos) {
+        loads.increment();
+        loadNanos.add(nanos);
+    }
+
+    private void onHit(Node node) {
+        if (node.queue == PROBATION) {
+            unlink(node);
+            link(PROTECTED, node);
+            // demote the protected space's least recent entries to make room
+            while (queueBytes[PROTECTED] > protectedMax) {
+                Node demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                link(PROBATION, demoted);
+            }
+        } else {
+            unlink(node);
+            link(node.queue, node);
+        }
+    }
+
+    /**
+     * Move entries the window can't hold into the main space, each one admitted only if the sketch
+     * ranks it above every entry it would push out.
+     */
+    private void evict() {
+        long mainMax = maxBytes - windowMax;
+        while (queueBytes[WINDOW] > windowMax) {
+            Node candidate = queues[WINDOW].next;
+            unlink(candidate);
+
+            long needed = queueBytes[PROBATION] + queueBytes[PROTECTED] + candidate.weight - mainMax;
+            int candidateFrequency = sketch.frequency(candidate.hash);
+            boolean admit = true;
+            long freed = 0;
+            for (Node victim = firstVictim(); freed < needed; victim = nextVictim(victim)) {
+                if (victim == null || sketch.frequency(victim.hash) >= candidateFrequency) {
+                    admit = false;
+                    break;
+                }
+                freed += victim.weight;
+            }
+
+            if (!admit) {
+                nodes.remove(candidate.hash);
+                rejections.increment();
+                continue;
+            }
+            while (needed > 0) {
+                Node victim = firstVictim();
+                needed -= victim.weight;
+                remove(victim);
+                evictions.increment();
+            }
+            link(PROBATION, candidate);
+        }
+    }
+
+    private Node firstVictim() {
+        Node probation = queues[PROBATION].next;
+        if (probation != queues[PROBATION]) {
+            return probation;
+        }
+        Node protectedNode = queues[PROTECTED].next;
+        return protectedNode != queues[PROTECTED] ? protectedNode : null;
+    }
+
+    private Node nextVictim(Node victim) {
+        Node next = victim.next;
+        if (next == queues[PROBATION]) {
+            next = queues[PROTECTED].next;
+        }
+        return next == queues[PROTECTED] ? null : next;
+    }
+
+    private void link(int queue, Node node) {
+        Node sentinel = queues[queue];
+        node.queue = queue;
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        queueBytes[queue] += node.weight;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        queueBytes[node.queue] -= node.weight;
+    }
+
+    private void remove(Node node) {
+        unlink(node);
+        nodes.remove(node.hash);
+    }
+
+    static long weigh(long[] postings) {
+        return ENTRY_OVERHEAD_BYTES + (long) postings.length * Long.BYTES;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Entries dropped from the main space to admit a more frequently asked-for one.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Entries that lost the admission duel (or were too large) and were dropped instead.
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getLoadNanos() {
+        return loadNanos.sum();
+    }
+
+    public synchronized long getBytes() {
+        return queueBytes[WINDOW] + queueBytes[PROBATION] + queueBytes[PROTECTED];
+    }
+
+    public synchronized int getEntryCount() {
+        return nodes.size;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private static final class Node {
+        final int hash;
+        final long[] postings;
+        final long weight;
+        final long loadedAt;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(int hash, long[] postings, long weight, long loadedAt) {
+            this.hash = hash;
+            this.postings = postings;
+            this.weight = weight;
+            this.loadedAt = loadedAt;
+        }
+
+        static Node sentinel() {
+            Node sentinel = new Node(0, null, 0, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+    }
+
+    /**
+     * Open-addressing int -> Node map (linear probing, backward-shift deletion), so lookups don't box.
+     */
+    private static final class NodeMap {
+        int[] keys = new int[1 << 10];
+        Node[] values = new Node[1 << 10];
+        int size;
+
+        Node get(int hash) {
+            int mask = keys.length - 1;
+            for (int slot = slot(hash, mask); values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == hash) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        void put(Node node) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(node.hash, mask);
+            while (values[slot] != null && keys[slot] != node.hash) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                size++;
+            }
+            keys[slot] = node.hash;
+            values[slot] = node;
+        }
+
+        void remove(int hash) {
+            int mask = keys.length - 1;
+            int slot = slot(hash, mask);
+            while (values[slot] != null && keys[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                return;
+            }
+            size--;
+            // shift later entries of the probe run back so lookups never stop at the hole
+            for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = slot(keys[next], mask);
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    slot = next;
+                }
+            }
+            values[slot] = null;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            Node[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Node[oldKeys.length * 2];
+            size = 0;
+            for (Node node : oldValues) {
+                if (node != null) {
+                    put(node);
+                }
+            }
+        }
+
+        private static int slot(int hash, int mask) {
+            return (int) Landmarks.mix(hash) & mask;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (four rows), halved every {@code 10 x width} increments so
+     * it tracks recent popularity rather than all-time counts.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        private final long[] table;
+        private final int counterMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int counters = Integer.highestOneBit(Math.max(1024, expectedEntries) - 1) << 1;
+            this.table = new long[counters / 16];
+            this.counterMask = counters - 1;
+            this.sampleSize = 10 * counters;
+        }
+
+        int frequency(int hash) {
+            long h = Landmarks.mix(hash);
+            int min = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int counter = counterOf(h, row);
+                min = Math.min(min, (int) (table[counter >>> 4] >>> ((counter & 15) << 2)) & 15);
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            long h = Landmarks.mix(hash);
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                int counter = counterOf(h, row);
+                int shift = (counter & 15) << 2;
+                if (((table[counter >>> 4] >>> shift) & 15) != 15) {
+                    table[counter >>> 4] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int counterOf(long h, int row) {
+            long k = (h + SEEDS[row]) * SEEDS[row];
+            return (int) (k ^ (k >>> 32)) & counterMask;
+        }
+    }
+}
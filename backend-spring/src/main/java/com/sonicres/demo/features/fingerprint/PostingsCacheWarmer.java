@@ -0,0 +1,99 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the postings of the top tracks of a chart into the postings cache before the app starts
+ * serving, so the songs most people will record don't start cold.
+ *
+ * The chart ({@code app.fingerprint.cache.prewarm-file}) lists one track per line, most popular
+ * first, as a catalog track ID or {@code Artist - Title}; blank lines and {@code #} comments are
+ * skipped, and the first {@code app.fingerprint.cache.prewarm-top} tracks found in the catalog are loaded.
+ */
+@Component
+public class PostingsCacheWarmer implements ApplicationRunner {
+
+    private final ObjectProvider<PostgresFingerprintStore> store;
+    private final TrackCatalog catalog;
+    private final String chartFile;
+    private final int top;
+
+    public PostingsCacheWarmer(ObjectProvider<PostgresFingerprintStore> store,
+                               TrackCatalog catalog,
+                               @Value("${app.fingerprint.cache.prewarm-file:}") String chartFile,
+                               @Value("${app.fingerprint.cache.prewarm-top:100}") int top) {
+        this.store = store;
+        this.catalog = catalog;
+        this.chartFile = chartFile;
+        this.top = top;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        PostgresFingerprintStore postgres = store.getIfAvailable();
+        if (chartFile.isBlank() || top <= 0 || postgres == null || postgres.getCache() == null) {
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<Integer> trackIds = chartTracks(Files.readAllLines(Path.of(chartFile)));
+            int hashes = postgres.prewarm(trackIds);
+            PostingsCache cache = postgres.getCache();
+            System.out.println("🔥 Prewarmed " + hashes + " hashes of " + trackIds.size() + " chart tracks: " +
+                    cache.getBytes() / 1024 + " KB cached in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            // a cold cache only costs latency, so keep starting up
+            System.err.println("⚠️  Postings cache prewarm from " + chartFile + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The catalog IDs of the first {@code top} chart lines that name a known track.
+     */
+    List<Integer> chartTracks(List<String> lines) {
+        List<Integer> trackIds = new ArrayList<>();
+        for (String line : lines) {
+            if (trackIds.size() == top) {
+                break;
+            }
+            String entry = line.strip();
+            if (entry.isEmpty() || entry.startsWith("#")) {
+                continue;
+            }
+
+            TrackInfo track = resolve(entry);
+            if (track == null) {
+                System.err.println("⚠️  Chart entry not in catalog: " + entry);
+            } else if (!trackIds.contains(track.id())) {
+                trackIds.add(track.id());
+            }
+        }
+        return trackIds;
+    }
+
+    private TrackInfo resolve(String entry) {
+        if (entry.chars().allMatch(Character::isDigit)) {
+            try {
+                return catalog.get(Integer.parseInt(entry));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        int dash = entry.indexOf(" - ");
+        if (dash < 0) {
+            return null;
+        }
+        return catalog.find(entry.substring(0, dash).strip(), entry.substring(dash + 3).strip());
+    }
+}
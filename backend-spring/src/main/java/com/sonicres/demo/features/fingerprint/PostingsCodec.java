@@ -0,0 +1,72 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact byte form of a postings array for tiers outside the JVM: a varint count, then each
+ * posting as a zigzag varint delta from the previous one. Postings of one track sit next to each
+ * other, so most deltas are a few bytes.
+ */
+final class PostingsCodec {
+
+    private PostingsCodec() {
+    }
+
+    static byte[] encode(long[] postings) {
+        ByteBuffer out = ByteBuffer.allocate(5 + postings.length * 10);
+        putVarint(out, postings.length);
+        long previous = 0;
+        for (long posting : postings) {
+            long delta = posting - previous;
+            putVarint(out, (delta << 1) ^ (delta >> 63));
+            previous = posting;
+        }
+        byte[] bytes = new byte[out.position()];
+        out.flip().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code bytes} is not an encoded postings array
+     */
+    static long[] decode(byte[] bytes) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            long count = getVarint(in);
+            if (count < 0 || count > bytes.length) {
+                throw new IllegalArgumentException("Bad postings count " + count);
+            }
+            long[] postings = new long[(int) count];
+            long previous = 0;
+            for (int i = 0; i < postings.length; i++) {
+                long zigzag = getVarint(in);
+                previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                postings[i] = previous;
+            }
+            return postings;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated postings", e);
+        }
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
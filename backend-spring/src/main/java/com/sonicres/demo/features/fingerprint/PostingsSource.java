@@ -0,0 +1,16 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.io.IOException;
+
+/**
+ * Anything that can resolve landmark hashes to catalog postings (in-memory index, database, ...).
+ */
+public interface PostingsSource {
+
+    /**
+     * Visit the postings of {@code hashes[0..count)}. The hashes are sorted ascending and unique;
+     * the visitor gets the index of the hash each posting belongs to. Order across hashes is
+     * implementation-defined.
+     */
+    void lookup(int[] hashes, int count, PostingVisitor visitor) throws IOException;
+}
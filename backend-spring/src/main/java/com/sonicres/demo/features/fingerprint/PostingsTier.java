@@ -0,0 +1,48 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Optional second tier behind {@link PostingsCache}: bigger and slower than the in-process cache
+ * (another process, possibly shared by every node), so it is always asked in batches. A tier that
+ * fails only costs the caller a trip to PostgreSQL.
+ *
+ * Every {@link #invalidate} bumps the tier's version. A loader reads {@link #version()} before it
+ * queries PostgreSQL and passes it to {@link #putAll}, which writes nothing if an invalidation has
+ * happened since - otherwise postings read just before an ingest committed could be written back
+ * after its invalidation, and every node would serve them until they expire.
+ */
+public interface PostingsTier extends Closeable {
+
+    /**
+     * Fill {@code found[i]} for each of {@code hashes[0..count)} the tier holds; leave the rest null.
+     */
+    void getAll(int[] hashes, int count, long[][] found) throws IOException;
+
+    /**
+     * The current invalidation version, to pass to {@link #putAll}.
+     */
+    long version() throws IOException;
+
+    /**
+     * Store the postings of {@code hashes[0..count)}, unless the version is no longer {@code version}.
+     *
+     * @return false if nothing was written because of an invalidation since {@code version} was read
+     */
+    boolean putAll(int[] hashes, long[][] postings, int count, long version) throws IOException;
+
+    /**
+     * Drop {@code hashes[0..count)} and bump the version, atomically with respect to {@link #putAll}.
+     */
+    void invalidate(int[] hashes, int count) throws IOException;
+
+    /**
+     * Short name for logs and metrics, e.g. "redis".
+     */
+    String name();
+
+    @Override
+    default void close() {
+    }
+}
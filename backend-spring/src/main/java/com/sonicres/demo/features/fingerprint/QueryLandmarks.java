@@ -0,0 +1,80 @@
+package com.sonicres.demo.features.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * A query clip's landmarks grouped by hash: sorted unique hashes for the {@link PostingsSource},
+ * and for each hash the anchor times it occurred at in the query.
+ */
+public class QueryLandmarks {
+
+    private long[] sorted = new long[0];
+    private int landmarkCount;
+    private int[] hashes = new int[0];
+    private int[] starts = new int[1];
+    private int hashCount;
+
+    /**
+     * Rebuild from the given landmarks, reusing this instance's arrays.
+     */
+    public QueryLandmarks reset(Landmarks landmarks) {
+        return reset(landmarks.values(), landmarks.count());
+    }
+
+    public QueryLandmarks reset(long[] landmarks, int count) {
+        if (sorted.length < count) {
+            sorted = new long[count];
+            hashes = new int[count];
+            starts = new int[count + 1];
+        }
+        System.arraycopy(landmarks, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count); // hash is the high word, so this groups by hash
+        landmarkCount = count;
+
+        hashCount = 0;
+        for (int i = 0; i < count; i++) {
+            int hash = Landmarks.hashOf(sorted[i]);
+            if (hashCount == 0 || hashes[hashCount - 1] != hash) {
+                hashes[hashCount] = hash;
+                starts[hashCount] = i;
+                hashCount++;
+            }
+        }
+        starts[hashCount] = count;
+        return this;
+    }
+
+    public int[] hashes() {
+        return hashes;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public int landmarkCount() {
+        return landmarkCount;
+    }
+
+    /**
+     * Landmarks of {@code hashes()[hashIndex]} are {@code [from(hashIndex), to(hashIndex))}.
+     */
+    public int from(int hashIndex) {
+        return starts[hashIndex];
+    }
+
+    public int to(int hashIndex) {
+        return starts[hashIndex + 1];
+    }
+
+    public int time(int landmarkIndex) {
+        return Landmarks.timeOf(sorted[landmarkIndex]);
+    }
+
+    /**
+     * Index of {@code hash} in {@link #hashes()}, or a negative value if absent.
+     */
+    public int indexOf(int hash) {
+        return Arrays.binarySearch(hashes, 0, hashCount, hash);
+    }
+}
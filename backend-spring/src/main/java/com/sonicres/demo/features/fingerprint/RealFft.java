@@ -0,0 +1,127 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * In-place radix-2 FFT of a real signal, computed as an N/2-point complex FFT plus a split step.
+ *
+ * Twiddle factors and the bit-reversal permutation are computed once per size; an instance is
+ * immutable and can be shared between threads. The caller owns the work array.
+ */
+public class RealFft {
+
+    private final int size;       // N, real input length
+    private final int half;       // M = N/2, complex FFT length
+    private final float[] cos;    // cos(2*pi*j/M), j < M/2 - complex FFT twiddles
+    private final float[] sin;
+    private final float[] splitCos; // cos(2*pi*k/N), k < M - real split twiddles
+    private final float[] splitSin;
+    private final int[] bitReverse;
+
+    public RealFft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4, got " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+
+        this.cos = new float[half / 2];
+        this.sin = new float[half / 2];
+        for (int j = 0; j < half / 2; j++) {
+            double angle = 2 * Math.PI * j / half;
+            cos[j] = (float) Math.cos(angle);
+            sin[j] = (float) Math.sin(angle);
+        }
+
+        this.splitCos = new float[half];
+        this.splitSin = new float[half];
+        for (int k = 0; k < half; k++) {
+            double angle = 2 * Math.PI * k / size;
+            splitCos[k] = (float) Math.cos(angle);
+            splitSin[k] = (float) Math.sin(angle);
+        }
+
+        this.bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of magnitude bins produced (DC up to, not including, Nyquist).
+     */
+    public int bins() {
+        return half;
+    }
+
+    /**
+     * Transform {@code data[0..N)} in place and write |X[k]| for k in [0, N/2) to
+     * {@code magnitudes[offset..offset + N/2)}. {@code data} is clobbered.
+     */
+    public void magnitudes(float[] data, float[] magnitudes, int offset) {
+        // Even samples are the real parts, odd samples the imaginary parts of an M-point signal
+        complexFft(data);
+
+        for (int k = 0; k < half; k++) {
+            int j = (half - k) & (half - 1);
+            float zr = data[2 * k];
+            float zi = data[2 * k + 1];
+            float cr = data[2 * j];
+            float ci = -data[2 * j + 1];
+
+            // Even/odd spectra of the original real sequence
+            float er = 0.5f * (zr + cr);
+            float ei = 0.5f * (zi + ci);
+            float or = 0.5f * (zi - ci);
+            float oi = -0.5f * (zr - cr);
+
+            // X[k] = E[k] + e^(-2*pi*i*k/N) * O[k]
+            float wr = splitCos[k];
+            float wi = -splitSin[k];
+            float xr = er + wr * or - wi * oi;
+            float xi = ei + wr * oi + wi * or;
+
+            magnitudes[offset + k] = (float) Math.sqrt(xr * xr + xi * xi);
+        }
+    }
+
+    private void complexFft(float[] data) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float tr = data[2 * i];
+                float ti = data[2 * i + 1];
+                data[2 * i] = data[2 * j];
+                data[2 * i + 1] = data[2 * j + 1];
+                data[2 * j] = tr;
+                data[2 * j + 1] = ti;
+            }
+        }
+
+        for (int length = 2; length <= half; length <<= 1) {
+            int halfLength = length >> 1;
+            int stride = half / length;
+
+            for (int blockStart = 0; blockStart < half; blockStart += length) {
+                for (int m = 0; m < halfLength; m++) {
+                    float wr = cos[m * stride];
+                    float wi = -sin[m * stride];
+
+                    int a = 2 * (blockStart + m);
+                    int b = 2 * (blockStart + m + halfLength);
+
+                    float br = data[b] * wr - data[b + 1] * wi;
+                    float bi = data[b] * wi + data[b + 1] * wr;
+
+                    data[b] = data[a] - br;
+                    data[b + 1] = data[a + 1] - bi;
+                    data[a] += br;
+                    data[a + 1] += bi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.sonicres.demo.features.fingerprint;
+
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Postings tier in Redis, shared by every node: one key per hash ({@code sonic:postings:<hash>})
+ * holding {@link PostingsCodec} bytes with a TTL. Reads are one {@code MGET} per batch; writes are
+ * one script that checks the version key ({@code sonic:postings:version}) and {@code SETEX}es each
+ * hash, and an invalidation is one script that bumps the version and deletes the keys, so Redis runs
+ * them one after the other and a stale load can never land after an invalidation.
+ */
+public class RedisPostingsTier implements PostingsTier {
+
+    private static final String KEY_PREFIX = "sonic:postings:";
+    private static final int INVALIDATE_BATCH = 4096;
+    private static final long RECONNECT_INTERVAL_MILLIS = 5000;
+    private static final byte[] VERSION_KEY = "sonic:postings:version".getBytes(StandardCharsets.US_ASCII);
+
+    // KEYS = version, hash keys...; ARGV = expected version, ttl, encoded postings...
+    private static final String PUT_SCRIPT = """
+            if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then return 0 end
+            for i = 2, #KEYS do redis.call('SETEX', KEYS[i], ARGV[2], ARGV[i + 1]) end
+            return 1""";
+    // KEYS = version, hash keys...
+    private static final String INVALIDATE_SCRIPT = """
+            redis.call('INCR', KEYS[1])
+            if #KEYS > 1 then redis.call('DEL', unpack(KEYS, 2)) end
+            return 1""";
+
+    private final RedisClient client;
+    private final long ttlSeconds;
+    private StatefulRedisConnection<byte[], byte[]> connection; // guarded by this; null until connected
+    private long nextConnectAttempt;
+
+    public RedisPostingsTier(String host, int port, long ttlSeconds, Duration timeout) {
+        RedisURI uri = RedisURI.builder().withHost(host).withPort(port).withTimeout(timeout).build();
+        this.client = RedisClient.create(uri);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Connect on first use rather than at startup, so the app starts (on PostgreSQL alone) while Redis
+     * is down. After a failed attempt calls fail fast for {@value #RECONNECT_INTERVAL_MILLIS} ms instead
+     * of each waiting out a connect timeout; once connected, Lettuce reconnects by itself.
+     */
+    private synchronized StatefulRedisConnection<byte[], byte[]> connection() throws IOException {
+        if (connection != null) {
+            return connection;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextConnectAttempt) {
+            throw new IOException("Redis unavailable, next connection attempt in " + (nextConnectAttempt - now) + " ms");
+        }
+        try {
+            connection = client.connect(ByteArrayCodec.INSTANCE);
+            return connection;
+        } catch (RedisException e) {
+            nextConnectAttempt = now + RECONNECT_INTERVAL_MILLIS;
+            throw new IOException("Redis connection failed", e);
+        }
+    }
+
+    @Override
+    public void getAll(int[] hashes, int count, long[][] found) throws IOException {
+        try {
+            List<KeyValue<byte[], byte[]>> values = connection().sync().mget(keys(hashes, count));
+            for (int i = 0; i < count; i++) {
+                KeyValue<byte[], byte[]> value = values.get(i);
+                if (value.hasValue()) {
+                    found[i] = PostingsCodec.decode(value.getValue());
+                }
+            }
+        } catch (RedisException | IllegalArgumentException e) {
+            throw new IOException("Redis postings read failed", e);
+        }
+    }
+
+    @Override
+    public long version() throws IOException {
+        try {
+            byte[] version = connection().sync().get(VERSION_KEY);
+            return version != null ? Long.parseLong(new String(version, StandardCharsets.US_ASCII)) : 0;
+        } catch (RedisException | NumberFormatException e) {
+            throw new IOException("Redis postings version read failed", e);
+        }
+    }
+
+    @Override
+    public boolean putAll(int[] hashes, long[][] postings, int count, long version) throws IOException {
+        List<byte[]> keys = new ArrayList<>(count + 1);
+        List<byte[]> values = new ArrayList<>(count + 2);
+        keys.add(VERSION_KEY);
+        values.add(ascii(version));
+        values.add(ascii(ttlSeconds));
+        for (int i = 0; i < count; i++) {
+            if (postings[i] != null) {
+                keys.add(key(hashes[i]));
+                values.add(PostingsCodec.encode(postings[i]));
+            }
+        }
+        try {
+            Long written = connection().sync().eval(PUT_SCRIPT, ScriptOutputType.INTEGER,
+                    keys.toArray(new byte[0][]), values.toArray(new byte[0][]));
+            return written != null && written == 1;
+        } catch (RedisException e) {
+            throw new IOException("Redis postings write failed", e);
+        }
+    }
+
+    @Override
+    public void invalidate(int[] hashes, int count) throws IOException {
+        try {
+            // Lua can only unpack so many keys at once; every chunk bumps the version, which is enough
+            for (int from = 0; from < count; from += INVALIDATE_BATCH) {
+                int n = Math.min(INVALIDATE_BATCH, count - from);
+                byte[][] keys = new byte[n + 1][];
+                keys[0] = VERSION_KEY;
+                for (int i = 0; i < n; i++) {
+                    keys[i + 1] = key(hashes[from + i]);
+                }
+                connection().sync().eval(INVALIDATE_SCRIPT, ScriptOutputType.INTEGER, keys);
+            }
+        } catch (RedisException e) {
+            throw new IOException("Redis postings invalidation failed", e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        client.shutdown();
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] keys(int[] hashes, int count) {
+        byte[][] keys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(hashes[i]);
+        }
+        return keys;
+    }
+
+    private static byte[] key(int hash) {
+        return (KEY_PREFIX + hash).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,65 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * Magnitude spectrogram stored as one flat row-major array: {@code magnitudes[frame * bins + bin]}.
+ * Instances are reusable - {@link SpectrogramEngine} only grows the array when a longer clip arrives.
+ */
+public class Spectrogram {
+
+    private float[] magnitudes = new float[0];
+    private int frames;
+    private int bins;
+    private int hopSize;
+    private int sampleRate;
+
+    void reset(int frames, int bins, int hopSize, int sampleRate) {
+        int required = frames * bins;
+        if (magnitudes.length < required) {
+            magnitudes = new float[Math.max(required, magnitudes.length + (magnitudes.length >> 1))];
+        }
+        this.frames = frames;
+        this.bins = bins;
+        this.hopSize = hopSize;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Backing array - only the first {@code frames() * bins()} values are valid.
+     */
+    public float[] magnitudes() {
+        return magnitudes;
+    }
+
+    public float magnitude(int frame, int bin) {
+        return magnitudes[frame * bins + bin];
+    }
+
+    public int frames() {
+        return frames;
+    }
+
+    public int bins() {
+        return bins;
+    }
+
+    public int hopSize() {
+        return hopSize;
+    }
+
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    public double framesPerSecond() {
+        return (double) sampleRate / hopSize;
+    }
+
+    public double binHz() {
+        return sampleRate / (2.0 * bins);
+    }
+
+    @Override
+    public String toString() {
+        return "Spectrogram[" + frames + " frames x " + bins + " bins, hop " + hopSize + " @ " + sampleRate + "Hz]";
+    }
+}
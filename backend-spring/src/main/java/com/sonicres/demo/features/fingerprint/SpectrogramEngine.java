@@ -0,0 +1,86 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-Time Fourier Transform over mono 16-bit PCM.
+ *
+ * The Hann window and FFT tables are computed once; the frame work array and the output
+ * {@link Spectrogram} are per thread and reused, so computing a spectrogram allocates nothing
+ * per frame (and nothing at all once the thread's buffers have grown to the clip length).
+ */
+@Component
+public class SpectrogramEngine {
+
+    private final int windowSize;
+    private final int hopSize;
+    private final int sampleRate;
+    private final float[] window;
+    private final RealFft fft;
+
+    private final ThreadLocal<float[]> frameBuffer;
+    private final ThreadLocal<Spectrogram> threadSpectrogram = ThreadLocal.withInitial(Spectrogram::new);
+
+    public SpectrogramEngine(@Value("${app.fingerprint.window-size:2048}") int windowSize,
+                             @Value("${app.fingerprint.hop-size:1024}") int hopSize,
+                             @Value("${app.fingerprint.sample-rate:44100}") int sampleRate) {
+        if (hopSize < 1 || hopSize > windowSize) {
+            throw new IllegalArgumentException("Hop size must be in [1, windowSize], got " + hopSize);
+        }
+        this.windowSize = windowSize;
+        this.hopSize = hopSize;
+        this.sampleRate = sampleRate;
+        this.fft = new RealFft(windowSize);
+
+        // Periodic Hann, pre-scaled so 16-bit PCM comes out in [-1, 1)
+        this.window = new float[windowSize];
+        for (int n = 0; n < windowSize; n++) {
+            window[n] = (float) ((0.5 - 0.5 * Math.cos(2 * Math.PI * n / windowSize)) / 32768.0);
+        }
+
+        this.frameBuffer = ThreadLocal.withInitial(() -> new float[windowSize]);
+    }
+
+    /**
+     * Compute into this thread's reusable spectrogram. The returned instance is overwritten by the
+     * next call on the same thread - copy what must outlive it.
+     */
+    public Spectrogram compute(short[] pcm, int length) {
+        Spectrogram out = threadSpectrogram.get();
+        compute(pcm, length, out);
+        return out;
+    }
+
+    public void compute(short[] pcm, int length, Spectrogram out) {
+        int frames = length < windowSize ? 0 : 1 + (length - windowSize) / hopSize;
+        int bins = fft.bins();
+        out.reset(frames, bins, hopSize, sampleRate);
+
+        float[] frame = frameBuffer.get();
+        float[] magnitudes = out.magnitudes();
+
+        for (int f = 0, start = 0; f < frames; f++, start += hopSize) {
+            for (int n = 0; n < windowSize; n++) {
+                frame[n] = pcm[start + n] * window[n];
+            }
+            fft.magnitudes(frame, magnitudes, f * bins);
+        }
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBins() {
+        return fft.bins();
+    }
+}
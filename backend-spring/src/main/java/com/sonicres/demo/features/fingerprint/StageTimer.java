@@ -0,0 +1,13 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * Receives how long each step of a fingerprinting or lookup call took, so the caller can feed
+ * its own metrics without this package knowing about them.
+ */
+@FunctionalInterface
+public interface StageTimer {
+
+    StageTimer NONE = (stage, nanos) -> { };
+
+    void record(String stage, long nanos);
+}
@@ -0,0 +1,52 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Track metadata keyed by the track IDs stored in postings.
+ */
+@Component
+public class TrackCatalog {
+
+    private final ConcurrentMap<Integer, TrackInfo> tracks = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    public TrackInfo register(String title, String artist) {
+        TrackInfo track = new TrackInfo(nextId.getAndIncrement(), title, artist);
+        tracks.put(track.id(), track);
+        return track;
+    }
+
+    /**
+     * Add a track that already has an ID (e.g. loaded from the database); later
+     * {@link #register} calls never reuse it.
+     */
+    public void put(TrackInfo track) {
+        tracks.put(track.id(), track);
+        nextId.accumulateAndGet(track.id() + 1, Math::max);
+    }
+
+    public TrackInfo get(int trackId) {
+        return tracks.get(trackId);
+    }
+
+    /**
+     * The track with this artist and title, ignoring case, or null.
+     */
+    public TrackInfo find(String artist, String title) {
+        for (TrackInfo track : tracks.values()) {
+            if (track.artist().equalsIgnoreCase(artist) && track.title().equalsIgnoreCase(title)) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+}
@@ -0,0 +1,7 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * Catalog metadata for an indexed track.
+ */
+public record TrackInfo(int id, String title, String artist) {
+}
@@ -0,0 +1,7 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * A track and its packed {@link Landmarks} values (hash, anchor frame), ready to be indexed or stored.
+ */
+public record TrackLandmarks(TrackInfo track, long[] landmarks, int count) {
+}
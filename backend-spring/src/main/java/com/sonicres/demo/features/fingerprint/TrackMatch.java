@@ -0,0 +1,8 @@
+package com.sonicres.demo.features.fingerprint;
+
+/**
+ * One candidate from {@link OffsetMatcher}: the track, how many query landmarks agree on a
+ * single time offset into it, that offset (in frames), and a calibrated confidence in [0, 1].
+ */
+public record TrackMatch(int trackId, int votes, int offsetFrames, double confidence) {
+}
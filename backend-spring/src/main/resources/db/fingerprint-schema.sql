@@ -0,0 +1,47 @@
+-- Fingerprint store schema (PostgreSQL 11+), applied by PostgresFingerprintStore.initializeSchema()
+
+CREATE TABLE IF NOT EXISTS tracks (
+    id               integer PRIMARY KEY,
+    title            text NOT NULL,
+    artist           text,
+    album            text,
+    duration_seconds real
+);
+
+-- Bumped on every (re-)ingest of a track, so other nodes can tell whose postings changed
+CREATE SEQUENCE IF NOT EXISTS track_generation;
+ALTER TABLE tracks ADD COLUMN IF NOT EXISTS generation bigint NOT NULL DEFAULT 0;
+
+-- Track IDs are handed out here, so nodes ingesting at the same time never pick the same one.
+-- The setval catches the sequence up with IDs stored before it existed.
+CREATE SEQUENCE IF NOT EXISTS track_id;
+SELECT setval('track_id', max(id)) FROM tracks
+HAVING max(id) >= (SELECT CASE WHEN is_called THEN last_value + 1 ELSE last_value END FROM track_id);
+
+-- One row per landmark. Hash partitioning keeps each lookup hash inside a single partition,
+-- and the covering index answers it with an index-only scan.
+CREATE TABLE IF NOT EXISTS fingerprints (
+    hash          integer NOT NULL,
+    track_id      integer NOT NULL,
+    offset_frames integer NOT NULL
+) PARTITION BY HASH (hash);
+
+CREATE TABLE IF NOT EXISTS fingerprints_p00 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 0);
+CREATE TABLE IF NOT EXISTS fingerprints_p01 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 1);
+CREATE TABLE IF NOT EXISTS fingerprints_p02 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 2);
+CREATE TABLE IF NOT EXISTS fingerprints_p03 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 3);
+CREATE TABLE IF NOT EXISTS fingerprints_p04 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 4);
+CREATE TABLE IF NOT EXISTS fingerprints_p05 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 5);
+CREATE TABLE IF NOT EXISTS fingerprints_p06 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 6);
+CREATE TABLE IF NOT EXISTS fingerprints_p07 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 7);
+CREATE TABLE IF NOT EXISTS fingerprints_p08 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 8);
+CREATE TABLE IF NOT EXISTS fingerprints_p09 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 9);
+CREATE TABLE IF NOT EXISTS fingerprints_p10 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 10);
+CREATE TABLE IF NOT EXISTS fingerprints_p11 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 11);
+CREATE TABLE IF NOT EXISTS fingerprints_p12 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 12);
+CREATE TABLE IF NOT EXISTS fingerprints_p13 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 13);
+CREATE TABLE IF NOT EXISTS fingerprints_p14 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 14);
+CREATE TABLE IF NOT EXISTS fingerprints_p15 PARTITION OF fingerprints FOR VALUES WITH (MODULUS 16, REMAINDER 15);
+
+CREATE INDEX IF NOT EXISTS fingerprints_hash_idx ON fingerprints (hash) INCLUDE (track_id, offset_frames);
+CREATE INDEX IF NOT EXISTS fingerprints_track_idx ON fingerprints (track_id);
@@ -0,0 +1,60 @@
+package com.sonicres.demo.features.audio;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AckCoalescerTests {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void legacyClientsGetOneJsonAckPerChunk() {
+        AckCoalescer acks = new AckCoalescer(AckCoalescer.modeFor(null), 32768, 1000 * MS, 0);
+
+        WebSocketMessage<?> ack = acks.onChunk(4000, 4000, 0);
+
+        assertEquals("{\"type\":\"ack\",\"bytes\":4000,\"chunks\":1,\"totalBytes\":4000}",
+                ((TextMessage) ack).getPayload());
+        assertNull(acks.flush(4000));
+    }
+
+    @Test
+    void coalescesByBytesAndByTime() {
+        AckCoalescer acks = new AckCoalescer(AckCoalescer.modeFor(AckCoalescer.PROTOCOL_JSON), 10_000, 1000 * MS, 0);
+
+        assertNull(acks.onChunk(4000, 4000, 250 * MS));
+        assertNull(acks.onChunk(4000, 8000, 500 * MS));
+        WebSocketMessage<?> byBytes = acks.onChunk(4000, 12000, 750 * MS);
+        assertEquals("{\"type\":\"ack\",\"bytes\":12000,\"chunks\":3,\"totalBytes\":12000}",
+                ((TextMessage) byBytes).getPayload());
+
+        assertNull(acks.onChunk(100, 12100, 1000 * MS));
+        assertNotNull(acks.onChunk(100, 12200, 1750 * MS), "interval since the last ack has passed");
+
+        assertNull(acks.onChunk(100, 12300, 2000 * MS));
+        assertNotNull(acks.flush(12300));
+        assertNull(acks.flush(12300));
+    }
+
+    @Test
+    void binaryAckIsThirteenBytes() {
+        AckCoalescer acks = new AckCoalescer(AckCoalescer.modeFor(AckCoalescer.PROTOCOL_BINARY), 1, 1000 * MS, 0);
+
+        WebSocketMessage<?> ack = acks.onChunk(5000, 6_000_000_000L, 0);
+
+        ByteBuffer frame = assertInstanceOf(BinaryMessage.class, ack).getPayload();
+        assertEquals(AckCoalescer.BINARY_ACK_LENGTH, frame.remaining());
+        assertEquals(AckCoalescer.BINARY_ACK, frame.get());
+        assertEquals(1, frame.getInt());
+        assertEquals(6_000_000_000L, frame.getLong());
+    }
+}
@@ -0,0 +1,75 @@
+package com.sonicres.demo.features.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FfmpegPipeDecoder#transcode} against a shell script standing in for FFmpeg, so the pipes are real.
+ */
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class FfmpegPipeDecoderTests {
+
+    private final ExecutorService pipeThreads = Executors.newCachedThreadPool(new NamedThreadFactory("test-pipe"));
+
+    @AfterEach
+    void tearDown() {
+        pipeThreads.shutdownNow();
+    }
+
+    @Test
+    void aProcessThatFloodsStderrBeforeWritingPcmDoesNotStall() {
+        // 1 MB of log lines, far more than a pipe buffer, before the first sample
+        Process process = start("yes 'frame warning' | head -c 1000000 >&2; printf '\\001\\000\\002\\000'");
+
+        PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+        long samples = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> FfmpegPipeDecoder.transcode(process, new ByteArrayInputStream(new byte[0]), pcm, pipeThreads));
+
+        assertEquals(2, samples);
+        assertEquals(2, pcm.samples()[1]);
+    }
+
+    @Test
+    void aFailureReportsTheTailOfStderr() {
+        Process process = start("yes 'noise' | head -c 100000 >&2; echo 'Invalid data found when processing input' >&2; exit 1");
+
+        IOException e = assertThrows(IOException.class, () -> FfmpegPipeDecoder.transcode(process,
+                new ByteArrayInputStream(new byte[0]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE), pipeThreads));
+
+        assertTrue(e.getMessage().startsWith("FFmpeg failed with exit code 1"), e.getMessage());
+        assertTrue(e.getMessage().endsWith("Invalid data found when processing input"), e.getMessage());
+        assertTrue(e.getMessage().length() < FfmpegPipeDecoder.STDERR_TAIL_BYTES + 100, "message is " + e.getMessage().length() + " chars");
+    }
+
+    @Test
+    void tailKeepsTheLastBytes() throws IOException {
+        byte[] log = new byte[10_000];
+        for (int i = 0; i < log.length; i++) {
+            log[i] = (byte) ('a' + i % 26);
+        }
+        String tail = FfmpegPipeDecoder.tail(new ByteArrayInputStream(log), 1500);
+        assertEquals(new String(log, log.length - 1500, 1500), tail);
+        assertEquals("short", FfmpegPipeDecoder.tail(new ByteArrayInputStream("short".getBytes()), 1500));
+    }
+
+    private static Process start(String script) {
+        try {
+            return new ProcessBuilder("sh", "-c", script).start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
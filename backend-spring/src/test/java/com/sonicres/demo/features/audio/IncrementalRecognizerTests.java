@@ -0,0 +1,181 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IncrementalRecognizerTests {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final RecognitionDeadlines deadlines = new RecognitionDeadlines(new SimpleMeterRegistry(), 30);
+    private final RecognitionExecutors executors = new RecognitionExecutors(RecognitionExecutors.MODE_FIXED);
+    private RecognitionPipeline pipeline;
+    private SessionAudioBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        deadlines.shutdown();
+        if (buffer != null) {
+            buffer.closeSilently();
+        }
+    }
+
+    @Test
+    void pushesMatchBeforeTheRecordingEnds() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        // "recognizes" the clip once three seconds are in
+        FingerprintService service = fakeService(pcm -> {
+            attempts.incrementAndGet();
+            return pcm.durationSeconds() >= 3.0 ? 0.9 : 0.2;
+        });
+        IncrementalRecognizer recognizer = recognizer(service);
+
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 8.0, 440, 1200));
+        int chunk = webm.length / 32; // ~250ms per chunk
+        for (int offset = 0; offset < webm.length; offset += chunk) {
+            recognizer.onChunk(ByteBuffer.wrap(webm, offset, Math.min(chunk, webm.length - offset)));
+            Thread.sleep(5);
+        }
+
+        verify(session, timeout(5000)).sendMessage(any(TextMessage.class));
+        verify(session, timeout(5000)).close(CloseStatus.NORMAL);
+        assertFalse(recognizer.finish(), "early match must claim the session");
+        assertTrue(attempts.get() >= 1);
+    }
+
+    @Test
+    void leavesNonWebmUploadsToThePostRecordingPath() throws Exception {
+        IncrementalRecognizer recognizer = recognizer(fakeService(pcm -> {
+            throw new AssertionError("nothing should be matched");
+        }));
+
+        recognizer.onChunk(ByteBuffer.wrap("ftypmp42-not-webm".getBytes()));
+        recognizer.onChunk(ByteBuffer.wrap(new byte[4096]));
+
+        assertTrue(recognizer.finish());
+        assertNull(recognizer.decodedPcm());
+        verify(session, never()).sendMessage(any());
+    }
+
+    @Test
+    void handsDecodedAudioToTheFinalMatch() throws Exception {
+        IncrementalRecognizer recognizer = recognizer(fakeService(pcm -> 0.1));
+
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 3.0, 700));
+        recognizer.onChunk(ByteBuffer.wrap(webm));
+
+        assertTrue(recognizer.finish());
+        PcmBuffer pcm = recognizer.decodedPcm();
+        assertNotNull(pcm);
+        assertEquals(3.0, pcm.durationSeconds(), 0.05);
+    }
+
+    @Test
+    void attemptsAreBoundedAndOnlyMatchTheRecentAudio() throws Exception {
+        List<Double> clips = new CopyOnWriteArrayList<>();
+        IncrementalRecognizer recognizer = recognizer(fakeService(pcm -> {
+            clips.add(pcm.durationSeconds());
+            return 0.1;
+        }), 1.0, 3);
+
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 10.0, 500));
+        int chunk = webm.length / 40;
+        for (int offset = 0; offset < webm.length; offset += chunk) {
+            recognizer.onChunk(ByteBuffer.wrap(webm, offset, Math.min(chunk, webm.length - offset)));
+            Thread.sleep(20);
+        }
+        Thread.sleep(200);
+
+        assertEquals(3, clips.size(), "attempts " + clips);
+        assertTrue(clips.stream().allMatch(seconds -> seconds <= 1.0 + 1e-9), "clips " + clips);
+        assertEquals(10.0, recognizer.decodedPcm().durationSeconds(), 0.05, "the final match still gets everything");
+    }
+
+    @Test
+    void finishingCancelsTheRunningAttempt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        IncrementalRecognizer recognizer = recognizer(fakeService(pcm -> {
+            // a slow extraction that, like the real one, checks its deadline
+            started.countDown();
+            try {
+                while (true) {
+                    RecognitionDeadline.current().checkpoint();
+                    Thread.sleep(5);
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                stopped.countDown();
+            }
+        }), 8.0, 8);
+
+        recognizer.onChunk(ByteBuffer.wrap(WebmFixtures.opusWebm(WebmFixtures.tones(48000, 3.0, 700))));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(recognizer.finish());
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS), "the attempt must stop at its next checkpoint");
+        assertEquals(1, deadlines.count(RecognitionDeadline.REASON_SUPERSEDED));
+        verify(session, never()).sendMessage(any());
+    }
+
+    private IncrementalRecognizer recognizer(FingerprintService service) throws Exception {
+        return recognizer(service, 8.0, 8);
+    }
+
+    private IncrementalRecognizer recognizer(FingerprintService service, double windowSeconds, int maxAttempts)
+            throws Exception {
+        when(session.getId()).thenReturn("test-session");
+        when(session.isOpen()).thenReturn(true);
+        buffer = new SessionAudioBuffer(session, new AudioSlabPool(64, 4), 1024 * 1024);
+        pipeline = new RecognitionPipeline(service, executors, 1, 4, 1, 4, 1, 4, 1, 4);
+        return new IncrementalRecognizer(buffer, pipeline, deadlines, 2.0, 0.5, windowSeconds, maxAttempts, 0.6);
+    }
+
+    private interface Confidence {
+        double of(PcmBuffer pcm);
+    }
+
+    /**
+     * Extraction decides the confidence; the match stage just reports it.
+     */
+    private static FingerprintService fakeService(Confidence confidence) {
+        return new FingerprintService() {
+            @Override
+            public ClipFingerprint extract(PcmBuffer pcm) {
+                return new ClipFingerprint(new long[0], 0, 43.0, confidence.of(pcm));
+            }
+
+            @Override
+            public FingerprintResult match(ClipFingerprint clip) {
+                double c = clip.durationSeconds(); // carries the confidence
+                return FingerprintResult.of(List.of(new MatchCandidate("1", "Song", "Artist", c, 50, 0)));
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package com.sonicres.demo.features.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JavaWebmOpusDecoderTests {
+
+    @Test
+    void decodesWebmOpusInProcess() throws Exception {
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 2.0, 440, 1000));
+        JavaWebmOpusDecoder decoder = new JavaWebmOpusDecoder((in, sink) -> {
+            throw new AssertionError("fallback must not be used for WebM/Opus");
+        });
+
+        PcmBuffer pcm = new PcmBuffer(44100);
+        decoder.decode(new ByteArrayInputStream(webm), pcm);
+
+        // 2s at 44.1kHz, minus the Opus pre-skip
+        assertTrue(Math.abs(pcm.length() - 88200) < 1000, "decoded " + pcm.length() + " samples");
+        assertTrue(rms(pcm) > 1000, "decoded audio should not be silent");
+    }
+
+    @Test
+    void decodesChunkByChunk() throws Exception {
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 1.0, 660));
+
+        PcmBuffer whole = new PcmBuffer(44100);
+        OpusStreamDecoder oneShot = new OpusStreamDecoder(whole);
+        oneShot.feed(webm, 0, webm.length);
+
+        PcmBuffer chunked = new PcmBuffer(44100);
+        OpusStreamDecoder streaming = new OpusStreamDecoder(chunked);
+        for (int offset = 0; offset < webm.length; offset += 333) {
+            streaming.feed(webm, offset, Math.min(333, webm.length - offset));
+        }
+
+        assertEquals(whole.length(), chunked.length());
+        assertArrayEquals(Arrays.copyOf(whole.samples(), whole.length()),
+                Arrays.copyOf(chunked.samples(), chunked.length()));
+    }
+
+    @Test
+    void fallsBackForNonWebmInput() throws Exception {
+        byte[] ogg = "OggS-not-a-webm-stream".getBytes();
+        AtomicReference<byte[]> replayed = new AtomicReference<>();
+        JavaWebmOpusDecoder decoder = new JavaWebmOpusDecoder((InputStream in, PcmSink sink) -> {
+            replayed.set(in.readAllBytes());
+            return 0;
+        });
+
+        decoder.decode(new ByteArrayInputStream(ogg), new PcmBuffer(44100));
+
+        assertArrayEquals(ogg, replayed.get());
+        assertEquals(1, decoder.getFallbackCount());
+    }
+
+    @Test
+    void keepsTheAudioBeforeDamageInsteadOfFallingBack() throws Exception {
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 2.0, 440, 1000));
+        byte[] damaged = Arrays.copyOf(webm, webm.length + 64); // zeros: no valid element ID
+        JavaWebmOpusDecoder decoder = new JavaWebmOpusDecoder((in, sink) -> {
+            throw new AssertionError("fallback must not run once PCM has been written");
+        });
+
+        PcmBuffer streamed = new PcmBuffer(44100);
+        decoder.decode(new ByteArrayInputStream(damaged), streamed);
+        PcmBuffer chunked = new PcmBuffer(44100);
+        decoder.decode(List.of(ByteBuffer.wrap(damaged)), chunked);
+
+        assertTrue(Math.abs(streamed.length() - 88200) < 1000, "decoded " + streamed.length() + " samples");
+        assertEquals(streamed.length(), chunked.length());
+        assertEquals(0, decoder.getFallbackCount());
+    }
+
+    @Test
+    void aCorruptBlockEndsTheStreamLikeOtherDamage() throws Exception {
+        byte[] webm = WebmFixtures.opusWebm(WebmFixtures.tones(48000, 2.0, 440, 1000));
+        JavaWebmOpusDecoder decoder = new JavaWebmOpusDecoder((in, sink) -> {
+            throw new AssertionError("fallback must not run once PCM has been written");
+        });
+        // SimpleBlocks for track 1 whose lacing or header runs past the end of the block
+        Map<String, byte[]> damages = Map.of(
+                "Xiph lace sizes cut short", bytes(0xA3, 0x86, 0x81, 0, 0, 0x02, 0x03, 0xFF),
+                "EBML lace size cut short", bytes(0xA3, 0x86, 0x81, 0, 0, 0x06, 0x01, 0x40),
+                "EBML lace larger than the block", bytes(0xA3, 0x88, 0x81, 0, 0, 0x06, 0x01, 0xBF, 0, 0),
+                "lace count without sizes", bytes(0xA3, 0x84, 0x81, 0, 0, 0x02),
+                "empty block", bytes(0xA3, 0x80),
+                "32 MB block", bytes(0xA3, 0x01, 0, 0, 0, 0x02, 0, 0, 0));
+
+        for (Map.Entry<String, byte[]> damage : damages.entrySet()) {
+            byte[] damaged = Arrays.copyOf(webm, webm.length + damage.getValue().length);
+            System.arraycopy(damage.getValue(), 0, damaged, webm.length, damage.getValue().length);
+
+            PcmBuffer streamed = new PcmBuffer(44100);
+            decoder.decode(new ByteArrayInputStream(damaged), streamed);
+            PcmBuffer chunked = new PcmBuffer(44100);
+            decoder.decode(List.of(ByteBuffer.wrap(damaged)), chunked);
+
+            assertTrue(Math.abs(streamed.length() - 88200) < 1000, damage.getKey() + ": " + streamed.length());
+            assertEquals(streamed.length(), chunked.length(), damage.getKey());
+
+            OpusStreamDecoder incremental = new OpusStreamDecoder(new PcmBuffer(44100));
+            assertThrows(UnsupportedAudioFormatException.class,
+                    () -> incremental.feed(damaged, 0, damaged.length), damage.getKey());
+        }
+        assertEquals(0, decoder.getFallbackCount());
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static double rms(PcmBuffer pcm) {
+        double sum = 0;
+        for (int i = 0; i < pcm.length(); i++) {
+            sum += (double) pcm.samples()[i] * pcm.samples()[i];
+        }
+        return Math.sqrt(sum / pcm.length());
+    }
+}
@@ -0,0 +1,61 @@
+package com.sonicres.demo.features.audio;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageEncodingTests {
+
+    @Test
+    void statusMessagesAreCompactJsonWithTypeFirst() {
+        TextMessage message = (TextMessage) MessageEncoding.JSON.encode(ServerMessages.connected("abc"));
+
+        assertEquals("{\"type\":\"connected\",\"sessionId\":\"abc\",\"message\":\"Ready to receive audio\"}",
+                message.getPayload());
+        assertThrows(IllegalArgumentException.class, () -> MessageEncoding.JSON.encode(Map.of("type", "x")));
+    }
+
+    @Test
+    void cborResultCarriesTheSameFieldsAsJson() throws Exception {
+        FingerprintResult result = FingerprintResult.of(List.of(
+                new MatchCandidate("7", "Song", "Artist", 0.93, 120, 42.5),
+                new MatchCandidate("3", "Other", "Band", 0.04, 9, 3.0)));
+
+        BinaryMessage cbor = assertInstanceOf(BinaryMessage.class, MessageEncoding.CBOR.encode(result));
+        ByteBuffer payload = cbor.getPayload();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        assertNotEquals(AckCoalescer.BINARY_ACK, bytes[0], "must be distinguishable from a binary ack");
+
+        Map<?, ?> fromCbor = new CBORMapper().readValue(bytes, Map.class);
+        Map<?, ?> fromJson = new ObjectMapper().readValue(result.toJSON(), Map.class);
+        assertEquals(fromJson, fromCbor);
+        assertEquals("result", fromCbor.get("type"));
+        assertEquals(2, ((List<?>) fromCbor.get("matches")).size());
+    }
+
+    @Test
+    void encodingFollowsTheNegotiatedProtocol() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        assertEquals(MessageEncoding.JSON, MessageEncoding.of(session));
+
+        when(session.getAcceptedProtocol()).thenReturn(MessageEncoding.PROTOCOL_CBOR);
+        assertEquals(MessageEncoding.CBOR, MessageEncoding.of(session));
+
+        assertEquals("done", MessageEncoding.readClientType("{\"type\":\"done\",\"extra\":1}"));
+    }
+}
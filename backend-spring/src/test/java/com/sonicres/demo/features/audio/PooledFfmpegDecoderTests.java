@@ -0,0 +1,183 @@
+package com.sonicres.demo.features.audio;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledFfmpegDecoderTests {
+
+    private static final byte[] PCM = {1, 0, 2, 0, 3, 0, 4, 0}; // four s16le samples
+
+    private final List<FakeProcess> started = new CopyOnWriteArrayList<>();
+    private final Semaphore spawnPermits = new Semaphore(Integer.MAX_VALUE);
+    private PooledFfmpegDecoder pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void eachDecodeTakesAWarmProcessAndAReplacementIsSpawned() throws Exception {
+        pool = pool(2, 4, 1000, 60_000);
+        awaitTrue(() -> pool.getIdleCount() == 2);
+
+        PcmBuffer first = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+        assertEquals(4, pool.decode(new ByteArrayInputStream(new byte[16]), first));
+        assertEquals(3, first.samples()[2]);
+        awaitTrue(() -> pool.getIdleCount() == 2 && started.size() == 3);
+
+        pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE));
+        awaitTrue(() -> started.size() == 4);
+        // each process decoded one recording and is gone; the two replacements wait warm
+        assertFalse(started.get(0).isAlive());
+        assertFalse(started.get(1).isAlive());
+        assertTrue(started.get(2).isAlive() && started.get(3).isAlive());
+    }
+
+    @Test
+    void aCallerGivesUpAfterTheAcquireTimeout() throws Exception {
+        pool = pool(1, 4, 100, 60_000);
+        awaitTrue(() -> pool.getIdleCount() == 1);
+        spawnPermits.drainPermits(); // no replacement ever gets ready
+
+        pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE));
+        long start = System.nanoTime();
+        DecoderBusyException busy = assertThrows(DecoderBusyException.class,
+                () -> pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE)));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(busy.getMessage().contains("Timed out"), busy.getMessage());
+        assertTrue(waitedMs >= 90 && waitedMs < 2000, "waited " + waitedMs + "ms");
+        assertEquals(0, pool.getWaiterCount());
+    }
+
+    @Test
+    void callersBeyondTheWaitQueueAreTurnedAwayAtOnce() throws Exception {
+        spawnPermits.drainPermits(); // nothing warm until a permit is released
+        pool = pool(1, 1, 5000, 60_000);
+
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitTrue(() -> pool.getWaiterCount() == 1);
+
+        DecoderBusyException busy = assertThrows(DecoderBusyException.class,
+                () -> pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE)));
+        assertTrue(busy.getMessage().contains("wait queue is full"), busy.getMessage());
+
+        spawnPermits.release();
+        assertEquals(4, waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void theHealthCheckReplacesIdleProcessesThatDied() throws Exception {
+        pool = pool(2, 4, 1000, 50);
+        awaitTrue(() -> pool.getIdleCount() == 2);
+
+        started.get(0).exit(137);
+        awaitTrue(() -> pool.getRestartCount() == 1 && pool.getIdleCount() == 2);
+        assertEquals(3, started.size());
+
+        // the dead one is gone, so both decodes get live processes
+        for (int i = 0; i < 2; i++) {
+            assertEquals(4, pool.decode(new ByteArrayInputStream(new byte[16]), new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE)));
+        }
+    }
+
+    private PooledFfmpegDecoder pool(int size, int maxWaiters, long acquireTimeoutMs, long healthCheckIntervalMs) {
+        return new PooledFfmpegDecoder(size, maxWaiters, acquireTimeoutMs, healthCheckIntervalMs, () -> {
+            try {
+                spawnPermits.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("pool shut down");
+            }
+            FakeProcess process = new FakeProcess();
+            started.add(process);
+            return process;
+        });
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Stands in for an FFmpeg process: swallows its input and "decodes" it to {@link #PCM}.
+     */
+    private static final class FakeProcess extends Process {
+
+        private final InputStream stdout = new ByteArrayInputStream(PCM);
+        private volatile Integer exitCode;
+
+        void exit(int code) {
+            exitCode = code;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return stdout;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public int waitFor() {
+            if (exitCode == null) {
+                exitCode = 0;
+            }
+            return exitCode;
+        }
+
+        @Override
+        public int exitValue() {
+            if (exitCode == null) {
+                throw new IllegalThreadStateException("still running");
+            }
+            return exitCode;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return exitCode == null;
+        }
+
+        @Override
+        public void destroy() {
+            exit(143);
+        }
+    }
+}
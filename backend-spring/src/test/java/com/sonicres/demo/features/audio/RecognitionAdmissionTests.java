@@ -0,0 +1,144 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecognitionAdmissionTests {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RecognitionMetrics metrics = new RecognitionMetrics(registry);
+
+    @Test
+    void tokenBucketAllowsBurstThenRefills() {
+        TokenBucket bucket = new TokenBucket(3, 0.5, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryTake(0));
+        }
+        long wait = bucket.tryTake(0);
+        assertEquals(2 * SECOND, wait, SECOND / 1000);
+
+        assertTrue(bucket.tryTake(SECOND) > 0, "half a token is not enough");
+        assertEquals(0, bucket.tryTake(2 * SECOND));
+        assertFalse(bucket.isFull(2 * SECOND));
+        assertTrue(bucket.isFull(100 * SECOND));
+    }
+
+    @Test
+    void shedsPerClientAndOverGlobalCapacity() {
+        RecognitionPipeline pipeline = mock(RecognitionPipeline.class);
+        RecognitionAdmission admission = new RecognitionAdmission(pipeline, metrics, 2, 2, 1, 10, 5);
+
+        assertTrue(admission.admitHandshake("10.0.0.1").admitted());
+        assertTrue(admission.admitHandshake("10.0.0.1").admitted());
+        Admission limited = admission.admitHandshake("10.0.0.1");
+        assertFalse(limited.admitted());
+        assertTrue(limited.retryAfterSeconds() >= 1);
+
+        assertTrue(admission.acquireSlot());
+        assertTrue(admission.acquireSlot());
+        assertFalse(admission.acquireSlot());
+        Admission full = admission.admitHandshake("10.0.0.2");
+        assertFalse(full.admitted());
+        assertEquals(5, full.retryAfterSeconds());
+
+        admission.releaseSlot();
+        assertTrue(admission.admitHandshake("10.0.0.2").admitted());
+    }
+
+    @Test
+    void shedsWhenPipelineWouldMissTheSlo() {
+        RecognitionPipeline pipeline = mock(RecognitionPipeline.class);
+        RecognitionAdmission admission = new RecognitionAdmission(pipeline, metrics, 10, 10, 60, 10, 5);
+
+        when(pipeline.estimatedLatencyMillis()).thenReturn(3_000L);
+        assertTrue(admission.admitSubmit().admitted());
+
+        when(pipeline.estimatedLatencyMillis()).thenReturn(30_000L);
+        Admission decision = admission.admitSubmit();
+        assertFalse(decision.admitted());
+        assertEquals(21, decision.retryAfterSeconds());
+        assertEquals(1, admission.getRejected());
+        assertEquals(1, registry.get("recognition.rejected").tag("reason", RecognitionAdmission.REJECT_SLO)
+                .counter().count());
+    }
+
+    @Test
+    void aDecoderPoolWithNothingToSpareAnswersBusyInsteadOfFailingTheDecode() throws Exception {
+        RecognitionAdmission admission = new RecognitionAdmission(mock(RecognitionPipeline.class), metrics, 10, 10, 60, 10, 5);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("busy-session");
+        when(session.isOpen()).thenReturn(true);
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, new AudioSlabPool(64, 4), 1024 * 1024);
+        buffer.append(ByteBuffer.wrap(new byte[1024]));
+        PcmDecoder exhausted = (in, sink) -> {
+            throw new DecoderBusyException("FFmpeg decoder pool wait queue is full (4 waiting)");
+        };
+        RecognitionDeadline deadline = new RecognitionDeadline(Long.MAX_VALUE, (d, reason) -> { });
+
+        try {
+            assertNull(new AudioProcessingTask(buffer, exhausted, true, deadline, metrics, admission).decode());
+        } finally {
+            buffer.closeSilently();
+        }
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session).sendMessage(sent.capture());
+        assertTrue(sent.getValue().getPayload().contains("\"type\":\"busy\""), sent.getValue().getPayload());
+        assertTrue(sent.getValue().getPayload().contains("\"retryAfterSeconds\":5"), sent.getValue().getPayload());
+        verify(session).close(CloseStatus.SERVICE_OVERLOAD);
+        assertEquals(1, registry.get("recognition.rejected").tag("reason", RecognitionAdmission.REJECT_DECODER_BUSY)
+                .counter().count());
+        assertEquals(0, registry.get("ffmpeg.failures").counter().count());
+    }
+
+    @Test
+    void processingIsOnlyAnnouncedBeforeTheAnswer() throws Exception {
+        RecognitionAdmission admission = new RecognitionAdmission(mock(RecognitionPipeline.class), metrics, 10, 10, 60, 10, 5);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("processing-session");
+        when(session.isOpen()).thenReturn(true);
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, new AudioSlabPool(64, 4), 1024 * 1024);
+        FingerprintResult result = FingerprintResult.of(List.of());
+
+        try {
+            AudioProcessingTask accepted = new AudioProcessingTask(buffer, null, true,
+                    new RecognitionDeadline(Long.MAX_VALUE, (d, reason) -> { }), metrics, admission);
+            accepted.sendProcessing();
+            accepted.respond(result);
+
+            // the pipeline answered before the caller got round to announcing it
+            AudioProcessingTask fast = new AudioProcessingTask(buffer, null, true,
+                    new RecognitionDeadline(Long.MAX_VALUE, (d, reason) -> { }), metrics, admission);
+            fast.respond(result);
+            fast.sendProcessing();
+        } finally {
+            buffer.closeSilently();
+        }
+
+        ArgumentCaptor<TextMessage> sent = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, times(3)).sendMessage(sent.capture());
+        List<String> types = sent.getAllValues().stream()
+                .map(m -> m.getPayload().contains("\"type\":\"processing\"") ? "processing" : "result")
+                .toList();
+        assertEquals(List.of("processing", "result", "result"), types);
+    }
+}
@@ -0,0 +1,71 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecognitionDeadlineTests {
+
+    private RecognitionDeadlines deadlines;
+
+    @AfterEach
+    void tearDown() {
+        deadlines.shutdown();
+    }
+
+    @Test
+    void disconnectRunsHooksOnceAndIsCounted() {
+        deadlines = new RecognitionDeadlines(new SimpleMeterRegistry(), 30);
+        RecognitionDeadline deadline = deadlines.start();
+        AtomicInteger killed = new AtomicInteger();
+        deadline.onCancel(killed::incrementAndGet);
+
+        assertTrue(deadline.cancel(RecognitionDeadline.REASON_DISCONNECTED));
+        assertFalse(deadline.cancel(RecognitionDeadline.REASON_DEADLINE));
+        assertFalse(deadline.complete());
+
+        assertEquals(1, killed.get());
+        RecognitionCancelledException e = assertThrows(RecognitionCancelledException.class, deadline::checkpoint);
+        assertEquals(RecognitionDeadline.REASON_DISCONNECTED, e.getReason());
+        assertEquals(1, deadlines.count(RecognitionDeadline.REASON_DISCONNECTED));
+        assertEquals(0, deadlines.count(RecognitionDeadline.REASON_DEADLINE));
+    }
+
+    @Test
+    void completedRecognitionIgnoresLaterCancels() {
+        deadlines = new RecognitionDeadlines(new SimpleMeterRegistry(), 30);
+        RecognitionDeadline deadline = deadlines.start();
+        AtomicInteger killed = new AtomicInteger();
+        Runnable unregister = deadline.onCancel(killed::incrementAndGet);
+        unregister.run();
+
+        assertTrue(deadline.complete());
+        assertFalse(deadline.cancel(RecognitionDeadline.REASON_DISCONNECTED));
+        deadline.checkpoint();
+        assertNull(deadline.getCancelReason());
+        assertEquals(0, killed.get());
+        assertEquals(0, deadlines.count(RecognitionDeadline.REASON_DISCONNECTED));
+    }
+
+    @Test
+    void expiryFiresHooksWithoutAnyCheckpoint() throws Exception {
+        deadlines = new RecognitionDeadlines(new SimpleMeterRegistry(), 0.1);
+        RecognitionDeadline deadline = deadlines.start();
+        CountDownLatch killed = new CountDownLatch(1);
+        deadline.onCancel(killed::countDown);
+
+        assertTrue(killed.await(2, TimeUnit.SECONDS), "blocked work must be torn down at the deadline");
+        assertEquals(RecognitionDeadline.REASON_DEADLINE, deadline.getCancelReason());
+        assertEquals(1, deadlines.count(RecognitionDeadline.REASON_DEADLINE));
+    }
+}
@@ -0,0 +1,248 @@
+package com.sonicres.demo.features.audio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecognitionPipelineTests {
+
+    private final RecognitionDeadlines deadlines = new RecognitionDeadlines(new SimpleMeterRegistry(), 30);
+    private final RecognitionExecutors executors = new RecognitionExecutors(RecognitionExecutors.MODE_FIXED);
+    private final List<String> steps = new CopyOnWriteArrayList<>();
+    private RecognitionPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+        deadlines.shutdown();
+    }
+
+    @Test
+    void aRecordingGoesThroughEveryStageInOrderOnItsThreads() throws Exception {
+        pipeline = new RecognitionPipeline(recordingService(), executors, 1, 4, 1, 4, 1, 4, 1, 4);
+        AudioProcessingTask task = task(() -> {
+            step("decode");
+            return pcm();
+        });
+        CountDownLatch finished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            step("respond");
+            return null;
+        }).when(task).respond(any());
+        doAnswer(invocation -> {
+            steps.add("finish");
+            finished.countDown();
+            return null;
+        }).when(task).finish();
+
+        assertTrue(pipeline.submit(task));
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("decode on pipeline-decode", "extract on pipeline-extract", "match on pipeline-match",
+                "respond on pipeline-respond", "finish"), steps);
+        verify(task, never()).fail(any());
+    }
+
+    @Test
+    void virtualModePutsOnlyTheBlockingStagesOnVirtualThreads() throws Exception {
+        pipeline = new RecognitionPipeline(new FingerprintService() {
+            @Override
+            public ClipFingerprint extract(PcmBuffer pcm) {
+                steps.add("extract virtual=" + Thread.currentThread().isVirtual());
+                return new ClipFingerprint(new long[0], 0, 43.0, pcm.durationSeconds());
+            }
+
+            @Override
+            public FingerprintResult match(ClipFingerprint clip) {
+                steps.add("match virtual=" + Thread.currentThread().isVirtual());
+                return FingerprintResult.of(List.of());
+            }
+        }, new RecognitionExecutors(RecognitionExecutors.MODE_VIRTUAL), 1, 4, 1, 4, 1, 4, 1, 4);
+        AudioProcessingTask task = task(() -> {
+            steps.add("decode virtual=" + Thread.currentThread().isVirtual());
+            return pcm();
+        });
+        doAnswer(invocation -> {
+            steps.add("respond virtual=" + Thread.currentThread().isVirtual());
+            return null;
+        }).when(task).respond(any());
+
+        assertTrue(pipeline.submit(task));
+
+        verify(task, timeout(5000)).finish();
+        assertEquals(List.of("decode virtual=true", "extract virtual=false", "match virtual=false",
+                "respond virtual=true"), steps);
+    }
+
+    @Test
+    void submitRefusesWorkOnceTheDecodeQueueIsFull() throws Exception {
+        pipeline = new RecognitionPipeline(recordingService(), executors, 1, 1, 1, 4, 1, 4, 1, 4);
+        CountDownLatch decoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AudioProcessingTask running = task(() -> {
+            decoding.countDown();
+            release.await();
+            return null;
+        });
+        AudioProcessingTask queued = task(() -> null);
+        AudioProcessingTask refused = task(() -> null);
+
+        assertTrue(pipeline.submit(running));
+        assertTrue(decoding.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(queued));
+        assertFalse(pipeline.submit(refused), "the one decode thread is busy and its queue holds one");
+        assertEquals(1, pipeline.stages().get(0).getQueueDepth());
+
+        release.countDown();
+        verify(queued, timeout(5000)).finish();
+        // a refused task still belongs to the caller, which answers busy and cleans up itself
+        verify(refused, never()).decode();
+        verify(refused, never()).finish();
+    }
+
+    @Test
+    void aTaskCancelledWhileQueuedIsSkipped() throws Exception {
+        pipeline = new RecognitionPipeline(recordingService(), executors, 1, 4, 1, 4, 1, 4, 1, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        AudioProcessingTask running = task(() -> {
+            release.await();
+            return null;
+        });
+        AudioProcessingTask cancelled = task(() -> {
+            step("decode");
+            return pcm();
+        });
+
+        assertTrue(pipeline.submit(running));
+        assertTrue(pipeline.submit(cancelled));
+        cancelled.getDeadline().cancel(RecognitionDeadline.REASON_DISCONNECTED);
+        release.countDown();
+
+        verify(cancelled, timeout(5000)).finish();
+        verify(cancelled, never()).decode();
+        assertEquals(List.of(), steps);
+    }
+
+    @Test
+    void shutdownInterruptsRunningWorkAndRefusesNewWork() throws Exception {
+        pipeline = new RecognitionPipeline(recordingService(), executors, 1, 4, 1, 4, 1, 4, 1, 4);
+        CountDownLatch decoding = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AudioProcessingTask running = task(() -> {
+            decoding.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return null;
+        });
+
+        assertTrue(pipeline.submit(running));
+        assertTrue(decoding.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "a blocked decode must be interrupted");
+        verify(running, timeout(5000)).fail(any(InterruptedException.class));
+        verify(running, timeout(5000)).finish();
+        assertFalse(pipeline.submit(task(() -> null)));
+    }
+
+    @Test
+    void aStageOffersUntilItsQueueIsFullThenRefuses() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 2, new NamedThreadFactory("test-stage"));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertTrue(stage.offer(() -> {
+                running.countDown();
+                await(release);
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            assertTrue(stage.offer(() -> steps.add("first")));
+            assertTrue(stage.offer(() -> steps.add("second")));
+            assertFalse(stage.offer(() -> steps.add("third")));
+            assertEquals(2, stage.getQueueDepth());
+            assertEquals(1, stage.getActive());
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (stage.getCompleted() < 3) {
+                assertTrue(System.nanoTime() < deadline, "timed out waiting");
+                Thread.sleep(5);
+            }
+            assertEquals(List.of("first", "second"), steps, "queued jobs run in the order they were offered");
+        } finally {
+            stage.shutdown();
+        }
+        assertFalse(stage.offer(() -> steps.add("late")));
+    }
+
+    private interface Decode {
+        PcmBuffer run() throws Exception;
+    }
+
+    private AudioProcessingTask task(Decode decode) throws Exception {
+        AudioProcessingTask task = mock(AudioProcessingTask.class);
+        when(task.getDeadline()).thenReturn(deadlines.start());
+        when(task.decode()).thenAnswer(invocation -> decode.run());
+        return task;
+    }
+
+    /**
+     * Records each stage and the thread it ran on, minus the thread number.
+     */
+    private void step(String name) {
+        String thread = Thread.currentThread().getName();
+        steps.add(name + " on " + thread.substring(0, thread.lastIndexOf('-')));
+    }
+
+    private static PcmBuffer pcm() {
+        PcmBuffer pcm = new PcmBuffer(FfmpegPipeDecoder.SAMPLE_RATE);
+        pcm.write(new short[FfmpegPipeDecoder.SAMPLE_RATE], 0, FfmpegPipeDecoder.SAMPLE_RATE);
+        return pcm;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private FingerprintService recordingService() {
+        return new FingerprintService() {
+            @Override
+            public ClipFingerprint extract(PcmBuffer pcm) {
+                step("extract");
+                return new ClipFingerprint(new long[0], 0, 43.0, pcm.durationSeconds());
+            }
+
+            @Override
+            public FingerprintResult match(ClipFingerprint clip) {
+                step("match");
+                return FingerprintResult.of(List.of());
+            }
+        };
+    }
+}
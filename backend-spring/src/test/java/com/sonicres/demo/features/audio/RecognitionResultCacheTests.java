@@ -0,0 +1,133 @@
+package com.sonicres.demo.features.audio;
+
+import com.sonicres.demo.features.fingerprint.Landmarks;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RecognitionResultCacheTests {
+
+    private static final double FRAMES_PER_SECOND = 44100 / 1024.0;
+    private static final long SECOND = 1_000_000_000L;
+
+    private final Random random = new Random(11);
+
+    @Test
+    void aNoisyRecordingOfTheSameAudioGetsTheCachedMatchAtItsOwnOffset() {
+        RecognitionResultCache cache = cache(10);
+        long[] original = randomLandmarks(600);
+        cache.put(clip(original), result("Song", 12.0), 0);
+
+        // 70% of the landmarks, starting 40 frames later, with a frame of jitter and 300 extra from noise
+        long[] noisy = new long[900];
+        int n = 0;
+        for (long landmark : original) {
+            int time = Landmarks.timeOf(landmark) - 40 + random.nextInt(2);
+            if (random.nextDouble() < 0.7 && time >= 0) {
+                noisy[n++] = Landmarks.pack(Landmarks.hashOf(landmark), time);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            noisy[n++] = Landmarks.pack(random.nextInt(), random.nextInt(430));
+        }
+
+        FingerprintResult hit = cache.get(clip(Arrays.copyOf(noisy, n)), SECOND);
+        assertNotNull(hit);
+        assertEquals("Song", hit.getTrackName());
+        assertEquals(12.0 + 40 / FRAMES_PER_SECOND, hit.getMatchOffsetSeconds(), 1.5 / FRAMES_PER_SECOND);
+        assertEquals(1, cache.getHits());
+
+        // an unrelated clip finds nothing
+        assertNull(cache.get(clip(randomLandmarks(600)), SECOND));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void aCandidateWhoseLandmarksDoNotLineUpIsNotReused() {
+        RecognitionResultCache cache = cache(10);
+        long[] original = randomLandmarks(600);
+        cache.put(clip(original), result("Song", 12.0), 0);
+
+        // the same hashes, so the same signature, but at unrelated times
+        assertNull(cache.get(clip(scrambled(original)), SECOND));
+        assertEquals(1, cache.getUnverified());
+        assertNotNull(cache.get(clip(original), SECOND));
+    }
+
+    @Test
+    void entriesAreBoundedByCountTtlAndConfidence() {
+        RecognitionResultCache cache = cache(2);
+        long[][] clips = {randomLandmarks(300), randomLandmarks(300), randomLandmarks(300), randomLandmarks(300)};
+        cache.put(clip(clips[0]), result("First", 1.0), 0);
+        cache.put(clip(clips[1]), result("Second", 1.0), SECOND);
+        cache.put(clip(clips[2]), result("Third", 1.0), 2 * SECOND);
+        assertEquals(2, cache.getEntryCount());
+        assertNull(cache.get(clip(clips[0]), 2 * SECOND), "oldest entry evicted");
+        assertEquals("Second", cache.get(clip(clips[1]), 2 * SECOND).getTrackName());
+
+        assertNull(cache.get(clip(clips[1]), 31 * SECOND), "expired");
+        assertEquals("Third", cache.get(clip(clips[2]), 31 * SECOND).getTrackName());
+
+        FingerprintResult unsure = FingerprintResult.of(List.of(new MatchCandidate("9", "Unsure", "Artist", 0.3, 8, 1.0)));
+        cache.put(clip(clips[3]), unsure, 3 * SECOND);
+        cache.put(clip(clips[3]), FingerprintResult.of(List.of()), 3 * SECOND);
+        assertNull(cache.get(clip(clips[3]), 3 * SECOND), "only confident matches are cached");
+    }
+
+    @Test
+    void aCrowdedBandIsSearchedNewestFirstAndOnlyUpToTheCandidateLimit() {
+        RecognitionResultCache cache = cache(1000);
+        long[] original = randomLandmarks(300);
+        // the same hashes at unrelated times: one signature, so every entry shares every band
+        for (int i = 0; i < 500; i++) {
+            cache.put(clip(scrambled(original)), result("Other " + i, 1.0), 0);
+        }
+        cache.put(clip(original), result("Song", 1.0), 0);
+
+        assertEquals("Song", cache.get(clip(original), SECOND).getTrackName());
+        assertEquals(0, cache.getUnverified());
+
+        assertNull(cache.get(clip(scrambled(original)), SECOND));
+        assertEquals(4, cache.getUnverified(), "only max-candidates entries are verified");
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(clip(randomLandmarks(300)), result("Fresh " + i, 1.0), 2 * SECOND);
+        }
+        assertEquals(1000, cache.getEntryCount());
+        assertNull(cache.get(clip(original), 2 * SECOND), "the crowded entries were all evicted");
+    }
+
+    private long[] scrambled(long[] landmarks) {
+        long[] scrambled = new long[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            scrambled[i] = Landmarks.pack(Landmarks.hashOf(landmarks[i]), random.nextInt(430));
+        }
+        return scrambled;
+    }
+
+    private static RecognitionResultCache cache(int maxEntries) {
+        return new RecognitionResultCache(true, 30, maxEntries, 20, 0.6, 4);
+    }
+
+    private long[] randomLandmarks(int count) {
+        long[] landmarks = new long[count];
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = Landmarks.pack(random.nextInt(), random.nextInt(430));
+        }
+        return landmarks;
+    }
+
+    private static ClipFingerprint clip(long[] landmarks) {
+        return new ClipFingerprint(landmarks, landmarks.length, FRAMES_PER_SECOND, 10.0);
+    }
+
+    private static FingerprintResult result(String title, double offsetSeconds) {
+        return FingerprintResult.of(List.of(new MatchCandidate("7", title, "Artist", 0.9, 80, offsetSeconds)));
+    }
+}
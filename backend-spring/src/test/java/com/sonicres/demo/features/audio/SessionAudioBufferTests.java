@@ -0,0 +1,109 @@
+package com.sonicres.demo.features.audio;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionAudioBufferTests {
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    SessionAudioBufferTests() {
+        when(session.getId()).thenReturn("buffer-test");
+    }
+
+    @Test
+    void keepsSmallUploadsInPooledSlabs() throws Exception {
+        AudioSlabPool pool = new AudioSlabPool(1, 1); // 1 KB slabs, 1024 of them
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, pool, 64 * 1024);
+        byte[] upload = appendFrames(buffer, 40_000, 700);
+
+        buffer.closeForProcessing();
+        assertFalse(buffer.isSpilled());
+        assertEquals(40, pool.getSlabsInUse());
+
+        List<ByteBuffer> chunks = buffer.chunks();
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks) {
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            joined.write(bytes);
+        }
+        assertArrayEquals(upload, joined.toByteArray());
+        assertArrayEquals(upload, readAll(buffer));
+
+        buffer.closeSilently();
+        assertEquals(0, pool.getSlabsInUse());
+    }
+
+    @Test
+    void spillsPastTheSessionThresholdOrTheGlobalBudget() throws Exception {
+        AudioSlabPool pool = new AudioSlabPool(1, 1);
+
+        SessionAudioBuffer large = new SessionAudioBuffer(session, pool, 10_000);
+        byte[] largeUpload = appendFrames(large, 30_000, 999);
+        SessionAudioBuffer starved = new SessionAudioBuffer(session, new AudioSlabPool(1, 0), 1 << 20);
+        byte[] starvedUpload = appendFrames(starved, 5_000, 512);
+
+        for (SessionAudioBuffer buffer : List.of(large, starved)) {
+            buffer.closeForProcessing();
+            assertTrue(buffer.isSpilled());
+            assertNull(buffer.chunks());
+        }
+        assertEquals(0, pool.getSlabsInUse(), "spilled slabs go back to the pool");
+        assertArrayEquals(largeUpload, readAll(large));
+        assertArrayEquals(starvedUpload, readAll(starved));
+
+        File spill = large.toFile();
+        assertArrayEquals(largeUpload, Files.readAllBytes(spill.toPath()));
+        large.closeSilently();
+        starved.closeSilently();
+        assertFalse(spill.exists());
+    }
+
+    @Test
+    void readerKeepsSlabsAliveAfterDisconnect() throws Exception {
+        AudioSlabPool pool = new AudioSlabPool(1, 1);
+        SessionAudioBuffer buffer = new SessionAudioBuffer(session, pool, 1 << 20);
+        byte[] upload = appendFrames(buffer, 3_000, 400);
+        buffer.closeForProcessing();
+
+        buffer.retain();
+        buffer.closeSilently(); // client went away while a task is decoding
+        assertEquals(3, pool.getSlabsInUse());
+        assertArrayEquals(upload, readAll(buffer));
+
+        buffer.release();
+        assertEquals(0, pool.getSlabsInUse());
+    }
+
+    private static byte[] appendFrames(SessionAudioBuffer buffer, int total, int frameSize) throws Exception {
+        byte[] upload = new byte[total];
+        new Random(total).nextBytes(upload);
+        for (int offset = 0; offset < total; offset += frameSize) {
+            buffer.append(ByteBuffer.wrap(upload, offset, Math.min(frameSize, total - offset)));
+        }
+        return upload;
+    }
+
+    private static byte[] readAll(SessionAudioBuffer buffer) throws Exception {
+        try (InputStream in = buffer.openStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sonicres.demo.features.audio;
+
+import io.github.jaredmdobson.concentus.OpusApplication;
+import io.github.jaredmdobson.concentus.OpusEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deterministic synthetic audio and a minimal WebM/Opus muxer shaped like MediaRecorder output
+ * (unknown-size Segment and Cluster, SimpleBlocks, OpusHead in CodecPrivate).
+ */
+public final class WebmFixtures {
+
+    public static final int OPUS_RATE = 48000;
+    private static final int FRAME_SAMPLES = 960; // 20ms
+    private static final long UNKNOWN_SIZE = -1;
+
+    private WebmFixtures() {
+    }
+
+    /**
+     * Sum of sines with a slow amplitude envelope, so the spectrogram has moving peaks.
+     */
+    public static short[] tones(int sampleRate, double seconds, double... frequencies) {
+        short[] pcm = new short[(int) (sampleRate * seconds)];
+        for (int i = 0; i < pcm.length; i++) {
+            double t = (double) i / sampleRate;
+            double v = 0;
+            for (int k = 0; k < frequencies.length; k++) {
+                double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * (0.7 + k * 0.3) * t + k);
+                v += envelope * Math.sin(2 * Math.PI * frequencies[k] * t);
+            }
+            pcm[i] = (short) (v / frequencies.length * 12000);
+        }
+        return pcm;
+    }
+
+    public static byte[] opusWebm(short[] monoPcm48k) throws Exception {
+        OpusEncoder encoder = new OpusEncoder(OPUS_RATE, 1, OpusApplication.OPUS_APPLICATION_AUDIO);
+        encoder.setBitrate(64000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        element(header, 0x4282, "webm".getBytes(StandardCharsets.US_ASCII));
+        element(out, 0x1A45DFA3, header.toByteArray());
+
+        writeId(out, 0x18538067);
+        writeSize(out, UNKNOWN_SIZE);
+
+        byte[] opusHead = {'O', 'p', 'u', 's', 'H', 'e', 'a', 'd', 1, 1, 0x38, 0x01,
+                (byte) 0x80, (byte) 0xBB, 0, 0, 0, 0, 0};
+        ByteArrayOutputStream audio = new ByteArrayOutputStream();
+        element(audio, 0x9F, new byte[]{1});
+        ByteArrayOutputStream track = new ByteArrayOutputStream();
+        element(track, 0xD7, new byte[]{1});
+        element(track, 0x83, new byte[]{2});
+        element(track, 0x86, "A_OPUS".getBytes(StandardCharsets.US_ASCII));
+        element(track, 0x63A2, opusHead);
+        element(track, 0xE1, audio.toByteArray());
+        ByteArrayOutputStream tracks = new ByteArrayOutputStream();
+        element(tracks, 0xAE, track.toByteArray());
+        element(out, 0x1654AE6B, tracks.toByteArray());
+
+        writeId(out, 0x1F43B675);
+        writeSize(out, UNKNOWN_SIZE);
+        element(out, 0xE7, new byte[]{0});
+
+        byte[] packet = new byte[4000];
+        short[] frame = new short[FRAME_SAMPLES];
+        for (int offset = 0, timecode = 0; offset < monoPcm48k.length; offset += FRAME_SAMPLES, timecode += 20) {
+            int count = Math.min(FRAME_SAMPLES, monoPcm48k.length - offset);
+            java.util.Arrays.fill(frame, (short) 0);
+            System.arraycopy(monoPcm48k, offset, frame, 0, count);
+            int length = encoder.encode(frame, 0, FRAME_SAMPLES, packet, 0, packet.length);
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            block.write(0x81);                  // track 1
+            block.write((timecode >> 8) & 0xFF);
+            block.write(timecode & 0xFF);
+            block.write(0x80);                  // keyframe, no lacing
+            block.write(packet, 0, length);
+            element(out, 0xA3, block.toByteArray());
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void element(ByteArrayOutputStream out, int id, byte[] payload) {
+        writeId(out, id);
+        writeSize(out, payload.length);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static void writeId(ByteArrayOutputStream out, int id) {
+        int bytes = (32 - Integer.numberOfLeadingZeros(id) + 7) / 8;
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((id >> (8 * i)) & 0xFF);
+        }
+    }
+
+    private static void writeSize(ByteArrayOutputStream out, long size) {
+        out.write(0x01); // 8-byte VINT
+        for (int i = 6; i >= 0; i--) {
+            out.write(size == UNKNOWN_SIZE ? 0xFF : (int) ((size >> (8 * i)) & 0xFF));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.sonicres.demo.features.catalog;
+
+import com.sonicres.demo.features.audio.PcmDecoder;
+import com.sonicres.demo.features.audio.WebmFixtures;
+import com.sonicres.demo.features.fingerprint.CatalogIndex;
+import com.sonicres.demo.features.fingerprint.Fingerprinter;
+import com.sonicres.demo.features.fingerprint.LandmarkHasher;
+import com.sonicres.demo.features.fingerprint.PeakExtractor;
+import com.sonicres.demo.features.fingerprint.PostgresFingerprintStore;
+import com.sonicres.demo.features.fingerprint.SpectrogramEngine;
+import com.sonicres.demo.features.fingerprint.TrackCatalog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogIngestionServiceTests {
+
+    @TempDir
+    Path library;
+
+    @TempDir
+    Path indexDirectory;
+
+    private final TrackCatalog catalog = new TrackCatalog();
+    private CatalogIndex index;
+    private final AtomicInteger decodes = new AtomicInteger();
+
+    // test files hold raw s16le PCM, so "decoding" is just reading it back
+    private final PcmDecoder rawDecoder = (in, sink) -> {
+        decodes.incrementAndGet();
+        ByteBuffer bytes = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        short[] samples = new short[bytes.remaining() / 2];
+        bytes.asShortBuffer().get(samples);
+        sink.write(samples, 0, samples.length);
+        return samples.length;
+    };
+
+    @BeforeEach
+    void openIndex() throws Exception {
+        index = new CatalogIndex(catalog, indexDirectory.toString(), true, 4_000_000, 8, 4, 1024, 0);
+    }
+
+    @AfterEach
+    void closeIndex() {
+        index.shutdown();
+    }
+
+    @Test
+    void indexesEveryTrackAndResumesFromCheckpoint() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            writeTrack("Artist " + i + " - Song " + i + ".wav", 300 + i * 150, 1100 + i * 170);
+        }
+        Files.writeString(library.resolve("notes.txt"), "not audio");
+
+        IngestionProgress first = service(64).ingest(library, false);
+        assertEquals(IngestionProgress.COMPLETED, first.state());
+        assertEquals(6, first.indexedTracks());
+        assertEquals(0, first.failedTracks());
+        assertEquals(6, index.getTrackCount());
+        assertEquals(first.hashes(), index.getPostingCount());
+        assertEquals(0, first.inFlightPcmBytes());
+        assertEquals("Artist 3", findArtist("Song 3"));
+
+        writeTrack("Artist 6 - Song 6.wav", 2500, 3100);
+        decodes.set(0);
+        IngestionProgress resumed = service(64).ingest(library, true);
+        assertEquals(7, resumed.totalFiles());
+        assertEquals(6, resumed.skippedFiles());
+        assertEquals(1, resumed.indexedTracks());
+        assertEquals(1, decodes.get());
+    }
+
+    @Test
+    void aHeapOnlyIndexKeepsNoCheckpointAndCannotResume() throws Exception {
+        index.shutdown();
+        index = new CatalogIndex(catalog, "", true, 4_000_000, 8, 4, 1024, 0);
+        writeTrack("Artist - Song.wav", 500, 1500);
+
+        IngestionProgress progress = service(64).ingest(library, false);
+        assertEquals(1, progress.indexedTracks());
+        assertFalse(Files.exists(library.resolve(IngestionCheckpoint.FILE_NAME)), "nothing is durable to checkpoint");
+        assertThrows(IllegalArgumentException.class, () -> service(64).ingest(library, true));
+    }
+
+    @Test
+    void completesWithinASmallPcmBudget() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            writeTrack("track" + i + ".wav", 400 + i * 90, 2000 + i * 60);
+        }
+
+        // 1 MB holds about two 5s tracks, so decoders have to wait for fingerprinting to release PCM
+        IngestionProgress progress = service(1).ingest(library, false);
+
+        assertEquals(8, progress.indexedTracks());
+        assertTrue(progress.hashes() > 0);
+        assertEquals(0, progress.inFlightPcmBytes());
+    }
+
+    private String findArtist(String title) {
+        for (int id = 1; id <= catalog.size(); id++) {
+            if (catalog.get(id).title().equals(title)) {
+                return catalog.get(id).artist();
+            }
+        }
+        return null;
+    }
+
+    private CatalogIngestionService service(int budgetMb) {
+        Fingerprinter fingerprinter = new Fingerprinter(new SpectrogramEngine(2048, 1024, 44100),
+                new PeakExtractor(10, 15, 2.0f, 100, 8000),
+                new LandmarkHasher(5, 1, 64, 128, 400));
+        return new CatalogIngestionService(rawDecoder, fingerprinter, index, catalog,
+                new StaticListableBeanFactory().getBeanProvider(PostgresFingerprintStore.class),
+                4, 2, 3, budgetMb, 10);
+    }
+
+    private void writeTrack(String name, double f1, double f2) throws Exception {
+        short[] pcm = WebmFixtures.tones(44100, 5, f1, f2);
+        ByteBuffer bytes = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(pcm);
+        Files.write(library.resolve(name), bytes.array());
+    }
+}
@@ -0,0 +1,242 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogIndexTests {
+
+    private static final int HASHES_PER_TRACK = 2000;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(5);
+
+    @Test
+    void flushedSegmentsAnswerLikeTheHeapIndexAndSurviveARestart() throws Exception {
+        TrackCatalog catalog = new TrackCatalog();
+        CatalogIndex index = open(catalog, Long.MAX_VALUE, 8);
+        FingerprintIndex reference = new FingerprintIndex();
+
+        for (int i = 0; i < 40; i++) {
+            addTrack(catalog, index, reference);
+        }
+        assertTrue(index.flush());
+        assertEquals(0, index.active().getPostingCount());
+        assertEquals(40, index.getDurableSequence());
+
+        // tracks added after a flush go into the next segment
+        for (int i = 0; i < 10; i++) {
+            addTrack(catalog, index, reference);
+        }
+        assertSameLookups(reference, index);
+        assertTrue(index.flush());
+        assertEquals(2, index.segments().size());
+        index.shutdown();
+
+        TrackCatalog restartedCatalog = new TrackCatalog();
+        CatalogIndex restarted = open(restartedCatalog, Long.MAX_VALUE, 8);
+        assertEquals(50, restarted.getTrackCount());
+        assertEquals("Song 17", restartedCatalog.get(17).title());
+        assertSameLookups(reference, restarted);
+        for (MappedFingerprintIndex segment : restarted.mappedSegments()) {
+            assertTrue(segment.getBytesPerPosting() < 8, "bytes/posting " + segment.getBytesPerPosting());
+        }
+        assertFalse(restarted.flush(), "nothing new to write");
+
+        // hashes no track has are ruled out by both segments' filters without a probe
+        long misses = restarted.getFilterMisses();
+        int[] absent = new int[1000];
+        for (int i = 0; i < absent.length; i++) {
+            absent[i] = 1_000_000 + i;
+        }
+        List<Long> found = new ArrayList<>();
+        restarted.lookup(absent, absent.length, (hashIndex, posting) -> found.add(posting));
+        assertTrue(found.isEmpty());
+        assertTrue(restarted.getFilterMisses() - misses > 2 * 950, "misses " + (restarted.getFilterMisses() - misses));
+        restarted.shutdown();
+    }
+
+    @Test
+    void readersSeeEveryPostingOnceWhileSegmentsAreSealedAndMerged() throws Exception {
+        TrackCatalog catalog = new TrackCatalog();
+        // a segment per three tracks, merged two at a time beyond two files
+        CatalogIndex index = open(catalog, 3L * HASHES_PER_TRACK, 2);
+        FingerprintIndex reference = new FingerprintIndex();
+        for (int i = 0; i < 10; i++) {
+            addTrack(catalog, index, reference);
+        }
+        List<Long> expected = postings(reference, 10);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get() && failure.get() == null) {
+                    List<Long> seen = postings(index, 10);
+                    if (!seen.equals(expected)) {
+                        failure.set("read " + seen.size() + " postings of the first tracks, expected " + expected.size());
+                    }
+                    reads.incrementAndGet();
+                }
+            } catch (IOException e) {
+                failure.set(e.toString());
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 30; i++) {
+            addTrack(catalog, index, reference);
+            if (i % 4 == 0) {
+                index.maintain();
+            }
+        }
+        index.flush();
+        index.maintain();
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertTrue(reads.get() > 0);
+        assertTrue(index.getMergeCount() > 0);
+        assertTrue(index.segments().size() <= 2, index.segments().toString());
+        assertSameLookups(reference, index);
+        assertEquals(index.segments().size(), segmentFiles().size());
+        index.shutdown();
+    }
+
+    @Test
+    void dropsMergeInputsLeftBehindByACrash() throws Exception {
+        TrackCatalog catalog = new TrackCatalog();
+        CatalogIndex index = open(catalog, Long.MAX_VALUE, 8);
+        FingerprintIndex reference = new FingerprintIndex();
+        for (int i = 0; i < 3; i++) {
+            // a small first segment, so the merge picks the first two
+            for (int j = 0; j < (i == 0 ? 2 : 4); j++) {
+                addTrack(catalog, index, reference);
+            }
+            index.flush();
+        }
+        index.shutdown();
+
+        // keep copies of the three files, merge them, then put the inputs back as a crash before deletion would
+        Path saved = Files.createDirectory(directory.resolve("saved"));
+        for (Path file : segmentFiles()) {
+            Files.copy(file, saved.resolve(file.getFileName()));
+        }
+        CatalogIndex merging = open(new TrackCatalog(), Long.MAX_VALUE, 2);
+        merging.maintain();
+        merging.shutdown();
+        assertEquals(List.of("segment-000001-000002.sfi", "segment-000003-000003.sfi"),
+                segmentFiles().stream().map(f -> f.getFileName().toString()).toList());
+        Files.copy(saved.resolve("segment-000001-000001.sfi"), directory.resolve("segment-000001-000001.sfi"));
+        Files.copy(saved.resolve("segment-000002-000002.sfi"), directory.resolve("segment-000002-000002.sfi"));
+        Files.writeString(directory.resolve("segment-000004-000004.sfi.tmp"), "half written");
+
+        CatalogIndex restarted = open(new TrackCatalog(), Long.MAX_VALUE, 8);
+        assertEquals(2, restarted.segments().size());
+        assertEquals(10, restarted.getTrackCount());
+        assertSameLookups(reference, restarted);
+        assertEquals(2, segmentFiles().size());
+        assertFalse(Files.exists(directory.resolve("segment-000004-000004.sfi.tmp")));
+        restarted.shutdown();
+    }
+
+    @Test
+    void mergesNeverWriteASegmentOverTheSizeCap() throws Exception {
+        TrackCatalog catalog = new TrackCatalog();
+        CatalogIndex index = open(catalog, Long.MAX_VALUE, 8);
+        FingerprintIndex reference = new FingerprintIndex();
+        for (int i = 0; i < 4; i++) {
+            // one big segment, then three small ones
+            for (int j = 0; j < (i == 0 ? 24 : 1); j++) {
+                addTrack(catalog, index, reference);
+            }
+            index.flush();
+        }
+        index.shutdown();
+        List<Path> files = segmentFiles();
+        long big = Files.size(files.get(0));
+        long small = Files.size(files.get(1)) + Files.size(files.get(2)) + Files.size(files.get(3));
+        assertTrue(small < big, small + " >= " + big);
+
+        // capped at the big segment's size, with room for a single file: only the small ones can merge
+        CatalogIndex capped = new CatalogIndex(new TrackCatalog(), directory.toString(), true, Long.MAX_VALUE, 1, 4, big, 0);
+        capped.maintain();
+        assertEquals(List.of("segment-000001-000001.sfi", "segment-000002-000004.sfi"),
+                segmentFiles().stream().map(f -> f.getFileName().toString()).toList());
+        assertEquals(big, Files.size(files.get(0)), "the segment at the cap is left alone");
+        for (Path file : segmentFiles()) {
+            assertTrue(Files.size(file) <= big, file + " is " + Files.size(file) + " bytes");
+        }
+        assertEquals(1, capped.getMergeCount());
+        assertSameLookups(reference, capped);
+        capped.shutdown();
+    }
+
+    private CatalogIndex open(TrackCatalog catalog, long sealPostings, int maxSegments) throws Exception {
+        return new CatalogIndex(catalog, directory.toString(), true, sealPostings, maxSegments, 2, 1024, 0);
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".sfi")).sorted().toList();
+        }
+    }
+
+    private void addTrack(TrackCatalog catalog, CatalogIndex index, FingerprintIndex reference) {
+        TrackInfo track = catalog.register("Song " + (catalog.size() + 1), "Artist");
+        long[] landmarks = new long[HASHES_PER_TRACK];
+        for (int i = 0; i < landmarks.length; i++) {
+            // a narrow hash range, so hashes have postings from many tracks and from repeats within one
+            landmarks[i] = Landmarks.pack(random.nextInt(6000) - 3000, random.nextInt(8000));
+        }
+        index.add(track.id(), landmarks, landmarks.length);
+        reference.add(track.id(), landmarks, landmarks.length);
+    }
+
+    private static int[] allHashes() {
+        int[] hashes = new int[6100];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = i - 3050;
+        }
+        return hashes;
+    }
+
+    /**
+     * Every (hash, posting) pair for tracks up to {@code maxTrackId}, sorted.
+     */
+    private static List<Long> postings(PostingsSource source, int maxTrackId) throws IOException {
+        int[] hashes = allHashes();
+        List<Long> postings = new ArrayList<>();
+        source.lookup(hashes, hashes.length, (hashIndex, posting) -> {
+            if (Postings.trackIdOf(posting) <= maxTrackId) {
+                postings.add((long) hashIndex << 48 ^ posting);
+            }
+            return true;
+        });
+        postings.sort(null);
+        return postings;
+    }
+
+    private static void assertSameLookups(FingerprintIndex reference, CatalogIndex index) throws IOException {
+        assertEquals(postings(reference, Integer.MAX_VALUE), postings(index, Integer.MAX_VALUE));
+    }
+}
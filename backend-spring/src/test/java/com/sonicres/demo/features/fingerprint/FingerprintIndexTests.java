@@ -0,0 +1,85 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintIndexTests {
+
+    @Test
+    void returnsEveryPostingOfAHash() {
+        FingerprintIndex index = new FingerprintIndex();
+        Map<Integer, List<Long>> expected = new HashMap<>();
+        Random random = new Random(3);
+
+        for (int track = 1; track <= 50; track++) {
+            long[] landmarks = new long[3000];
+            for (int i = 0; i < landmarks.length; i++) {
+                int hash = random.nextInt(20000) - 10000;
+                landmarks[i] = Landmarks.pack(hash, i);
+                expected.computeIfAbsent(hash, h -> new ArrayList<>()).add(Postings.pack(track, i));
+            }
+            index.add(track, landmarks, landmarks.length);
+        }
+
+        assertEquals(50, index.getTrackCount());
+        assertEquals(150_000, index.getPostingCount());
+        assertEquals(expected.size(), index.getKeyCount());
+
+        for (Map.Entry<Integer, List<Long>> entry : expected.entrySet()) {
+            List<Long> actual = new ArrayList<>();
+            index.lookup(entry.getKey(), 0, (hashIndex, posting) -> actual.add(posting));
+            actual.sort(null);
+            List<Long> want = new ArrayList<>(entry.getValue());
+            want.sort(null);
+            assertEquals(want, actual, "hash " + entry.getKey());
+        }
+
+        assertTrue(index.getBytesPerPosting() < 32, "bytes/posting " + index.getBytesPerPosting());
+    }
+
+    @Test
+    void readersSeeConsistentPostingsWhileWriterGrowsTheIndex() throws Exception {
+        FingerprintIndex index = new FingerprintIndex();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            Random random = new Random(1);
+            while (writing.get()) {
+                int hash = random.nextInt(500_000);
+                index.lookup(hash, 0, (hashIndex, posting) -> {
+                    // every posting for hash h was written as (track, h)
+                    if (Postings.offsetOf(posting) != hash) {
+                        failure.set("hash " + hash + " returned posting for " + Postings.offsetOf(posting));
+                    }
+                    return true;
+                });
+            }
+        });
+        reader.start();
+
+        long[] landmarks = new long[10_000];
+        for (int track = 1; track <= 100; track++) {
+            for (int i = 0; i < landmarks.length; i++) {
+                int hash = (track * 7919 + i * 31) % 500_000;
+                landmarks[i] = Landmarks.pack(hash, hash);
+            }
+            index.add(track, landmarks, landmarks.length);
+        }
+        writing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+}
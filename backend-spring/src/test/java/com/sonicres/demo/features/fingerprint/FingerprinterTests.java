@@ -0,0 +1,108 @@
+package com.sonicres.demo.features.fingerprint;
+
+import com.sonicres.demo.features.audio.WebmFixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprinterTests {
+
+    private final SpectrogramEngine engine = new SpectrogramEngine(2048, 1024, 44100);
+
+    @Test
+    void peaksMatchBruteForceNeighbourhoodMaximum() {
+        int frames = 40, bins = 64, timeRadius = 3, frequencyRadius = 2;
+        Spectrogram spectrogram = new Spectrogram();
+        spectrogram.reset(frames, bins, 1024, 44100);
+        Random random = new Random(7);
+        for (int i = 0; i < frames * bins; i++) {
+            spectrogram.magnitudes()[i] = random.nextFloat();
+        }
+
+        PeakExtractor extractor = new PeakExtractor(timeRadius, frequencyRadius, 0f, 0, 1e9);
+        Peaks peaks = extractor.extract(spectrogram);
+
+        Set<Long> expected = new HashSet<>();
+        for (int f = 0; f < frames; f++) {
+            for (int b = 1; b < bins; b++) {
+                float v = spectrogram.magnitude(f, b);
+                boolean isMax = true;
+                for (int df = -timeRadius; df <= timeRadius && isMax; df++) {
+                    for (int db = -frequencyRadius; db <= frequencyRadius; db++) {
+                        int ff = f + df, bb = b + db;
+                        if (ff >= 0 && ff < frames && bb >= 0 && bb < bins && spectrogram.magnitude(ff, bb) > v) {
+                            isMax = false;
+                            break;
+                        }
+                    }
+                }
+                if (isMax) {
+                    expected.add(((long) f << 32) | b);
+                }
+            }
+        }
+
+        Set<Long> actual = new HashSet<>();
+        for (int i = 0; i < peaks.count(); i++) {
+            actual.add(((long) peaks.frame(i) << 32) | peaks.bin(i));
+            if (i > 0) {
+                assertTrue(peaks.frame(i) >= peaks.frame(i - 1), "peaks must be in frame order");
+            }
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void hashesSurviveATimeShift() {
+        short[] pcm = WebmFixtures.tones(44100, 6.0, 523, 880, 1320, 2093, 3136);
+        int shiftFrames = 20;
+        int shiftSamples = shiftFrames * engine.getHopSize();
+        short[] excerpt = java.util.Arrays.copyOfRange(pcm, shiftSamples, pcm.length);
+
+        Fingerprinter fingerprinter = fingerprinter(400);
+        long[] full = fingerprinter.fingerprint(pcm, pcm.length).toArray();
+        long[] shifted = fingerprinter.fingerprint(excerpt, excerpt.length).toArray();
+
+        Set<Long> reference = new HashSet<>();
+        for (long landmark : full) {
+            reference.add(landmark);
+        }
+
+        int aligned = 0;
+        for (long landmark : shifted) {
+            long realigned = Landmarks.pack(Landmarks.hashOf(landmark), Landmarks.timeOf(landmark) + shiftFrames);
+            if (reference.contains(realigned)) {
+                aligned++;
+            }
+        }
+
+        assertTrue(shifted.length > 50, "expected a usable number of hashes, got " + shifted.length);
+        assertTrue(aligned > shifted.length / 2, aligned + " of " + shifted.length + " hashes realigned");
+    }
+
+    @Test
+    void densityCapLimitsHashesPerSecond() {
+        short[] pcm = WebmFixtures.tones(44100, 5.0, 300, 450, 700, 1100, 1700, 2500, 3300, 4100);
+        Landmarks landmarks = fingerprinter(50).fingerprint(pcm, pcm.length);
+
+        int framesPerSecond = (int) Math.round(landmarks.framesPerSecond());
+        int[] perSecond = new int[10];
+        for (int i = 0; i < landmarks.count(); i++) {
+            perSecond[Landmarks.timeOf(landmarks.values()[i]) / framesPerSecond]++;
+        }
+        for (int second = 0; second < perSecond.length; second++) {
+            assertTrue(perSecond[second] <= 50, "second " + second + " has " + perSecond[second] + " hashes");
+        }
+    }
+
+    private Fingerprinter fingerprinter(int maxHashesPerSecond) {
+        return new Fingerprinter(engine,
+                new PeakExtractor(10, 15, 2.0f, 100, 8000),
+                new LandmarkHasher(5, 1, 64, 128, maxHashesPerSecond));
+    }
+}
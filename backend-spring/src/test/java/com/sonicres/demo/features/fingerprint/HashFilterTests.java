@@ -0,0 +1,113 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashFilterTests {
+
+    @Test
+    void neverForgetsAHashAndLetsFewAbsentOnesThrough() {
+        Random random = new Random(3);
+        Set<Integer> added = new HashSet<>();
+        HashFilter filter = HashFilter.create(100_000);
+        while (added.size() < 100_000) {
+            int hash = random.nextInt();
+            added.add(hash);
+            filter.add(hash);
+        }
+        for (int hash : added) {
+            assertTrue(filter.mightContain(hash));
+        }
+
+        int falsePositives = 0;
+        int absent = 0;
+        while (absent < 100_000) {
+            int hash = random.nextInt();
+            if (!added.contains(hash)) {
+                absent++;
+                if (filter.mightContain(hash)) {
+                    falsePositives++;
+                }
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positive rate " + falsePositives / 1000.0 + "%");
+        assertEquals(100_000L * HashFilter.BITS_PER_KEY / 8, filter.getBytes(), HashFilter.BLOCK_BYTES);
+    }
+
+    @Test
+    void readsTheSameFromItsWrittenBytes() {
+        HashFilter filter = HashFilter.create(1000);
+        for (int hash = 0; hash < 1000; hash++) {
+            filter.add(hash * 7919);
+        }
+        HashFilter copy = HashFilter.wrap(filter.bytes());
+        for (int hash = -5000; hash < 5000; hash++) {
+            assertEquals(filter.mightContain(hash * 7919), copy.mightContain(hash * 7919));
+        }
+    }
+
+    @Test
+    void concurrentWritersLoseNoBitsWhileReadersCheck() throws Exception {
+        // a small filter, so the writers keep hitting the same words, as an ingest and a refresh do
+        int writers = 4;
+        int perWriter = 50_000;
+        HashFilter filter = HashFilter.create(writers * perWriter / 4);
+        ExecutorService threads = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> adds = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                adds.add(threads.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        filter.add(i * writers + writer);
+                    }
+                    return null;
+                }));
+            }
+            // a reader never sees a hash disappear once it has seen it
+            Future<Boolean> flickered = threads.submit(() -> {
+                start.await();
+                boolean seen = false;
+                while (writing.get()) {
+                    boolean now = filter.mightContain(0);
+                    if (seen && !now) {
+                        return true;
+                    }
+                    seen |= now;
+                }
+                return false;
+            });
+
+            start.countDown();
+            for (Future<?> add : adds) {
+                add.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            assertFalse(flickered.get(30, TimeUnit.SECONDS));
+        } finally {
+            threads.shutdownNow();
+        }
+
+        for (int hash = 0; hash < writers * perWriter; hash++) {
+            assertTrue(filter.mightContain(hash), "lost hash " + hash);
+        }
+    }
+}
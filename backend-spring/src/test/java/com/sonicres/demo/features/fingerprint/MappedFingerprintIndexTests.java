@@ -0,0 +1,62 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedFingerprintIndexTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rejectsCorruptAndForeignFiles() throws Exception {
+        Path file = directory.resolve("catalog.sfi");
+        try (FingerprintIndexWriter writer = new FingerprintIndexWriter(file)) {
+            writer.add(-5, new long[]{Postings.pack(1, 10), Postings.pack(1, 4)}, 2);
+            writer.add(7, new long[]{Postings.pack(2, 0)}, 1);
+            writer.addTrack(new TrackInfo(1, "A", "B"));
+            writer.commit();
+        }
+        assertNotNull(MappedFingerprintIndex.open(file, true));
+
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            size = channel.size();
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), IndexFileFormat.HEADER_BYTES + 2);
+        }
+        IOException corrupt = assertThrows(IOException.class, () -> MappedFingerprintIndex.open(file, true));
+        assertTrue(corrupt.getMessage().contains("postings checksum"), corrupt.getMessage());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{9}), IndexFileFormat.VERSION_AT);
+        }
+        IOException version = assertThrows(IOException.class, () -> MappedFingerprintIndex.open(file, false));
+        assertTrue(version.getMessage().contains("version"), version.getMessage());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 1);
+        }
+        assertThrows(IOException.class, () -> MappedFingerprintIndex.open(file, false));
+    }
+
+    @Test
+    void writerRequiresAscendingHashes() throws Exception {
+        try (FingerprintIndexWriter writer = new FingerprintIndexWriter(directory.resolve("bad.sfi"))) {
+            writer.add(10, new long[]{Postings.pack(1, 0)}, 1);
+            assertThrows(IllegalArgumentException.class, () -> writer.add(3, new long[]{Postings.pack(1, 0)}, 1));
+        }
+        assertFalse(directory.resolve("bad.sfi").toFile().exists());
+        assertFalse(directory.resolve("bad.sfi.tmp").toFile().exists());
+    }
+}
@@ -0,0 +1,126 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffsetMatcherTests {
+
+    private static final int TRACK_FRAMES = 5000;
+    private static final int HASHES_PER_TRACK = 4000;
+
+    @Test
+    void ranksTheAlignedTrackFirstAndReportsItsOffset() throws Exception {
+        FingerprintIndex index = new FingerprintIndex();
+        long[][] tracks = indexRandomTracks(index, 20);
+
+        // 300 landmarks of track 7 starting at frame 1200, plus noise
+        QueryLandmarks query = new QueryLandmarks().reset(excerpt(tracks[7], 1200, 300, 50), 350);
+        OffsetMatcher matcher = new OffsetMatcher(5, Integer.MAX_VALUE, 3, 20);
+
+        OffsetMatcher.Match match = matcher.begin(query);
+        index.lookup(query.hashes(), query.hashCount(), match);
+        List<TrackMatch> candidates = match.candidates();
+
+        assertFalse(candidates.isEmpty());
+        TrackMatch best = candidates.get(0);
+        assertEquals(7, best.trackId());
+        assertEquals(1200, best.offsetFrames());
+        assertTrue(best.votes() >= 300, "votes " + best.votes());
+        assertTrue(best.confidence() > 0.9, "confidence " + best.confidence());
+        for (int i = 1; i < candidates.size(); i++) {
+            assertTrue(candidates.get(i).votes() <= candidates.get(i - 1).votes());
+            assertTrue(candidates.get(i).confidence() < 0.1);
+        }
+        assertFalse(match.isStoppedEarly());
+    }
+
+    @Test
+    void stopsScanningOnceCancelled() throws Exception {
+        FingerprintIndex index = new FingerprintIndex();
+        long[][] tracks = indexRandomTracks(index, 5);
+        QueryLandmarks query = new QueryLandmarks().reset(excerpt(tracks[2], 0, 2000, 0), 2000);
+        OffsetMatcher matcher = new OffsetMatcher(5, Integer.MAX_VALUE, 3, 20);
+
+        int[] checks = {0};
+        OffsetMatcher.Match match = matcher.begin(query, () -> ++checks[0] > 1);
+        index.lookup(query.hashes(), query.hashCount(), match);
+
+        assertTrue(match.isCancelled());
+        assertEquals(1024, match.getPostingsVisited());
+
+        match = matcher.begin(query);
+        index.lookup(query.hashes(), query.hashCount(), match);
+        assertFalse(match.isCancelled());
+        assertTrue(match.getPostingsVisited() > 1024);
+    }
+
+    @Test
+    void stopsOnceTheLeaderIsClear() throws Exception {
+        FingerprintIndex index = new FingerprintIndex();
+        long[][] tracks = indexRandomTracks(index, 20);
+
+        QueryLandmarks query = new QueryLandmarks().reset(excerpt(tracks[3], 0, 1000, 0), 1000);
+        OffsetMatcher matcher = new OffsetMatcher(5, 30, 3, 20);
+
+        OffsetMatcher.Match match = matcher.begin(query);
+        index.lookup(query.hashes(), query.hashCount(), match);
+
+        assertTrue(match.isStoppedEarly());
+        assertEquals(3, match.candidates().get(0).trackId());
+        assertTrue(match.getPostingsVisited() < 1000, "visited " + match.getPostingsVisited());
+    }
+
+    @Test
+    void returnsNothingForUnknownAudio() throws Exception {
+        FingerprintIndex index = new FingerprintIndex();
+        indexRandomTracks(index, 20);
+
+        QueryLandmarks query = new QueryLandmarks().reset(excerpt(new long[0], 0, 0, 300), 300);
+        OffsetMatcher.Match match = new OffsetMatcher(5, 40, 3, 20).begin(query);
+        index.lookup(query.hashes(), query.hashCount(), match);
+
+        assertTrue(match.candidates().isEmpty());
+    }
+
+    private static long[][] indexRandomTracks(FingerprintIndex index, int count) {
+        Random random = new Random(11);
+        long[][] tracks = new long[count][];
+        for (int track = 0; track < count; track++) {
+            long[] landmarks = new long[HASHES_PER_TRACK];
+            for (int i = 0; i < landmarks.length; i++) {
+                landmarks[i] = Landmarks.pack(random.nextInt(), random.nextInt(TRACK_FRAMES));
+            }
+            tracks[track] = landmarks;
+            index.add(track, landmarks, landmarks.length);
+        }
+        return tracks;
+    }
+
+    /**
+     * Landmarks of {@code track} whose time falls in [start, ...) re-based to query time, plus random noise.
+     */
+    private static long[] excerpt(long[] track, int start, int wanted, int noise) {
+        long[] query = new long[wanted + noise];
+        int n = 0;
+        for (long landmark : track) {
+            if (n == wanted) {
+                break;
+            }
+            int time = Landmarks.timeOf(landmark);
+            if (time >= start) {
+                query[n++] = Landmarks.pack(Landmarks.hashOf(landmark), time - start);
+            }
+        }
+        Random random = new Random(99);
+        while (n < query.length) {
+            query[n++] = Landmarks.pack(random.nextInt(), random.nextInt(500));
+        }
+        return query;
+    }
+}
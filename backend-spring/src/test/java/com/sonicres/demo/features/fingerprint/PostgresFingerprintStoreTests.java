@@ -0,0 +1,208 @@
+package com.sonicres.demo.features.fingerprint;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link PostgresFingerprintStore} against a real PostgreSQL, each run in a throwaway schema. Not part
+ * of the normal build; run with a local database, e.g. {@code docker compose -f docker-compose.local.yml up db}:
+ *
+ * {@code mvn test -Dtest=PostgresFingerprintStoreTests -Dfingerprint.store.url=jdbc:postgresql://localhost:5432/sonic
+ * -Dfingerprint.store.user=... -Dfingerprint.store.password=...}
+ */
+@EnabledIfSystemProperty(named = "fingerprint.store.url", matches = ".+")
+class PostgresFingerprintStoreTests {
+
+    private static final String URL = System.getProperty("fingerprint.store.url");
+    private static final String USER = System.getProperty("fingerprint.store.user", "postgres");
+    private static final String PASSWORD = System.getProperty("fingerprint.store.password", "");
+
+    private final Random random = new Random(8);
+    private final String schema = "fingerprint_test_" + Long.toHexString(System.nanoTime());
+    private HikariDataSource dataSource;
+
+    @BeforeEach
+    void createSchema() throws Exception {
+        execute("CREATE SCHEMA " + schema);
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(URL);
+        config.setUsername(USER);
+        config.setPassword(PASSWORD);
+        config.setSchema(schema);
+        config.setMaximumPoolSize(4);
+        dataSource = new HikariDataSource(config);
+    }
+
+    @AfterEach
+    void dropSchema() throws Exception {
+        dataSource.close();
+        execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    @Test
+    void copiedPostingsComeBackForEveryHashOfTheQuery() throws Exception {
+        PostgresFingerprintStore store = new PostgresFingerprintStore(dataSource, 500);
+        store.initializeSchema();
+        store.initializeSchema(); // idempotent
+
+        // more rows than one COPY chunk, with negative and repeated hashes
+        FingerprintIndex reference = new FingerprintIndex();
+        List<TrackLandmarks> batch = List.of(track(1, "One", 4000), track(2, "Two", 4000), track(3, "Three", 10));
+        for (TrackLandmarks t : batch) {
+            reference.add(t.track().id(), t.landmarks(), t.count());
+        }
+        store.addTracks(batch);
+
+        int[] hashes = queryHashes();
+        assertEquals(postings(reference, hashes), postings(store, hashes));
+        assertTrue(postings(store, hashes).size() > 1000);
+        assertEquals(List.of("One", "Two", "Three"), store.loadTracks().stream()
+                .sorted((a, b) -> a.id() - b.id()).map(TrackInfo::title).toList());
+
+        // a visitor that stops early gets no more postings
+        int[] visits = {0};
+        store.lookup(hashes, hashes.length, (hashIndex, posting) -> ++visits[0] < 5);
+        assertEquals(5, visits[0]);
+    }
+
+    @Test
+    void reingestingATrackReplacesItsPostingsInTheStoreAndTheCache() throws Exception {
+        PostingsCache cache = new PostingsCache(16 * 1024 * 1024, 0);
+        try (LocalPostingsTier tier = new LocalPostingsTier(16 * 1024 * 1024)) {
+            PostgresFingerprintStore store = new PostgresFingerprintStore(dataSource, 500, cache, tier);
+            store.initializeSchema();
+            int[] hashes = queryHashes();
+
+            TrackLandmarks first = track(7, "Draft", 2000);
+            store.addTracks(List.of(first));
+            FingerprintIndex before = new FingerprintIndex();
+            before.add(7, first.landmarks(), first.count());
+            assertEquals(postings(before, hashes), postings(store, hashes));
+            assertTrue(cache.getEntryCount() > 0);
+
+            TrackLandmarks second = track(7, "Final", 2000);
+            store.addTracks(List.of(second));
+            FingerprintIndex after = new FingerprintIndex();
+            after.add(7, second.landmarks(), second.count());
+            assertEquals(postings(after, hashes), postings(store, hashes), "no postings of the first version left");
+            assertEquals(List.of(new TrackInfo(7, "Final", "Artist")), store.loadTracks());
+        }
+    }
+
+    @Test
+    void aRefreshAddsTracksAnotherNodeStoredToTheFilter() throws Exception {
+        PostgresFingerprintStore node = new PostgresFingerprintStore(dataSource, 500);
+        PostgresFingerprintStore otherNode = new PostgresFingerprintStore(dataSource, 500);
+        node.initializeSchema();
+        otherNode.addTracks(List.of(track(1, "Before", 500)));
+        node.loadFilter(100_000);
+        assertEquals(List.of(), node.refreshFilter(), "everything stored so far is in the filter");
+        node.addTracks(List.of(track(3, "Own", 500)));
+        assertEquals(List.of(), node.refreshFilter(), "this node's own ingest is in the filter already");
+
+        TrackLandmarks later = track(2, "Later", 500);
+        otherNode.addTracks(List.of(later));
+        FingerprintIndex reference = new FingerprintIndex();
+        reference.add(2, later.landmarks(), later.count());
+        int[] hashes = laterOnlyHashes(reference, node);
+        assertTrue(hashes.length > 100, "the stale filter rules the new track out, " + hashes.length + " hashes");
+
+        assertEquals(List.of(new TrackInfo(2, "Later", "Artist")), node.refreshFilter());
+        assertEquals(postings(reference, hashes), postings(node, hashes));
+
+        // re-storing a track gives it a new generation, so its new hashes are added too
+        TrackLandmarks restored = new TrackLandmarks(new TrackInfo(2, "Later", "Artist"),
+                new long[]{Landmarks.pack(900_000, 1)}, 1);
+        otherNode.addTracks(List.of(restored));
+        assertEquals(1, node.refreshFilter().size());
+        assertEquals(1, postings(node, new int[]{900_000}).size());
+    }
+
+    @Test
+    void nodesNeverAllocateTheSameTrackId() throws Exception {
+        PostgresFingerprintStore node = new PostgresFingerprintStore(dataSource, 500);
+        PostgresFingerprintStore otherNode = new PostgresFingerprintStore(dataSource, 500);
+        node.initializeSchema();
+        node.addTracks(List.of(track(5, "Stored before the sequence", 10)));
+        otherNode.initializeSchema(); // a restart catches the sequence up with the stored IDs
+
+        TreeSet<Integer> ids = new TreeSet<>();
+        for (int i = 0; i < 3; i++) {
+            Arrays.stream(node.allocateTrackIds(4)).forEach(ids::add);
+            Arrays.stream(otherNode.allocateTrackIds(4)).forEach(ids::add);
+        }
+
+        assertEquals(24, ids.size());
+        assertTrue(ids.first() > 5, "first allocated ID is " + ids.first());
+    }
+
+    /**
+     * Hashes of the reference's track the node finds nothing for, i.e. its filter rules them out.
+     */
+    private static int[] laterOnlyHashes(FingerprintIndex reference, PostgresFingerprintStore node) throws IOException {
+        TreeSet<Integer> hashes = new TreeSet<>();
+        int[] all = queryHashes();
+        reference.lookup(all, all.length, (hashIndex, posting) -> hashes.add(all[hashIndex]));
+        List<Integer> passing = new ArrayList<>();
+        for (int hash : hashes) {
+            if (postings(node, new int[]{hash}).isEmpty()) {
+                passing.add(hash);
+            }
+        }
+        return passing.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private TrackLandmarks track(int id, String title, int count) {
+        long[] landmarks = new long[count];
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = Landmarks.pack(random.nextInt(4000) - 2000, random.nextInt(10_000));
+        }
+        return new TrackLandmarks(new TrackInfo(id, title, "Artist"), landmarks, count);
+    }
+
+    /**
+     * Every hash the tracks can have, and some they can't, sorted and unique as lookups require.
+     */
+    private static int[] queryHashes() {
+        TreeSet<Integer> hashes = new TreeSet<>();
+        for (int h = -2100; h < 2100; h++) {
+            hashes.add(h);
+        }
+        return hashes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Every (hash index, posting) pair, sorted.
+     */
+    private static List<Long> postings(PostingsSource source, int[] hashes) throws IOException {
+        List<Long> postings = new ArrayList<>();
+        source.lookup(hashes, hashes.length, (hashIndex, posting) -> postings.add((long) hashIndex << 48 ^ posting));
+        postings.sort(null);
+        return postings;
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
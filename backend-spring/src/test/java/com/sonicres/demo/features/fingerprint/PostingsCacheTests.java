@@ -0,0 +1,191 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingsCacheTests {
+
+    private static final int POSTINGS_PER_HASH = 20;
+    private static final long ENTRY_BYTES = PostingsCache.ENTRY_OVERHEAD_BYTES + POSTINGS_PER_HASH * Long.BYTES;
+
+    @Test
+    void hotHashesSurviveAScanOfColdOnesWithinTheByteBudget() {
+        PostingsCache cache = new PostingsCache(1000 * ENTRY_BYTES, 0);
+
+        // 500 hot hashes, asked for repeatedly
+        int[] hot = range(0, 500);
+        for (int round = 0; round < 5; round++) {
+            lookThrough(cache, hot);
+        }
+        assertEquals(hot.length, hits(cache, hot));
+
+        // a scan of 20,000 hashes seen once each, more than the cache holds
+        for (int from = 10_000; from < 30_000; from += 500) {
+            lookThrough(cache, range(from, from + 500));
+        }
+
+        assertTrue(cache.getBytes() <= cache.getMaxBytes(), cache.getBytes() + " > " + cache.getMaxBytes());
+        assertTrue(cache.getEvictions() + cache.getRejections() >= 19_000);
+        assertTrue(hits(cache, hot) > hot.length * 9 / 10, "hot hits " + hits(cache, hot));
+    }
+
+    @Test
+    void loadsThatRacedAnInvalidationAreNotCached() {
+        PostingsCache cache = new PostingsCache(1000 * ENTRY_BYTES, 0);
+        int[] hashes = range(0, 10);
+
+        long before = cache.epoch();
+        cache.putAll(hashes, postings(hashes), hashes.length, before);
+        assertEquals(10, hits(cache, hashes));
+
+        long stale = cache.epoch();
+        cache.invalidate(new int[]{3}, 1);
+        assertEquals(9, hits(cache, hashes));
+        cache.putAll(hashes, postings(hashes), hashes.length, stale);
+        assertEquals(9, hits(cache, hashes), "a load that started before the invalidation is dropped");
+
+        cache.putAll(hashes, postings(hashes), hashes.length, cache.epoch());
+        assertEquals(10, hits(cache, hashes));
+    }
+
+    @Test
+    void localTierRoundTripsEncodedPostingsAndForgetsInvalidatedHashes() throws Exception {
+        Random random = new Random(3);
+        long[] postings = new long[300];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = Postings.pack(random.nextInt(1_000_000), random.nextInt(100_000));
+        }
+        Arrays.sort(postings);
+        assertArrayEquals(postings, PostingsCodec.decode(PostingsCodec.encode(postings)));
+        assertEquals(0, PostingsCodec.decode(PostingsCodec.encode(new long[0])).length);
+
+        try (LocalPostingsTier tier = new LocalPostingsTier(1024 * 1024)) {
+            int[] hashes = {-7, 5, 9};
+            assertTrue(tier.putAll(hashes, new long[][]{postings, new long[0], null}, 3, tier.version()));
+
+            long[][] found = new long[3][];
+            tier.getAll(hashes, 3, found);
+            assertArrayEquals(postings, found[0]);
+            assertEquals(0, found[1].length);
+            assertNull(found[2]);
+            assertTrue(tier.getBytes() < postings.length * Long.BYTES, "encoded " + tier.getBytes() + " bytes");
+
+            long stale = tier.version();
+            tier.invalidate(new int[]{-7}, 1);
+            found = new long[3][];
+            tier.getAll(hashes, 3, found);
+            assertNull(found[0]);
+            assertFalse(tier.putAll(hashes, new long[][]{postings, null, null}, 1, stale), "written after an invalidation");
+        }
+    }
+
+    @Test
+    void aLoadThatRacedAnIngestLeavesNeitherTierStale() throws Exception {
+        int[] hashes = range(0, 10);
+        FingerprintIndex database = new FingerprintIndex();
+        try (LocalPostingsTier tier = new LocalPostingsTier(1024 * 1024)) {
+            PostingsCache cache = new PostingsCache(1000 * ENTRY_BYTES, 0);
+            AtomicReference<CachedPostingsSource> cached = new AtomicReference<>();
+            AtomicBoolean ingestDuringRead = new AtomicBoolean(true);
+
+            // the database read sees no postings, then a track with those hashes is committed and invalidated
+            cached.set(new CachedPostingsSource(cache, tier, (probe, count, visitor) -> {
+                database.lookup(probe, count, visitor);
+                if (ingestDuringRead.getAndSet(false)) {
+                    long[] landmarks = new long[hashes.length];
+                    for (int i = 0; i < hashes.length; i++) {
+                        landmarks[i] = Landmarks.pack(hashes[i], i);
+                    }
+                    database.add(7, landmarks, landmarks.length);
+                    cached.get().invalidate(hashes, hashes.length);
+                }
+            }));
+
+            assertEquals(0, postingsFound(cached.get(), hashes), "the racing load answers with what it read");
+            assertEquals(0, hits(cache, hashes), "not cached in process");
+            long[][] inTier = new long[hashes.length][];
+            tier.getAll(hashes, hashes.length, inTier);
+            assertTrue(Arrays.stream(inTier).allMatch(Objects::isNull), "not written to the second tier");
+
+            assertEquals(hashes.length, postingsFound(cached.get(), hashes), "the next lookup sees the track");
+            tier.getAll(hashes, hashes.length, inTier);
+            assertTrue(Arrays.stream(inTier).allMatch(p -> p != null && p.length == 1));
+        }
+    }
+
+    @Test
+    void anUnreachableRedisOnlyCostsATripToTheBackingSource() throws Exception {
+        FingerprintIndex database = new FingerprintIndex();
+        database.add(3, new long[]{Landmarks.pack(42, 10)}, 1);
+
+        // nothing listens on port 1: the tier must not fail at construction, only count errors
+        try (RedisPostingsTier redis = new RedisPostingsTier("localhost", 1, 60, Duration.ofMillis(250))) {
+            CachedPostingsSource cached = new CachedPostingsSource(new PostingsCache(1000 * ENTRY_BYTES, 0), redis, database);
+            assertEquals(1, postingsFound(cached, new int[]{42}));
+            assertTrue(cached.getTierErrors() > 0);
+            cached.invalidate(new int[]{42}, 1);
+            assertEquals(1, postingsFound(cached, new int[]{42}));
+        }
+    }
+
+    private static int postingsFound(PostingsSource source, int[] hashes) throws Exception {
+        AtomicInteger found = new AtomicInteger();
+        source.lookup(hashes, hashes.length, (hashIndex, posting) -> {
+            found.incrementAndGet();
+            return true;
+        });
+        return found.get();
+    }
+
+    /**
+     * Look {@code hashes} up, loading the misses the way the store does.
+     */
+    private static void lookThrough(PostingsCache cache, int[] hashes) {
+        long epoch = cache.epoch();
+        long[][] found = new long[hashes.length][];
+        cache.getAll(hashes, hashes.length, found);
+        long[][] loaded = postings(hashes);
+        for (int i = 0; i < hashes.length; i++) {
+            if (found[i] != null) {
+                loaded[i] = null;
+            }
+        }
+        cache.putAll(hashes, loaded, hashes.length, epoch);
+    }
+
+    private static int hits(PostingsCache cache, int[] hashes) {
+        long[][] found = new long[hashes.length][];
+        return cache.getAll(hashes, hashes.length, found);
+    }
+
+    private static long[][] postings(int[] hashes) {
+        long[][] postings = new long[hashes.length][POSTINGS_PER_HASH];
+        for (int i = 0; i < hashes.length; i++) {
+            for (int j = 0; j < POSTINGS_PER_HASH; j++) {
+                postings[i][j] = Postings.pack(hashes[i], j);
+            }
+        }
+        return postings;
+    }
+
+    private static int[] range(int from, int to) {
+        int[] hashes = new int[to - from];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = from + i;
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,62 @@
+package com.sonicres.demo.features.fingerprint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpectrogramEngineTests {
+
+    @Test
+    void realFftMatchesNaiveDft() {
+        int n = 256;
+        Random random = new Random(42);
+        float[] signal = new float[n];
+        for (int i = 0; i < n; i++) {
+            signal[i] = random.nextFloat() * 2 - 1;
+        }
+
+        float[] expected = new float[n / 2];
+        for (int k = 0; k < n / 2; k++) {
+            double re = 0, im = 0;
+            for (int t = 0; t < n; t++) {
+                re += signal[t] * Math.cos(2 * Math.PI * k * t / n);
+                im -= signal[t] * Math.sin(2 * Math.PI * k * t / n);
+            }
+            expected[k] = (float) Math.hypot(re, im);
+        }
+
+        float[] actual = new float[n / 2];
+        new RealFft(n).magnitudes(signal.clone(), actual, 0);
+
+        for (int k = 0; k < n / 2; k++) {
+            assertEquals(expected[k], actual[k], 1e-3, "bin " + k);
+        }
+    }
+
+    @Test
+    void sinePeaksAtItsBin() {
+        SpectrogramEngine engine = new SpectrogramEngine(1024, 512, 44100);
+        int bin = 93;
+        double hz = bin * 44100.0 / 1024;
+        short[] pcm = new short[44100];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (10000 * Math.sin(2 * Math.PI * hz * i / 44100));
+        }
+
+        Spectrogram spectrogram = engine.compute(pcm, pcm.length);
+
+        assertEquals(1 + (44100 - 1024) / 512, spectrogram.frames());
+        assertEquals(512, spectrogram.bins());
+        for (int f = 0; f < spectrogram.frames(); f++) {
+            int loudest = 0;
+            for (int b = 1; b < spectrogram.bins(); b++) {
+                if (spectrogram.magnitude(f, b) > spectrogram.magnitude(f, loudest)) {
+                    loudest = b;
+                }
+            }
+            assertEquals(bin, loudest, "frame " + f);
+        }
+    }
+}
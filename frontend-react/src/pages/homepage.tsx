@@ -34,7 +34,7 @@ export default function HomePage({ navigate }: HomePageProps) {
       },
       onResult: (result: FingerprintResult) => {
         console.log('Received result from server:', result);
-        if (result.type === 'result' && result.matches && result.matches.length > 0) {
+        if ((result.type === 'result' || result.type === 'match') && result.matches && result.matches.length > 0) {
           // Store matches in sessionStorage for MatchesPage to use
           sessionStorage.setItem('matchResults', JSON.stringify(result.matches));
           navigate('/matches');
@@ -1,3 +1,5 @@
+import { decodeCbor } from './cbor';
+
 export interface RecordingCallbacks {
   onConnected?: () => void;
   onRecording?: (timeRemaining: number) => void;
@@ -8,7 +10,7 @@ export interface RecordingCallbacks {
 }
 
 export interface FingerprintResult {
-  type: 'result' | 'no-match';
+  type: 'result' | 'match' | 'no-match';
   matches?: Array<{
     trackId: string;
     title: string;
@@ -27,6 +29,14 @@ export interface FingerprintResult {
   message?: string;
 }
 
+// Offered at connect; the server picks the first it supports. With none, it sends JSON text and acks every chunk.
+// sonic.cbor.v1: CBOR binary messages + binary acks; the others keep JSON text messages.
+const PROTOCOLS = ['sonic.cbor.v1', 'sonic.ack-binary.v1', 'sonic.ack-json.v1'];
+
+// Binary ack frame: [0x01][uint32 chunks since last ack][uint64 total bytes], big-endian
+const BINARY_ACK = 0x01;
+const BINARY_ACK_LENGTH = 13;
+
 export class AudioRecorderService {
   private websocketUrl: string;
   private recordingDuration: number;
@@ -36,6 +46,7 @@ export class AudioRecorderService {
   private recordingTimer: NodeJS.Timeout | null = null;
   private countdownTimer: NodeJS.Timeout | null = null;
   private isRecording: boolean = false;
+  private matchedEarly: boolean = false;
   private callbacks: RecordingCallbacks = {};
 
   constructor(websocketUrl: string, recordingDuration: number = 10000) {
@@ -99,6 +110,7 @@ export class AudioRecorderService {
       // Step 5: Start recording
       this.mediaRecorder.start(250); // Send chunks every 250ms
       this.isRecording = true;
+      this.matchedEarly = false;
 
       // Step 6: Start countdown timer
       this.startCountdown();
@@ -147,16 +159,20 @@ export class AudioRecorderService {
   private connectWebSocket(): Promise<void> {
     return new Promise((resolve, reject) => {
       try {
-        this.websocket = new WebSocket(this.websocketUrl);
-        this.websocket.binaryType = 'blob';
+        this.websocket = new WebSocket(this.websocketUrl, PROTOCOLS);
+        this.websocket.binaryType = 'arraybuffer';
 
         this.websocket.onopen = () => {
-          console.log('✓ WebSocket connected');
+          console.log('✓ WebSocket connected', this.websocket?.protocol || '(per-chunk acks)');
           resolve();
         };
 
         this.websocket.onmessage = (event) => {
-          this.handleWebSocketMessage(event.data);
+          if (event.data instanceof ArrayBuffer) {
+            this.handleBinaryMessage(event.data);
+          } else {
+            this.handleWebSocketMessage(event.data);
+          }
         };
 
         this.websocket.onerror = (error) => {
@@ -183,69 +199,115 @@ export class AudioRecorderService {
   }
 
   /**
-   * Handle WebSocket messages from server
+   * Handle binary frames from server: compact acks, or CBOR-encoded messages
    */
-  private handleWebSocketMessage(data: string): void {
+  private handleBinaryMessage(data: ArrayBuffer): void {
+    const view = new DataView(data);
+    if (data.byteLength === BINARY_ACK_LENGTH && view.getUint8(0) === BINARY_ACK) {
+      const totalBytes = Number(view.getBigUint64(5));
+      console.log(`Server has ${totalBytes} bytes (${view.getUint32(1)} chunks acked)`);
+      return;
+    }
+
     try {
-      const message = JSON.parse(data);
-
-      switch (message.type) {
-        case 'connected':
-          console.log('Server ready:', message.sessionId);
-          this.callbacks.onConnected?.();
-          break;
-
-        case 'ack':
-          // Server acknowledged audio chunk
-          console.log(`Received ${message.bytes} bytes`);
-          break;
-
-        case 'processing':
-          console.log('Server processing audio...');
-          this.callbacks.onProcessing?.();
-          break;
-
-        case 'result':
-          console.log('✅ Received result:', message);
-          this.callbacks.onResult?.(message as FingerprintResult);
-          this.callbacks.onComplete?.();
-          // Cleanup after result received
-          setTimeout(() => this.cleanup(), 100);
-          break;
-
-        case 'no-match':
-          console.log('⚠️  No match found');
-          this.callbacks.onResult?.({
-            type: 'no-match',
-            message: message.message || 'No match found',
-          });
-          this.callbacks.onComplete?.();
-          // Cleanup after result received
-          setTimeout(() => this.cleanup(), 100);
-          break;
-
-        case 'error':
-          console.error('❌ Server error:', message.message);
-          this.callbacks.onError?.(message.message);
-          this.cleanup();
-          break;
+      this.handleServerMessage(decodeCbor(data));
+    } catch (error) {
+      console.error('Error decoding CBOR message:', error);
+    }
+  }
 
-        default:
-          console.warn('Unknown message type:', message.type);
-      }
+  /**
+   * Handle JSON text messages from server
+   */
+  private handleWebSocketMessage(data: string): void {
+    try {
+      this.handleServerMessage(JSON.parse(data));
     } catch (error) {
       console.error('Error parsing WebSocket message:', error);
     }
   }
 
+  /**
+   * Dispatch a decoded server message, whichever encoding it arrived in
+   */
+  // eslint-disable-next-line @typescript-eslint/no-explicit-any
+  private handleServerMessage(message: any): void {
+    switch (message.type) {
+      case 'connected':
+        console.log('Server ready:', message.sessionId);
+        this.callbacks.onConnected?.();
+        break;
+
+      case 'ack':
+        // Server acknowledged one or more audio chunks
+        console.log(`Server has ${message.totalBytes} bytes`);
+        break;
+
+      case 'processing':
+        console.log('Server processing audio...');
+        this.callbacks.onProcessing?.();
+        break;
+
+      case 'result':
+        console.log('✅ Received result:', message);
+        this.callbacks.onResult?.(message as FingerprintResult);
+        this.callbacks.onComplete?.();
+        // Cleanup after result received
+        setTimeout(() => this.cleanup(), 100);
+        break;
+
+      case 'match':
+        // Server recognized the song before the recording finished
+        console.log('⚡ Early match:', message);
+        this.matchedEarly = true;
+        this.stopRecording();
+        this.callbacks.onResult?.(message as FingerprintResult);
+        this.callbacks.onComplete?.();
+        setTimeout(() => this.cleanup(), 100);
+        break;
+
+      case 'no-match':
+        console.log('⚠️  No match found');
+        this.callbacks.onResult?.({
+          type: 'no-match',
+          message: message.message || 'No match found',
+        });
+        this.callbacks.onComplete?.();
+        // Cleanup after result received
+        setTimeout(() => this.cleanup(), 100);
+        break;
+
+      case 'busy':
+        // Server is over capacity and shed this recording
+        console.warn(`🚦 Server busy, retry after ${message.retryAfterSeconds}s`);
+        this.stopRecording();
+        this.callbacks.onError?.(
+          `${message.message || 'Server is busy'}. Please try again in ${message.retryAfterSeconds ?? 5} seconds.`
+        );
+        this.cleanup();
+        break;
+
+      case 'error':
+        console.error('❌ Server error:', message.message);
+        this.callbacks.onError?.(message.message);
+        this.cleanup();
+        break;
+
+      default:
+        console.warn('Unknown message type:', message.type);
+    }
+  }
+
   /**
    * Handle recording completion
    */
   private handleRecordingComplete(): void {
     console.log('🎵 Recording complete, sending "done" signal');
 
-    // Send "done" message to server
-    if (this.websocket?.readyState === WebSocket.OPEN) {
+    // Send "done" message to server (not needed if it already answered with an early match)
+    if (this.matchedEarly) {
+      console.log('⚡ Already matched, skipping "done" signal');
+    } else if (this.websocket?.readyState === WebSocket.OPEN) {
       const doneMessage = JSON.stringify({ type: 'done' });
       console.log('📤 Sending:', doneMessage);
       this.websocket.send(doneMessage);
@@ -0,0 +1,101 @@
+/**
+ * Minimal CBOR (RFC 8949) decoder for server messages sent as binary frames under the
+ * 'sonic.cbor.v1' subprotocol. Supports what Jackson's CBOR writer emits for our messages:
+ * integers, floats, text/byte strings, arrays and maps (definite or indefinite length),
+ * booleans and null.
+ */
+export function decodeCbor(data: ArrayBuffer): unknown {
+  const view = new DataView(data);
+  const bytes = new Uint8Array(data);
+  const text = new TextDecoder();
+  let offset = 0;
+
+  const BREAK = Symbol('break');
+
+  const readLength = (info: number): number => {
+    if (info < 24) return info;
+    switch (info) {
+      case 24: offset += 1; return view.getUint8(offset - 1);
+      case 25: offset += 2; return view.getUint16(offset - 2);
+      case 26: offset += 4; return view.getUint32(offset - 4);
+      case 27: offset += 8; return Number(view.getBigUint64(offset - 8));
+      case 31: return -1; // indefinite length
+      default: throw new Error(`Invalid CBOR length info ${info}`);
+    }
+  };
+
+  const readChunks = (major: number, length: number): Uint8Array => {
+    if (length >= 0) {
+      offset += length;
+      return bytes.subarray(offset - length, offset);
+    }
+    const chunks: Uint8Array[] = [];
+    for (let chunk = read(); chunk !== BREAK; chunk = read()) {
+      chunks.push(major === 3 ? new TextEncoder().encode(chunk as string) : (chunk as Uint8Array));
+    }
+    const joined = new Uint8Array(chunks.reduce((n, c) => n + c.length, 0));
+    let at = 0;
+    for (const c of chunks) {
+      joined.set(c, at);
+      at += c.length;
+    }
+    return joined;
+  };
+
+  const read = (): unknown => {
+    const initial = view.getUint8(offset++);
+    const major = initial >> 5;
+    const info = initial & 0x1f;
+
+    switch (major) {
+      case 0: return readLength(info);
+      case 1: return -1 - readLength(info);
+      case 2: return readChunks(major, readLength(info)).slice();
+      case 3: return text.decode(readChunks(major, readLength(info)));
+      case 4: {
+        const length = readLength(info);
+        const items: unknown[] = [];
+        if (length >= 0) {
+          for (let i = 0; i < length; i++) items.push(read());
+        } else {
+          for (let item = read(); item !== BREAK; item = read()) items.push(item);
+        }
+        return items;
+      }
+      case 5: {
+        const length = readLength(info);
+        const map: Record<string, unknown> = {};
+        for (let i = 0; length < 0 || i < length; i++) {
+          const key = read();
+          if (key === BREAK) break;
+          map[String(key)] = read();
+        }
+        return map;
+      }
+      case 6: readLength(info); return read(); // tags carry no meaning for us
+      default:
+        switch (info) {
+          case 20: return false;
+          case 21: return true;
+          case 22:
+          case 23: return null;
+          case 25: offset += 2; return halfToNumber(view.getUint16(offset - 2));
+          case 26: offset += 4; return view.getFloat32(offset - 4);
+          case 27: offset += 8; return view.getFloat64(offset - 8);
+          case 31: return BREAK;
+          default: throw new Error(`Unsupported CBOR simple value ${info}`);
+        }
+    }
+  };
+
+  return read();
+}
+
+function halfToNumber(half: number): number {
+  const exponent = (half >> 10) & 0x1f;
+  const fraction = half & 0x3ff;
+  const sign = half & 0x8000 ? -1 : 1;
+  if (exponent === 0) return sign * 2 ** -14 * (fraction / 1024);
+  if (exponent === 0x1f) return fraction ? NaN : sign * Infinity;
+  return sign * 2 ** (exponent - 15) * (1 + fraction / 1024);
+}